@@ -65,7 +65,18 @@ public class DataSequenceSpliterator implements Spliterator<DataSequence> {
      * @param dataStream_ a DataStream<DynamicDataInstance> object.
      */
     public DataSequenceSpliterator(DataStream<DynamicDataInstance> dataStream_) {
-        this(dataStream_, dataStream_.stream().spliterator().estimateSize());
+        this(dataStream_, estimateSize(dataStream_));
+    }
+
+    /**
+     * Returns the estimated size of a DataStream<DynamicDataInstance>, closing the stream used to compute it.
+     * @param dataStream_ a DataStream<DynamicDataInstance> object.
+     * @return the estimated size.
+     */
+    private static long estimateSize(DataStream<DynamicDataInstance> dataStream_) {
+        try (Stream<DynamicDataInstance> stream = dataStream_.stream()) {
+            return stream.spliterator().estimateSize();
+        }
     }
 
     /**
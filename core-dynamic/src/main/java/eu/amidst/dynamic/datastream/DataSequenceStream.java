@@ -42,7 +42,20 @@ public final class DataSequenceStream {
      * @return a Stream<DataSequence> object.
      */
     public static Stream<DataSequence> parallelStreamOfDataSequences(DataStream<DynamicDataInstance> dataStream){
-        return FixedBatchParallelSpliteratorWrapper.toFixedBatchStream(DataSequenceStream.streamOfDataSequences(dataStream), 1);
+        return parallelStreamOfDataSequences(dataStream, 1);
+    }
+
+    /**
+     * Returns a parallel {@link Stream} of {@link DataSequence} which is split on sequence boundaries, so that
+     * each worker thread always receives whole sequences.
+     * @param dataStream a DataStream<DynamicDataInstance> object.
+     * @param batchSize the number of whole sequences handed to a worker thread at each split.
+     * @return a Stream<DataSequence> object.
+     */
+    public static Stream<DataSequence> parallelStreamOfDataSequences(DataStream<DynamicDataInstance> dataStream, int batchSize){
+        if (batchSize < 1)
+            throw new IllegalArgumentException("The batch size must be at least one sequence.");
+        return FixedBatchParallelSpliteratorWrapper.toFixedBatchStream(DataSequenceStream.streamOfDataSequences(dataStream), batchSize);
     }
 
 }
@@ -26,6 +26,7 @@ import eu.amidst.dynamic.datastream.DynamicDataInstance;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
@@ -39,6 +40,9 @@ public class DynamicDataInstanceSpliterator implements Spliterator<DynamicDataIn
     /** Represents a {@link DataFileReader} object. */
     private DataFileReader reader;
 
+    /** Represents the {@code Stream} of {@link DataRow} read by this spliterator. */
+    private final Stream<DataRow> dataRows;
+
     /** Represents a {@link Iterator} over {@link DataRow}. */
     private Iterator<DataRow> dataRowIterator;
 
@@ -69,8 +73,9 @@ public class DynamicDataInstanceSpliterator implements Spliterator<DynamicDataIn
      */
     public DynamicDataInstanceSpliterator(DataFileReader reader_) {
         this.reader=reader_;
-        dataRowIterator = this.reader.iterator();
-        this.spliterator = this.reader.spliterator();
+        dataRows = this.reader.stream();
+        dataRowIterator = dataRows.iterator();
+        this.spliterator = Spliterators.spliteratorUnknownSize(dataRowIterator, 0);
         final int c = spliterator.characteristics();
         this.characteristics = (c & SIZED) != 0 ? c | SUBSIZED : c;
         this.est = spliterator.estimateSize();
@@ -111,7 +116,8 @@ public class DynamicDataInstanceSpliterator implements Spliterator<DynamicDataIn
      * @return a Stream<DynamicDataInstance> object.
      */
     public static Stream<DynamicDataInstance> toDynamicDataInstanceStream(DataFileReader reader) {
-        return stream(new DynamicDataInstanceSpliterator(reader), false);
+        DynamicDataInstanceSpliterator spliterator = new DynamicDataInstanceSpliterator(reader);
+        return stream(spliterator, false).onClose(spliterator.dataRows::close);
     }
 
     /**
@@ -160,12 +166,11 @@ public class DynamicDataInstanceSpliterator implements Spliterator<DynamicDataIn
              /* Both SequenceID and TimeID are provided. */
             case 3:
                 DynamicDataInstance dynamicDataInstance = nextDynamicDataInstance.nextDataInstance(dataRowIterator, attSequenceID, attTimeID);
-                if (dynamicDataInstance!=null) {
-                    action.accept(dynamicDataInstance);
-                    return true;
-                }else{
-                    return false;
-                }
+                /* A null instance marks the start of a new sequence, whose first instance is returned by the next call. */
+                if (dynamicDataInstance==null)
+                    dynamicDataInstance = nextDynamicDataInstance.nextDataInstance(dataRowIterator, attSequenceID, attTimeID);
+                action.accept(dynamicDataInstance);
+                return true;
 
             default:
                 throw new IllegalArgumentException();
@@ -166,10 +166,13 @@ public final class NextDynamicDataInstance {
         double pastSequenceID = past.getValue(attSequenceID);
         double presentTimeID = present.getValue(attTimeID);
 
+        /* The present DataRow always belongs to the current sequence, while the past one may be missing. */
+        int currentSequenceID = (int) present.getValue(attSequenceID);
+
         /* Missing values of the form (X,?), where X can also be ?. */
         if(timeIDcounter < present.getValue(attTimeID)){
             timeIDcounter++;
-            DynamicDataInstanceImpl dynDataInst = new DynamicDataInstanceImpl(past, new DataRowMissing(), (int) pastSequenceID,
+            DynamicDataInstanceImpl dynDataInst = new DynamicDataInstanceImpl(past, new DataRowMissing(), currentSequenceID,
                     (int) presentTimeID);
             past = new DataRowMissing(); //present is still the same instance, we need to fill in the missing instances
             return dynDataInst;
@@ -177,7 +180,7 @@ public final class NextDynamicDataInstance {
         /* Missing values of the form (X,Y), where X can also be ? and Y is an observed (already read) instance. */
         }else if(timeIDcounter == present.getValue(attTimeID)) {
             timeIDcounter++;
-            DynamicDataInstanceImpl dynDataInst = new DynamicDataInstanceImpl(past, present, (int) pastSequenceID,
+            DynamicDataInstanceImpl dynDataInst = new DynamicDataInstanceImpl(past, present, currentSequenceID,
                     (int) presentTimeID);
             past = present; //present is still the same instance, we need to fill in the missing instances
             return dynDataInst;
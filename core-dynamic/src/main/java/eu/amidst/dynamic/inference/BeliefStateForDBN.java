@@ -0,0 +1,39 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+
+package eu.amidst.dynamic.inference;
+
+/**
+ * This interface represents the belief state of an {@link InferenceAlgorithmForDBN}, i.e., the compact information
+ * needed to resume the filtering of a sequence, such as the posteriors of the interface variables.
+ * Belief states allow a single {@link InferenceAlgorithmForDBN} object to filter many sequences alternately.
+ */
+public interface BeliefStateForDBN {
+
+    /**
+     * Returns the sequence ID of this BeliefStateForDBN.
+     * @return a {@code long} that represents the sequence ID, or -1 if no evidence has been provided.
+     */
+    long getSequenceID();
+
+    /**
+     * Returns the time ID of the posterior of this BeliefStateForDBN.
+     * @return a {@code long} that represents the time ID, or -1 if no evidence has been provided.
+     */
+    long getTimeID();
+}
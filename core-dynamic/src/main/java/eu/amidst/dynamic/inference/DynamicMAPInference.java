@@ -18,6 +18,7 @@
 package eu.amidst.dynamic.inference;
 
 import eu.amidst.core.distribution.*;
+import eu.amidst.core.exponentialfamily.EF_BayesianNetwork;
 import eu.amidst.core.inference.ImportanceSamplingRobust;
 import eu.amidst.core.inference.InferenceAlgorithm;
 import eu.amidst.core.inference.messagepassing.VMP;
@@ -100,6 +101,18 @@ public class DynamicMAPInference implements InferenceAlgorithmForDBN {
 
     private List<int[]> bestSequenceEachModel;
 
+    /** Represents the search algorithm for which the merged class variable models were compiled. */
+    private SearchAlgorithm compiledSearchAlgorithm;
+
+    /** Represents the exponential family form of each merged class variable model, shared by every VMP query. */
+    private List<EF_BayesianNetwork> mergedClassVarEFModels;
+
+    /** Represents the importance sampling engine of each merged class variable model, reused across IS queries. */
+    private List<ImportanceSamplingRobust> mergedClassVarISEngines;
+
+    /** Represents, for each merged class variable model, its variable for each variable ID of the unfolded model. */
+    private List<Variable[]> mergedClassVarEvidenceVariables;
+
     List<List<UnivariateDistribution>> allGroupedPosteriorDistributions;
     List<UnivariateDistribution> allUngroupedPosteriorDistributions;
 
@@ -126,6 +139,7 @@ public class DynamicMAPInference implements InferenceAlgorithmForDBN {
         model=null;
         unfoldedStaticModel =null;
         mergedClassVarModels=null;
+        this.clearCompiledModels();
 
         evidence=null;
         MAPvarName=null;
@@ -274,12 +288,20 @@ public class DynamicMAPInference implements InferenceAlgorithmForDBN {
     }
 
     /**
-     * Sets the model for this DynamicMAPInference.
+     * Sets the model for this DynamicMAPInference. The unfolded and merged class variable models are compiled once
+     * per model, number of time steps and number of merged class variables, so setting again the same model keeps
+     * them and only the evidence has to be changed between queries.
      * @param model a {@link DynamicBayesianNetwork} object.
      */
     public void setModel(DynamicBayesianNetwork model) {
+        if (model==this.model && this.unfoldedStaticModel!=null)
+            return;
+
         this.model = model;
         this.unfoldedStaticModel = DynamicToStaticBNConverter.convertDBNtoBN(model,nTimeSteps);
+        this.staticEvidence = null;
+        this.mergedClassVarModels = null;
+        this.clearCompiledModels();
     }
 
     /**
@@ -308,6 +330,10 @@ public class DynamicMAPInference implements InferenceAlgorithmForDBN {
             System.out.println("Error: The dynamic MAP variable must be multinomial");
             System.exit(-10);
         }
+        if (MAPvariable!=this.MAPvariable) {
+            this.mergedClassVarModels = null;
+            this.clearCompiledModels();
+        }
         this.MAPvariable = MAPvariable;
         this.MAPvarName = MAPvariable.getName();
 
@@ -322,9 +348,14 @@ public class DynamicMAPInference implements InferenceAlgorithmForDBN {
             System.out.println("Error: The number of time steps should be at least 2");
             System.exit(-12);
         }
+        if (ntimeSteps==nTimeSteps)
+            return;
         nTimeSteps = ntimeSteps;
 
-        this.setModel(this.model);
+        this.unfoldedStaticModel = null;
+        this.staticEvidence = null;
+        if (this.model!=null)
+            this.setModel(this.model);
 
     }
 
@@ -342,6 +373,10 @@ public class DynamicMAPInference implements InferenceAlgorithmForDBN {
             System.out.println("Error: The number of merged class variables should be between 2 and 10");
             System.exit(-14);
         }
+        if (nMergedClassVars!=this.nMergedClassVars) {
+            this.mergedClassVarModels = null;
+            this.clearCompiledModels();
+        }
         this.nMergedClassVars = nMergedClassVars;
     }
 
@@ -461,6 +496,65 @@ public class DynamicMAPInference implements InferenceAlgorithmForDBN {
 //            System.out.println("MODEL " + modelNumber);
 //            System.out.println(bn);
         });
+
+        this.clearCompiledModels();
+    }
+
+    /**
+     * Discards the compiled inference structures of the merged class variable models.
+     */
+    private void clearCompiledModels() {
+        compiledSearchAlgorithm = null;
+        mergedClassVarEFModels = null;
+        mergedClassVarISEngines = null;
+        mergedClassVarEvidenceVariables = null;
+    }
+
+    /**
+     * Compiles, for the given search algorithm, the structures of the merged class variable models that do not depend
+     * on the evidence: the exponential family models (VMP), the inference engines (IS), and the mapping of the
+     * unfolded model variables to the variables of each merged class variable model.
+     * @param searchAlgorithm a valid {@link SearchAlgorithm} value.
+     */
+    private void compileMergedClassVarModels(SearchAlgorithm searchAlgorithm) {
+        if (compiledSearchAlgorithm==searchAlgorithm)
+            return;
+
+        Map<String, Variable> unfoldedVariablesByName = new HashMap<>();
+        for (Variable var : unfoldedStaticModel.getVariables())
+            unfoldedVariablesByName.put(var.getName(), var);
+
+        mergedClassVarEvidenceVariables = new ArrayList<>(nMergedClassVars);
+        for (BayesianNetwork thisModel : mergedClassVarModels) {
+            Variable[] evidenceVariables = new Variable[unfoldedStaticModel.getNumberOfVars()];
+            for (Variable var : thisModel.getVariables()) {
+                Variable unfoldedVar = unfoldedVariablesByName.get(var.getName());
+                if (unfoldedVar!=null)
+                    evidenceVariables[unfoldedVar.getVarID()] = var;
+            }
+            mergedClassVarEvidenceVariables.add(evidenceVariables);
+        }
+
+        IntStream range = IntStream.range(0, nMergedClassVars);
+        if (parallelMode)
+            range = range.parallel();
+
+        if (searchAlgorithm==SearchAlgorithm.VMP) {
+            mergedClassVarISEngines = null;
+            EF_BayesianNetwork[] efModels = new EF_BayesianNetwork[nMergedClassVars];
+            range.forEach(i -> efModels[i] = new EF_BayesianNetwork(mergedClassVarModels.get(i)));
+            mergedClassVarEFModels = Arrays.asList(efModels);
+        } else {
+            mergedClassVarEFModels = null;
+            ImportanceSamplingRobust[] engines = new ImportanceSamplingRobust[nMergedClassVars];
+            range.forEach(i -> {
+                engines[i] = new ImportanceSamplingRobust();
+                engines[i].setModel(mergedClassVarModels.get(i));
+            });
+            mergedClassVarISEngines = Arrays.asList(engines);
+        }
+
+        compiledSearchAlgorithm = searchAlgorithm;
     }
 
 
@@ -553,8 +647,25 @@ public class DynamicMAPInference implements InferenceAlgorithmForDBN {
         }
 
 
-        List<InferenceAlgorithm> staticModelsInference = new ArrayList<>(nMergedClassVars);
-        IntStream.range(0,nMergedClassVars).forEachOrdered(i -> {
+        this.compileMergedClassVarModels(searchAlgorithm);
+
+        int[] seeds = new int[nMergedClassVars];
+        if (searchAlgorithm==SearchAlgorithm.IS) {
+            for (int i = 0; i < nMergedClassVars; i++) {
+                Random random = new Random((this.seed));
+                seeds[i] = random.nextInt();
+                this.seed = random.nextInt();
+            }
+        }
+
+        // The merged class variable models are independent, so they are run in parallel.
+        InferenceAlgorithm[] inferenceEngines = new InferenceAlgorithm[nMergedClassVars];
+        IntStream range = IntStream.range(0,nMergedClassVars);
+        if (parallelMode)
+            range = range.parallel();
+
+        range.forEach(i -> {
+            BayesianNetwork thisModel = mergedClassVarModels.get(i);
             InferenceAlgorithm currentModelInference;
             switch (searchAlgorithm) {
                 case VMP:
@@ -562,44 +673,37 @@ public class DynamicMAPInference implements InferenceAlgorithmForDBN {
                     //((VMP)currentModelInference).setTestELBO(true);
                     ((VMP)currentModelInference).setThreshold(0.0001);
                     ((VMP) currentModelInference).setMaxIter(3000);
+                    ((VMP) currentModelInference).setModel(thisModel, mergedClassVarEFModels.get(i));
                     break;
 
                 case IS:
                 default:
 
-                    currentModelInference = new ImportanceSamplingRobust();
-
-                    Random random = new Random((this.seed));
-                    currentModelInference.setSeed(random.nextInt());
-
-                    this.seed = random.nextInt();
+                    currentModelInference = mergedClassVarISEngines.get(i);
+                    currentModelInference.setSeed(seeds[i]);
 
                     ((ImportanceSamplingRobust) currentModelInference).setSampleSize(sampleSize);
-
+                    ((ImportanceSamplingRobust) currentModelInference).setVariablesAPosteriori(thisModel.getVariables().getListOfVariables().stream().filter(variable -> variable.getName().contains(groupedClassName)).collect(Collectors.toList()));
                     break;
             }
             currentModelInference.setParallelMode(this.parallelMode);
-            currentModelInference.setModel(mergedClassVarModels.get(i));
-
-            if(searchAlgorithm==SearchAlgorithm.IS) {
-                ((ImportanceSamplingRobust) currentModelInference).setVariablesAPosteriori(mergedClassVarModels.get(i).getVariables().getListOfVariables().stream().filter(variable -> variable.getName().contains(groupedClassName)).collect(Collectors.toList()));
-            }
-
-            BayesianNetwork thisModel = mergedClassVarModels.get(i);
 
+            Assignment thisEvidence = null;
             if(staticEvidence!=null) {
-                Assignment thisEvidence = new HashMapAssignment();
+                Variable[] evidenceVariables = mergedClassVarEvidenceVariables.get(i);
+                thisEvidence = new HashMapAssignment(staticEvidence.getVariables().size());
                 for (Variable varEvidence : staticEvidence.getVariables()) {
-                    thisEvidence.setValue(thisModel.getVariables().getVariableByName(varEvidence.getName()), staticEvidence.getValue(varEvidence));
+                    thisEvidence.setValue(evidenceVariables[varEvidence.getVarID()], staticEvidence.getValue(varEvidence));
                 }
-                currentModelInference.setEvidence(thisEvidence);
             }
+            currentModelInference.setEvidence(thisEvidence);
             currentModelInference.runInference();
 
             //System.out.println(currentModelInference.getLogProbabilityOfEvidence());
 
-            staticModelsInference.add(currentModelInference);
+            inferenceEngines[i] = currentModelInference;
         });
+        List<InferenceAlgorithm> staticModelsInference = Arrays.asList(inferenceEngines);
 //
 //        IntStream.range(0, 2).parallel().forEach(i -> {
 //            if (i == 0) {
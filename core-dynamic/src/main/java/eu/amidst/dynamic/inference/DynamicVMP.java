@@ -73,6 +73,15 @@ public class DynamicVMP implements InferenceAlgorithmForDBN {
     /** Represents the sequence ID. */
     long sequenceID;
 
+    /** Represents the seed. */
+    int seed;
+
+    /** Represents the {@link FixedLagSmoother} of the fixed-lag smoothing mode, or {@code null} if it is not activated. */
+    FixedLagSmoother fixedLagSmoother;
+
+    /** Represents the lag of the fixed-lag smoothing mode, or -1 if it is not activated. */
+    int fixedLag = -1;
+
     /**
      * Creates a new DynamicVMP object.
      */
@@ -88,6 +97,7 @@ public class DynamicVMP implements InferenceAlgorithmForDBN {
      * @param seed an {@code int} that represents the seed value to be set.
      */
     public void setSeed(int seed) {
+        this.seed = seed;
         this.vmpTime0.setSeed(seed);
         this.vmpTimeT.setSeed(seed);
     }
@@ -124,6 +134,67 @@ public class DynamicVMP implements InferenceAlgorithmForDBN {
         this.vmpTimeT.setNodes(allNodes);
         this.vmpTimeT.updateChildrenAndParents();
 
+        this.setFixedLag(this.fixedLag);
+    }
+
+    /**
+     * Sets the fixed-lag smoothing mode. In this mode, each call to {@link #runInference()} also runs VMP on a window
+     * with the last lag+1 time slices, so the posteriors of the time step {@link #getTimeIDOfSmoothedPosterior()}
+     * are smoothed with lag time steps of future evidence, without unrolling the whole sequence.
+     * @param lag an {@code int} that represents the lag, or -1 to deactivate the fixed-lag smoothing mode.
+     */
+    public void setFixedLag(int lag) {
+        this.fixedLag = lag;
+        this.fixedLagSmoother = null;
+        if (lag >= 0 && this.model != null) {
+            VMP vmp = new VMP();
+            vmp.setSeed(this.seed);
+            vmp.setMaxIter(this.vmpTimeT.getMaxIter());
+            vmp.setThreshold(this.vmpTimeT.getThreshold());
+            this.fixedLagSmoother = new FixedLagSmoother(this.model, lag, vmp);
+        }
+    }
+
+    /**
+     * Returns the time ID of the smoothed posteriors in the fixed-lag smoothing mode, i.e., the time ID of the
+     * posterior minus the lag, or 0 at the beginning of the sequence.
+     * @return a {@code long} that represents the time ID.
+     */
+    public long getTimeIDOfSmoothedPosterior() {
+        return this.getFixedLagSmoother().getTimeIDOfSmoothedPosterior();
+    }
+
+    /**
+     * Returns the smoothed posterior distribution of a given {@link Variable} at the time step
+     * {@link #getTimeIDOfSmoothedPosterior()} in the fixed-lag smoothing mode.
+     * @param var a {@link Variable} object.
+     * @param <E> a class extending {@link UnivariateDistribution}.
+     * @return an {@link UnivariateDistribution} object.
+     */
+    public <E extends UnivariateDistribution> E getSmoothedPosterior(Variable var) {
+        return this.getFixedLagSmoother().getSmoothedPosterior(var, this.getTimeIDOfSmoothedPosterior());
+    }
+
+    /**
+     * Returns the posterior distribution of a given {@link Variable} at a given time step of the window in the
+     * fixed-lag smoothing mode, given the evidence up to the time ID of the posterior.
+     * @param var a {@link Variable} object.
+     * @param timeID a {@code long} between {@link #getTimeIDOfSmoothedPosterior()} and {@link #getTimeIDOfPosterior()}.
+     * @param <E> a class extending {@link UnivariateDistribution}.
+     * @return an {@link UnivariateDistribution} object.
+     */
+    public <E extends UnivariateDistribution> E getSmoothedPosterior(Variable var, long timeID) {
+        return this.getFixedLagSmoother().getSmoothedPosterior(var, timeID);
+    }
+
+    /**
+     * Returns the {@link FixedLagSmoother} object, if the fixed-lag smoothing mode is activated.
+     * @return a {@link FixedLagSmoother} object.
+     */
+    private FixedLagSmoother getFixedLagSmoother() {
+        if (this.fixedLagSmoother == null)
+            throw new IllegalStateException("The fixed-lag smoothing mode is not activated. Use setFixedLag.");
+        return this.fixedLagSmoother;
     }
 
     /**
@@ -143,6 +214,8 @@ public class DynamicVMP implements InferenceAlgorithmForDBN {
         this.sequenceID = -1;
         this.vmpTime0.resetQs();
         this.vmpTimeT.resetQs();
+        if (this.fixedLagSmoother != null)
+            this.fixedLagSmoother.reset();
     }
 
     /**
@@ -271,6 +344,8 @@ public class DynamicVMP implements InferenceAlgorithmForDBN {
                     });
         }
 
+        if (this.fixedLagSmoother != null)
+            this.fixedLagSmoother.update(this.assignment);
     }
 
     /**
@@ -303,6 +378,103 @@ public class DynamicVMP implements InferenceAlgorithmForDBN {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * The belief state contains the last evidence and the Q distributions of the interface variables.
+     */
+    @Override
+    public BeliefStateForDBN getBeliefState() {
+        if (this.timeID == -1)
+            return new VMPBeliefState(-1, -1, null, null);
+
+        List<EF_UnivariateDistribution> interfaceQs = nodesClone.stream()
+                .map(node -> node.getQDist().deepCopy())
+                .collect(Collectors.toList());
+
+        return new VMPBeliefState(this.assignment.getSequenceID(), this.timeID, this.assignment, interfaceQs);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The Q distributions of the variables are initialized with those of their interface variables, and the random
+     * generators are seeded again, so the results do not depend on the sequences previously processed.
+     */
+    @Override
+    public void setBeliefState(BeliefStateForDBN beliefState) {
+        this.setSeed(this.seed);
+        this.reset();
+        this.assignment = new HashMapDynamicAssignment(0);
+
+        if (beliefState == null || beliefState.getTimeID() == -1)
+            return;
+
+        if (!(beliefState instanceof VMPBeliefState))
+            throw new IllegalArgumentException("The belief state was not created by a DynamicVMP object.");
+
+        VMPBeliefState state = (VMPBeliefState) beliefState;
+        this.timeID = state.timeID;
+        this.assignment = state.assignment;
+
+        for (int i = 0; i < nodesClone.size(); i++) {
+            Node node = nodesClone.get(i);
+            EF_UnivariateDistribution uni = state.interfaceQs.get(i).deepCopy();
+            node.setPDist(uni);
+            node.setQDist(uni);
+
+            Variable var = this.model.getDynamicVariables().getVariableFromInterface(node.getMainVariable());
+            this.vmpTime0.getNodeOfVar(var).setQDist(uni.deepCopy(var));
+            this.vmpTimeT.getNodeOfVar(var).setQDist(uni.deepCopy(var));
+        }
+    }
+
+    /**
+     * This class represents the belief state of a {@link DynamicVMP} object.
+     */
+    private static final class VMPBeliefState implements BeliefStateForDBN {
+
+        /** Represents the sequence ID. */
+        private final long sequenceID;
+
+        /** Represents the time ID. */
+        private final long timeID;
+
+        /** Represents the last evidence. */
+        private final DynamicAssignment assignment;
+
+        /** Represents the Q distributions of the interface variables. */
+        private final List<EF_UnivariateDistribution> interfaceQs;
+
+        /**
+         * Creates a new VMPBeliefState object.
+         * @param sequenceID the sequence ID.
+         * @param timeID the time ID.
+         * @param assignment the last evidence.
+         * @param interfaceQs the Q distributions of the interface variables.
+         */
+        private VMPBeliefState(long sequenceID, long timeID, DynamicAssignment assignment,
+                               List<EF_UnivariateDistribution> interfaceQs) {
+            this.sequenceID = sequenceID;
+            this.timeID = timeID;
+            this.assignment = assignment;
+            this.interfaceQs = interfaceQs;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getSequenceID() {
+            return sequenceID;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getTimeID() {
+            return timeID;
+        }
+    }
 
     public static void main(String[] arguments) throws IOException, ClassNotFoundException {
 
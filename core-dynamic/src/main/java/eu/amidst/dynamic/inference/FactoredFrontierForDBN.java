@@ -18,6 +18,8 @@
 package eu.amidst.dynamic.inference;
 
 import eu.amidst.core.datastream.DataStream;
+import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.distribution.Normal;
 import eu.amidst.core.distribution.UnivariateDistribution;
 import eu.amidst.core.inference.ImportanceSampling;
 import eu.amidst.core.inference.InferenceAlgorithm;
@@ -27,7 +29,6 @@ import eu.amidst.dynamic.utils.DataSetGenerator;
 import eu.amidst.core.utils.Serialization;
 import eu.amidst.core.utils.Utils;
 import eu.amidst.core.variables.Assignment;
-import eu.amidst.core.variables.HashMapAssignment;
 import eu.amidst.core.variables.Variable;
 import eu.amidst.dynamic.datastream.DynamicDataInstance;
 import eu.amidst.dynamic.learning.parametric.DynamicNaiveBayesClassifier;
@@ -36,11 +37,13 @@ import eu.amidst.dynamic.variables.DynamicAssignment;
 import eu.amidst.dynamic.variables.HashMapDynamicAssignment;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 
 /**
@@ -73,6 +76,30 @@ public class FactoredFrontierForDBN  implements InferenceAlgorithmForDBN {
     /** Represents the sequence ID. */
     private long sequenceID;
 
+    /** Represents the {@link FixedLagSmoother} of the fixed-lag smoothing mode, or {@code null} if it is not activated. */
+    private FixedLagSmoother fixedLagSmoother;
+
+    /** Represents the lag of the fixed-lag smoothing mode, or -1 if it is not activated. */
+    private int fixedLag = -1;
+
+    /** Represents the dynamic variables with an interface variable as parent at time T. */
+    private Variable[] temporalVars;
+
+    /** Represents the interface variables of {@code temporalVars}, i.e., the frontier of time T. */
+    private List<Variable> frontierVars;
+
+    /** Represents the evidence at time 0, which is refilled in place at each time step. */
+    private SliceAssignment evidenceTime0;
+
+    /** Represents the evidence at time T, which is refilled in place at each time step. */
+    private SliceAssignment evidenceTimeT;
+
+    /** Represents the evidence at time T while the window is moved ahead without evidence. */
+    private SliceAssignment evidenceWindow;
+
+    /** Represents the buffers where the frontier is saved while computing predictive posteriors. */
+    private UnivariateDistribution[] frontierBackup;
+
     /**
      * Creates a new FactoredFrontierForDBN object.
      * @param inferenceAlgorithm an {@link InferenceAlgorithm} object.
@@ -94,35 +121,6 @@ public class FactoredFrontierForDBN  implements InferenceAlgorithmForDBN {
     }
 
 
-    /**
-     * Return the list of non-observed and temporally connected variables for time T.
-     * @return a {@code List} of {@link Variable}.
-     */
-    private List<Variable> getTargetVarsTimeT(){
-        return this.model.getDynamicVariables().getListOfDynamicVariables().stream()
-                .filter(var -> !var.isInterfaceVariable())
-                .filter(var -> Utils.isMissingValue(this.assignment.getValue(var)))
-                .filter(var -> {
-                    boolean notContainInterfaceVar = true;
-                    for (Variable variable : this.model.getDynamicDAG().getParentSetTimeT(var)) {
-                        notContainInterfaceVar = notContainInterfaceVar && !variable.isInterfaceVariable();
-                    }
-
-                    return !notContainInterfaceVar;
-                })
-                .collect(Collectors.toList());
-    }
-
-    /**
-     * Return the list of non-observed variables for Time 0.
-     * @return a {@code List} of {@link Variable}.
-     */
-    private List<Variable> getTargetVarsTime0(){
-        return this.model.getDynamicVariables().getListOfDynamicVariables().stream()
-                .filter(var -> Utils.isMissingValue(this.assignment.getValue(var)))
-                .collect(Collectors.toList());
-    }
-
     /**
      * {@inheritDoc}
      */
@@ -130,21 +128,17 @@ public class FactoredFrontierForDBN  implements InferenceAlgorithmForDBN {
     public void runInference() {
 
         if (this.timeID==-1 && assignment.getTimeID()>0) {
-            this.infAlgTime0.setModel(this.bnTime0);
             this.infAlgTime0.setEvidence(null);
             this.infAlgTime0.runInference();
             this.timeID=0;
-            this.getTargetVarsTime0().stream()
-                    .forEach(var -> moveNodeQDist(this.infAlgTime0, this.bnTimeT, var));
+            this.moveFrontier(this.infAlgTime0, false);
         }
 
         if (assignment.getTimeID()==0) {
-            this.infAlgTime0.setModel(this.bnTime0);
             this.infAlgTime0.setEvidence(updateDynamicAssignmentTime0(this.assignment));
             this.infAlgTime0.runInference();
             this.timeID=0;
-            this.getTargetVarsTimeT().stream()
-                    .forEach(var -> moveNodeQDist(this.infAlgTime0, this.bnTimeT, var));
+            this.moveFrontier(this.infAlgTime0, true);
 
         }else{
             //If there is a missing instance
@@ -152,26 +146,73 @@ public class FactoredFrontierForDBN  implements InferenceAlgorithmForDBN {
                 this.moveWindow((int)(this.assignment.getTimeID() - this.timeID - 1));
 
             this.timeID=this.assignment.getTimeID();
-            this.infAlgTimeT.setModel(this.bnTimeT);
+            this.infAlgTimeT.updateModelParameters(this.bnTimeT, this.frontierVars);
             this.infAlgTimeT.setEvidence(updateDynamicAssignmentTimeT(this.assignment));
             this.infAlgTimeT.runInference();
-            this.getTargetVarsTimeT().stream()
-                    .forEach(var -> moveNodeQDist(this.infAlgTimeT, this.bnTimeT, var));
+            this.moveFrontier(this.infAlgTimeT, true);
+        }
+
+        if (this.fixedLagSmoother != null)
+            this.fixedLagSmoother.update(this.assignment);
+    }
+
+    /**
+     * Moves the posterior distributions of the non-observed variables from an {@link InferenceAlgorithm} object to
+     * their interface variables in the model at time T.
+     * @param infAlg an {@link InferenceAlgorithm} object.
+     * @param onlyTemporalVars a {@code boolean} that indicates whether only the temporally connected variables
+     *                         (i.e., true) or all the dynamic variables (i.e., false) are moved.
+     */
+    private void moveFrontier(InferenceAlgorithm infAlg, boolean onlyTemporalVars){
+        if (onlyTemporalVars) {
+            for (Variable var : this.temporalVars) {
+                if (Utils.isMissingValue(this.assignment.getValue(var)))
+                    moveNodeQDist(infAlg, this.bnTimeT, var);
+            }
+        } else {
+            for (Variable var : this.model.getDynamicVariables()) {
+                if (Utils.isMissingValue(this.assignment.getValue(var)))
+                    moveNodeQDist(infAlg, this.bnTimeT, var);
+            }
         }
     }
 
     /**
      * Moves the posterior distribution of a given {@link Variable} from a {@link BayesianNetwork} object to another.
+     * The parameters are copied into the distribution of the interface variable when both distributions are of
+     * the same type, so the model at time T is not modified structurally.
      * @param infAlg an {@link InferenceAlgorithm} object.
      * @param bnTo a {@link BayesianNetwork} object to which the posterior distribution should be moved.
      * @param var a given {@link Variable}.
      */
     private void moveNodeQDist(InferenceAlgorithm infAlg, BayesianNetwork bnTo, Variable var){
 
-        //Recover original model and do the copy, then set again.
         Variable temporalClone = this.model.getDynamicVariables().getInterfaceVariable(var);
-        UnivariateDistribution posteriorDist = infAlg.getPosterior(var).deepCopy(temporalClone);
-        bnTo.setConditionalDistribution(temporalClone, posteriorDist);
+        UnivariateDistribution posteriorDist = infAlg.getPosterior(var);
+        if (!copyParameters(posteriorDist, bnTo.getConditionalDistribution(temporalClone)))
+            bnTo.setConditionalDistribution(temporalClone, posteriorDist.deepCopy(temporalClone));
+    }
+
+    /**
+     * Copies the parameters of a distribution into another one of the same type.
+     * @param from the {@link UnivariateDistribution} to be copied.
+     * @param to the {@link UnivariateDistribution} to be modified.
+     * @return {@code true} if the parameters were copied, {@code false} if the type of the distributions is not supported.
+     */
+    private static boolean copyParameters(UnivariateDistribution from, Object to){
+        if (from instanceof Multinomial && to instanceof Multinomial) {
+            double[] probabilities = ((Multinomial) from).getProbabilities();
+            double[] target = ((Multinomial) to).getProbabilities();
+            if (probabilities.length != target.length)
+                return false;
+            System.arraycopy(probabilities, 0, target, 0, probabilities.length);
+            return true;
+        } else if (from instanceof Normal && to instanceof Normal) {
+            ((Normal) to).setMean(((Normal) from).getMean());
+            ((Normal) to).setVariance(((Normal) from).getVariance());
+            return true;
+        }
+        return false;
     }
 
     /**
@@ -180,22 +221,16 @@ public class FactoredFrontierForDBN  implements InferenceAlgorithmForDBN {
      */
     private void moveWindow(int nsteps){
         //The first step we need to manually move the evidence from master to clone variables.
-        HashMapDynamicAssignment newassignment =null;
-
-        if (this.assignment!=null) {
-            newassignment=new HashMapDynamicAssignment(this.model.getNumberOfDynamicVars());
-            for (Variable var : this.model.getDynamicVariables()) {
-                newassignment.setValue(this.model.getDynamicVariables().getInterfaceVariable(var), this.assignment.getValue(var));
-                newassignment.setValue(var, Utils.missingValue());
-            }
+        this.evidenceWindow.clear();
+        for (Variable var : this.temporalVars) {
+            this.evidenceWindow.setValue(var.getInterfaceVariable(), this.assignment.getValue(var));
         }
 
         for (int i = 0; i < nsteps; i++) {
-            this.infAlgTimeT.setModel(this.bnTimeT);
-            this.infAlgTimeT.setEvidence(updateDynamicAssignmentTimeT(newassignment));
+            this.infAlgTimeT.updateModelParameters(this.bnTimeT, this.frontierVars);
+            this.infAlgTimeT.setEvidence(this.evidenceWindow);
             this.infAlgTimeT.runInference();
-            this.getTargetVarsTimeT().stream()
-                    .forEach(var -> moveNodeQDist(this.infAlgTimeT, this.bnTimeT, var));
+            this.moveFrontier(this.infAlgTimeT, true);
         }
     }
 
@@ -207,6 +242,95 @@ public class FactoredFrontierForDBN  implements InferenceAlgorithmForDBN {
         this.model = model_;
         this.bnTime0 = model.toBayesianNetworkTime0();
         this.bnTimeT = model.toBayesianNetworkTimeT();
+
+        List<Variable> temporalVarsList = new ArrayList<>();
+        for (Variable var : this.model.getDynamicVariables().getListOfDynamicVariables()) {
+            for (Variable parent : this.model.getDynamicDAG().getParentSetTimeT(var)) {
+                if (parent.isInterfaceVariable()) {
+                    temporalVarsList.add(var);
+                    break;
+                }
+            }
+        }
+        this.temporalVars = temporalVarsList.toArray(new Variable[temporalVarsList.size()]);
+
+        List<Variable> frontierVarsList = new ArrayList<>(this.temporalVars.length);
+        for (Variable var : this.temporalVars) {
+            frontierVarsList.add(var.getInterfaceVariable());
+        }
+        this.frontierVars = Collections.unmodifiableList(frontierVarsList);
+
+        int nVars = 2 * this.model.getNumberOfDynamicVars();
+        this.evidenceTime0 = new SliceAssignment(nVars, this.model.getDynamicVariables().getListOfDynamicVariables());
+        List<Variable> varsTimeT = new ArrayList<>(this.model.getDynamicVariables().getListOfDynamicVariables());
+        varsTimeT.addAll(this.frontierVars);
+        this.evidenceTimeT = new SliceAssignment(nVars, varsTimeT);
+        this.evidenceWindow = new SliceAssignment(nVars, varsTimeT);
+
+        this.frontierBackup = new UnivariateDistribution[this.temporalVars.length];
+        for (int i = 0; i < this.temporalVars.length; i++) {
+            Variable interfaceVar = this.frontierVars.get(i);
+            this.frontierBackup[i] = this.bnTimeT.<UnivariateDistribution>getConditionalDistribution(interfaceVar).deepCopy(interfaceVar);
+        }
+
+        this.resetInfAlgorithms();
+        this.setFixedLag(this.fixedLag);
+    }
+
+    /**
+     * Sets the fixed-lag smoothing mode. In this mode, each call to {@link #runInference()} also runs a copy of the
+     * inference algorithm on a window with the last lag+1 time slices, so the posteriors of the time step
+     * {@link #getTimeIDOfSmoothedPosterior()} are smoothed with lag time steps of future evidence, without unrolling
+     * the whole sequence.
+     * @param lag an {@code int} that represents the lag, or -1 to deactivate the fixed-lag smoothing mode.
+     */
+    public void setFixedLag(int lag) {
+        this.fixedLag = lag;
+        this.fixedLagSmoother = null;
+        if (lag >= 0 && this.model != null)
+            this.fixedLagSmoother = new FixedLagSmoother(this.model, lag, Serialization.deepCopy(this.infAlgTimeT));
+    }
+
+    /**
+     * Returns the time ID of the smoothed posteriors in the fixed-lag smoothing mode, i.e., the time ID of the
+     * posterior minus the lag, or 0 at the beginning of the sequence.
+     * @return a {@code long} that represents the time ID.
+     */
+    public long getTimeIDOfSmoothedPosterior() {
+        return this.getFixedLagSmoother().getTimeIDOfSmoothedPosterior();
+    }
+
+    /**
+     * Returns the smoothed posterior distribution of a given {@link Variable} at the time step
+     * {@link #getTimeIDOfSmoothedPosterior()} in the fixed-lag smoothing mode.
+     * @param var a {@link Variable} object.
+     * @param <E> a class extending {@link UnivariateDistribution}.
+     * @return an {@link UnivariateDistribution} object.
+     */
+    public <E extends UnivariateDistribution> E getSmoothedPosterior(Variable var) {
+        return this.getFixedLagSmoother().getSmoothedPosterior(var, this.getTimeIDOfSmoothedPosterior());
+    }
+
+    /**
+     * Returns the posterior distribution of a given {@link Variable} at a given time step of the window in the
+     * fixed-lag smoothing mode, given the evidence up to the time ID of the posterior.
+     * @param var a {@link Variable} object.
+     * @param timeID a {@code long} between {@link #getTimeIDOfSmoothedPosterior()} and {@link #getTimeIDOfPosterior()}.
+     * @param <E> a class extending {@link UnivariateDistribution}.
+     * @return an {@link UnivariateDistribution} object.
+     */
+    public <E extends UnivariateDistribution> E getSmoothedPosterior(Variable var, long timeID) {
+        return this.getFixedLagSmoother().getSmoothedPosterior(var, timeID);
+    }
+
+    /**
+     * Returns the {@link FixedLagSmoother} object, if the fixed-lag smoothing mode is activated.
+     * @return a {@link FixedLagSmoother} object.
+     */
+    private FixedLagSmoother getFixedLagSmoother() {
+        if (this.fixedLagSmoother == null)
+            throw new IllegalStateException("The fixed-lag smoothing mode is not activated. Use setFixedLag.");
+        return this.fixedLagSmoother;
     }
 
     /**
@@ -240,12 +364,18 @@ public class FactoredFrontierForDBN  implements InferenceAlgorithmForDBN {
         this.sequenceID = -1;
 
         this.resetInfAlgorithms();
+        if (this.fixedLagSmoother != null)
+            this.fixedLagSmoother.reset();
     }
 
+    /**
+     * Sets the models at time 0 and T to the inference algorithms. This is the only place, apart from the time
+     * steps where the frontier is not supported in place, where the inference algorithms compile their models.
+     */
     private void resetInfAlgorithms(){
 
-        this.infAlgTime0.setModel(this.model.toBayesianNetworkTime0());
-        this.infAlgTimeT.setModel(this.model.toBayesianNetworkTimeT());
+        this.infAlgTime0.setModel(this.bnTime0);
+        this.infAlgTimeT.setModel(this.bnTimeT);
     }
 
     /**
@@ -266,42 +396,45 @@ public class FactoredFrontierForDBN  implements InferenceAlgorithmForDBN {
     @Override
     public <E extends UnivariateDistribution> E getPredictivePosterior(Variable var, int nTimesAhead) {
         if (timeID==-1){
-            this.infAlgTime0.setModel(this.bnTime0);
             this.infAlgTime0.setEvidence(null);
             this.infAlgTime0.runInference();
-            this.getTargetVarsTimeT().stream()
-                    .forEach(v -> moveNodeQDist(this.infAlgTime0, this.bnTimeT, v));
-
-            this.moveWindow(nTimesAhead-1);
-            E resultQ = this.getFilteredPosterior(var);
+            this.moveFrontier(this.infAlgTime0, true);
+
+            //The posterior is taken from the engine of the last moved time slice, as the time ID is not changed
+            E resultQ;
+            if (nTimesAhead==1) {
+                resultQ = this.infAlgTime0.getPosterior(var);
+            } else {
+                this.moveWindow(nTimesAhead-1);
+                resultQ = this.infAlgTimeT.getPosterior(var);
+            }
             this.resetInfAlgorithms();
 
             return resultQ;
         }else if(timeID==0){
             //Don't need to create a copy of the Q's because they will not be modified at Time 0
             this.moveWindow(nTimesAhead);
-            E resultQ = this.getFilteredPosterior(var);
+            E resultQ = this.infAlgTimeT.getPosterior(var);
 
             //But we need to manually move the posteriors from Time 0 to the Interface Variables in Time T again
-            this.getTargetVarsTime0().stream()
-                    .forEach(v -> moveNodeQDist(this.infAlgTime0, this.bnTimeT, v));
+            this.moveFrontier(this.infAlgTime0, false);
 
             return resultQ;
         }
         else {
 
-            Map<Variable, UnivariateDistribution> map = new HashMap<>();
-
-            //Create at copy of Qs
-            this.getTargetVarsTimeT().stream()
-                    .forEach(v -> map.put(v,this.infAlgTimeT.getPosterior(v).deepCopy(v.getInterfaceVariable())));
+            //Save the frontier in the preallocated buffers
+            for (int i = 0; i < this.temporalVars.length; i++) {
+                this.saveFrontier(i, true);
+            }
 
             this.moveWindow(nTimesAhead);
-            E resultQ = this.getFilteredPosterior(var);
+            E resultQ = this.infAlgTimeT.getPosterior(var);
 
             //Come to the original state
-            map.entrySet().forEach(e -> this.bnTimeT.setConditionalDistribution(e.getKey().getInterfaceVariable(),
-                    e.getValue()));
+            for (int i = 0; i < this.temporalVars.length; i++) {
+                this.saveFrontier(i, false);
+            }
 
             return resultQ;
         }
@@ -323,19 +456,38 @@ public class FactoredFrontierForDBN  implements InferenceAlgorithmForDBN {
         return this.timeID;
     }
 
-    private Assignment updateDynamicAssignmentTime0(DynamicAssignment dynamicAssignment){
+    /**
+     * Saves or restores the distribution of a frontier variable at time T, if its dynamic variable is not observed.
+     * @param i an {@code int} that represents the index of the variable in {@code temporalVars}.
+     * @param save a {@code boolean} that indicates whether the distribution is saved (i.e., true) or restored (i.e., false).
+     */
+    private void saveFrontier(int i, boolean save){
+        if (!Utils.isMissingValue(this.assignment.getValue(this.temporalVars[i])))
+            return;
+
+        Variable interfaceVar = this.frontierVars.get(i);
+        UnivariateDistribution dist = this.bnTimeT.getConditionalDistribution(interfaceVar);
+        if (save) {
+            if (!copyParameters(dist, this.frontierBackup[i]))
+                this.frontierBackup[i] = dist.deepCopy(interfaceVar);
+        } else {
+            if (!copyParameters(this.frontierBackup[i], dist))
+                this.bnTimeT.setConditionalDistribution(interfaceVar, this.frontierBackup[i].deepCopy(interfaceVar));
+        }
+    }
 
-        HashMapAssignment assignment = new HashMapAssignment();
+    /**
+     * Updates the {@link DynamicAssignment} at time 0.
+     * @param dynamicAssignment a valid {@link DynamicAssignment} object.
+     * @return an {@link Assignment} object.
+     */
+    private Assignment updateDynamicAssignmentTime0(DynamicAssignment dynamicAssignment){
 
-        this.model.getDynamicVariables()
-                .getListOfDynamicVariables()
-                .stream()
-                .forEach(var -> {
-                    double value = dynamicAssignment.getValue(var);
-                    assignment.setValue(var, value);
-                });
+        for (Variable var : this.model.getDynamicVariables()) {
+            this.evidenceTime0.setValue(var, dynamicAssignment.getValue(var));
+        }
 
-        return assignment;
+        return this.evidenceTime0;
     }
 
     /**
@@ -345,35 +497,72 @@ public class FactoredFrontierForDBN  implements InferenceAlgorithmForDBN {
      */
     private Assignment updateDynamicAssignmentTimeT(DynamicAssignment dynamicAssignment){
 
-        HashMapAssignment assignment = new HashMapAssignment();
-
         //Set evidence for all variables at time T
-        this.model.getDynamicVariables()
-                .getListOfDynamicVariables()
-                .stream()
-                .forEach(var -> {
-                    double value = dynamicAssignment.getValue(var);
-                    assignment.setValue(var,value);
-                });
+        for (Variable var : this.model.getDynamicVariables()) {
+            this.evidenceTimeT.setValue(var, dynamicAssignment.getValue(var));
+        }
 
         //Set evidence for all interface variables temporally connected
-        this.model.getDynamicVariables().getListOfDynamicVariables().stream()
-                .filter(var -> {
-                    boolean notContainInterfaceVar = true;
-                    for (Variable variable : this.model.getDynamicDAG().getParentSetTimeT(var)) {
-                        notContainInterfaceVar = notContainInterfaceVar && !variable.isInterfaceVariable();
-                    }
-
-                    return !notContainInterfaceVar;
-                })
-                .forEach(var -> {
-                    Variable var_interface = var.getInterfaceVariable();
-                    double value_interface = dynamicAssignment.getValue(var_interface);
-                    assignment.setValue(var_interface,value_interface);
-
-                });
-
-        return assignment;
+        for (Variable var : this.frontierVars) {
+            this.evidenceTimeT.setValue(var, dynamicAssignment.getValue(var));
+        }
+
+        return this.evidenceTimeT;
+    }
+
+    /**
+     * This class implements an {@link Assignment} of a time slice backed by an array indexed by the variable IDs,
+     * so the evidence of each time step is set in place.
+     */
+    private static final class SliceAssignment implements Assignment {
+
+        /** Represents the values of the variables, indexed by their IDs. */
+        private final double[] values;
+
+        /** Represents the set of variables of this assignment. */
+        private final Set<Variable> variables;
+
+        /**
+         * Creates a new SliceAssignment with all the values missing.
+         * @param nVars an {@code int} that represents the number of variables of the time slice.
+         * @param variables the {@code List} of {@link Variable}s of this assignment.
+         */
+        SliceAssignment(int nVars, List<Variable> variables) {
+            this.values = new double[nVars];
+            this.variables = Collections.unmodifiableSet(new LinkedHashSet<>(variables));
+            this.clear();
+        }
+
+        /**
+         * Sets all the values to missing.
+         */
+        void clear() {
+            Arrays.fill(this.values, Utils.missingValue());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public double getValue(Variable var) {
+            return this.values[var.getVarID()];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void setValue(Variable var, double value) {
+            this.values[var.getVarID()] = value;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Set<Variable> getVariables() {
+            return this.variables;
+        }
     }
 
 
@@ -0,0 +1,306 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+
+package eu.amidst.dynamic.inference;
+
+import eu.amidst.core.distribution.ConditionalDistribution;
+import eu.amidst.core.distribution.UnivariateDistribution;
+import eu.amidst.core.inference.InferenceAlgorithm;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.models.DAG;
+import eu.amidst.core.utils.Serialization;
+import eu.amidst.core.utils.Utils;
+import eu.amidst.core.variables.HashMapAssignment;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.core.variables.VariableBuilder;
+import eu.amidst.core.variables.Variables;
+import eu.amidst.dynamic.models.DynamicBayesianNetwork;
+import eu.amidst.dynamic.utils.DynamicToStaticBNConverter;
+import eu.amidst.dynamic.variables.DynamicAssignment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * This class implements the fixed-lag smoothing mode of {@link DynamicVMP} and {@link FactoredFrontierForDBN}.
+ *
+ * <p> It keeps a window with the last L+1 time slices of a sequence, unrolled once into a static
+ * {@link BayesianNetwork}. When the evidence of time t arrives, an {@link InferenceAlgorithm} is run on the window
+ * of the time slices t-L,...,t, whose interface variables at time t-L-1 follow the filtered posteriors computed
+ * when t-L-1 was the last time slice of the window, as in the factored frontier algorithm. The posteriors of the
+ * time slice t-L are then smoothed with L time steps of future evidence, and the memory is O(L). </p>
+ *
+ * <p> While t is lower than L, the window starts at time 0 and uses the distributions of the time slice 0. </p>
+ *
+ * <p> Each window has its own copy of the {@link InferenceAlgorithm}, whose model is only set once. At each time step,
+ * only the distributions of the interface variables of the sliding window are refreshed, see
+ * {@link InferenceAlgorithm#updateModelParameters(BayesianNetwork, List)}. </p>
+ */
+class FixedLagSmoother {
+
+    /** Represents the {@link DynamicBayesianNetwork} model. */
+    private final DynamicBayesianNetwork model;
+
+    /** Represents the lag. */
+    private final int lag;
+
+    /** Represents the {@link InferenceAlgorithm} run on the head window. */
+    private final InferenceAlgorithm headAlgorithm;
+
+    /** Represents the {@link InferenceAlgorithm} run on the sliding window. */
+    private final InferenceAlgorithm slidingAlgorithm;
+
+    /** Represents the window starting at time 0. */
+    private final BayesianNetwork headWindow;
+
+    /** Represents the window starting after time 0, with the interface variables of its first time slice. */
+    private final BayesianNetwork slidingWindow;
+
+    /** Represents the variables of the head window, indexed by time slice and dynamic variable ID. */
+    private final Variable[][] headVariables;
+
+    /** Represents the variables of the sliding window, indexed by time slice and dynamic variable ID. */
+    private final Variable[][] slidingVariables;
+
+    /** Represents the interface variables of the sliding window, indexed by dynamic variable ID, or {@code null}. */
+    private final Variable[] interfaceVariables;
+
+    /** Represents the evidence of the last L+2 time steps, indexed by time ID modulo L+2. */
+    private final DynamicAssignment[] evidence;
+
+    /** Represents the filtered posteriors of the last L+2 time steps, indexed by time ID modulo L+2 and variable ID. */
+    private final UnivariateDistribution[][] filtered;
+
+    /** Represents the smoothed posteriors of the window, indexed by time slice and variable ID, or {@code null} if observed. */
+    private final UnivariateDistribution[][] smoothed;
+
+    /** Represents the time ID of the last time slice of the window. */
+    private long timeID = -1;
+
+    /**
+     * Creates a new FixedLagSmoother object.
+     * @param model a {@link DynamicBayesianNetwork} model.
+     * @param lag the number of future time steps used to smooth the posteriors.
+     * @param algorithm the {@link InferenceAlgorithm} run on the head window, which is copied for the sliding window.
+     */
+    FixedLagSmoother(DynamicBayesianNetwork model, int lag, InferenceAlgorithm algorithm) {
+        if (lag < 0)
+            throw new IllegalArgumentException("The lag must be non-negative.");
+
+        this.model = model;
+        this.lag = lag;
+        this.headAlgorithm = algorithm;
+        this.slidingAlgorithm = Serialization.deepCopy(algorithm);
+
+        int nVars = model.getNumberOfDynamicVars();
+        this.headWindow = DynamicToStaticBNConverter.convertDBNtoBN(model, lag + 1);
+        this.headVariables = new Variable[lag + 1][nVars];
+        for (int i = 0; i <= lag; i++) {
+            for (Variable var : model.getDynamicVariables()) {
+                headVariables[i][var.getVarID()] = headWindow.getVariables().getVariableByName(var.getName() + "_t" + i);
+            }
+        }
+
+        this.slidingVariables = new Variable[lag + 1][nVars];
+        this.interfaceVariables = new Variable[nVars];
+        this.slidingWindow = this.buildSlidingWindow();
+
+        this.headAlgorithm.setModel(this.headWindow);
+        this.slidingAlgorithm.setModel(this.slidingWindow);
+
+        this.evidence = new DynamicAssignment[lag + 2];
+        this.filtered = new UnivariateDistribution[lag + 2][nVars];
+        this.smoothed = new UnivariateDistribution[lag + 1][nVars];
+    }
+
+    /**
+     * Unrolls the distributions of the time slice T into a window of L+1 time slices, whose first time slice has the
+     * interface variables as parents.
+     * @return a {@link BayesianNetwork} object.
+     */
+    private BayesianNetwork buildSlidingWindow() {
+        List<Variable> dynamicVariables = model.getDynamicVariables().getListOfDynamicVariables();
+
+        Variables variables = new Variables();
+        for (Variable var : dynamicVariables) {
+            boolean isParent = dynamicVariables.stream()
+                    .anyMatch(child -> model.getDynamicDAG().getParentSetTimeT(child).contains(var.getInterfaceVariable()));
+            if (isParent) {
+                VariableBuilder builder = var.getVariableBuilder();
+                builder.setName(var.getInterfaceVariable().getName());
+                interfaceVariables[var.getVarID()] = variables.newVariable(builder);
+            }
+        }
+        for (int i = 0; i <= lag; i++) {
+            for (Variable var : dynamicVariables) {
+                VariableBuilder builder = var.getVariableBuilder();
+                builder.setName(var.getName() + "_t" + i);
+                slidingVariables[i][var.getVarID()] = variables.newVariable(builder);
+            }
+        }
+
+        DAG dag = new DAG(variables);
+        for (int i = 0; i <= lag; i++) {
+            for (Variable var : dynamicVariables) {
+                for (Variable parent : model.getDynamicDAG().getParentSetTimeT(var)) {
+                    dag.getParentSet(slidingVariables[i][var.getVarID()]).addParent(this.toWindowVariable(parent, i));
+                }
+            }
+        }
+
+        BayesianNetwork bn = new BayesianNetwork(dag);
+        for (int i = 0; i <= lag; i++) {
+            for (Variable var : dynamicVariables) {
+                final int slice = i;
+                ConditionalDistribution dist = Serialization.deepCopy(model.getConditionalDistributionTimeT(var));
+                dist.setConditioningVariables(dist.getConditioningVariables().stream()
+                        .map(parent -> this.toWindowVariable(parent, slice))
+                        .collect(Collectors.toList()));
+                dist.setVar(slidingVariables[i][var.getVarID()]);
+                bn.setConditionalDistribution(slidingVariables[i][var.getVarID()], dist);
+            }
+        }
+        return bn;
+    }
+
+    /**
+     * Returns the variable of the sliding window that corresponds to a parent in a given time slice.
+     * @param parent a {@link Variable} of the dynamic model, possibly an interface variable.
+     * @param slice the time slice of the child.
+     * @return a {@link Variable} of the sliding window.
+     */
+    private Variable toWindowVariable(Variable parent, int slice) {
+        if (!parent.isInterfaceVariable())
+            return slidingVariables[slice][parent.getVarID()];
+        Variable var = model.getDynamicVariables().getVariableFromInterface(parent);
+        return (slice == 0) ? interfaceVariables[var.getVarID()] : slidingVariables[slice - 1][var.getVarID()];
+    }
+
+    /**
+     * Resets the window for a new sequence.
+     */
+    void reset() {
+        this.timeID = -1;
+    }
+
+    /**
+     * Returns the lag.
+     * @return an {@code int} value.
+     */
+    int getLag() {
+        return lag;
+    }
+
+    /**
+     * Adds the evidence of a time step and updates the smoothed posteriors of the window. Skipped time steps are
+     * processed without evidence, and evidence that is not posterior to the window is ignored.
+     * @param assignment a {@link DynamicAssignment} object.
+     */
+    void update(DynamicAssignment assignment) {
+        if (assignment.getTimeID() <= this.timeID)
+            return;
+        while (this.timeID + 1 < assignment.getTimeID())
+            this.step(null);
+        this.step(assignment);
+    }
+
+    /**
+     * Moves the window one time step ahead and runs inference on it.
+     * @param assignment the {@link DynamicAssignment} of the new time step, or {@code null} if there is no evidence.
+     */
+    private void step(DynamicAssignment assignment) {
+        this.timeID++;
+        evidence[(int) (timeID % (lag + 2))] = assignment;
+
+        long start = Math.max(0, timeID - lag);
+        Variable[][] windowVariables = (start == 0) ? headVariables : slidingVariables;
+        InferenceAlgorithm algorithm = (start == 0) ? headAlgorithm : slidingAlgorithm;
+        HashMapAssignment windowEvidence = new HashMapAssignment(model.getNumberOfDynamicVars() * (lag + 2));
+
+        if (start > 0) {
+            DynamicAssignment previous = evidence[(int) ((start - 1) % (lag + 2))];
+            UnivariateDistribution[] previousFiltered = filtered[(int) ((start - 1) % (lag + 2))];
+            List<Variable> updatedVariables = new ArrayList<>();
+            for (Variable var : model.getDynamicVariables()) {
+                Variable interfaceVar = interfaceVariables[var.getVarID()];
+                if (interfaceVar == null)
+                    continue;
+                double value = (previous == null) ? Utils.missingValue() : previous.getValue(var);
+                if (Utils.isMissingValue(value)) {
+                    slidingWindow.setConditionalDistribution(interfaceVar, previousFiltered[var.getVarID()].deepCopy(interfaceVar));
+                    updatedVariables.add(interfaceVar);
+                } else {
+                    windowEvidence.setValue(interfaceVar, value);
+                }
+            }
+            if (!updatedVariables.isEmpty())
+                slidingAlgorithm.updateModelParameters(slidingWindow, updatedVariables);
+        }
+
+        for (long t = start; t <= timeID; t++) {
+            DynamicAssignment assignmentT = evidence[(int) (t % (lag + 2))];
+            if (assignmentT == null)
+                continue;
+            for (Variable var : model.getDynamicVariables()) {
+                double value = assignmentT.getValue(var);
+                if (!Utils.isMissingValue(value))
+                    windowEvidence.setValue(windowVariables[(int) (t - start)][var.getVarID()], value);
+            }
+        }
+
+        algorithm.setEvidence(windowEvidence);
+        algorithm.runInference();
+
+        for (int i = 0; i <= timeID - start; i++) {
+            for (Variable var : model.getDynamicVariables()) {
+                Variable windowVar = windowVariables[i][var.getVarID()];
+                smoothed[i][var.getVarID()] = Utils.isMissingValue(windowEvidence.getValue(windowVar)) ?
+                        algorithm.getPosterior(windowVar).deepCopy(var) : null;
+            }
+        }
+        System.arraycopy(smoothed[(int) (timeID - start)], 0, filtered[(int) (timeID % (lag + 2))], 0,
+                model.getNumberOfDynamicVars());
+    }
+
+    /**
+     * Returns the time ID of the first time slice of the window, whose posteriors are smoothed with L time steps of
+     * future evidence once the window is full.
+     * @return a {@code long} that represents the time ID, or -1 if no evidence has been provided.
+     */
+    long getTimeIDOfSmoothedPosterior() {
+        return (timeID == -1) ? -1 : Math.max(0, timeID - lag);
+    }
+
+    /**
+     * Returns the smoothed posterior distribution of a given {@link Variable} at a given time step of the window.
+     * @param var a {@link Variable} object.
+     * @param time the time ID, between {@link #getTimeIDOfSmoothedPosterior()} and the time ID of the last evidence.
+     * @param <E> a class extending {@link UnivariateDistribution}.
+     * @return an {@link UnivariateDistribution} object.
+     */
+    <E extends UnivariateDistribution> E getSmoothedPosterior(Variable var, long time) {
+        long start = this.getTimeIDOfSmoothedPosterior();
+        if (timeID == -1 || time < start || time > timeID)
+            throw new IllegalArgumentException("The time ID " + time + " is not in the window [" + start + ", " + timeID + "].");
+        UnivariateDistribution posterior = smoothed[(int) (time - start)][var.getVarID()];
+        if (posterior == null)
+            throw new IllegalArgumentException("The variable " + var.getName() + " is observed at time " + time + ".");
+        return (E) posterior;
+    }
+}
@@ -0,0 +1,852 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+
+package eu.amidst.dynamic.inference;
+
+import eu.amidst.core.distribution.ConditionalDistribution;
+import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.distribution.UnivariateDistribution;
+import eu.amidst.core.utils.Utils;
+import eu.amidst.core.variables.Assignment;
+import eu.amidst.core.variables.HashMapAssignment;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.dynamic.models.DynamicBayesianNetwork;
+import eu.amidst.dynamic.variables.DynamicAssignment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * This class implements the interfaces {@link InferenceAlgorithmForDBN}.
+ * It implements exact inference on {@link DynamicBayesianNetwork} models whose hidden variables are multinomial, such
+ * as hidden Markov models, auto-regressive HMMs or factorial HMMs. The hidden variables of a time slice are combined
+ * into a joint hidden state, and the scaled forward algorithm (filtering), the forward-backward algorithm (smoothing)
+ * and the Viterbi algorithm (most probable sequence) are run over primitive arrays, which are reused between sequences.
+ *
+ * <p> The observed variables may have any distribution and may depend on the hidden variables and on the observed
+ * variables of the current and the previous time slices, but not on the hidden variables of the previous time slice.
+ * The hidden variables may depend on any variable of the current and previous time slices. When they only depend on
+ * hidden variables, the transition matrix is computed once; otherwise, it is computed at each time step. Observed
+ * variables with missing values are marginalized out, which requires that they have no observed children, and hidden
+ * variables with observed values are clamped. </p>
+ *
+ * Rabiner, L.R.: A tutorial on hidden Markov models and selected applications in speech recognition.
+ * Proceedings of the IEEE 77(2) (1989) 257–286.
+ */
+public class ForwardBackwardForDBN implements InferenceAlgorithmForDBN {
+
+    /** Represents the {@link DynamicBayesianNetwork} model. */
+    private DynamicBayesianNetwork model;
+
+    /** Represents the hidden variables set by the user, or {@code null} if they are taken from the model. */
+    private List<Variable> hiddenVariablesSetByUser;
+
+    /** Represents the multinomial hidden variables of a time slice. */
+    private List<Variable> hiddenVars;
+
+    /** Represents the observed variables of a time slice. */
+    private List<Variable> observedVars;
+
+    /** Represents the number of states of each hidden variable. */
+    private int[] nStates;
+
+    /** Represents the stride of each hidden variable in the index of a joint hidden state. */
+    private int[] strides;
+
+    /** Represents the number of joint hidden states. */
+    private int nJointStates;
+
+    /** Represents whether the distribution of the hidden variables at time 0 only depends on hidden variables. */
+    private boolean initialFixed;
+
+    /** Represents whether the transition distribution only depends on hidden variables. */
+    private boolean transitionFixed;
+
+    /** Represents the observed parents of the hidden variables at time 0. */
+    private List<Variable> hiddenObservedParentsTime0;
+
+    /** Represents the observed parents of the hidden variables at time T. */
+    private List<Variable> hiddenObservedParentsTimeT;
+
+    /** Represents the distribution of the joint hidden state at time 0. */
+    private double[] initial;
+
+    /** Represents the transition matrix, where the entry (i,j) is stored at position i*nJointStates+j. */
+    private double[] transition;
+
+    /** Represents the logarithm of the transition matrix, which is lazily computed for the Viterbi algorithm. */
+    private double[] logTransition;
+
+    /** Represents the emission terms of the observed variables at time 0. */
+    private Emission[] emissionsTime0;
+
+    /** Represents the emission terms of the observed variables at time T. */
+    private Emission[] emissionsTimeT;
+
+    /** Represents the filtered distribution of the joint hidden state. */
+    private double[] alpha;
+
+    /** Represents the predicted distribution of the joint hidden state, used as a buffer. */
+    private double[] predicted;
+
+    /** Represents the scaled emission probabilities of the current time step. */
+    private double[] emission;
+
+    /** Represents the values of the observed variables and the hidden states used to evaluate the distributions. */
+    private HashMapAssignment work;
+
+    /** Represents the values of the observed variables at the previous time step, indexed by variable ID. */
+    private double[] previousValues;
+
+    /** Represents whether the filtered distributions, emissions and transitions of the sequence are stored. */
+    private boolean keepHistory = true;
+
+    /** Represents the stored filtered distributions of the sequence. */
+    private double[] alphaHistory = new double[0];
+
+    /** Represents the stored scaled emission probabilities of the sequence. */
+    private double[] emissionHistory = new double[0];
+
+    /** Represents the stored transition matrices of the sequence, only used when the transition is not fixed. */
+    private double[] transitionHistory = new double[0];
+
+    /** Represents the number of stored time steps. */
+    private int historyLength;
+
+    /** Represents the smoothed distributions of the sequence, or {@code null} if they are outdated. */
+    private double[] smoothed;
+
+    /** Represents the log-probability of the evidence of the sequence. */
+    private double logProbabilityOfEvidence;
+
+    /** Represents an {@link DynamicAssignment} object. */
+    private DynamicAssignment assignment;
+
+    /** Represents the time ID. */
+    private long timeID = -1;
+
+    /** Represents the sequence ID. */
+    private long sequenceID = -1;
+
+    /**
+     * Sets the hidden variables. By default, the hidden variables are the multinomial variables whose interface
+     * variable is a parent of some variable (i.e., the discrete Markov chains of the model).
+     * @param hiddenVariables a list of multinomial dynamic {@link Variable} objects.
+     */
+    public void setHiddenVariables(List<Variable> hiddenVariables) {
+        this.hiddenVariablesSetByUser = new ArrayList<>(hiddenVariables);
+        if (this.model != null)
+            this.compileModel();
+    }
+
+    /**
+     * Returns the hidden variables.
+     * @return a list of {@link Variable} objects.
+     */
+    public List<Variable> getHiddenVariables() {
+        return hiddenVars;
+    }
+
+    /**
+     * Sets whether the filtered distributions of the sequence are stored, which is needed to compute the smoothed
+     * posteriors and the most probable sequence. Set it to {@code false} when only filtering is needed.
+     * @param keepHistory a {@code boolean} value.
+     */
+    public void setKeepHistory(boolean keepHistory) {
+        this.keepHistory = keepHistory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setModel(DynamicBayesianNetwork model_) {
+        this.model = model_;
+        this.compileModel();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DynamicBayesianNetwork getOriginalModel() {
+        return this.model;
+    }
+
+    /**
+     * Builds the joint hidden state space, the emission terms and the arrays used by the inference.
+     */
+    private void compileModel() {
+        List<Variable> dynamicVars = this.model.getDynamicVariables().getListOfDynamicVariables();
+
+        if (hiddenVariablesSetByUser != null) {
+            hiddenVars = hiddenVariablesSetByUser;
+        } else {
+            hiddenVars = dynamicVars.stream()
+                    .filter(Variable::isMultinomial)
+                    .filter(var -> dynamicVars.stream().anyMatch(child ->
+                            this.model.getDynamicDAG().getParentSetTimeT(child).contains(var.getInterfaceVariable())))
+                    .collect(Collectors.toList());
+        }
+
+        if (hiddenVars.isEmpty())
+            throw new IllegalArgumentException("The model does not contain multinomial hidden variables.");
+
+        //Indexed by variable ID, which also covers the IDs of the interface variables.
+        boolean[] isHidden = new boolean[2 * dynamicVars.size()];
+        nStates = new int[hiddenVars.size()];
+        strides = new int[hiddenVars.size()];
+        nJointStates = 1;
+        for (int h = 0; h < hiddenVars.size(); h++) {
+            Variable var = hiddenVars.get(h);
+            if (!var.isMultinomial())
+                throw new IllegalArgumentException("The hidden variable " + var.getName() + " is not multinomial.");
+            isHidden[var.getVarID()] = true;
+            isHidden[var.getInterfaceVariable().getVarID()] = true;
+            nStates[h] = var.getNumberOfStates();
+            strides[h] = nJointStates;
+            nJointStates *= nStates[h];
+        }
+
+        observedVars = dynamicVars.stream().filter(var -> !isHidden[var.getVarID()]).collect(Collectors.toList());
+
+        hiddenObservedParentsTime0 = hiddenVars.stream()
+                .flatMap(var -> this.model.getDynamicDAG().getParentSetTime0(var).getParents().stream())
+                .filter(parent -> !isHidden[parent.getVarID()])
+                .distinct()
+                .collect(Collectors.toList());
+        hiddenObservedParentsTimeT = hiddenVars.stream()
+                .flatMap(var -> this.model.getDynamicDAG().getParentSetTimeT(var).getParents().stream())
+                .filter(parent -> !isHidden[parent.getVarID()])
+                .distinct()
+                .collect(Collectors.toList());
+        initialFixed = hiddenObservedParentsTime0.isEmpty();
+        transitionFixed = hiddenObservedParentsTimeT.isEmpty();
+
+        emissionsTime0 = new Emission[observedVars.size()];
+        emissionsTimeT = new Emission[observedVars.size()];
+        for (int v = 0; v < observedVars.size(); v++) {
+            Variable var = observedVars.get(v);
+            for (Variable parent : this.model.getDynamicDAG().getParentSetTimeT(var).getParents()) {
+                if (parent.isInterfaceVariable() && isHidden[parent.getVarID()])
+                    throw new UnsupportedOperationException("The observed variable " + var.getName()
+                            + " depends on a hidden variable of the previous time slice.");
+            }
+            emissionsTime0[v] = new Emission(this.model.getConditionalDistributionTime0(var),
+                    this.model.getDynamicDAG().getParentSetTime0(var).getParents(), isHidden);
+            emissionsTimeT[v] = new Emission(this.model.getConditionalDistributionTimeT(var),
+                    this.model.getDynamicDAG().getParentSetTimeT(var).getParents(), isHidden);
+            emissionsTime0[v].index(this);
+            emissionsTimeT[v].index(this);
+        }
+
+        initial = new double[nJointStates];
+        transition = new double[nJointStates * nJointStates];
+        logTransition = null;
+        alpha = new double[nJointStates];
+        predicted = new double[nJointStates];
+        emission = new double[nJointStates];
+        previousValues = new double[dynamicVars.size()];
+        work = new HashMapAssignment(2 * dynamicVars.size());
+
+        this.reset();
+
+        if (initialFixed)
+            this.computeInitial();
+        if (transitionFixed)
+            this.computeTransition(transition, 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        this.timeID = -1;
+        this.sequenceID = -1;
+        this.assignment = null;
+        this.historyLength = 0;
+        this.smoothed = null;
+        this.logProbabilityOfEvidence = 0;
+        if (previousValues != null)
+            Arrays.fill(previousValues, Utils.missingValue());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addDynamicEvidence(DynamicAssignment assignment_) {
+        if (this.sequenceID != -1 && this.sequenceID != assignment_.getSequenceID())
+            throw new IllegalArgumentException("The sequence ID does not match. If you want to change the sequence, invoke reset method");
+
+        if (this.timeID >= assignment_.getTimeID())
+            throw new IllegalArgumentException("The provided assignment is not posterior to the previous provided assignment.");
+
+        this.sequenceID = assignment_.getSequenceID();
+        this.assignment = assignment_;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void runInference() {
+        if (this.assignment == null || this.assignment.getTimeID() == this.timeID)
+            return;
+
+        while (this.timeID + 1 < this.assignment.getTimeID())
+            this.forwardStep(null);
+
+        this.forwardStep(this.assignment);
+    }
+
+    /**
+     * Moves the filtered distribution one time step ahead.
+     * @param evidence the {@link Assignment} of the time step, or {@code null} if there is no evidence.
+     */
+    private void forwardStep(Assignment evidence) {
+        boolean time0 = this.timeID == -1;
+        this.setObservedValues(evidence);
+
+        if (time0) {
+            if (!initialFixed)
+                this.computeInitial();
+            System.arraycopy(initial, 0, predicted, 0, nJointStates);
+        } else {
+            if (!transitionFixed)
+                this.computeTransition(transition, 0);
+            predict(alpha, transition, predicted);
+        }
+
+        double maxLogEmission = this.computeEmission(evidence, time0);
+
+        double norm = 0;
+        for (int j = 0; j < nJointStates; j++) {
+            alpha[j] = predicted[j] * emission[j];
+            norm += alpha[j];
+        }
+        if (norm == 0)
+            throw new IllegalStateException("The evidence of time " + (this.timeID + 1) + " has zero probability.");
+        for (int j = 0; j < nJointStates; j++) {
+            alpha[j] /= norm;
+        }
+        this.logProbabilityOfEvidence += Math.log(norm) + maxLogEmission;
+
+        this.timeID++;
+        this.smoothed = null;
+
+        if (keepHistory)
+            this.storeHistory(time0);
+
+        for (Variable var : observedVars) {
+            previousValues[var.getVarID()] = (evidence == null) ? Utils.missingValue() : evidence.getValue(var);
+        }
+    }
+
+    /**
+     * Computes the distribution of the joint hidden state at the next time step.
+     * @param from the distribution at the current time step.
+     * @param transitionMatrix the transition matrix.
+     * @param to the array where the distribution at the next time step is stored.
+     */
+    private void predict(double[] from, double[] transitionMatrix, double[] to) {
+        Arrays.fill(to, 0);
+        for (int i = 0; i < nJointStates; i++) {
+            double a = from[i];
+            if (a == 0)
+                continue;
+            int offset = i * nJointStates;
+            for (int j = 0; j < nJointStates; j++) {
+                to[j] += a * transitionMatrix[offset + j];
+            }
+        }
+    }
+
+    /**
+     * Sets the values of the observed variables of the current and previous time slices in the work assignment.
+     * @param evidence the {@link Assignment} of the time step, or {@code null} if there is no evidence.
+     */
+    private void setObservedValues(Assignment evidence) {
+        for (Variable var : observedVars) {
+            work.setValue(var, (evidence == null) ? Utils.missingValue() : evidence.getValue(var));
+            work.setValue(var.getInterfaceVariable(), previousValues[var.getVarID()]);
+        }
+    }
+
+    /**
+     * Sets the states of the hidden variables in the work assignment.
+     * @param jointState the index of a joint hidden state.
+     * @param interfaceVars whether the states are set to the interface variables of the hidden variables.
+     */
+    private void setHiddenStates(int jointState, boolean interfaceVars) {
+        for (int h = 0; h < hiddenVars.size(); h++) {
+            Variable var = hiddenVars.get(h);
+            work.setValue(interfaceVars ? var.getInterfaceVariable() : var, (jointState / strides[h]) % nStates[h]);
+        }
+    }
+
+    /**
+     * Checks that the values of the given observed variables are available in the work assignment.
+     * @param parents a list of observed {@link Variable} objects.
+     */
+    private void checkObservedParents(List<Variable> parents) {
+        for (Variable parent : parents) {
+            if (Utils.isMissingValue(work.getValue(parent)))
+                throw new IllegalArgumentException("The hidden variables depend on the variable " + parent.getName()
+                        + ", whose value is missing.");
+        }
+    }
+
+    /**
+     * Computes the distribution of the joint hidden state at time 0.
+     */
+    private void computeInitial() {
+        this.checkObservedParents(hiddenObservedParentsTime0);
+        for (int j = 0; j < nJointStates; j++) {
+            this.setHiddenStates(j, false);
+            double logProb = 0;
+            for (Variable var : hiddenVars) {
+                logProb += this.model.getConditionalDistributionTime0(var).getLogConditionalProbability(work);
+            }
+            initial[j] = Math.exp(logProb);
+        }
+    }
+
+    /**
+     * Computes the transition matrix of the joint hidden state.
+     * @param dst the array where the transition matrix is stored.
+     * @param offset the position of the array where the transition matrix starts.
+     */
+    private void computeTransition(double[] dst, int offset) {
+        this.checkObservedParents(hiddenObservedParentsTimeT);
+
+        for (int i = 0; i < nJointStates; i++) {
+            this.setHiddenStates(i, true);
+            for (int j = 0; j < nJointStates; j++) {
+                this.setHiddenStates(j, false);
+                double logProb = 0;
+                for (Variable var : hiddenVars) {
+                    logProb += this.model.getConditionalDistributionTimeT(var).getLogConditionalProbability(work);
+                }
+                dst[offset + i * nJointStates + j] = Math.exp(logProb);
+            }
+        }
+    }
+
+    /**
+     * Computes the scaled emission probabilities of the joint hidden states at the current time step. The emission
+     * of each observed variable is evaluated once for each configuration of its hidden parents.
+     * @param evidence the {@link Assignment} of the time step, or {@code null} if there is no evidence.
+     * @param time0 whether the time step is the first one.
+     * @return the logarithm of the scale factor of the emission probabilities.
+     */
+    private double computeEmission(Assignment evidence, boolean time0) {
+        if (evidence == null) {
+            Arrays.fill(emission, 1.0);
+            return 0;
+        }
+
+        //The log-emissions are accumulated in the emission array and then exponentiated.
+        Arrays.fill(emission, 0);
+
+        Emission[] emissions = time0 ? emissionsTime0 : emissionsTimeT;
+        for (Emission term : emissions) {
+            if (Utils.isMissingValue(work.getValue(term.var)))
+                continue;
+            term.evaluate(this);
+            for (int j = 0; j < nJointStates; j++) {
+                emission[j] += term.logValues[term.configOfState[j]];
+            }
+        }
+
+        for (int h = 0; h < hiddenVars.size(); h++) {
+            double value = evidence.getValue(hiddenVars.get(h));
+            if (Utils.isMissingValue(value))
+                continue;
+            for (int j = 0; j < nJointStates; j++) {
+                if ((j / strides[h]) % nStates[h] != (int) value)
+                    emission[j] = Double.NEGATIVE_INFINITY;
+            }
+        }
+
+        double max = Double.NEGATIVE_INFINITY;
+        for (int j = 0; j < nJointStates; j++) {
+            max = Math.max(max, emission[j]);
+        }
+        if (max == Double.NEGATIVE_INFINITY)
+            throw new IllegalStateException("The evidence of time " + (this.timeID + 1) + " has zero probability.");
+        for (int j = 0; j < nJointStates; j++) {
+            emission[j] = Math.exp(emission[j] - max);
+        }
+        return max;
+    }
+
+    /**
+     * Stores the filtered distribution, the emissions and the transition of the current time step.
+     * @param time0 whether the time step is the first one.
+     */
+    private void storeHistory(boolean time0) {
+        int size = (historyLength + 1) * nJointStates;
+        if (alphaHistory.length < size) {
+            int capacity = Math.max(size, 2 * alphaHistory.length);
+            alphaHistory = Arrays.copyOf(alphaHistory, capacity);
+            emissionHistory = Arrays.copyOf(emissionHistory, capacity);
+        }
+        System.arraycopy(alpha, 0, alphaHistory, historyLength * nJointStates, nJointStates);
+        System.arraycopy(emission, 0, emissionHistory, historyLength * nJointStates, nJointStates);
+
+        if (!transitionFixed) {
+            int transitionSize = (historyLength + 1) * nJointStates * nJointStates;
+            if (transitionHistory.length < transitionSize)
+                transitionHistory = Arrays.copyOf(transitionHistory, Math.max(transitionSize, 2 * transitionHistory.length));
+            if (!time0)
+                System.arraycopy(transition, 0, transitionHistory, historyLength * nJointStates * nJointStates, nJointStates * nJointStates);
+        }
+
+        historyLength++;
+    }
+
+    /**
+     * Returns the offset of the transition matrix used to move from a stored time step to the next one.
+     * @param t the time step of the destination.
+     * @return the offset of the transition matrix in the array returned by {@link #transitionsOf(int)}.
+     */
+    private int transitionOffset(int t) {
+        return transitionFixed ? 0 : t * nJointStates * nJointStates;
+    }
+
+    /**
+     * Returns the array storing the transition matrix used to move to a stored time step.
+     * @param t the time step of the destination.
+     * @return an array of transition matrices.
+     */
+    private double[] transitionsOf(int t) {
+        return transitionFixed ? transition : transitionHistory;
+    }
+
+    /**
+     * Checks that the history of the sequence is available.
+     */
+    private void checkHistory() {
+        if (!keepHistory)
+            throw new IllegalStateException("The history of the sequence is not stored. Use setKeepHistory(true).");
+        if (historyLength == 0)
+            throw new IllegalStateException("No evidence has been provided.");
+    }
+
+    /**
+     * Runs the backward pass of the forward-backward algorithm over the stored history.
+     */
+    private void computeSmoothed() {
+        if (smoothed != null)
+            return;
+
+        smoothed = new double[historyLength * nJointStates];
+        double[] beta = new double[nJointStates];
+        double[] weighted = new double[nJointStates];
+        Arrays.fill(beta, 1.0);
+
+        for (int t = historyLength - 1; t >= 0; t--) {
+            int offset = t * nJointStates;
+            double norm = 0;
+            for (int j = 0; j < nJointStates; j++) {
+                smoothed[offset + j] = alphaHistory[offset + j] * beta[j];
+                norm += smoothed[offset + j];
+            }
+            for (int j = 0; j < nJointStates; j++) {
+                smoothed[offset + j] /= norm;
+            }
+
+            if (t == 0)
+                break;
+
+            //beta_{t-1}(i) is proportional to sum_j A_t(i,j) e_t(j) beta_t(j)
+            for (int j = 0; j < nJointStates; j++) {
+                weighted[j] = emissionHistory[offset + j] * beta[j];
+            }
+            double[] transitions = this.transitionsOf(t);
+            int transitionOffset = this.transitionOffset(t);
+            double betaNorm = 0;
+            for (int i = 0; i < nJointStates; i++) {
+                double sum = 0;
+                int rowOffset = transitionOffset + i * nJointStates;
+                for (int j = 0; j < nJointStates; j++) {
+                    sum += transitions[rowOffset + j] * weighted[j];
+                }
+                beta[i] = sum;
+                betaNorm += sum;
+            }
+            for (int i = 0; i < nJointStates; i++) {
+                beta[i] /= betaNorm;
+            }
+        }
+    }
+
+    /**
+     * Returns the smoothed posterior distributions of a hidden variable, i.e., its posterior distributions given all
+     * the evidence of the sequence, for the time steps from 0 to the time ID of the last evidence.
+     * @param var a hidden {@link Variable} object.
+     * @return a list of {@link Multinomial} distributions, where the element t corresponds to time t.
+     */
+    public List<Multinomial> getSmoothedPosteriors(Variable var) {
+        this.checkHistory();
+        this.computeSmoothed();
+
+        List<Multinomial> posteriors = new ArrayList<>(historyLength);
+        for (int t = 0; t < historyLength; t++) {
+            posteriors.add(this.marginalize(smoothed, t * nJointStates, var));
+        }
+        return posteriors;
+    }
+
+    /**
+     * Returns the most probable joint configuration of the hidden variables given all the evidence of the sequence,
+     * computed with the Viterbi algorithm.
+     * @return a list of {@link Assignment} objects with the states of the hidden variables, where the element t
+     * corresponds to time t.
+     */
+    public List<Assignment> getMostProbableSequence() {
+        this.checkHistory();
+
+        if (transitionFixed && logTransition == null) {
+            logTransition = new double[transition.length];
+            for (int k = 0; k < transition.length; k++) {
+                logTransition[k] = Math.log(transition[k]);
+            }
+        }
+
+        int[] backPointers = new int[historyLength * nJointStates];
+        double[] delta = new double[nJointStates];
+        double[] next = new double[nJointStates];
+
+        for (int j = 0; j < nJointStates; j++) {
+            delta[j] = Math.log(alphaHistory[j]);
+        }
+
+        for (int t = 1; t < historyLength; t++) {
+            int offset = t * nJointStates;
+            double[] transitions = this.transitionsOf(t);
+            int transitionOffset = this.transitionOffset(t);
+            for (int j = 0; j < nJointStates; j++) {
+                double best = Double.NEGATIVE_INFINITY;
+                int argBest = 0;
+                for (int i = 0; i < nJointStates; i++) {
+                    int position = transitionOffset + i * nJointStates + j;
+                    double value = delta[i] + (transitionFixed ? logTransition[position] : Math.log(transitions[position]));
+                    if (value > best) {
+                        best = value;
+                        argBest = i;
+                    }
+                }
+                next[j] = best + Math.log(emissionHistory[offset + j]);
+                backPointers[offset + j] = argBest;
+            }
+            double[] tmp = delta;
+            delta = next;
+            next = tmp;
+        }
+
+        int state = 0;
+        for (int j = 1; j < nJointStates; j++) {
+            if (delta[j] > delta[state])
+                state = j;
+        }
+
+        Assignment[] sequence = new Assignment[historyLength];
+        for (int t = historyLength - 1; t >= 0; t--) {
+            HashMapAssignment states = new HashMapAssignment(hiddenVars.size());
+            for (int h = 0; h < hiddenVars.size(); h++) {
+                states.setValue(hiddenVars.get(h), (state / strides[h]) % nStates[h]);
+            }
+            sequence[t] = states;
+            state = backPointers[t * nJointStates + state];
+        }
+        return Arrays.asList(sequence);
+    }
+
+    /**
+     * Returns the log-probability of the evidence provided since the last reset.
+     * @return a {@code double} value.
+     */
+    public double getLogProbabilityOfEvidence() {
+        return logProbabilityOfEvidence;
+    }
+
+    /**
+     * Computes the marginal distribution of a hidden variable from a distribution of the joint hidden state.
+     * @param jointDistribution an array storing the distribution of the joint hidden state.
+     * @param offset the position where the distribution starts.
+     * @param var a hidden {@link Variable} object.
+     * @return a {@link Multinomial} distribution.
+     */
+    private Multinomial marginalize(double[] jointDistribution, int offset, Variable var) {
+        int h = hiddenVars.indexOf(var);
+        if (h == -1)
+            throw new IllegalArgumentException("The variable " + var.getName() + " is not a hidden variable.");
+
+        double[] probabilities = new double[nStates[h]];
+        for (int j = 0; j < nJointStates; j++) {
+            probabilities[(j / strides[h]) % nStates[h]] += jointDistribution[offset + j];
+        }
+        Multinomial multinomial = new Multinomial(var);
+        multinomial.setProbabilities(Utils.normalize(probabilities));
+        return multinomial;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <E extends UnivariateDistribution> E getFilteredPosterior(Variable var) {
+        if (this.timeID == -1)
+            return this.getPredictivePosterior(var, 1);
+        return (E) this.marginalize(alpha, 0, var);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <E extends UnivariateDistribution> E getPredictivePosterior(Variable var, int nTimesAhead) {
+        if (!transitionFixed)
+            throw new UnsupportedOperationException("The predictive posterior is not supported when the hidden variables depend on observed variables.");
+
+        double[] current = new double[nJointStates];
+        double[] next = new double[nJointStates];
+        int nSteps = nTimesAhead;
+        if (this.timeID == -1) {
+            if (!initialFixed)
+                throw new UnsupportedOperationException("The predictive posterior is not supported when the hidden variables depend on observed variables.");
+            System.arraycopy(initial, 0, current, 0, nJointStates);
+            nSteps--;
+        } else {
+            System.arraycopy(alpha, 0, current, 0, nJointStates);
+        }
+
+        for (int step = 0; step < nSteps; step++) {
+            this.predict(current, transition, next);
+            double[] tmp = current;
+            current = next;
+            next = tmp;
+        }
+
+        return (E) this.marginalize(current, 0, var);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getTimeIDOfPosterior() {
+        return this.timeID;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getTimeIDOfLastEvidence() {
+        return (this.assignment == null) ? -1 : this.assignment.getTimeID();
+    }
+
+    /**
+     * This class represents the emission term of an observed variable, which is evaluated once for each
+     * configuration of its hidden parents.
+     */
+    private static final class Emission {
+
+        /** Represents the observed variable. */
+        private final Variable var;
+
+        /** Represents the conditional distribution of the observed variable. */
+        private final ConditionalDistribution dist;
+
+        /** Represents the hidden parents of the observed variable. */
+        private final List<Variable> hiddenParents;
+
+        /** Represents the observed parents of the observed variable. */
+        private final List<Variable> observedParents;
+
+        /** Represents the configuration of the hidden parents of each joint hidden state. */
+        private int[] configOfState;
+
+        /** Represents the log-probability of the observed value for each configuration of the hidden parents. */
+        private final double[] logValues;
+
+        /**
+         * Creates a new emission term.
+         * @param dist the conditional distribution of the observed variable.
+         * @param parents the parents of the observed variable.
+         * @param isHidden whether each variable, indexed by ID, is hidden.
+         */
+        private Emission(ConditionalDistribution dist, List<Variable> parents, boolean[] isHidden) {
+            this.var = dist.getVariable();
+            this.dist = dist;
+            this.hiddenParents = parents.stream().filter(parent -> isHidden[parent.getVarID()]).collect(Collectors.toList());
+            this.observedParents = parents.stream().filter(parent -> !isHidden[parent.getVarID()]).collect(Collectors.toList());
+
+            int nConfigs = 1;
+            for (Variable parent : hiddenParents) {
+                nConfigs *= parent.getNumberOfStates();
+            }
+            this.logValues = new double[nConfigs];
+        }
+
+        /**
+         * Computes the configuration of the hidden parents of each joint hidden state.
+         * @param engine the {@link ForwardBackwardForDBN} object.
+         */
+        private void index(ForwardBackwardForDBN engine) {
+            configOfState = new int[engine.nJointStates];
+            for (int j = 0; j < engine.nJointStates; j++) {
+                int config = 0;
+                int multiplier = 1;
+                for (Variable parent : hiddenParents) {
+                    int h = engine.hiddenVars.indexOf(parent);
+                    config += multiplier * ((j / engine.strides[h]) % engine.nStates[h]);
+                    multiplier *= parent.getNumberOfStates();
+                }
+                configOfState[j] = config;
+            }
+        }
+
+        /**
+         * Computes the log-probability of the observed value for each configuration of the hidden parents.
+         * @param engine the {@link ForwardBackwardForDBN} object, whose work assignment contains the observed values.
+         */
+        private void evaluate(ForwardBackwardForDBN engine) {
+            for (Variable parent : observedParents) {
+                if (Utils.isMissingValue(engine.work.getValue(parent)))
+                    throw new IllegalArgumentException("The variable " + var.getName() + " is observed but its parent "
+                            + parent.getName() + " is missing.");
+            }
+
+            for (int config = 0; config < logValues.length; config++) {
+                int rest = config;
+                for (Variable parent : hiddenParents) {
+                    engine.work.setValue(parent, rest % parent.getNumberOfStates());
+                    rest /= parent.getNumberOfStates();
+                }
+                logValues[config] = dist.getLogConditionalProbability(engine.work);
+            }
+        }
+    }
+}
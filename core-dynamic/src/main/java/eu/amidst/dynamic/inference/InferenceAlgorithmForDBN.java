@@ -85,4 +85,22 @@ public interface InferenceAlgorithmForDBN {
      */
     long getTimeIDOfPosterior();
 
+    /**
+     * Returns the belief state of this InferenceAlgorithmForDBN, which allows resuming the filtering of the current
+     * sequence with {@link #setBeliefState(BeliefStateForDBN)}, possibly in another object with the same model.
+     * @return a {@link BeliefStateForDBN} object that is not modified by this InferenceAlgorithmForDBN.
+     */
+    default BeliefStateForDBN getBeliefState() {
+        throw new UnsupportedOperationException(this.getClass().getSimpleName() + " does not support belief states.");
+    }
+
+    /**
+     * Sets the belief state of this InferenceAlgorithmForDBN, so the filtering of a sequence is resumed from it.
+     * @param beliefState a {@link BeliefStateForDBN} object returned by {@link #getBeliefState()}, or {@code null}
+     *                    to start a new sequence as after {@link #reset()}.
+     */
+    default void setBeliefState(BeliefStateForDBN beliefState) {
+        throw new UnsupportedOperationException(this.getClass().getSimpleName() + " does not support belief states.");
+    }
+
 }
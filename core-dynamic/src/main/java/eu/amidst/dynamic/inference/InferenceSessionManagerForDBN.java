@@ -0,0 +1,293 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+
+package eu.amidst.dynamic.inference;
+
+import eu.amidst.core.distribution.UnivariateDistribution;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.dynamic.models.DynamicBayesianNetwork;
+import eu.amidst.dynamic.variables.DynamicAssignment;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * This class filters many sequences concurrently with a single {@link DynamicBayesianNetwork} model.
+ *
+ * <p> Instead of one {@link InferenceAlgorithmForDBN} object per sequence, it keeps one session per sequence ID,
+ * which only stores the compact {@link BeliefStateForDBN} of the sequence (e.g., the posteriors of the interface
+ * variables), and one {@link InferenceAlgorithmForDBN} object per thread, compiled once for the model. To process
+ * the evidence of a sequence, the belief state of its session is loaded into the algorithm of the current thread,
+ * and the updated belief state is stored back in the session. </p>
+ *
+ * <p> The evidence of many sequences can be added in a single batch, whose sequences are processed in parallel.
+ * Sessions that have not received evidence for a while can be evicted to bound the memory. </p>
+ *
+ * <p> The algorithm must support belief states, as {@link DynamicVMP} and {@link KalmanFilterForDBN} do. </p>
+ */
+public class InferenceSessionManagerForDBN {
+
+    /** Represents the {@link DynamicBayesianNetwork} model. */
+    private final DynamicBayesianNetwork model;
+
+    /** Represents the {@link InferenceAlgorithmForDBN} object of each thread. */
+    private final ThreadLocal<InferenceAlgorithmForDBN> algorithms;
+
+    /** Represents the sessions, indexed by sequence ID. */
+    private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+
+    /** Represents the parallel processing mode, initialized here as {@code true}. */
+    private boolean parallelMode = true;
+
+    /**
+     * Creates a new InferenceSessionManagerForDBN object.
+     * @param model a {@link DynamicBayesianNetwork} model.
+     * @param algorithmSupplier a {@code Supplier} of the {@link InferenceAlgorithmForDBN} objects used by the threads.
+     */
+    public InferenceSessionManagerForDBN(DynamicBayesianNetwork model,
+                                         Supplier<? extends InferenceAlgorithmForDBN> algorithmSupplier) {
+        this.model = model;
+        this.algorithms = ThreadLocal.withInitial(() -> {
+            InferenceAlgorithmForDBN algorithm = algorithmSupplier.get();
+            algorithm.setModel(this.model);
+            return algorithm;
+        });
+
+        //Fails fast if the algorithm does not support belief states
+        this.algorithms.get().getBeliefState();
+    }
+
+    /**
+     * Returns the {@link DynamicBayesianNetwork} model.
+     * @return a {@link DynamicBayesianNetwork} object.
+     */
+    public DynamicBayesianNetwork getModel() {
+        return model;
+    }
+
+    /**
+     * Sets the parallel processing mode.
+     * @param parallelMode {@code true} if the sequences of a batch are processed in parallel, {@code false} otherwise.
+     */
+    public void setParallelMode(boolean parallelMode) {
+        this.parallelMode = parallelMode;
+    }
+
+    /**
+     * Adds the evidence of a time step of a sequence and runs inference, opening a session for the sequence if
+     * needed.
+     * @param assignment a {@link DynamicAssignment} object.
+     */
+    public void addDynamicEvidence(DynamicAssignment assignment) {
+        this.process(Collections.singletonList(assignment));
+    }
+
+    /**
+     * Adds a batch of evidence of many sequences and runs inference. The evidence of each sequence must be sorted by
+     * time ID, and the sequences are processed in parallel if the parallel mode is activated.
+     * @param batch a {@code Collection} of {@link DynamicAssignment} objects.
+     */
+    public void addDynamicEvidence(Collection<? extends DynamicAssignment> batch) {
+        Map<Long, List<DynamicAssignment>> bySequence = batch.stream()
+                .collect(Collectors.groupingBy(DynamicAssignment::getSequenceID, LinkedHashMap::new, Collectors.toList()));
+
+        Stream<List<DynamicAssignment>> stream = parallelMode ? bySequence.values().parallelStream()
+                : bySequence.values().stream();
+
+        stream.forEach(this::process);
+    }
+
+    /**
+     * Runs inference over the evidence of a single sequence and updates its session. If the session is removed
+     * before its lock is acquired, the evidence is processed in the session that replaces it.
+     * @param assignments a {@code List} of {@link DynamicAssignment} objects with the same sequence ID.
+     */
+    private void process(List<? extends DynamicAssignment> assignments) {
+        while (true) {
+            Session session = sessions.computeIfAbsent(assignments.get(0).getSequenceID(), id -> new Session());
+            synchronized (session) {
+                if (session.removed)
+                    continue;
+                InferenceAlgorithmForDBN algorithm = this.load(session);
+                for (DynamicAssignment assignment : assignments) {
+                    algorithm.addDynamicEvidence(assignment);
+                    algorithm.runInference();
+                }
+                session.beliefState = algorithm.getBeliefState();
+                session.lastAccess = System.currentTimeMillis();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Loads the belief state of a session into the {@link InferenceAlgorithmForDBN} object of the current thread.
+     * @param session a {@link Session} object.
+     * @return the {@link InferenceAlgorithmForDBN} object of the current thread.
+     */
+    private InferenceAlgorithmForDBN load(Session session) {
+        InferenceAlgorithmForDBN algorithm = this.algorithms.get();
+        algorithm.setBeliefState(session.beliefState);
+        return algorithm;
+    }
+
+    /**
+     * Returns the session of a given sequence.
+     * @param sequenceID the sequence ID.
+     * @return a {@link Session} object.
+     */
+    private Session getSession(long sequenceID) {
+        Session session = sessions.get(sequenceID);
+        if (session == null)
+            throw new IllegalArgumentException("There is no session for the sequence " + sequenceID + ".");
+        return session;
+    }
+
+    /**
+     * Returns the filtered posterior distribution of a given {@link Variable} in a given sequence.
+     * @param sequenceID the sequence ID.
+     * @param var a {@link Variable} object.
+     * @param <E> a class extending {@link UnivariateDistribution}.
+     * @return an {@link UnivariateDistribution} object.
+     */
+    public <E extends UnivariateDistribution> E getFilteredPosterior(long sequenceID, Variable var) {
+        Session session = this.getSession(sequenceID);
+        synchronized (session) {
+            return this.load(session).getFilteredPosterior(var);
+        }
+    }
+
+    /**
+     * Returns the predictive posterior distribution of a given {@link Variable} in a given sequence.
+     * @param sequenceID the sequence ID.
+     * @param var a {@link Variable} object.
+     * @param nTimesAhead an {@code int} that represents the number of time steps ahead.
+     * @param <E> a class extending {@link UnivariateDistribution}.
+     * @return an {@link UnivariateDistribution} object.
+     */
+    public <E extends UnivariateDistribution> E getPredictivePosterior(long sequenceID, Variable var, int nTimesAhead) {
+        Session session = this.getSession(sequenceID);
+        synchronized (session) {
+            return this.load(session).getPredictivePosterior(var, nTimesAhead);
+        }
+    }
+
+    /**
+     * Returns the belief state of a given sequence.
+     * @param sequenceID the sequence ID.
+     * @return a {@link BeliefStateForDBN} object, or {@code null} if no evidence has been processed.
+     */
+    public BeliefStateForDBN getBeliefState(long sequenceID) {
+        return this.getSession(sequenceID).beliefState;
+    }
+
+    /**
+     * Returns the time ID of the posterior of a given sequence.
+     * @param sequenceID the sequence ID.
+     * @return a {@code long} that represents the time ID.
+     */
+    public long getTimeIDOfPosterior(long sequenceID) {
+        BeliefStateForDBN beliefState = this.getBeliefState(sequenceID);
+        return (beliefState == null) ? -1 : beliefState.getTimeID();
+    }
+
+    /**
+     * Tests whether there is a session for a given sequence.
+     * @param sequenceID the sequence ID.
+     * @return {@code true} if there is a session for the sequence, {@code false} otherwise.
+     */
+    public boolean containsSession(long sequenceID) {
+        return sessions.containsKey(sequenceID);
+    }
+
+    /**
+     * Removes the session of a given sequence, so its next evidence starts a new sequence.
+     * @param sequenceID the sequence ID.
+     */
+    public void removeSession(long sequenceID) {
+        Session session = sessions.get(sequenceID);
+        if (session != null)
+            this.remove(sequenceID, session);
+    }
+
+    /**
+     * Removes a session under its lock, so the evidence being processed in it is not lost.
+     * @param sequenceID the sequence ID.
+     * @param session the {@link Session} object of the sequence.
+     * @return {@code true} if the session was removed, {@code false} if it had already been removed.
+     */
+    private boolean remove(long sequenceID, Session session) {
+        synchronized (session) {
+            if (session.removed)
+                return false;
+            session.removed = true;
+            return sessions.remove(sequenceID, session);
+        }
+    }
+
+    /**
+     * Returns the number of open sessions.
+     * @return an {@code int} value.
+     */
+    public int getNumberOfSessions() {
+        return sessions.size();
+    }
+
+    /**
+     * Removes the sessions that have not received evidence for a given time.
+     * @param maxIdleMillis the maximum idle time in milliseconds.
+     * @return the number of removed sessions.
+     */
+    public int evictIdleSessions(long maxIdleMillis) {
+        long now = System.currentTimeMillis();
+        int evicted = 0;
+        for (Map.Entry<Long, Session> entry : sessions.entrySet()) {
+            Session session = entry.getValue();
+            //The idle time is checked again under the lock, as the session may be processing evidence
+            synchronized (session) {
+                if (now - session.lastAccess < maxIdleMillis)
+                    continue;
+                if (this.remove(entry.getKey(), session))
+                    evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * This class represents the session of a sequence.
+     */
+    private static final class Session {
+
+        /** Represents the belief state of the sequence, or {@code null} if no evidence has been processed. */
+        private volatile BeliefStateForDBN beliefState;
+
+        /** Represents the time of the last evidence, in milliseconds. */
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        /** Indicates whether the session has been removed, guarded by the lock of the session. */
+        private boolean removed = false;
+    }
+}
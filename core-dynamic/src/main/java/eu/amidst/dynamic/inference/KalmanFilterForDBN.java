@@ -0,0 +1,1035 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+
+package eu.amidst.dynamic.inference;
+
+import eu.amidst.core.distribution.ConditionalDistribution;
+import eu.amidst.core.distribution.ConditionalLinearGaussian;
+import eu.amidst.core.distribution.Normal;
+import eu.amidst.core.distribution.Normal_MultinomialNormalParents;
+import eu.amidst.core.distribution.Normal_MultinomialParents;
+import eu.amidst.core.distribution.UnivariateDistribution;
+import eu.amidst.core.utils.Utils;
+import eu.amidst.core.variables.Assignment;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.dynamic.models.DynamicBayesianNetwork;
+import eu.amidst.dynamic.variables.DynamicAssignment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * This class implements the interfaces {@link InferenceAlgorithmForDBN}.
+ * It implements exact inference on linear-Gaussian {@link DynamicBayesianNetwork} models, such as Kalman filters or
+ * state space models, with the predict/update recursions of the Kalman filter and the Rauch-Tung-Striebel smoother.
+ * All the computations are done in place over primitive arrays, which are reused between time steps and sequences.
+ *
+ * <p> The hidden variables are Gaussian variables whose distributions are {@link Normal},
+ * {@link ConditionalLinearGaussian}, {@link Normal_MultinomialParents} or {@link Normal_MultinomialNormalParents}.
+ * They may depend on the hidden variables of the current and previous time slices, and on any observed variable,
+ * whose values act as inputs. The Gaussian observed variables may depend on the hidden variables of the current time
+ * slice and on other observed variables. Multinomial parents must always be observed, and select the linear
+ * Gaussian component used at each time step. Observed variables with missing values are marginalized out, which
+ * requires that they have no observed children, and values of the hidden variables in the evidence are ignored. </p>
+ *
+ * Kevin P. Murphy. 2012. Machine Learning: A Probabilistic Perspective. The MIT Press. Pages 640-646.
+ */
+public class KalmanFilterForDBN implements InferenceAlgorithmForDBN {
+
+    /** Represents the {@link DynamicBayesianNetwork} model. */
+    private DynamicBayesianNetwork model;
+
+    /** Represents the hidden variables set by the user, or {@code null} if they are taken from the model. */
+    private List<Variable> hiddenVariablesSetByUser;
+
+    /** Represents the Gaussian hidden variables of a time slice. */
+    private List<Variable> hiddenVars;
+
+    /** Represents the observed variables of a time slice. */
+    private List<Variable> observedVars;
+
+    /** Represents the number of hidden variables. */
+    private int n;
+
+    /** Represents the index of each hidden variable, or of its interface variable, indexed by variable ID. */
+    private int[] hiddenIndex;
+
+    /** Represents the hidden variables at time 0, sorted so that their parents in the time slice come first. */
+    private int[] orderTime0;
+
+    /** Represents the hidden variables at time T, sorted so that their parents in the time slice come first. */
+    private int[] orderTimeT;
+
+    /** Represents whether the distribution of the hidden variables at time 0 only depends on hidden variables. */
+    private boolean initialFixed;
+
+    /** Represents whether the transition distribution only depends on hidden variables. */
+    private boolean transitionFixed;
+
+    /** Represents the values of the observed variables of the current and previous time slices, indexed by ID. */
+    private double[] values;
+
+    /** Represents an {@link Assignment} view of the array of values. */
+    private Assignment valuesAssignment;
+
+    /** Represents the transition matrix F, stored row-major. */
+    private double[] transitionMatrix;
+
+    /** Represents the transition offset f. */
+    private double[] transitionOffset;
+
+    /** Represents the transition noise covariance Q, stored row-major. */
+    private double[] transitionCovariance;
+
+    /** Represents the mean and covariance at time 0. */
+    private double[] initialMean, initialCovariance;
+
+    /** Represents the loading matrix of the noise of each hidden variable, used as a buffer. */
+    private double[] noiseLoading;
+
+    /** Represents the noise variance of each hidden variable, used as a buffer. */
+    private double[] noiseVariance;
+
+    /** Represents the coefficients of a linear Gaussian distribution, used as buffers. */
+    private double[] currentCoefficients, previousCoefficients;
+
+    /** Represents the variance of a linear Gaussian distribution, used as a buffer. */
+    private double[] variance = new double[1];
+
+    /** Represents the filtered mean. */
+    private double[] mean;
+
+    /** Represents the filtered covariance, stored row-major. */
+    private double[] covariance;
+
+    /** Represents buffers for the predicted mean and covariance. */
+    private double[] predictedMean, predictedCovariance;
+
+    /** Represents buffers of size n and n*n. */
+    private double[] vectorBuffer, matrixBuffer;
+
+    /** Represents whether the filtered distributions of the sequence are stored. */
+    private boolean keepHistory = true;
+
+    /** Represents the stored filtered means and covariances. */
+    private double[] meanHistory = new double[0], covarianceHistory = new double[0];
+
+    /** Represents the stored predicted means and covariances, and the transition matrices used to predict them. */
+    private double[] predictedMeanHistory = new double[0], predictedCovarianceHistory = new double[0], transitionHistory = new double[0];
+
+    /** Represents the number of stored time steps. */
+    private int historyLength;
+
+    /** Represents the smoothed means and covariances, or {@code null} if they are outdated. */
+    private double[] smoothedMeans, smoothedCovariances;
+
+    /** Represents the log-probability of the evidence of the sequence. */
+    private double logProbabilityOfEvidence;
+
+    /** Represents an {@link DynamicAssignment} object. */
+    private DynamicAssignment assignment;
+
+    /** Represents the time ID. */
+    private long timeID = -1;
+
+    /** Represents the sequence ID. */
+    private long sequenceID = -1;
+
+    /**
+     * Sets the hidden variables. By default, the hidden variables are the Gaussian variables which are not
+     * associated to an attribute of the data (see {@link Variable#isObservable()}).
+     * @param hiddenVariables a list of Gaussian dynamic {@link Variable} objects.
+     */
+    public void setHiddenVariables(List<Variable> hiddenVariables) {
+        this.hiddenVariablesSetByUser = new ArrayList<>(hiddenVariables);
+        if (this.model != null)
+            this.compileModel();
+    }
+
+    /**
+     * Returns the hidden variables.
+     * @return a list of {@link Variable} objects.
+     */
+    public List<Variable> getHiddenVariables() {
+        return hiddenVars;
+    }
+
+    /**
+     * Sets whether the filtered distributions of the sequence are stored, which is needed to compute the smoothed
+     * posteriors. Set it to {@code false} when only filtering is needed.
+     * @param keepHistory a {@code boolean} value.
+     */
+    public void setKeepHistory(boolean keepHistory) {
+        this.keepHistory = keepHistory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setModel(DynamicBayesianNetwork model_) {
+        this.model = model_;
+        this.compileModel();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DynamicBayesianNetwork getOriginalModel() {
+        return this.model;
+    }
+
+    /**
+     * Checks the structure of the model and allocates the arrays used by the inference.
+     */
+    private void compileModel() {
+        List<Variable> dynamicVars = this.model.getDynamicVariables().getListOfDynamicVariables();
+
+        if (hiddenVariablesSetByUser != null) {
+            hiddenVars = hiddenVariablesSetByUser;
+        } else {
+            hiddenVars = dynamicVars.stream()
+                    .filter(Variable::isNormal)
+                    .filter(var -> !var.isObservable())
+                    .collect(Collectors.toList());
+        }
+
+        if (hiddenVars.isEmpty())
+            throw new IllegalArgumentException("The model does not contain Gaussian hidden variables.");
+
+        n = hiddenVars.size();
+        hiddenIndex = new int[2 * dynamicVars.size()];
+        Arrays.fill(hiddenIndex, -1);
+        for (int i = 0; i < n; i++) {
+            Variable var = hiddenVars.get(i);
+            if (!var.isNormal())
+                throw new IllegalArgumentException("The hidden variable " + var.getName() + " is not Gaussian.");
+            hiddenIndex[var.getVarID()] = i;
+            hiddenIndex[var.getInterfaceVariable().getVarID()] = i;
+        }
+
+        observedVars = dynamicVars.stream().filter(var -> hiddenIndex[var.getVarID()] == -1).collect(Collectors.toList());
+
+        for (Variable var : hiddenVars) {
+            checkLinearGaussian(this.model.getConditionalDistributionTime0(var));
+            checkLinearGaussian(this.model.getConditionalDistributionTimeT(var));
+        }
+        for (Variable var : observedVars) {
+            for (Variable parent : this.model.getDynamicDAG().getParentSetTimeT(var).getParents()) {
+                if (parent.isInterfaceVariable() && hiddenIndex[parent.getVarID()] != -1)
+                    throw new UnsupportedOperationException("The observed variable " + var.getName()
+                            + " depends on a hidden variable of the previous time slice.");
+            }
+            if (!var.isNormal()) {
+                for (Variable parent : this.model.getDynamicDAG().getParentSetTimeT(var).getParents()) {
+                    if (hiddenIndex[parent.getVarID()] != -1)
+                        throw new UnsupportedOperationException("The non Gaussian variable " + var.getName()
+                                + " depends on a hidden variable.");
+                }
+            } else {
+                checkLinearGaussian(this.model.getConditionalDistributionTime0(var));
+                checkLinearGaussian(this.model.getConditionalDistributionTimeT(var));
+            }
+        }
+
+        orderTime0 = this.topologicalOrder(true);
+        orderTimeT = this.topologicalOrder(false);
+
+        initialFixed = hiddenVars.stream().allMatch(var -> this.model.getDynamicDAG().getParentSetTime0(var).getParents()
+                .stream().allMatch(parent -> hiddenIndex[parent.getVarID()] != -1));
+        transitionFixed = hiddenVars.stream().allMatch(var -> this.model.getDynamicDAG().getParentSetTimeT(var).getParents()
+                .stream().allMatch(parent -> hiddenIndex[parent.getVarID()] != -1));
+
+        values = new double[2 * dynamicVars.size()];
+        valuesAssignment = new ValuesAssignment();
+        transitionMatrix = new double[n * n];
+        transitionOffset = new double[n];
+        transitionCovariance = new double[n * n];
+        initialMean = new double[n];
+        initialCovariance = new double[n * n];
+        noiseLoading = new double[n * n];
+        noiseVariance = new double[n];
+        currentCoefficients = new double[n];
+        previousCoefficients = new double[n];
+        mean = new double[n];
+        covariance = new double[n * n];
+        predictedMean = new double[n];
+        predictedCovariance = new double[n * n];
+        vectorBuffer = new double[n];
+        matrixBuffer = new double[n * n];
+
+        this.reset();
+
+        if (initialFixed)
+            this.computeSliceModel(true, initialMean, initialCovariance);
+        if (transitionFixed)
+            this.computeSliceModel(false, transitionOffset, transitionCovariance);
+    }
+
+    /**
+     * Checks that a distribution is linear Gaussian.
+     * @param dist a {@link ConditionalDistribution} object.
+     */
+    private static void checkLinearGaussian(ConditionalDistribution dist) {
+        if (!(dist instanceof Normal) && !(dist instanceof ConditionalLinearGaussian)
+                && !(dist instanceof Normal_MultinomialParents) && !(dist instanceof Normal_MultinomialNormalParents))
+            throw new UnsupportedOperationException("The distribution of " + dist.getVariable().getName()
+                    + " is not linear Gaussian.");
+    }
+
+    /**
+     * Sorts the hidden variables so that their hidden parents in the same time slice come first.
+     * @param time0 whether the order refers to the time slice 0.
+     * @return an array with the indexes of the sorted hidden variables.
+     */
+    private int[] topologicalOrder(boolean time0) {
+        int[] order = new int[n];
+        boolean[] added = new boolean[n];
+        for (int k = 0; k < n; k++) {
+            for (int i = 0; i < n; i++) {
+                if (added[i])
+                    continue;
+                Variable var = hiddenVars.get(i);
+                List<Variable> parents = time0 ? this.model.getDynamicDAG().getParentSetTime0(var).getParents()
+                        : this.model.getDynamicDAG().getParentSetTimeT(var).getParents();
+                boolean ready = parents.stream()
+                        .allMatch(parent -> parent.isInterfaceVariable() || hiddenIndex[parent.getVarID()] == -1
+                                || added[hiddenIndex[parent.getVarID()]]);
+                if (ready) {
+                    order[k] = i;
+                    added[i] = true;
+                    break;
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        this.timeID = -1;
+        this.sequenceID = -1;
+        this.assignment = null;
+        this.historyLength = 0;
+        this.smoothedMeans = null;
+        this.smoothedCovariances = null;
+        this.logProbabilityOfEvidence = 0;
+        if (values != null)
+            Arrays.fill(values, Utils.missingValue());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addDynamicEvidence(DynamicAssignment assignment_) {
+        if (this.sequenceID != -1 && this.sequenceID != assignment_.getSequenceID())
+            throw new IllegalArgumentException("The sequence ID does not match. If you want to change the sequence, invoke reset method");
+
+        if (this.timeID >= assignment_.getTimeID())
+            throw new IllegalArgumentException("The provided assignment is not posterior to the previous provided assignment.");
+
+        this.sequenceID = assignment_.getSequenceID();
+        this.assignment = assignment_;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void runInference() {
+        if (this.assignment == null || this.assignment.getTimeID() == this.timeID)
+            return;
+
+        while (this.timeID + 1 < this.assignment.getTimeID())
+            this.filterStep(null);
+
+        this.filterStep(this.assignment);
+    }
+
+    /**
+     * Moves the filtered distribution one time step ahead.
+     * @param evidence the {@link Assignment} of the time step, or {@code null} if there is no evidence.
+     */
+    private void filterStep(Assignment evidence) {
+        boolean time0 = this.timeID == -1;
+
+        for (Variable var : observedVars) {
+            values[var.getInterfaceVariable().getVarID()] = values[var.getVarID()];
+            values[var.getVarID()] = (evidence == null) ? Utils.missingValue() : evidence.getValue(var);
+        }
+
+        if (time0) {
+            if (!initialFixed)
+                this.computeSliceModel(true, initialMean, initialCovariance);
+            System.arraycopy(initialMean, 0, mean, 0, n);
+            System.arraycopy(initialCovariance, 0, covariance, 0, n * n);
+        } else {
+            if (!transitionFixed)
+                this.computeSliceModel(false, transitionOffset, transitionCovariance);
+            predict(mean, covariance, predictedMean, predictedCovariance);
+            System.arraycopy(predictedMean, 0, mean, 0, n);
+            System.arraycopy(predictedCovariance, 0, covariance, 0, n * n);
+        }
+
+        for (Variable var : observedVars) {
+            if (Utils.isMissingValue(values[var.getVarID()]))
+                continue;
+            ConditionalDistribution dist = time0 ? this.model.getConditionalDistributionTime0(var)
+                    : this.model.getConditionalDistributionTimeT(var);
+            if (var.isNormal())
+                this.update(dist, values[var.getVarID()]);
+            else {
+                this.checkObservedParents(dist);
+                logProbabilityOfEvidence += dist.getLogConditionalProbability(valuesAssignment);
+            }
+        }
+
+        this.timeID++;
+        this.smoothedMeans = null;
+        this.smoothedCovariances = null;
+
+        if (keepHistory)
+            this.storeHistory(time0);
+    }
+
+    /**
+     * Computes the predicted mean and covariance from the filtered ones with the current transition model.
+     * @param fromMean the filtered mean.
+     * @param fromCovariance the filtered covariance.
+     * @param toMean the array where the predicted mean is stored.
+     * @param toCovariance the array where the predicted covariance is stored.
+     */
+    private void predict(double[] fromMean, double[] fromCovariance, double[] toMean, double[] toCovariance) {
+        for (int i = 0; i < n; i++) {
+            double sum = transitionOffset[i];
+            for (int k = 0; k < n; k++) {
+                sum += transitionMatrix[i * n + k] * fromMean[k];
+            }
+            toMean[i] = sum;
+        }
+
+        //matrixBuffer = F P
+        multiply(transitionMatrix, fromCovariance, matrixBuffer, n);
+        //P' = F P F^T + Q
+        for (int i = 0; i < n; i++) {
+            for (int j = i; j < n; j++) {
+                double sum = transitionCovariance[i * n + j];
+                for (int k = 0; k < n; k++) {
+                    sum += matrixBuffer[i * n + k] * transitionMatrix[j * n + k];
+                }
+                toCovariance[i * n + j] = sum;
+                toCovariance[j * n + i] = sum;
+            }
+        }
+    }
+
+    /**
+     * Updates the filtered mean and covariance with the observed value of a Gaussian variable, which is processed as
+     * a scalar measurement.
+     * @param dist the distribution of the observed variable.
+     * @param value the observed value.
+     */
+    private void update(ConditionalDistribution dist, double value) {
+        double offset = this.resolve(dist, currentCoefficients, previousCoefficients, variance);
+
+        //vectorBuffer = P h^T
+        double predicted = offset;
+        for (int i = 0; i < n; i++) {
+            double sum = 0;
+            for (int k = 0; k < n; k++) {
+                sum += covariance[i * n + k] * currentCoefficients[k];
+            }
+            vectorBuffer[i] = sum;
+            predicted += currentCoefficients[i] * mean[i];
+        }
+        double innovationVariance = variance[0];
+        for (int i = 0; i < n; i++) {
+            innovationVariance += currentCoefficients[i] * vectorBuffer[i];
+        }
+
+        double innovation = value - predicted;
+        for (int i = 0; i < n; i++) {
+            mean[i] += vectorBuffer[i] * innovation / innovationVariance;
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j = i; j < n; j++) {
+                double cov = covariance[i * n + j] - vectorBuffer[i] * vectorBuffer[j] / innovationVariance;
+                covariance[i * n + j] = cov;
+                covariance[j * n + i] = cov;
+            }
+        }
+
+        logProbabilityOfEvidence += -0.5 * (Math.log(2 * Math.PI * innovationVariance) + innovation * innovation / innovationVariance);
+    }
+
+    /**
+     * Computes the linear-Gaussian model of the hidden variables of a time slice given the hidden variables of the
+     * previous one, i.e., x_t = F x_{t-1} + f + e with e ~ N(0,Q). The transition matrix F is stored in
+     * {@link #transitionMatrix} when the time slice is not the first one.
+     * @param time0 whether the time slice is the first one.
+     * @param offset the array where f is stored.
+     * @param noiseCovariance the array where Q is stored.
+     */
+    private void computeSliceModel(boolean time0, double[] offset, double[] noiseCovariance) {
+        int[] order = time0 ? orderTime0 : orderTimeT;
+        if (!time0)
+            Arrays.fill(transitionMatrix, 0);
+        Arrays.fill(noiseLoading, 0);
+
+        //The hidden variables of the slice are expressed in terms of the previous slice and the noise terms,
+        //following the topological order.
+        for (int i : order) {
+            Variable var = hiddenVars.get(i);
+            ConditionalDistribution dist = time0 ? this.model.getConditionalDistributionTime0(var)
+                    : this.model.getConditionalDistributionTimeT(var);
+            double value = this.resolve(dist, currentCoefficients, previousCoefficients, variance);
+            noiseVariance[i] = variance[0];
+            noiseLoading[i * n + i] = 1;
+            if (!time0)
+                System.arraycopy(previousCoefficients, 0, transitionMatrix, i * n, n);
+
+            for (int j = 0; j < n; j++) {
+                double coeff = currentCoefficients[j];
+                if (coeff == 0)
+                    continue;
+                value += coeff * offset[j];
+                for (int k = 0; k < n; k++) {
+                    noiseLoading[i * n + k] += coeff * noiseLoading[j * n + k];
+                    if (!time0)
+                        transitionMatrix[i * n + k] += coeff * transitionMatrix[j * n + k];
+                }
+            }
+            offset[i] = value;
+        }
+
+        //Q = G diag(d) G^T
+        for (int i = 0; i < n; i++) {
+            for (int j = i; j < n; j++) {
+                double sum = 0;
+                for (int k = 0; k < n; k++) {
+                    sum += noiseLoading[i * n + k] * noiseVariance[k] * noiseLoading[j * n + k];
+                }
+                noiseCovariance[i * n + j] = sum;
+                noiseCovariance[j * n + i] = sum;
+            }
+        }
+    }
+
+    /**
+     * Checks that the values of the observed parents of a distribution are available.
+     * @param dist a {@link ConditionalDistribution} object.
+     */
+    private void checkObservedParents(ConditionalDistribution dist) {
+        for (Variable parent : dist.getConditioningVariables()) {
+            if (hiddenIndex[parent.getVarID()] == -1 && Utils.isMissingValue(values[parent.getVarID()]))
+                throw new IllegalArgumentException("The distribution of " + dist.getVariable().getName()
+                        + " depends on the variable " + parent.getName() + ", whose value is missing.");
+        }
+    }
+
+    /**
+     * Returns the linear Gaussian distribution of a variable given the values of its observed parents, i.e., its
+     * coefficients for the hidden variables of the current and previous time slices, its offset and its variance.
+     * @param dist the distribution of the variable.
+     * @param current the array where the coefficients for the hidden variables of the current slice are stored.
+     * @param previous the array where the coefficients for the hidden variables of the previous slice are stored.
+     * @param varianceOut the array where the variance is stored.
+     * @return the offset.
+     */
+    private double resolve(ConditionalDistribution dist, double[] current, double[] previous, double[] varianceOut) {
+        Arrays.fill(current, 0);
+        Arrays.fill(previous, 0);
+
+        this.checkObservedParents(dist);
+
+        Normal normal = null;
+        ConditionalLinearGaussian clg = null;
+        if (dist instanceof Normal) {
+            normal = (Normal) dist;
+        } else if (dist instanceof Normal_MultinomialParents) {
+            normal = ((Normal_MultinomialParents) dist).getNormal(valuesAssignment);
+        } else if (dist instanceof ConditionalLinearGaussian) {
+            clg = (ConditionalLinearGaussian) dist;
+        } else {
+            clg = ((Normal_MultinomialNormalParents) dist).getNormal_NormalParentsDistribution(valuesAssignment);
+        }
+
+        if (normal != null) {
+            varianceOut[0] = normal.getVariance();
+            return normal.getMean();
+        }
+
+        double offset = clg.getIntercept();
+        double[] coefficients = clg.getCoeffParents();
+        List<Variable> parents = clg.getConditioningVariables();
+        for (int p = 0; p < parents.size(); p++) {
+            Variable parent = parents.get(p);
+            int index = hiddenIndex[parent.getVarID()];
+            if (index == -1)
+                offset += coefficients[p] * values[parent.getVarID()];
+            else if (parent.isInterfaceVariable())
+                previous[index] += coefficients[p];
+            else
+                current[index] += coefficients[p];
+        }
+        varianceOut[0] = clg.getVariance();
+        return offset;
+    }
+
+    /**
+     * Stores the filtered distribution of the current time step and the predicted distribution it was computed from.
+     * @param time0 whether the time step is the first one.
+     */
+    private void storeHistory(boolean time0) {
+        int size = (historyLength + 1) * n * n;
+        if (covarianceHistory.length < size) {
+            int capacity = Math.max(historyLength + 1, 2 * historyLength);
+            meanHistory = Arrays.copyOf(meanHistory, capacity * n);
+            predictedMeanHistory = Arrays.copyOf(predictedMeanHistory, capacity * n);
+            covarianceHistory = Arrays.copyOf(covarianceHistory, capacity * n * n);
+            predictedCovarianceHistory = Arrays.copyOf(predictedCovarianceHistory, capacity * n * n);
+            transitionHistory = Arrays.copyOf(transitionHistory, capacity * n * n);
+        }
+        System.arraycopy(mean, 0, meanHistory, historyLength * n, n);
+        System.arraycopy(covariance, 0, covarianceHistory, historyLength * n * n, n * n);
+        if (!time0) {
+            System.arraycopy(predictedMean, 0, predictedMeanHistory, historyLength * n, n);
+            System.arraycopy(predictedCovariance, 0, predictedCovarianceHistory, historyLength * n * n, n * n);
+            System.arraycopy(transitionMatrix, 0, transitionHistory, historyLength * n * n, n * n);
+        }
+        historyLength++;
+    }
+
+    /**
+     * Runs the Rauch-Tung-Striebel smoother over the stored history.
+     */
+    private void computeSmoothed() {
+        if (smoothedMeans != null)
+            return;
+        if (!keepHistory)
+            throw new IllegalStateException("The history of the sequence is not stored. Use setKeepHistory(true).");
+        if (historyLength == 0)
+            throw new IllegalStateException("No evidence has been provided.");
+
+        smoothedMeans = Arrays.copyOf(meanHistory, historyLength * n);
+        smoothedCovariances = Arrays.copyOf(covarianceHistory, historyLength * n * n);
+
+        double[] gain = new double[n * n];
+        double[] cholesky = new double[n * n];
+        double[] difference = new double[n * n];
+        double[] product = new double[n * n];
+
+        for (int t = historyLength - 2; t >= 0; t--) {
+            int vectorOffset = t * n;
+            int matrixOffset = t * n * n;
+            int nextVectorOffset = (t + 1) * n;
+            int nextMatrixOffset = (t + 1) * n * n;
+
+            //J^T solves P'_{t+1} J^T = F_{t+1} P_t
+            multiply(transitionHistory, nextMatrixOffset, covarianceHistory, matrixOffset, gain, n);
+            System.arraycopy(predictedCovarianceHistory, nextMatrixOffset, cholesky, 0, n * n);
+            choleskyDecomposition(cholesky, n);
+            choleskySolve(cholesky, gain, n);
+
+            //m^s_t = m_t + J (m^s_{t+1} - m'_{t+1})
+            for (int i = 0; i < n; i++) {
+                double sum = 0;
+                for (int k = 0; k < n; k++) {
+                    sum += gain[k * n + i] * (smoothedMeans[nextVectorOffset + k] - predictedMeanHistory[nextVectorOffset + k]);
+                }
+                smoothedMeans[vectorOffset + i] += sum;
+            }
+
+            //P^s_t = P_t + J (P^s_{t+1} - P'_{t+1}) J^T
+            for (int k = 0; k < n * n; k++) {
+                difference[k] = smoothedCovariances[nextMatrixOffset + k] - predictedCovarianceHistory[nextMatrixOffset + k];
+            }
+            //product = (P^s_{t+1} - P'_{t+1}) J^T
+            multiply(difference, 0, gain, 0, product, n);
+            for (int i = 0; i < n; i++) {
+                for (int j = i; j < n; j++) {
+                    double sum = 0;
+                    for (int k = 0; k < n; k++) {
+                        sum += gain[k * n + i] * product[k * n + j];
+                    }
+                    smoothedCovariances[matrixOffset + i * n + j] += sum;
+                    if (j != i)
+                        smoothedCovariances[matrixOffset + j * n + i] += sum;
+                }
+            }
+        }
+    }
+
+    /**
+     * Multiplies two square matrices stored row-major.
+     * @param a the left matrix.
+     * @param b the right matrix.
+     * @param dst the array where the product is stored.
+     * @param size the dimension of the matrices.
+     */
+    private static void multiply(double[] a, double[] b, double[] dst, int size) {
+        multiply(a, 0, b, 0, dst, size);
+    }
+
+    /**
+     * Multiplies two square matrices stored row-major at the given positions of two arrays.
+     * @param a the array containing the left matrix.
+     * @param aOffset the position where the left matrix starts.
+     * @param b the array containing the right matrix.
+     * @param bOffset the position where the right matrix starts.
+     * @param dst the array where the product is stored.
+     * @param size the dimension of the matrices.
+     */
+    private static void multiply(double[] a, int aOffset, double[] b, int bOffset, double[] dst, int size) {
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                double sum = 0;
+                for (int k = 0; k < size; k++) {
+                    sum += a[aOffset + i * size + k] * b[bOffset + k * size + j];
+                }
+                dst[i * size + j] = sum;
+            }
+        }
+    }
+
+    /**
+     * Computes in place the lower triangular Cholesky factor of a symmetric positive definite matrix.
+     * @param a the matrix, stored row-major.
+     * @param size the dimension of the matrix.
+     */
+    private static void choleskyDecomposition(double[] a, int size) {
+        for (int j = 0; j < size; j++) {
+            double diagonal = a[j * size + j];
+            for (int k = 0; k < j; k++) {
+                diagonal -= a[j * size + k] * a[j * size + k];
+            }
+            if (diagonal <= 0)
+                throw new IllegalStateException("The predicted covariance matrix is not positive definite.");
+            diagonal = Math.sqrt(diagonal);
+            a[j * size + j] = diagonal;
+            for (int i = j + 1; i < size; i++) {
+                double sum = a[i * size + j];
+                for (int k = 0; k < j; k++) {
+                    sum -= a[i * size + k] * a[j * size + k];
+                }
+                a[i * size + j] = sum / diagonal;
+            }
+            for (int i = 0; i < j; i++) {
+                a[i * size + j] = 0;
+            }
+        }
+    }
+
+    /**
+     * Solves in place L L^T X = B for each column of B, given the Cholesky factor L.
+     * @param l the Cholesky factor, stored row-major.
+     * @param b the right-hand side, stored row-major, which is replaced by the solution.
+     * @param size the dimension of the matrices.
+     */
+    private static void choleskySolve(double[] l, double[] b, int size) {
+        for (int c = 0; c < size; c++) {
+            for (int i = 0; i < size; i++) {
+                double sum = b[i * size + c];
+                for (int k = 0; k < i; k++) {
+                    sum -= l[i * size + k] * b[k * size + c];
+                }
+                b[i * size + c] = sum / l[i * size + i];
+            }
+            for (int i = size - 1; i >= 0; i--) {
+                double sum = b[i * size + c];
+                for (int k = i + 1; k < size; k++) {
+                    sum -= l[k * size + i] * b[k * size + c];
+                }
+                b[i * size + c] = sum / l[i * size + i];
+            }
+        }
+    }
+
+    /**
+     * Returns the index of a hidden variable.
+     * @param var a {@link Variable} object.
+     * @return the index of the variable in the list of hidden variables.
+     */
+    private int indexOf(Variable var) {
+        int index = (var.getVarID() < hiddenIndex.length && !var.isInterfaceVariable()) ? hiddenIndex[var.getVarID()] : -1;
+        if (index == -1)
+            throw new IllegalArgumentException("The variable " + var.getName() + " is not a hidden variable.");
+        return index;
+    }
+
+    /**
+     * Returns the mean of the filtered posterior of a hidden variable without allocating any object.
+     * @param var a hidden {@link Variable} object.
+     * @return a {@code double} value.
+     */
+    public double getFilteredMean(Variable var) {
+        return mean[this.indexOf(var)];
+    }
+
+    /**
+     * Returns the variance of the filtered posterior of a hidden variable without allocating any object.
+     * @param var a hidden {@link Variable} object.
+     * @return a {@code double} value.
+     */
+    public double getFilteredVariance(Variable var) {
+        int index = this.indexOf(var);
+        return covariance[index * n + index];
+    }
+
+    /**
+     * Returns the smoothed posterior distributions of a hidden variable, i.e., its posterior distributions given all
+     * the evidence of the sequence, for the time steps from 0 to the time ID of the last evidence.
+     * @param var a hidden {@link Variable} object.
+     * @return a list of {@link Normal} distributions, where the element t corresponds to time t.
+     */
+    public List<Normal> getSmoothedPosteriors(Variable var) {
+        int index = this.indexOf(var);
+        this.computeSmoothed();
+
+        List<Normal> posteriors = new ArrayList<>(historyLength);
+        for (int t = 0; t < historyLength; t++) {
+            posteriors.add(newNormal(var, smoothedMeans[t * n + index], smoothedCovariances[t * n * n + index * n + index]));
+        }
+        return posteriors;
+    }
+
+    /**
+     * Returns the log-probability of the evidence provided since the last reset.
+     * @return a {@code double} value.
+     */
+    public double getLogProbabilityOfEvidence() {
+        return logProbabilityOfEvidence;
+    }
+
+    /**
+     * Creates a {@link Normal} distribution.
+     * @param var a {@link Variable} object.
+     * @param mean the mean.
+     * @param variance the variance.
+     * @return a {@link Normal} distribution.
+     */
+    private static Normal newNormal(Variable var, double mean, double variance) {
+        Normal normal = new Normal(var);
+        normal.setMean(mean);
+        normal.setVariance(variance);
+        return normal;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <E extends UnivariateDistribution> E getFilteredPosterior(Variable var) {
+        if (this.timeID == -1)
+            return this.getPredictivePosterior(var, 1);
+        int index = this.indexOf(var);
+        return (E) newNormal(var, mean[index], covariance[index * n + index]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <E extends UnivariateDistribution> E getPredictivePosterior(Variable var, int nTimesAhead) {
+        int index = this.indexOf(var);
+        if (!transitionFixed || (this.timeID == -1 && !initialFixed))
+            throw new UnsupportedOperationException("The predictive posterior is not supported when the hidden variables depend on observed variables.");
+
+        double[] currentMean = new double[n];
+        double[] currentCovariance = new double[n * n];
+        double[] nextMean = new double[n];
+        double[] nextCovariance = new double[n * n];
+        int nSteps = nTimesAhead;
+        if (this.timeID == -1) {
+            System.arraycopy(initialMean, 0, currentMean, 0, n);
+            System.arraycopy(initialCovariance, 0, currentCovariance, 0, n * n);
+            nSteps--;
+        } else {
+            System.arraycopy(mean, 0, currentMean, 0, n);
+            System.arraycopy(covariance, 0, currentCovariance, 0, n * n);
+        }
+
+        for (int step = 0; step < nSteps; step++) {
+            this.predict(currentMean, currentCovariance, nextMean, nextCovariance);
+            double[] tmp = currentMean;
+            currentMean = nextMean;
+            nextMean = tmp;
+            tmp = currentCovariance;
+            currentCovariance = nextCovariance;
+            nextCovariance = tmp;
+        }
+
+        return (E) newNormal(var, currentMean[index], currentCovariance[index * n + index]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getTimeIDOfPosterior() {
+        return this.timeID;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getTimeIDOfLastEvidence() {
+        return (this.assignment == null) ? -1 : this.assignment.getTimeID();
+    }
+
+    /**
+     * {@inheritDoc}
+     * The belief state contains the filtered mean and covariance and the values of the last evidence.
+     */
+    @Override
+    public BeliefStateForDBN getBeliefState() {
+        if (this.timeID == -1)
+            return new KalmanBeliefState(-1, -1, null, null, null, null, 0);
+        return new KalmanBeliefState(this.sequenceID, this.timeID, this.assignment, mean.clone(), covariance.clone(),
+                values.clone(), this.logProbabilityOfEvidence);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The stored history starts at the time step of the belief state, so the smoothed posteriors only cover the
+     * following time steps.
+     */
+    @Override
+    public void setBeliefState(BeliefStateForDBN beliefState) {
+        this.reset();
+
+        if (beliefState == null || beliefState.getTimeID() == -1)
+            return;
+
+        if (!(beliefState instanceof KalmanBeliefState))
+            throw new IllegalArgumentException("The belief state was not created by a KalmanFilterForDBN object.");
+
+        KalmanBeliefState state = (KalmanBeliefState) beliefState;
+        if (state.mean.length != n || state.values.length != values.length)
+            throw new IllegalArgumentException("The belief state was created with a different model.");
+
+        this.sequenceID = state.sequenceID;
+        this.timeID = state.timeID;
+        this.assignment = state.assignment;
+        this.logProbabilityOfEvidence = state.logProbabilityOfEvidence;
+        System.arraycopy(state.mean, 0, mean, 0, n);
+        System.arraycopy(state.covariance, 0, covariance, 0, n * n);
+        System.arraycopy(state.values, 0, values, 0, values.length);
+    }
+
+    /**
+     * This class represents the belief state of a {@link KalmanFilterForDBN} object.
+     */
+    private static final class KalmanBeliefState implements BeliefStateForDBN {
+
+        /** Represents the sequence ID. */
+        private final long sequenceID;
+
+        /** Represents the time ID. */
+        private final long timeID;
+
+        /** Represents the last evidence. */
+        private final DynamicAssignment assignment;
+
+        /** Represents the filtered mean and covariance. */
+        private final double[] mean, covariance;
+
+        /** Represents the values of the observed variables, indexed by ID. */
+        private final double[] values;
+
+        /** Represents the log-probability of the evidence of the sequence. */
+        private final double logProbabilityOfEvidence;
+
+        /**
+         * Creates a new KalmanBeliefState object.
+         * @param sequenceID the sequence ID.
+         * @param timeID the time ID.
+         * @param assignment the last evidence.
+         * @param mean the filtered mean.
+         * @param covariance the filtered covariance.
+         * @param values the values of the observed variables.
+         * @param logProbabilityOfEvidence the log-probability of the evidence.
+         */
+        private KalmanBeliefState(long sequenceID, long timeID, DynamicAssignment assignment, double[] mean,
+                                  double[] covariance, double[] values, double logProbabilityOfEvidence) {
+            this.sequenceID = sequenceID;
+            this.timeID = timeID;
+            this.assignment = assignment;
+            this.mean = mean;
+            this.covariance = covariance;
+            this.values = values;
+            this.logProbabilityOfEvidence = logProbabilityOfEvidence;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getSequenceID() {
+            return sequenceID;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getTimeID() {
+            return timeID;
+        }
+    }
+
+    /**
+     * This class implements an {@link Assignment} view of the array of values of the observed variables, which is
+     * used to select the components of the distributions with multinomial parents without allocating objects.
+     */
+    private final class ValuesAssignment implements Assignment {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public double getValue(Variable var) {
+            return values[var.getVarID()];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void setValue(Variable var, double value) {
+            values[var.getVarID()] = value;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Set<Variable> getVariables() {
+            throw new UnsupportedOperationException("The variables of this assignment are not available.");
+        }
+    }
+}
@@ -0,0 +1,605 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+
+package eu.amidst.dynamic.inference;
+
+import eu.amidst.core.distribution.ConditionalDistribution;
+import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.distribution.Normal;
+import eu.amidst.core.distribution.UnivariateDistribution;
+import eu.amidst.core.utils.Utils;
+import eu.amidst.core.variables.Assignment;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.dynamic.models.DynamicBayesianNetwork;
+import eu.amidst.dynamic.variables.DynamicAssignment;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * This class implements the interfaces {@link InferenceAlgorithmForDBN}.
+ * It implements a bootstrap particle filter (sequential Monte Carlo) to perform approximate inference on any
+ * {@link DynamicBayesianNetwork} model whose distributions can be sampled, such as switching Kalman filters or other
+ * multimodal hybrid models.
+ *
+ * <p> The particles are stored as a structure of arrays, with one array of values per variable. At each time step,
+ * the unobserved variables of each particle are sampled from the model given the particle values at the previous time
+ * step, and the particle is weighted with the probability of the evidence. The particles are propagated and weighted
+ * in parallel by blocks of {@link #BLOCK_SIZE} particles, each of which has its own random number generator, so the
+ * results do not depend on the number of threads. When the effective sample size falls below a threshold, the
+ * particles are resampled with systematic resampling in O(N). </p>
+ *
+ * <p> The posteriors of multinomial variables are estimated as weighted histograms, and the posteriors of Gaussian
+ * variables as moment-matched {@link Normal} distributions. </p>
+ *
+ * Doucet, A., Johansen, A.M.: A tutorial on particle filtering and smoothing: fifteen years later.
+ * Handbook of Nonlinear Filtering 12 (2009) 656-704.
+ */
+public class ParticleFilterForDBN implements InferenceAlgorithmForDBN {
+
+    /** Represents the number of particles processed by each task, which have their own random number generator. */
+    public static final int BLOCK_SIZE = 1024;
+
+    /** Represents the {@link DynamicBayesianNetwork} model. */
+    private DynamicBayesianNetwork model;
+
+    /** Represents the dynamic variables of the model. */
+    private List<Variable> variables;
+
+    /** Represents the position of each variable, or of its interface variable, in the particle arrays, indexed by ID. */
+    private int[] slot;
+
+    /** Represents the variables sorted so that their parents in the time slice 0 come first. */
+    private int[] orderTime0;
+
+    /** Represents the variables sorted so that their parents in the time slice T come first. */
+    private int[] orderTimeT;
+
+    /** Represents the number of particles. */
+    private int numberOfParticles = 1000;
+
+    /** Represents the fraction of particles below which the effective sample size triggers a resampling. */
+    private double resamplingThreshold = 0.5;
+
+    /** Represents the seed. */
+    private int seed = 0;
+
+    /** Represents the parallel processing mode, initialized here as {@code true}. */
+    private boolean parallelMode = true;
+
+    /** Represents the particles. */
+    private Particles particles;
+
+    /** Represents the particles used as a buffer for resampling. */
+    private Particles resampled;
+
+    /** Represents the random number generators of the blocks of particles. */
+    private Random[] randoms;
+
+    /** Represents the random number generator used for resampling. */
+    private Random resamplingRandom;
+
+    /** Represents the log-weight increments of the current time step. */
+    private double[] logIncrements;
+
+    /** Represents the values of the evidence of the current time step, indexed by variable position. */
+    private double[] evidenceValues;
+
+    /** Represents the estimate of the log-probability of the evidence of the sequence. */
+    private double logProbabilityOfEvidence;
+
+    /** Represents an {@link DynamicAssignment} object. */
+    private DynamicAssignment assignment;
+
+    /** Represents the time ID. */
+    private long timeID = -1;
+
+    /** Represents the sequence ID. */
+    private long sequenceID = -1;
+
+    /**
+     * Sets the number of particles.
+     * @param numberOfParticles a positive {@code int} value.
+     */
+    public void setNumberOfParticles(int numberOfParticles) {
+        if (numberOfParticles < 1)
+            throw new IllegalArgumentException("The number of particles must be positive.");
+        this.numberOfParticles = numberOfParticles;
+        if (this.model != null)
+            this.allocate();
+    }
+
+    /**
+     * Returns the number of particles.
+     * @return an {@code int} value.
+     */
+    public int getNumberOfParticles() {
+        return numberOfParticles;
+    }
+
+    /**
+     * Sets the resampling threshold. The particles are resampled when the effective sample size is lower than this
+     * fraction of the number of particles, so a value of 1 resamples at every time step.
+     * @param resamplingThreshold a {@code double} value between 0 and 1.
+     */
+    public void setResamplingThreshold(double resamplingThreshold) {
+        if (resamplingThreshold < 0 || resamplingThreshold > 1)
+            throw new IllegalArgumentException("The resampling threshold must be between 0 and 1.");
+        this.resamplingThreshold = resamplingThreshold;
+    }
+
+    /**
+     * Sets the seed.
+     * @param seed an {@code int} that represents the seed value to be set.
+     */
+    public void setSeed(int seed) {
+        this.seed = seed;
+        if (this.model != null)
+            this.reset();
+    }
+
+    /**
+     * Sets the parallel processing mode.
+     * @param parallelMode {@code true} if the particles are propagated in parallel, {@code false} otherwise.
+     */
+    public void setParallelMode(boolean parallelMode) {
+        this.parallelMode = parallelMode;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setModel(DynamicBayesianNetwork model_) {
+        this.model = model_;
+        this.variables = this.model.getDynamicVariables().getListOfDynamicVariables();
+
+        slot = new int[2 * variables.size()];
+        for (int k = 0; k < variables.size(); k++) {
+            Variable var = variables.get(k);
+            slot[var.getVarID()] = k;
+            slot[var.getInterfaceVariable().getVarID()] = k;
+        }
+
+        orderTime0 = this.topologicalOrder(true);
+        orderTimeT = this.topologicalOrder(false);
+
+        this.allocate();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DynamicBayesianNetwork getOriginalModel() {
+        return this.model;
+    }
+
+    /**
+     * Sorts the variables so that their parents in the same time slice come first.
+     * @param time0 whether the order refers to the time slice 0.
+     * @return an array with the positions of the sorted variables.
+     */
+    private int[] topologicalOrder(boolean time0) {
+        int[] order = new int[variables.size()];
+        boolean[] added = new boolean[variables.size()];
+        for (int k = 0; k < order.length; k++) {
+            for (int i = 0; i < order.length; i++) {
+                if (added[i])
+                    continue;
+                Variable var = variables.get(i);
+                List<Variable> parents = time0 ? this.model.getDynamicDAG().getParentSetTime0(var).getParents()
+                        : this.model.getDynamicDAG().getParentSetTimeT(var).getParents();
+                if (parents.stream().allMatch(parent -> parent.isInterfaceVariable() || added[slot[parent.getVarID()]])) {
+                    order[k] = i;
+                    added[i] = true;
+                    break;
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Allocates the particle arrays.
+     */
+    private void allocate() {
+        particles = new Particles(variables.size(), numberOfParticles);
+        resampled = new Particles(variables.size(), numberOfParticles);
+        logIncrements = new double[numberOfParticles];
+        evidenceValues = new double[variables.size()];
+        randoms = new Random[(numberOfParticles + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        this.reset();
+    }
+
+    /**
+     * Returns the seed of the random generator of a block of particles, mixing the seed, the block and the stream
+     * (SplitMix64), so the generators of different blocks and streams are not correlated.
+     * @param seed an {@code int} that represents the seed value.
+     * @param block an {@code int} that represents the block of particles.
+     * @param stream a {@code long} that represents the stream: 0 for filtering, or the time ID plus 2 for the
+     *               predictions from that time step.
+     * @return a {@code long} seed.
+     */
+    private static long blockSeed(int seed, int block, long stream) {
+        long z = seed * 0x9E3779B97F4A7C15L + (block + 1) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = (z ^ (z >>> 31)) + (stream + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        this.timeID = -1;
+        this.sequenceID = -1;
+        this.assignment = null;
+        this.logProbabilityOfEvidence = 0;
+        this.resamplingRandom = new Random(seed);
+        for (int block = 0; block < randoms.length; block++) {
+            randoms[block] = new Random(blockSeed(seed, block, 0));
+        }
+        Arrays.fill(particles.weights, 1.0 / numberOfParticles);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addDynamicEvidence(DynamicAssignment assignment_) {
+        if (this.sequenceID != -1 && this.sequenceID != assignment_.getSequenceID())
+            throw new IllegalArgumentException("The sequence ID does not match. If you want to change the sequence, invoke reset method");
+
+        if (this.timeID >= assignment_.getTimeID())
+            throw new IllegalArgumentException("The provided assignment is not posterior to the previous provided assignment.");
+
+        this.sequenceID = assignment_.getSequenceID();
+        this.assignment = assignment_;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void runInference() {
+        if (this.assignment == null || this.assignment.getTimeID() == this.timeID)
+            return;
+
+        while (this.timeID + 1 < this.assignment.getTimeID())
+            this.filterStep(null);
+
+        this.filterStep(this.assignment);
+    }
+
+    /**
+     * Moves the particles one time step ahead.
+     * @param evidence the {@link Assignment} of the time step, or {@code null} if there is no evidence.
+     */
+    private void filterStep(Assignment evidence) {
+        boolean time0 = this.timeID == -1;
+
+        if (!time0 && this.effectiveSampleSize() < resamplingThreshold * numberOfParticles)
+            this.resample();
+
+        for (int k = 0; k < variables.size(); k++) {
+            evidenceValues[k] = (evidence == null) ? Utils.missingValue() : evidence.getValue(variables.get(k));
+        }
+
+        this.propagate(particles, evidenceValues, time0, randoms, logIncrements);
+
+        //The weights are updated with the increments shifted by their maximum to avoid underflow.
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < numberOfParticles; i++) {
+            max = Math.max(max, logIncrements[i]);
+        }
+        if (max == Double.NEGATIVE_INFINITY)
+            throw new IllegalStateException("All the particles have zero weight at time " + (this.timeID + 1) + ".");
+
+        double[] weights = particles.weights;
+        double sum = 0;
+        for (int i = 0; i < numberOfParticles; i++) {
+            weights[i] *= Math.exp(logIncrements[i] - max);
+            sum += weights[i];
+        }
+        for (int i = 0; i < numberOfParticles; i++) {
+            weights[i] /= sum;
+        }
+        this.logProbabilityOfEvidence += Math.log(sum) + max;
+
+        this.timeID++;
+    }
+
+    /**
+     * Samples the unobserved variables of the particles at the next time step, and computes the log-probability of
+     * the evidence of each particle.
+     * @param target the {@link Particles} to propagate.
+     * @param values the values of the evidence, indexed by variable position.
+     * @param time0 whether the next time step is the first one.
+     * @param blockRandoms the random number generators of the blocks of particles.
+     * @param increments the array where the log-probabilities of the evidence are stored.
+     */
+    private void propagate(Particles target, double[] values, boolean time0, Random[] blockRandoms, double[] increments) {
+        target.shift();
+
+        int[] order = time0 ? orderTime0 : orderTimeT;
+        IntStream blocks = IntStream.range(0, blockRandoms.length);
+        if (parallelMode)
+            blocks = blocks.parallel();
+
+        blocks.forEach(block -> {
+            Random random = blockRandoms[block];
+            ParticleAssignment particle = new ParticleAssignment(target);
+            int end = Math.min(numberOfParticles, (block + 1) * BLOCK_SIZE);
+            for (int i = block * BLOCK_SIZE; i < end; i++) {
+                particle.index = i;
+                double logIncrement = 0;
+                for (int k : order) {
+                    Variable var = variables.get(k);
+                    ConditionalDistribution dist = time0 ? this.model.getConditionalDistributionTime0(var)
+                            : this.model.getConditionalDistributionTimeT(var);
+                    if (Utils.isMissingValue(values[k])) {
+                        target.current[k][i] = dist.getUnivariateDistribution(particle).sample(random);
+                    } else {
+                        target.current[k][i] = values[k];
+                        logIncrement += dist.getLogConditionalProbability(particle);
+                    }
+                }
+                increments[i] = logIncrement;
+            }
+        });
+    }
+
+    /**
+     * Returns the effective sample size of the particles.
+     * @return a {@code double} value.
+     */
+    private double effectiveSampleSize() {
+        double sum = 0;
+        for (double weight : particles.weights) {
+            sum += weight * weight;
+        }
+        return 1.0 / sum;
+    }
+
+    /**
+     * Resamples the particles with systematic resampling and sets uniform weights.
+     */
+    private void resample() {
+        double[] weights = particles.weights;
+        double step = 1.0 / numberOfParticles;
+        double u = resamplingRandom.nextDouble() * step;
+        double cumulative = weights[0];
+        int source = 0;
+        for (int i = 0; i < numberOfParticles; i++) {
+            while (u > cumulative && source < numberOfParticles - 1) {
+                source++;
+                cumulative += weights[source];
+            }
+            for (int k = 0; k < variables.size(); k++) {
+                resampled.current[k][i] = particles.current[k][source];
+            }
+            u += step;
+        }
+
+        Particles tmp = particles;
+        particles = resampled;
+        resampled = tmp;
+        Arrays.fill(particles.weights, step);
+    }
+
+    /**
+     * Returns the estimate of the log-probability of the evidence provided since the last reset.
+     * @return a {@code double} value.
+     */
+    public double getLogProbabilityOfEvidence() {
+        return logProbabilityOfEvidence;
+    }
+
+    /**
+     * Estimates the posterior distribution of a variable from a set of weighted particles.
+     * @param source the {@link Particles} object.
+     * @param var a {@link Variable} object.
+     * @param <E> a class extending {@link UnivariateDistribution}.
+     * @return a {@link Multinomial} or {@link Normal} distribution.
+     */
+    private <E extends UnivariateDistribution> E estimate(Particles source, Variable var) {
+        double[] values = source.current[slot[var.getVarID()]];
+        double[] weights = source.weights;
+
+        if (var.isMultinomial()) {
+            double[] probabilities = new double[var.getNumberOfStates()];
+            for (int i = 0; i < numberOfParticles; i++) {
+                probabilities[(int) values[i]] += weights[i];
+            }
+            Multinomial multinomial = new Multinomial(var);
+            multinomial.setProbabilities(Utils.normalize(probabilities));
+            return (E) multinomial;
+        } else if (var.isNormal()) {
+            double mean = 0;
+            for (int i = 0; i < numberOfParticles; i++) {
+                mean += weights[i] * values[i];
+            }
+            double variance = 0;
+            for (int i = 0; i < numberOfParticles; i++) {
+                variance += weights[i] * (values[i] - mean) * (values[i] - mean);
+            }
+            Normal normal = new Normal(var);
+            normal.setMean(mean);
+            normal.setVariance(variance);
+            return (E) normal;
+        } else {
+            throw new UnsupportedOperationException("The posterior of " + var.getName() + " can not be estimated: " +
+                    "only multinomial and Gaussian variables are supported.");
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <E extends UnivariateDistribution> E getFilteredPosterior(Variable var) {
+        if (this.timeID == -1)
+            return this.getPredictivePosterior(var, 1);
+        return this.estimate(particles, var);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The particles are propagated with their own random number generators, so the filtered distributions do not
+     * depend on the calls to this method.
+     */
+    @Override
+    public <E extends UnivariateDistribution> E getPredictivePosterior(Variable var, int nTimesAhead) {
+        Particles predicted = new Particles(variables.size(), numberOfParticles);
+        predicted.copy(particles);
+
+        Random[] predictionRandoms = new Random[randoms.length];
+        for (int block = 0; block < randoms.length; block++) {
+            predictionRandoms[block] = new Random(blockSeed(seed, block, this.timeID + 2));
+        }
+
+        double[] missing = new double[variables.size()];
+        Arrays.fill(missing, Utils.missingValue());
+        double[] increments = new double[numberOfParticles];
+
+        for (int step = 0; step < nTimesAhead; step++) {
+            this.propagate(predicted, missing, this.timeID == -1 && step == 0, predictionRandoms, increments);
+        }
+
+        return this.estimate(predicted, var);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getTimeIDOfPosterior() {
+        return this.timeID;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getTimeIDOfLastEvidence() {
+        return (this.assignment == null) ? -1 : this.assignment.getTimeID();
+    }
+
+    /**
+     * This class stores the particles as a structure of arrays, with the values of each variable at the current and
+     * previous time steps and the normalized weights.
+     */
+    private static final class Particles {
+
+        /** Represents the values of the variables at the current time step, indexed by variable position and particle. */
+        private double[][] current;
+
+        /** Represents the values of the variables at the previous time step, indexed by variable position and particle. */
+        private double[][] previous;
+
+        /** Represents the normalized weights of the particles. */
+        private final double[] weights;
+
+        /**
+         * Creates a new set of particles.
+         * @param nVars the number of variables.
+         * @param nParticles the number of particles.
+         */
+        private Particles(int nVars, int nParticles) {
+            this.current = new double[nVars][nParticles];
+            this.previous = new double[nVars][nParticles];
+            this.weights = new double[nParticles];
+        }
+
+        /**
+         * Moves the current values to the previous ones, whose arrays are reused for the next values.
+         */
+        private void shift() {
+            double[][] tmp = previous;
+            previous = current;
+            current = tmp;
+        }
+
+        /**
+         * Copies the values and weights of other particles.
+         * @param other a {@link Particles} object.
+         */
+        private void copy(Particles other) {
+            for (int k = 0; k < current.length; k++) {
+                System.arraycopy(other.current[k], 0, current[k], 0, weights.length);
+                System.arraycopy(other.previous[k], 0, previous[k], 0, weights.length);
+            }
+            System.arraycopy(other.weights, 0, weights, 0, weights.length);
+        }
+    }
+
+    /**
+     * This class implements an {@link Assignment} view of a particle, where the interface variables refer to the
+     * values of the particle at the previous time step.
+     */
+    private final class ParticleAssignment implements Assignment {
+
+        /** Represents the particles. */
+        private final Particles target;
+
+        /** Represents the index of the particle. */
+        private int index;
+
+        /**
+         * Creates a new view of the given particles.
+         * @param target a {@link Particles} object.
+         */
+        private ParticleAssignment(Particles target) {
+            this.target = target;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public double getValue(Variable var) {
+            double[][] values = var.isInterfaceVariable() ? target.previous : target.current;
+            return values[slot[var.getVarID()]][index];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void setValue(Variable var, double value) {
+            double[][] values = var.isInterfaceVariable() ? target.previous : target.current;
+            values[slot[var.getVarID()]][index] = value;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Set<Variable> getVariables() {
+            throw new UnsupportedOperationException("The variables of this assignment are not available.");
+        }
+    }
+}
@@ -18,11 +18,22 @@
 package eu.amidst.dynamic.io;
 
 import eu.amidst.core.datastream.DataStream;
+import eu.amidst.dynamic.datastream.DataSequence;
+import eu.amidst.dynamic.datastream.DataSequenceStream;
 import eu.amidst.dynamic.datastream.DynamicDataInstance;
 import eu.amidst.core.datastream.filereaders.DataFileReader;
 import eu.amidst.dynamic.datastream.filereaders.DynamicDataStreamFromFile;
 import eu.amidst.core.datastream.filereaders.arffFileReader.ARFFDataReader;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 /**
  * This class allows to load a Dynamic Data Stream from disk.
  */
@@ -47,5 +58,35 @@ public class DynamicDataStreamLoader {
         return new DynamicDataStreamFromFile(dataFileReader);
     }
 
+    /**
+     * Loads a parallel {@link Stream} of {@link DataSequence} from a folder of ARFF files, where each file contains
+     * one or several whole sequences. Files are read concurrently, each one with its own data file reader, and the
+     * sequences of a file are never split across worker threads. All the files must share the same attributes.
+     * Each file is closed once its sequences have been consumed.
+     * @param folderPath the path of the folder containing the ARFF files.
+     * @return a parallel Stream<DataSequence> object.
+     */
+    public static Stream<DataSequence> openFolderOfSequences(String folderPath){
+        List<Path> files;
+        try (Stream<Path> paths = Files.list(Paths.get(folderPath))) {
+            files = paths.filter(path -> path.getFileName().toString().endsWith(".arff"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        if (files.isEmpty())
+            throw new IllegalArgumentException("The folder " + folderPath + " does not contain ARFF files.");
+
+        return files.parallelStream()
+                .flatMap(path -> {
+                    DataFileReader reader = new ARFFDataReader();
+                    reader.loadFromFile(path.toString());
+                    DataStream<DynamicDataInstance> dataStream = new DynamicDataStreamFromFile(reader);
+                    return DataSequenceStream.streamOfDataSequences(dataStream).onClose(dataStream::close);
+                });
+    }
+
 
 }
@@ -17,6 +17,8 @@ import eu.amidst.core.datastream.DataOnMemory;
 import eu.amidst.core.datastream.DataStream;
 import eu.amidst.core.exponentialfamily.SufficientStatistics;
 import eu.amidst.core.models.DAG;
+import eu.amidst.dynamic.datastream.DataSequence;
+import eu.amidst.dynamic.datastream.DataSequenceStream;
 import eu.amidst.dynamic.datastream.DynamicDataInstance;
 import eu.amidst.dynamic.exponentialfamily.EF_DynamicBayesianNetwork;
 import eu.amidst.dynamic.models.DynamicBayesianNetwork;
@@ -36,6 +38,12 @@ public class ParallelMaximumLikelihood implements ParameterLearningAlgorithm {
     /** Represents the batch size used for learning the parameters. */
     protected int windowsSize = 1000;
 
+    /** Represents the number of whole sequences handed to a worker thread in sequence-partitioned mode. */
+    protected int sequenceBatchSize = 16;
+
+    /** Indicates whether the parallel mode splits the data stream by sequence, initialized here as {@code false}. */
+    protected boolean sequencePartitionedMode = false;
+
     /** Indicates the parallel processing mode, initialized here as {@code true}. */
     protected boolean parallelMode = true;
 
@@ -92,6 +100,44 @@ public class ParallelMaximumLikelihood implements ParameterLearningAlgorithm {
         return windowsSize;
     }
 
+    /**
+     * Sets the number of whole sequences handed to a worker thread in sequence-partitioned mode.
+     * @param sequenceBatchSize a positive {@code int} value.
+     */
+    public void setSequenceBatchSize(int sequenceBatchSize) {
+        if (sequenceBatchSize < 1)
+            throw new IllegalArgumentException("The sequence batch size must be at least one.");
+        this.sequenceBatchSize = sequenceBatchSize;
+    }
+
+    /**
+     * Returns the number of whole sequences handed to a worker thread in sequence-partitioned mode.
+     * @return a positive {@code int} value.
+     */
+    public int getSequenceBatchSize() {
+        return sequenceBatchSize;
+    }
+
+    /**
+     * Sets the sequence-partitioned mode. In parallel mode, {@link #updateModel(DataStream)} processes batches of
+     * instances in parallel by default, which is valid because each {@link DynamicDataInstance} carries its past
+     * and present values. In sequence-partitioned mode, each worker thread receives whole sequences instead
+     * (see {@link #updateModelOnSequences(Stream)}), which suits streams of many short sequences. A stream holding
+     * a single long sequence is then learnt by a single thread.
+     * @param sequencePartitionedMode {@code true} to split the data stream by sequence, {@code false} otherwise.
+     */
+    public void setSequencePartitionedMode(boolean sequencePartitionedMode) {
+        this.sequencePartitionedMode = sequencePartitionedMode;
+    }
+
+    /**
+     * Tests whether the parallel mode splits the data stream by sequence.
+     * @return {@code true} if the sequence-partitioned mode is activated, {@code false} otherwise.
+     */
+    public boolean isSequencePartitionedMode() {
+        return sequencePartitionedMode;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -144,6 +190,9 @@ public class ParallelMaximumLikelihood implements ParameterLearningAlgorithm {
      */
     @Override
     public double updateModel(DataStream<DynamicDataInstance> dataStream) {
+        if (parallelMode && sequencePartitionedMode)
+            return this.updateModelOnSequences(DataSequenceStream.parallelStreamOfDataSequences(dataStream, sequenceBatchSize));
+
         Stream<DataOnMemory<DynamicDataInstance>> stream = null;
         if (parallelMode){
             stream = dataStream.parallelStreamOfBatches(windowsSize);
@@ -164,30 +213,34 @@ public class ParallelMaximumLikelihood implements ParameterLearningAlgorithm {
         return Double.NaN;
     }
 
+    /**
+     * Updates the model using a stream of whole {@link DataSequence} objects. Each worker thread of a parallel
+     * stream accumulates the time 0 and time T sufficient statistics of the sequences it receives in its own
+     * accumulator, and the accumulators are only merged once per thread. The given stream can be obtained, for
+     * example, from {@link DataSequenceStream#parallelStreamOfDataSequences(DataStream, int)} or from
+     * {@link eu.amidst.dynamic.io.DynamicDataStreamLoader#openFolderOfSequences(String)}.
+     * @param sequences a {@link Stream} of {@link DataSequence} objects.
+     * @return a {@code double} value (always {@code Double.NaN}, as in {@link #updateModel(DataStream)}).
+     */
+    public double updateModelOnSequences(Stream<DataSequence> sequences) {
+        SequenceAccumulator accumulator = sequences.collect(() -> new SequenceAccumulator(efBayesianNetwork),
+                SequenceAccumulator::accept, SequenceAccumulator::combine);
+
+        sumSS.sum(accumulator.sumSS);
+        dataInstanceCount.addAndGet(accumulator.numberOfInstances);
+
+        if (debug) System.out.println("Parallel ML procesando "+(int)dataInstanceCount.get() +" instances");
+
+        return Double.NaN;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void runLearning() {
-
         this.initLearning();
-
-        Stream<DataOnMemory<DynamicDataInstance>> stream = null;
-        if (parallelMode){
-            stream = dataStream.parallelStreamOfBatches(windowsSize);
-        }else{
-            stream = dataStream.streamOfBatches(windowsSize);
-        }
-        sumSS.sum(stream
-                .peek(batch -> {
-                    dataInstanceCount.getAndAdd(batch.getNumberOfDataInstances());
-                    if (debug) System.out.println("Parallel ML procesando "+(int)dataInstanceCount.get() +" instances");
-                })
-                .map(batch ->  batch.stream()
-                                    .map(efBayesianNetwork::getSufficientStatistics)
-                                    .reduce(SufficientStatistics::sumVectorNonStateless)
-                                    .get())
-                .reduce(SufficientStatistics::sumVectorNonStateless).get());
+        this.updateModel(dataStream);
     }
 
     /**
@@ -235,4 +288,48 @@ public class ParallelMaximumLikelihood implements ParameterLearningAlgorithm {
     public void setOutput(boolean activateOutput) {
 
     }
+
+    /**
+     * This class accumulates the sufficient statistics of whole sequences on a single worker thread.
+     */
+    private static final class SequenceAccumulator {
+
+        /** Represents the {@link EF_DynamicBayesianNetwork} used to compute the sufficient statistics. */
+        private final EF_DynamicBayesianNetwork efBayesianNetwork;
+
+        /** Represents the accumulated time 0 and time T sufficient statistics. */
+        private final SufficientStatistics sumSS;
+
+        /** Represents the number of accumulated data instances. */
+        private long numberOfInstances = 0;
+
+        /**
+         * Creates a new zeroed accumulator.
+         * @param efBayesianNetwork an {@link EF_DynamicBayesianNetwork} object.
+         */
+        SequenceAccumulator(EF_DynamicBayesianNetwork efBayesianNetwork) {
+            this.efBayesianNetwork = efBayesianNetwork;
+            this.sumSS = efBayesianNetwork.createZeroSufficientStatistics();
+        }
+
+        /**
+         * Adds the sufficient statistics of all the instances of a sequence.
+         * @param sequence a {@link DataSequence} object.
+         */
+        void accept(DataSequence sequence) {
+            for (DynamicDataInstance instance : sequence) {
+                sumSS.sum(efBayesianNetwork.getSufficientStatistics(instance));
+                numberOfInstances++;
+            }
+        }
+
+        /**
+         * Merges another accumulator into this one.
+         * @param other a {@link SequenceAccumulator} object.
+         */
+        void combine(SequenceAccumulator other) {
+            sumSS.sum(other.sumSS);
+            numberOfInstances += other.numberOfInstances;
+        }
+    }
 }
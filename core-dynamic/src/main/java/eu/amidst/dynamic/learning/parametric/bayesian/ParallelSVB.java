@@ -0,0 +1,370 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ */
+package eu.amidst.dynamic.learning.parametric.bayesian;
+
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.datastream.DataOnMemoryListContainer;
+import eu.amidst.core.datastream.DataStream;
+import eu.amidst.core.exponentialfamily.EF_UnivariateDistribution;
+import eu.amidst.core.learning.parametric.bayesian.SVB.BatchOutput;
+import eu.amidst.core.utils.CompoundVector;
+import eu.amidst.core.utils.Serialization;
+import eu.amidst.dynamic.datastream.DynamicDataInstance;
+import eu.amidst.dynamic.models.DynamicBayesianNetwork;
+import eu.amidst.dynamic.models.DynamicDAG;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * This class implements the {@link BayesianLearningAlgorithm} interface.
+ * It defines a parallel implementation of the Dynamic Streaming Variational Bayes (SVB) algorithm for data made of
+ * many (short) sequences, which may be interleaved in the data stream.
+ *
+ * <p> The instances are grouped into windows of consecutive instances of the same sequence. Each round processes
+ * up to {@code nCores} windows of different sequences concurrently, each one in the plateau of its own {@link SVB}
+ * engine. As in {@link eu.amidst.core.learning.parametric.bayesian.ParallelSVB}, the posterior deltas of the windows
+ * of a round are summed and added to the priors of all the engines. The distributions of the interface variables
+ * at the end of each window are kept per sequence, so the next window of a sequence continues from them whichever
+ * engine processes it. </p>
+ *
+ * <p> The number of open windows, i.e., windows which are not complete yet, is bounded. When a new sequence starts
+ * and the bound is reached, the oldest open window is processed as a partial window, so the memory used does not
+ * depend on the number of interleaved sequences. </p>
+ */
+public class ParallelSVB implements BayesianLearningAlgorithm {
+
+    /** Represents the data stream to be used for parameter learning. */
+    DataStream<DynamicDataInstance> dataStream;
+
+    /** Represents the set of SVB engines. */
+    SVB[] svbEngines;
+
+    /** Represents a dynamic directed acyclic graph {@link DynamicDAG}. */
+    DynamicDAG dag;
+
+    /** Represents the number of used CPU cores. */
+    int nCores = -1;
+
+    /** Represents a {@link SVB} object. */
+    SVB SVBEngine = new SVB();
+
+    /** Represents the log likelihood. */
+    double logLikelihood;
+
+    /** Represents the seed, initialized to 0. */
+    int seed = 0;
+
+    /**
+     * Represents the distributions of the interface variables at the end of the last window of each sequence, in
+     * the order the sequences were last updated.
+     */
+    Map<Long, EF_UnivariateDistribution[]> interfaceDistributions = new LinkedHashMap<>();
+
+    /** Represents the maximum number of open windows, initialized to -1 (i.e., twice the number of cores). */
+    int maxOpenWindows = -1;
+
+    /** Represents the maximum number of sequences whose interface distributions are kept, initialized to -1 (i.e., no bound). */
+    int maxSequences = -1;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setSeed(int seed_){
+        seed = seed_;
+    }
+
+    /**
+     * Sets the number of CPU cores, i.e., the maximum number of windows processed in each round.
+     * @param nCores the number of CPU cores.
+     */
+    public void setNCores(int nCores) {
+        this.nCores = nCores;
+    }
+
+    /**
+     * Sets the maximum number of open windows. When a new sequence starts and this bound is reached, the oldest open
+     * window is processed, even if it has less instances than the window size. By default, it is equal to twice the
+     * number of cores.
+     * @param maxOpenWindows the maximum number of open windows, at least 1.
+     */
+    public void setMaxOpenWindows(int maxOpenWindows) {
+        if (maxOpenWindows < 1)
+            throw new IllegalArgumentException("The maximum number of open windows must be at least 1");
+        this.maxOpenWindows = maxOpenWindows;
+    }
+
+    /**
+     * Sets the maximum number of sequences whose distributions of the interface variables are kept. When the bound
+     * is exceeded, the state of the least recently updated sequence is removed, as in {@link #removeSequence(long)},
+     * so the memory used does not depend on the number of sequences of an unbounded stream. If a removed sequence
+     * appears again, its next window starts from the uninformative distributions. By default, there is no bound.
+     * @param maxSequences the maximum number of kept sequences, at least 1, or -1 for no bound.
+     */
+    public void setMaxSequences(int maxSequences) {
+        if (maxSequences < 1 && maxSequences != -1)
+            throw new IllegalArgumentException("The maximum number of sequences must be at least 1, or -1 for no bound");
+        this.maxSequences = maxSequences;
+    }
+
+    /**
+     * Returns the IDs of the sequences whose distributions of the interface variables are kept.
+     * @return an unmodifiable {@code Set} of sequence IDs.
+     */
+    public Set<Long> getSequenceIDs() {
+        return Collections.unmodifiableSet(this.interfaceDistributions.keySet());
+    }
+
+    /**
+     * Removes the distributions of the interface variables kept for a sequence. It should be called once the last
+     * window of a sequence has been processed, so the state of the finished sequences is not kept. If the sequence
+     * appears again, its next window starts from the uninformative distributions.
+     * @param sequenceID the ID of the sequence.
+     */
+    public void removeSequence(long sequenceID) {
+        this.interfaceDistributions.remove(sequenceID);
+    }
+
+    /**
+     * Returns the SVB engine.
+     * @return the SVB engine.
+     */
+    public SVB getSVBEngine() {
+        return SVBEngine;
+    }
+
+    /**
+     * Sets the SVB engine, which is copied for each core in {@link #initLearning()}.
+     * @param SVBEngine the SVB engine.
+     */
+    public void setSVBEngine(SVB SVBEngine) {
+        this.SVBEngine = SVBEngine;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void initLearning() {
+        if (this.nCores==-1)
+            this.nCores=Runtime.getRuntime().availableProcessors();
+
+        this.SVBEngine.setDynamicDAG(this.dag);
+        this.SVBEngine.setSeed(this.seed);
+        this.SVBEngine.initLearning();
+
+        svbEngines = new SVB[nCores];
+
+        for (int i = 0; i < nCores; i++) {
+            svbEngines[i] = Serialization.deepCopy(this.SVBEngine);
+            svbEngines[i].initLearning();
+        }
+
+        this.SVBEngine=svbEngines[0];
+        this.interfaceDistributions = new LinkedHashMap<>();
+        this.logLikelihood = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double updateModel(DataOnMemory<DynamicDataInstance> batch) {
+        throw new UnsupportedOperationException("Use standard dynamic SVB for sequential updating");
+    }
+
+    /**
+     * {@inheritDoc}
+     * The windows of the sequences which are not complete at the end of the data stream are also processed, and the
+     * distributions of the interface variables of all the sequences are kept for the next call, see
+     * {@link #removeSequence(long)} and {@link #setMaxSequences(int)}.
+     */
+    @Override
+    public double updateModel(DataStream<DynamicDataInstance> dataStream) {
+        int windowsSize = this.getWindowsSize();
+        int maxOpen = (this.maxOpenWindows == -1) ? 2 * nCores : this.maxOpenWindows;
+        Map<Long, List<DynamicDataInstance>> openWindows = new LinkedHashMap<>();
+        Deque<List<DynamicDataInstance>> readyWindows = new ArrayDeque<>();
+        double elbo = 0;
+
+        for (DynamicDataInstance instance : dataStream) {
+            List<DynamicDataInstance> window = openWindows.get(instance.getSequenceID());
+            if (window == null) {
+                if (openWindows.size() == maxOpen) {
+                    //The oldest open window is processed as a partial window
+                    Iterator<List<DynamicDataInstance>> oldest = openWindows.values().iterator();
+                    readyWindows.add(oldest.next());
+                    oldest.remove();
+                }
+                window = new ArrayList<>(windowsSize);
+                openWindows.put(instance.getSequenceID(), window);
+            }
+            window.add(instance);
+            if (window.size() == windowsSize) {
+                openWindows.remove(instance.getSequenceID());
+                readyWindows.add(window);
+            }
+            if (readyWindows.size() >= nCores)
+                elbo += this.updateModelOnRound(dataStream, readyWindows);
+        }
+
+        readyWindows.addAll(openWindows.values());
+        while (!readyWindows.isEmpty())
+            elbo += this.updateModelOnRound(dataStream, readyWindows);
+
+        this.logLikelihood += elbo;
+        return elbo;
+    }
+
+    /**
+     * Processes a round of windows of different sequences in parallel and merges their posterior deltas.
+     * @param dataStream the {@link DataStream} the windows come from.
+     * @param readyWindows the {@code Deque} of complete windows, from which the windows of the round are removed.
+     *                     A window is only taken if no previous window of its sequence is left in the queue.
+     * @return the log probability of the evidence of the round.
+     */
+    private double updateModelOnRound(DataStream<DynamicDataInstance> dataStream, Deque<List<DynamicDataInstance>> readyWindows) {
+        List<List<DynamicDataInstance>> round = new ArrayList<>(nCores);
+        Set<Long> sequences = new HashSet<>();
+        Iterator<List<DynamicDataInstance>> iterator = readyWindows.iterator();
+        while (iterator.hasNext() && round.size() < nCores) {
+            List<DynamicDataInstance> window = iterator.next();
+            if (sequences.add(window.get(0).getSequenceID())) {
+                round.add(window);
+                iterator.remove();
+            }
+        }
+
+        BatchOutput[] outputs = new BatchOutput[round.size()];
+        EF_UnivariateDistribution[][] states = new EF_UnivariateDistribution[round.size()][];
+        IntStream.range(0, round.size()).parallel().forEach(i -> {
+            List<DynamicDataInstance> window = round.get(i);
+            SVB engine = this.svbEngines[i];
+            if (window.get(0).getTimeID() != 0)
+                engine.getPlateauStructure().setInterfaceDistributions(this.interfaceDistributions.get(window.get(0).getSequenceID()));
+            outputs[i] = engine.updateModelOnBatchParallel(new DataOnMemoryListContainer<>(dataStream.getAttributes(), window));
+            states[i] = engine.getPlateauStructure().getInterfaceDistributions();
+        });
+
+        BatchOutput out = outputs[0];
+        for (int i = 1; i < outputs.length; i++) {
+            out = BatchOutput.sumNonStateless(outputs[i], out);
+        }
+
+        CompoundVector posterior = this.svbEngines[0].getNaturalParameterPrior();
+        posterior.sum(out.getVector());
+        for (SVB engine : this.svbEngines) {
+            engine.updateNaturalParameterPrior(posterior);
+        }
+
+        for (int i = 0; i < round.size(); i++) {
+            //The sequence is moved to the end, so the map is kept in order of last update
+            long sequenceID = round.get(i).get(0).getSequenceID();
+            this.interfaceDistributions.remove(sequenceID);
+            this.interfaceDistributions.put(sequenceID, states[i]);
+        }
+
+        if (this.maxSequences != -1) {
+            Iterator<Long> eldest = this.interfaceDistributions.keySet().iterator();
+            while (this.interfaceDistributions.size() > this.maxSequences) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+
+        return out.getElbo();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void runLearning() {
+        this.initLearning();
+        this.updateModel(this.dataStream);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getWindowsSize() {
+        return this.SVBEngine.getWindowsSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setWindowsSize(int windowsSize) {
+        this.SVBEngine.setWindowsSize(windowsSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getLogMarginalProbability() {
+        return this.logLikelihood;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDynamicDAG(DynamicDAG dag) {
+        this.dag = dag;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDataStream(DataStream<DynamicDataInstance> data) {
+        this.dataStream = data;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DynamicBayesianNetwork getLearntDBN() {
+        return this.svbEngines[0].getLearntDBN();
+    }
+
+    /**
+     * {@inheritDoc}
+     * The windows are always processed in parallel, use {@link #setNCores(int)} to set the number of windows of
+     * each round.
+     */
+    @Override
+    public void setParallelMode(boolean parallelMode) {
+
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setOutput(boolean activateOutput) {
+        this.SVBEngine.setOutput(activateOutput);
+    }
+}
@@ -11,6 +11,9 @@
 package eu.amidst.dynamic.learning.parametric.bayesian;
 
 import eu.amidst.core.exponentialfamily.EF_ConditionalDistribution;
+import eu.amidst.core.exponentialfamily.NaturalParameters;
+import eu.amidst.core.utils.CompoundVector;
+import eu.amidst.core.utils.Vector;
 import eu.amidst.dynamic.datastream.DynamicDataInstance;
 import eu.amidst.core.exponentialfamily.EF_LearningBayesianNetwork;
 import eu.amidst.core.exponentialfamily.EF_UnivariateDistribution;
@@ -19,6 +22,7 @@ import eu.amidst.core.inference.messagepassing.Node;
 import eu.amidst.dynamic.models.DynamicDAG;
 import eu.amidst.core.variables.Variable;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -28,7 +32,10 @@ import java.util.stream.Collectors;
 /**
  * This class defines a Plateau Structure.
  */
-public class PlateauStructure {
+public class PlateauStructure implements Serializable {
+
+    /** Represents the serial version ID for serializing the object. */
+    private static final long serialVersionUID = 6284839403815216483L;
 
     /* Represents the list of parameters {@link Node}s at time 0. */
     List<Node> parametersNodeTime0;
@@ -78,6 +85,9 @@ public class PlateauStructure {
     /** Represents the list of {@code Map} objects that map {@link Variable}s to the corresponding {@link Node}s at time T. */
     List<Map<Variable, Node>> variablesToNodeTimeT;
 
+    /** Represents the index of the last slice with evidence at time T. */
+    int lastSliceTimeT;
+
     /**
      * Resets the exponential family distributions of all nodes for the {@link VMP} objects at time 0 and T for this DynamicPlateauStructure.
      */
@@ -154,7 +164,7 @@ public class PlateauStructure {
      */
     public void runInferenceTimeT() {
         this.vmpTimeT.runInference();
-        this.plateuNodesTimeT.get(this.nRepetitions-1).stream().filter(node -> !node.isObserved() && !node.getMainVariable().isParameterVariable()).forEach(node -> {
+        this.plateuNodesTimeT.get(this.lastSliceTimeT).stream().filter(node -> !node.isObserved() && !node.getMainVariable().isParameterVariable()).forEach(node -> {
             Variable temporalClone = this.dbnModel.getDynamicVariables().getInterfaceVariable(node.getMainVariable());
             moveNodeQDist(this.getNodeOfVarTimeT(temporalClone,0), node);
         });
@@ -311,6 +321,7 @@ public class PlateauStructure {
         }
 
         this.vmpTimeT.setNodes(allNodesTimeT);
+        this.lastSliceTimeT = nRepetitions - 1;
     }
 
     /**
@@ -330,6 +341,7 @@ public class PlateauStructure {
             throw new IllegalArgumentException("The size of the data is bigger than the number of repetitions");
 
         this.cloneNodesTimeT.forEach( node -> node.setAssignment(data.get(0)));
+        this.lastSliceTimeT = Math.min(data.size(), nRepetitions) - 1;
 
         for (int i = 0; i < nRepetitions && i<data.size(); i++) {
             final int slice = i;
@@ -412,4 +424,129 @@ public class PlateauStructure {
         return (E)this.parametersToNodeTime0.get(var).getQDist();
     }
 
-}
\ No newline at end of file
+    /**
+     * Returns the distributions of the interface variables at time T, i.e., the posteriors of the last slice
+     * moved to the temporal clones, in the order of the dynamic variables.
+     * @return an array of {@link EF_UnivariateDistribution} objects.
+     */
+    public EF_UnivariateDistribution[] getInterfaceDistributions() {
+        EF_UnivariateDistribution[] distributions = new EF_UnivariateDistribution[this.cloneNodesTimeT.size()];
+        for (int i = 0; i < distributions.length; i++) {
+            distributions[i] = ((EF_UnivariateDistribution) this.cloneNodesTimeT.get(i).getPDist()).deepCopy();
+        }
+        return distributions;
+    }
+
+    /**
+     * Sets the distributions of the interface variables at time T, e.g., to continue a sequence whose previous
+     * window was processed by another plateau.
+     * @param distributions an array of {@link EF_UnivariateDistribution} objects as returned by
+     *                      {@link #getInterfaceDistributions()}, or {@code null} to set non-informative distributions.
+     */
+    public void setInterfaceDistributions(EF_UnivariateDistribution[] distributions) {
+        for (int i = 0; i < this.cloneNodesTimeT.size(); i++) {
+            Node node = this.cloneNodesTimeT.get(i);
+            EF_UnivariateDistribution uni = (distributions == null) ?
+                    node.getMainVariable().getDistributionType().newUnivariateDistribution().toEFUnivariateDistribution() :
+                    distributions[i].deepCopy();
+            node.setPDist(uni);
+            node.setQDist(uni);
+        }
+    }
+
+    /**
+     * Returns the natural parameters of the priors of the parameter variables at time 0, followed by those at time T.
+     * @return a {@link CompoundVector} object.
+     */
+    public CompoundVector getNaturalParameterPrior() {
+        List<Vector> vectors = new ArrayList<>();
+        for (Variable var : this.ef_learningmodelTime0.getParametersVariables()) {
+            vectors.add(copyNaturalParameters(this.ef_learningmodelTime0.getDistribution(var)));
+        }
+        for (Variable var : this.ef_learningmodelTimeT.getParametersVariables()) {
+            vectors.add(copyNaturalParameters(this.ef_learningmodelTimeT.getDistribution(var)));
+        }
+        return new CompoundVector(vectors);
+    }
+
+    /**
+     * Returns the difference between the natural parameters of the posteriors and the priors of the parameter
+     * variables at time 0, followed by those at time T. The differences of the time slices whose inference was not
+     * run since the priors were set are zero.
+     * @param updatedTime0 {@code true} if the inference at time 0 was run, {@code false} otherwise.
+     * @param updatedTimeT {@code true} if the inference at time T was run, {@code false} otherwise.
+     * @return a {@link CompoundVector} object.
+     */
+    public CompoundVector getNaturalParameterPosteriorDelta(boolean updatedTime0, boolean updatedTimeT) {
+        List<Vector> vectors = new ArrayList<>();
+        for (Variable var : this.ef_learningmodelTime0.getParametersVariables()) {
+            vectors.add(naturalParameterDelta(this.ef_learningmodelTime0.getDistribution(var),
+                    this.getEFParameterPosteriorTime0(var), updatedTime0));
+        }
+        for (Variable var : this.ef_learningmodelTimeT.getParametersVariables()) {
+            vectors.add(naturalParameterDelta(this.ef_learningmodelTimeT.getDistribution(var),
+                    this.getEFParameterPosteriorTimeT(var), updatedTimeT));
+        }
+        return new CompoundVector(vectors);
+    }
+
+    /**
+     * Sets the natural parameters of the priors of the parameter variables at time 0, followed by those at time T.
+     * @param parameterVector a {@link CompoundVector} object as returned by {@link #getNaturalParameterPrior()}.
+     */
+    public void updateNaturalParameterPrior(CompoundVector parameterVector) {
+        int count = 0;
+        for (Variable var : this.ef_learningmodelTime0.getParametersVariables()) {
+            EF_UnivariateDistribution uni = this.newPrior(this.ef_learningmodelTime0.getDistribution(var), parameterVector.getVectorByPosition(count++));
+            this.ef_learningmodelTime0.setDistribution(var, uni);
+            this.getNodeOfVarTime0(var).setPDist(uni);
+        }
+        for (Variable var : this.ef_learningmodelTimeT.getParametersVariables()) {
+            EF_UnivariateDistribution uni = this.newPrior(this.ef_learningmodelTimeT.getDistribution(var), parameterVector.getVectorByPosition(count++));
+            this.ef_learningmodelTimeT.setDistribution(var, uni);
+            this.getNodeOfVarTimeT(var, 0).setPDist(uni);
+        }
+    }
+
+    /**
+     * Creates a copy of a prior distribution with the given natural parameters.
+     * @param prior an {@link EF_UnivariateDistribution} object.
+     * @param parameters a {@link Vector} object.
+     * @return an {@link EF_UnivariateDistribution} object.
+     */
+    private EF_UnivariateDistribution newPrior(EF_UnivariateDistribution prior, Vector parameters) {
+        EF_UnivariateDistribution uni = prior.deepCopy();
+        uni.getNaturalParameters().copy(parameters);
+        uni.fixNumericalInstability();
+        uni.updateMomentFromNaturalParameters();
+        return uni;
+    }
+
+    /**
+     * Returns a copy of the natural parameters of a distribution.
+     * @param dist an {@link EF_UnivariateDistribution} object.
+     * @return a {@link NaturalParameters} object.
+     */
+    private static NaturalParameters copyNaturalParameters(EF_UnivariateDistribution dist) {
+        NaturalParameters copy = dist.createZeroNaturalParameters();
+        copy.copy(dist.getNaturalParameters());
+        return copy;
+    }
+
+    /**
+     * Returns the difference between the natural parameters of a posterior and a prior distribution.
+     * @param prior an {@link EF_UnivariateDistribution} object.
+     * @param posterior an {@link EF_UnivariateDistribution} object.
+     * @param updated {@code false} to return a zero vector.
+     * @return a {@link NaturalParameters} object.
+     */
+    private static NaturalParameters naturalParameterDelta(EF_UnivariateDistribution prior, EF_UnivariateDistribution posterior, boolean updated) {
+        NaturalParameters delta = prior.createZeroNaturalParameters();
+        if (updated) {
+            delta.copy(posterior.getNaturalParameters());
+            delta.substract(prior.getNaturalParameters());
+        }
+        return delta;
+    }
+
+}
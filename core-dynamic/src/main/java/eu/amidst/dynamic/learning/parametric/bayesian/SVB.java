@@ -14,11 +14,15 @@ import eu.amidst.core.datastream.DataOnMemory;
 import eu.amidst.core.datastream.DataStream;
 import eu.amidst.core.exponentialfamily.EF_LearningBayesianNetwork;
 import eu.amidst.core.exponentialfamily.EF_UnivariateDistribution;
+import eu.amidst.core.learning.parametric.bayesian.SVB.BatchOutput;
+import eu.amidst.core.utils.CompoundVector;
 import eu.amidst.core.variables.Variable;
 import eu.amidst.dynamic.datastream.DynamicDataInstance;
 import eu.amidst.dynamic.models.DynamicBayesianNetwork;
 import eu.amidst.dynamic.models.DynamicDAG;
 
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -28,7 +32,10 @@ import java.util.List;
  * TODO: By iterating several times over the data we can get better approximations.
  * TODO: Trick. Initialize the Q's of the parameters variables with the final posterios in the previous iterations.
  */
-public class SVB implements BayesianLearningAlgorithm {
+public class SVB implements BayesianLearningAlgorithm, Serializable {
+
+    /** Represents the serial version ID for serializing the object. */
+    private static final long serialVersionUID = -3170318349375327658L;
 
     /** Represents an {@link EF_LearningBayesianNetwork} object at time 0. */
     EF_LearningBayesianNetwork ef_extendedBNTime0;
@@ -43,7 +50,7 @@ public class SVB implements BayesianLearningAlgorithm {
     DynamicDAG dag;
 
     /** Represents the data stream to be used for parameter learning. */
-    DataStream<DynamicDataInstance> dataStream;
+    transient DataStream<DynamicDataInstance> dataStream;
 
     /** Represents the Evidence Lower BOund (elbo). */
     double elbo;
@@ -187,6 +194,54 @@ public class SVB implements BayesianLearningAlgorithm {
         return logprob;
     }
 
+    /**
+     * Runs inference on a window of a sequence without updating the priors, as in
+     * {@link eu.amidst.core.learning.parametric.bayesian.SVB#updateModelOnBatchParallel}. The window is processed
+     * from the current distributions of the interface variables, see
+     * {@link PlateauStructure#setInterfaceDistributions(EF_UnivariateDistribution[])}, unless it starts at time 0.
+     * @param batch a {@link DataOnMemory} object with consecutive instances of a sequence.
+     * @return a {@link BatchOutput} object with the difference between the posterior and the prior natural
+     * parameters (time 0 followed by time T) and the log probability of the evidence.
+     */
+    public BatchOutput updateModelOnBatchParallel(DataOnMemory<DynamicDataInstance> batch) {
+
+        List<DynamicDataInstance> data = new ArrayList<>(batch.getList());
+        double logprob = 0;
+        boolean updatedTime0 = false;
+        if (data.get(0).getTimeID()==0){
+            this.plateauStructure.setEvidenceTime0(data.get(0));
+            this.plateauStructure.runInferenceTime0();
+            logprob+=this.plateauStructure.getLogProbabilityOfEvidenceTime0();
+            updatedTime0 = true;
+            data.remove(0);
+        }
+
+        boolean updatedTimeT = !data.isEmpty();
+        if (updatedTimeT) {
+            this.plateauStructure.setEvidenceTimeT(data);
+            this.plateauStructure.runInferenceTimeT();
+            logprob+=this.plateauStructure.getLogProbabilityOfEvidenceTimeT();
+        }
+
+        return new BatchOutput(this.plateauStructure.getNaturalParameterPosteriorDelta(updatedTime0, updatedTimeT), logprob);
+    }
+
+    /**
+     * Returns the natural parameters of the priors at time 0, followed by those at time T.
+     * @return a {@link CompoundVector} object.
+     */
+    public CompoundVector getNaturalParameterPrior() {
+        return this.plateauStructure.getNaturalParameterPrior();
+    }
+
+    /**
+     * Updates the natural parameters of the priors at time 0 and T.
+     * @param parameterVector a {@link CompoundVector} object as returned by {@link #getNaturalParameterPrior()}.
+     */
+    public void updateNaturalParameterPrior(CompoundVector parameterVector) {
+        this.plateauStructure.updateNaturalParameterPrior(parameterVector);
+    }
+
     /**
      * Updates the model at time 0 using a given {@link DynamicDataInstance}.
      * @param dataInstance a {@link DynamicDataInstance} object.
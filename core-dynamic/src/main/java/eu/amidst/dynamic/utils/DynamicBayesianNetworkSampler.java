@@ -20,6 +20,7 @@ package eu.amidst.dynamic.utils;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.Sets;
 import eu.amidst.core.datastream.Attribute;
+import eu.amidst.core.datastream.filereaders.arffFileReader.ARFFDataWriter;
 import eu.amidst.core.io.DataStreamWriter;
 import eu.amidst.dynamic.models.DynamicBayesianNetwork;
 import eu.amidst.core.utils.LocalRandomGenerator;
@@ -32,6 +33,9 @@ import eu.amidst.dynamic.datastream.DynamicDataInstance;
 import eu.amidst.core.variables.HashMapAssignment;
 import eu.amidst.core.variables.Variable;
 
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -64,6 +68,12 @@ public class DynamicBayesianNetworkSampler {
     /** Represents a {@code Map} containing the noisy variables. */
     private Map<Variable, Double> marNoise = new HashMap();
 
+    /** Represents the processing mode, either parallel (i.e., true) or not. */
+    private boolean parallelMode = false;
+
+    /** Represents the number of rows sampled together, in parallel mode, before they are handed to the consumer. */
+    private static final int ROWS_PER_BLOCK = 1 << 16;
+
     /**
      * Creates a new DynamicBayesianNetworkSampler given an input {@link DynamicBayesianNetwork} object.
      * @param network1 an input {@link DynamicBayesianNetwork} object.
@@ -131,6 +141,17 @@ public class DynamicBayesianNetworkSampler {
         random = new Random(seed);
     }
 
+    /**
+     * Sets the parallel mode. In parallel mode, sequences are sampled concurrently and each one uses its own random
+     * generator, derived from the seed and the sequence ID, so the sampled data does not depend on the number of
+     * threads. Values are written into primitive row buffers instead of {@link HashMapAssignment} objects. For a given
+     * seed, the data differs from the one sampled in sequential mode.
+     * @param parallelMode true if the parallel mode is activated, false otherwise.
+     */
+    public void setParallelMode(boolean parallelMode) {
+        this.parallelMode = parallelMode;
+    }
+
     /**
      * Returns a {@code DataStream} of randomly sampled {@link DynamicAssignment}s.
      * @param nSequences an {@code int} that represents the number of sequences.
@@ -142,6 +163,130 @@ public class DynamicBayesianNetworkSampler {
         return new TemporalDataStream(this,nSequences,sequenceLength);
     }
 
+    /**
+     * Samples a number of sequences and writes them straight to an ARFF file, without keeping them in memory. In
+     * parallel mode, blocks of sequences are sampled and formatted concurrently and written in sequence ID order.
+     * @param nSequences an {@code int} that represents the number of sequences.
+     * @param sequenceLength an {@code int} that represents the length of each sequence.
+     * @param path the path of the ARFF file.
+     * @throws IOException in case of an error when writing to file.
+     */
+    public void sampleToFile(int nSequences, int sequenceLength, String path) throws IOException {
+        random = new Random(seed);
+        TemporalDataStream dataStream = new TemporalDataStream(this, nSequences, sequenceLength);
+        Attributes atts = dataStream.getAttributes();
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(path))) {
+            writer.write("@relation dataset\n\n");
+            for (Attribute att : atts) {
+                writer.write(ARFFDataWriter.attributeToARFFString(att) + "\n");
+            }
+            writer.write("\n\n@data\n\n");
+
+            if (!parallelMode) {
+                for (DynamicDataInstance instance : (DataStream<DynamicDataInstance>) dataStream) {
+                    writer.write(ARFFDataWriter.dataInstanceToARFFString(atts, instance) + "\n");
+                }
+                return;
+            }
+
+            int sequencesPerBlock = Math.max(1, ROWS_PER_BLOCK / Math.max(1, sequenceLength));
+            for (int first = 0; first < nSequences; first += sequencesPerBlock) {
+                int last = Math.min(nSequences, first + sequencesPerBlock);
+                String[] lines = IntStream.range(first, last).parallel()
+                        .mapToObj(sequenceID -> {
+                            StringBuilder builder = new StringBuilder();
+                            for (DynamicDataInstance instance : sampleSequence(atts, sequenceID, sequenceLength))
+                                builder.append(ARFFDataWriter.dataInstanceToARFFString(atts, instance)).append('\n');
+                            return builder.toString();
+                        })
+                        .toArray(String[]::new);
+                for (String line : lines)
+                    writer.write(line);
+            }
+        }
+    }
+
+    /**
+     * Returns a sequential {@code Stream} of randomly sampled {@link DynamicDataInstance}s, whose sequences are sampled
+     * concurrently in blocks of about {@link #ROWS_PER_BLOCK} rows.
+     * @param atts the {@link Attributes} of the sampled data.
+     * @param nSequences an {@code int} that represents the number of sequences.
+     * @param sequenceLength an {@code int} that represents the length of each sequence.
+     * @return a {@code Stream} of randomly sampled {@link DynamicDataInstance}s.
+     */
+    private Stream<DynamicDataInstance> getParallelSampleStream(Attributes atts, int nSequences, int sequenceLength) {
+        int sequencesPerBlock = Math.max(1, ROWS_PER_BLOCK / Math.max(1, sequenceLength));
+        int nBlocks = (nSequences + sequencesPerBlock - 1) / sequencesPerBlock;
+        return IntStream.range(0, nBlocks)
+                .mapToObj(block -> IntStream.range(block * sequencesPerBlock, Math.min(nSequences, (block + 1) * sequencesPerBlock))
+                        .parallel()
+                        .mapToObj(sequenceID -> sampleSequence(atts, sequenceID, sequenceLength))
+                        .toArray(DynamicDataInstance[][]::new))
+                .flatMap(Arrays::stream)
+                .flatMap(Arrays::stream);
+    }
+
+    /**
+     * Samples a whole sequence into primitive row buffers, using a random generator derived from the seed and the
+     * sequence ID only.
+     * @param atts the {@link Attributes} of the sampled data.
+     * @param sequenceID an {@code int} that represents the sequence ID.
+     * @param sequenceLength an {@code int} that represents the length of the sequence.
+     * @return an array with the {@link DynamicDataInstance}s of the sequence.
+     */
+    private DynamicDataInstance[] sampleSequence(Attributes atts, int sequenceID, int sequenceLength) {
+        Random sequenceRandom = new Random(sequenceSeed(seed, sequenceID));
+        int nVars = network.getNumberOfDynamicVars();
+
+        DynamicDataInstance[] sequence = new DynamicDataInstance[sequenceLength];
+        double[] previousSampled = null;
+        double[] previousFiltered = null;
+
+        for (int t = 0; t < sequenceLength; t++) {
+            double[] present = new double[nVars];
+            Arrays.fill(present, Utils.missingValue());
+
+            RowDynamicDataInstance instance = new RowDynamicDataInstance(atts, nVars, sequenceID, t, previousSampled, present);
+
+            if (t == 0) {
+                for (Variable var : causalOrderTime0)
+                    present[var.getVarID()] = network.getConditionalDistributionsTime0().get(var.getVarID()).getUnivariateDistribution(instance).sample(sequenceRandom);
+            } else {
+                for (Variable var : causalOrderTimeT)
+                    present[var.getVarID()] = network.getConditionalDistributionsTimeT().get(var.getVarID()).getUnivariateDistribution(instance).sample(sequenceRandom);
+            }
+
+            previousSampled = present.clone();
+
+            for (Variable var : hiddenVars.keySet())
+                present[var.getVarID()] = Utils.missingValue();
+            for (Map.Entry<Variable, Double> e : marNoise.entrySet()) {
+                if (sequenceRandom.nextDouble() < e.getValue())
+                    present[e.getKey().getVarID()] = Utils.missingValue();
+            }
+
+            instance.past = (previousFiltered == null) ? null : previousFiltered.clone();
+            previousFiltered = present;
+            sequence[t] = instance;
+        }
+
+        return sequence;
+    }
+
+    /**
+     * Returns the seed of the random generator of a sequence, mixing the seed and the sequence ID (SplitMix64).
+     * @param seed an {@code int} that represents the seed value.
+     * @param sequenceID a {@code long} that represents the sequence ID.
+     * @return a {@code long} seed.
+     */
+    private static long sequenceSeed(int seed, long sequenceID) {
+        long z = seed * 0x9E3779B97F4A7C15L + (sequenceID + 1) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
     /**
      * Returns a {@code Stream} of randomly sampled {@link DynamicDataInstance} for a given sequence sequenceID of length sequenceLength.
      * @param network a {@link DynamicBayesianNetwork} object.
@@ -244,6 +389,8 @@ public class DynamicBayesianNetworkSampler {
          */
         @Override
         public Stream<DynamicDataInstance> stream() {
+            if (this.sampler.parallelMode)
+                return this.sampler.getParallelSampleStream(this.atts, this.nSequences, this.sequenceLength);
             return this.sampler.getSampleStream(this.nSequences,this.sequenceLength).map( e -> (DynamicDataInstanceImpl)e);
         }
 
@@ -393,6 +540,151 @@ public class DynamicBayesianNetworkSampler {
 
     }
 
+    /**
+     * This class implements the {@link DynamicDataInstance} interface over primitive row buffers, where the value of
+     * each variable is stored at the position of its variable ID.
+     */
+    static class RowDynamicDataInstance implements DynamicDataInstance, Serializable {
+
+        /** Represents the serial version ID for serializing the object. */
+        private static final long serialVersionUID = 2370382513278962375L;
+
+        /** Represents the {@link Attributes} of the sampled data. */
+        private final Attributes atts;
+
+        /** Represents the number of dynamic variables, i.e., the offset of the interface variable IDs. */
+        private final int nVars;
+
+        /** Represents the sequence ID. */
+        private long sequenceID;
+
+        /** Represents the time ID. */
+        private long timeID;
+
+        /** Represents the values of the previous time step, or {@code null} at time 0. */
+        private double[] past;
+
+        /** Represents the values of the present time step. */
+        private final double[] present;
+
+        /**
+         * Creates a new RowDynamicDataInstance.
+         * @param atts the {@link Attributes} of the sampled data.
+         * @param nVars the number of dynamic variables.
+         * @param sequenceID an {@code int} that represents the sequence ID.
+         * @param timeID an {@code int} that represents the time ID.
+         * @param past the values of the previous time step, or {@code null} at time 0.
+         * @param present the values of the present time step.
+         */
+        RowDynamicDataInstance(Attributes atts, int nVars, int sequenceID, int timeID, double[] past, double[] present) {
+            this.atts = atts;
+            this.nVars = nVars;
+            this.sequenceID = sequenceID;
+            this.timeID = timeID;
+            this.past = past;
+            this.present = present;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getSequenceID() {
+            return sequenceID;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getTimeID() {
+            return timeID;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public double getValue(Variable var) {
+            if (var.isInterfaceVariable()) {
+                return (past == null) ? Utils.missingValue() : past[var.getVarID() - nVars];
+            } else {
+                return present[var.getVarID()];
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void setValue(Variable var, double val) {
+            if (var.isInterfaceVariable()) {
+                if (past == null) {
+                    past = new double[nVars];
+                    Arrays.fill(past, Utils.missingValue());
+                }
+                past[var.getVarID() - nVars] = val;
+            } else {
+                present[var.getVarID()] = val;
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Attributes getAttributes() {
+            return atts;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public double[] toArray() {
+            double[] row = new double[present.length + 2];
+            row[0] = sequenceID;
+            row[1] = timeID;
+            System.arraycopy(present, 0, row, 2, present.length);
+            return row;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public double getValue(Attribute att, boolean present) {
+            if (att.getIndex() == 0) {
+                return this.sequenceID;
+            } else if (att.getIndex() == 1) {
+                return this.timeID;
+            } else if (present) {
+                return this.present[att.getIndex() - 2];
+            } else {
+                return (past == null) ? Utils.missingValue() : past[att.getIndex() - 2];
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void setValue(Attribute att, double val, boolean present) {
+            if (att.getIndex() == 0) {
+                this.sequenceID = (long) val;
+            } else if (att.getIndex() == 1) {
+                this.timeID = (long) val;
+            } else if (present) {
+                this.present[att.getIndex() - 2] = val;
+            } else {
+                if (past == null) {
+                    past = new double[nVars];
+                    Arrays.fill(past, Utils.missingValue());
+                }
+                past[att.getIndex() - 2] = val;
+            }
+        }
+    }
 
     public static void main(String[] args) throws Exception{
 
@@ -0,0 +1,141 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.dynamic.inference;
+
+import eu.amidst.core.distribution.UnivariateDistribution;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.dynamic.models.DynamicBayesianNetwork;
+import eu.amidst.dynamic.utils.DynamicBayesianNetworkGenerator;
+import eu.amidst.dynamic.variables.DynamicAssignment;
+import eu.amidst.dynamic.variables.HashMapDynamicAssignment;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class DynamicMAPInferenceTest extends TestCase {
+
+    private static final int T = 5;
+
+    // Queries on a reused DynamicMAPInference must give the same result as on a freshly built one.
+    public static void testReusedModelsAcrossQueries() {
+
+        DynamicBayesianNetwork dbn = buildModel();
+        Variable classVar = dbn.getDynamicVariables().getVariableByName("ClassVar");
+
+        List<DynamicAssignment> evidence1 = sampleEvidence(dbn, classVar, new Random(1));
+        List<DynamicAssignment> evidence2 = sampleEvidence(dbn, classVar, new Random(2));
+
+        for (DynamicMAPInference.SearchAlgorithm searchAlgorithm : DynamicMAPInference.SearchAlgorithm.values()) {
+
+            DynamicMAPInference reused = newDynamicMAP(dbn, classVar);
+            reused.setEvidence(evidence1);
+            reused.runInference(searchAlgorithm);
+            List<BayesianNetwork> mergedModels = reused.getMergedClassVarModels();
+            BayesianNetwork unfoldedModel = reused.getUnfoldedStaticModel();
+
+            reused.setModel(dbn);
+            reused.setNumberOfTimeSteps(T);
+            reused.setSeed(0);
+            reused.setEvidence(evidence2);
+            reused.runInference(searchAlgorithm);
+
+            assertSame(mergedModels, reused.getMergedClassVarModels());
+            assertSame(unfoldedModel, reused.getUnfoldedStaticModel());
+
+            DynamicMAPInference fresh = newDynamicMAP(dbn, classVar);
+            fresh.setSeed(0);
+            fresh.setEvidence(evidence2);
+            fresh.runInference(searchAlgorithm);
+
+            assertTrue(Arrays.equals(fresh.getMAPsequence(), reused.getMAPsequence()));
+            assertEquals(fresh.getMAPestimateLogProbability(), reused.getMAPestimateLogProbability(), 1e-8);
+
+            List<List<UnivariateDistribution>> expected = fresh.getGroupedPosteriorDistributions();
+            List<List<UnivariateDistribution>> actual = reused.getGroupedPosteriorDistributions();
+            for (int i = 0; i < expected.size(); i++) {
+                for (int j = 0; j < expected.get(i).size(); j++) {
+                    double[] expectedParameters = expected.get(i).get(j).getParameters();
+                    double[] actualParameters = actual.get(i).get(j).getParameters();
+                    for (int k = 0; k < expectedParameters.length; k++) {
+                        assertEquals(expectedParameters[k], actualParameters[k], 1e-8);
+                    }
+                }
+            }
+        }
+    }
+
+    public static void testRecompileOnSettingsChange() {
+
+        DynamicBayesianNetwork dbn = buildModel();
+        Variable classVar = dbn.getDynamicVariables().getVariableByName("ClassVar");
+
+        DynamicMAPInference dynMAP = newDynamicMAP(dbn, classVar);
+        dynMAP.setEvidence(sampleEvidence(dbn, classVar, new Random(1)));
+        dynMAP.runInference();
+        assertEquals(2, dynMAP.getMergedClassVarModels().size());
+
+        dynMAP.setNumberOfMergedClassVars(3);
+        dynMAP.runInference();
+        assertEquals(3, dynMAP.getMergedClassVarModels().size());
+        assertEquals(T, dynMAP.getMAPsequence().length);
+
+        dynMAP.setNumberOfTimeSteps(T + 1);
+        assertEquals((T + 1) * dbn.getNumberOfDynamicVars(), dynMAP.getUnfoldedStaticModel().getNumberOfVars());
+        dynMAP.setEvidence(sampleEvidence(dbn, classVar, new Random(1)));
+        dynMAP.runInference();
+        assertEquals(T + 1, dynMAP.getMAPsequence().length);
+    }
+
+    private static DynamicMAPInference newDynamicMAP(DynamicBayesianNetwork dbn, Variable classVar) {
+        DynamicMAPInference dynMAP = new DynamicMAPInference();
+        dynMAP.setModel(dbn);
+        dynMAP.setNumberOfTimeSteps(T);
+        dynMAP.setNumberOfMergedClassVars(2);
+        dynMAP.setMAPvariable(classVar);
+        dynMAP.setSampleSize(2000);
+        return dynMAP;
+    }
+
+    private static DynamicBayesianNetwork buildModel() {
+        DynamicBayesianNetworkGenerator.setNumberOfContinuousVars(1);
+        DynamicBayesianNetworkGenerator.setNumberOfDiscreteVars(3);
+        DynamicBayesianNetworkGenerator.setNumberOfStates(2);
+        DynamicBayesianNetworkGenerator.setNumberOfLinks(3);
+        return DynamicBayesianNetworkGenerator.generateDynamicNaiveBayes(new Random(0), 2, true);
+    }
+
+    private static List<DynamicAssignment> sampleEvidence(DynamicBayesianNetwork dbn, Variable classVar, Random random) {
+        List<DynamicAssignment> evidence = new ArrayList<>(T);
+        for (int t = 0; t < T; t++) {
+            HashMapDynamicAssignment assignment = new HashMapDynamicAssignment(dbn.getNumberOfDynamicVars());
+            assignment.setSequenceID(0);
+            assignment.setTimeID(t);
+            for (Variable var : dbn.getDynamicVariables()) {
+                if (var == classVar)
+                    continue;
+                assignment.setValue(var, var.isMultinomial() ? random.nextInt(var.getNumberOfStates()) : random.nextGaussian());
+            }
+            evidence.add(assignment);
+        }
+        return evidence;
+    }
+}
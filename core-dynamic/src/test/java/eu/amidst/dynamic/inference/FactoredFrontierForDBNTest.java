@@ -0,0 +1,165 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+
+package eu.amidst.dynamic.inference;
+
+import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.inference.messagepassing.LoopyBP;
+import eu.amidst.core.inference.messagepassing.VMP;
+import eu.amidst.core.utils.Utils;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.dynamic.models.DynamicBayesianNetwork;
+import eu.amidst.dynamic.models.DynamicDAG;
+import eu.amidst.dynamic.variables.DynamicVariables;
+import eu.amidst.dynamic.variables.HashMapDynamicAssignment;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class FactoredFrontierForDBNTest extends TestCase {
+
+    private static final int T = 12;
+
+    // A hidden chain H with two multinomial children X1 and X2, so the factored frontier with loopy belief
+    // propagation is exact and the time slices reused in place must give the forward-backward filter.
+    private static DynamicBayesianNetwork createModel() {
+        DynamicVariables variables = new DynamicVariables();
+        Variable h = variables.newMultinomialDynamicVariable("H", 3);
+        Variable x1 = variables.newMultinomialDynamicVariable("X1", 3);
+        Variable x2 = variables.newMultinomialDynamicVariable("X2", 2);
+
+        DynamicDAG dag = new DynamicDAG(variables);
+        dag.getParentSetTimeT(h).addParent(h.getInterfaceVariable());
+        dag.getParentSetTimeT(x1).addParent(h);
+        dag.getParentSetTimeT(x2).addParent(h);
+
+        DynamicBayesianNetwork dbn = new DynamicBayesianNetwork(dag);
+        dbn.randomInitialization(new Random(0));
+        return dbn;
+    }
+
+    private static List<HashMapDynamicAssignment> createEvidence(DynamicBayesianNetwork dbn, int sequenceID) {
+        Variable h = dbn.getDynamicVariables().getVariableByName("H");
+        Variable x1 = dbn.getDynamicVariables().getVariableByName("X1");
+        Variable x2 = dbn.getDynamicVariables().getVariableByName("X2");
+
+        Random random = new Random(sequenceID);
+        List<HashMapDynamicAssignment> evidence = new ArrayList<>();
+        for (int t = 0; t < T; t++) {
+            //The time steps 5 and 6 are skipped
+            if (t == 5 || t == 6)
+                continue;
+            HashMapDynamicAssignment assignment = new HashMapDynamicAssignment(3);
+            assignment.setSequenceID(sequenceID);
+            assignment.setTimeID(t);
+            assignment.setValue(h, (t == 2) ? 1 : Utils.missingValue());
+            assignment.setValue(x1, random.nextInt(3));
+            assignment.setValue(x2, (t == 4) ? Utils.missingValue() : random.nextInt(2));
+            //The interface variables take the values of the previous time step, as in a DynamicDataInstance
+            HashMapDynamicAssignment previous = (evidence.isEmpty()) ? null : evidence.get(evidence.size() - 1);
+            for (Variable var : dbn.getDynamicVariables()) {
+                assignment.setValue(var.getInterfaceVariable(), (previous != null && previous.getTimeID() == t - 1) ?
+                        previous.getValue(var) : Utils.missingValue());
+            }
+            evidence.add(assignment);
+        }
+        return evidence;
+    }
+
+    public static void testFilteringAgainstForwardBackward() {
+        DynamicBayesianNetwork dbn = createModel();
+        Variable h = dbn.getDynamicVariables().getVariableByName("H");
+
+        FactoredFrontierForDBN factoredFrontier = new FactoredFrontierForDBN(new LoopyBP());
+        factoredFrontier.setModel(dbn);
+
+        for (int sequenceID = 0; sequenceID < 3; sequenceID++) {
+            factoredFrontier.reset();
+            ForwardBackwardForDBN exact = new ForwardBackwardForDBN();
+            exact.setModel(dbn);
+            exact.reset();
+
+            for (HashMapDynamicAssignment assignment : createEvidence(dbn, sequenceID)) {
+                factoredFrontier.addDynamicEvidence(assignment);
+                factoredFrontier.runInference();
+                exact.addDynamicEvidence(assignment);
+                exact.runInference();
+
+                //H is observed at time 2
+                if (assignment.getTimeID() == 2)
+                    continue;
+
+                assertEquals(((Multinomial) exact.getFilteredPosterior(h)).getProbabilities(),
+                        ((Multinomial) factoredFrontier.getFilteredPosterior(h)).getProbabilities(), 1e-6);
+
+                //The frontier is restored after the predictive posteriors, which are checked at the next steps
+                assertEquals(((Multinomial) exact.getPredictivePosterior(h, 2)).getProbabilities(),
+                        ((Multinomial) factoredFrontier.getPredictivePosterior(h, 2)).getProbabilities(), 1e-6);
+            }
+        }
+    }
+
+    public static void testResetReusesTimeSlices() {
+        DynamicBayesianNetwork dbn = createModel();
+        Variable h = dbn.getDynamicVariables().getVariableByName("H");
+        List<HashMapDynamicAssignment> evidence = createEvidence(dbn, 0);
+
+        FactoredFrontierForDBN factoredFrontier = new FactoredFrontierForDBN(new VMP());
+        factoredFrontier.setModel(dbn);
+
+        List<double[]> firstRun = new ArrayList<>();
+        factoredFrontier.reset();
+        for (HashMapDynamicAssignment assignment : evidence) {
+            factoredFrontier.addDynamicEvidence(assignment);
+            factoredFrontier.runInference();
+            //H is observed at time 2
+            if (assignment.getTimeID() == 2) {
+                firstRun.add(null);
+                continue;
+            }
+            double[] probabilities = ((Multinomial) factoredFrontier.getFilteredPosterior(h)).getProbabilities();
+            assertEquals(1.0, probabilities[0] + probabilities[1] + probabilities[2], 1e-6);
+            firstRun.add(probabilities.clone());
+        }
+
+        //A second sequence in between must not leak into the next run of the first one
+        factoredFrontier.reset();
+        for (HashMapDynamicAssignment assignment : createEvidence(dbn, 1)) {
+            factoredFrontier.addDynamicEvidence(assignment);
+            factoredFrontier.runInference();
+        }
+
+        factoredFrontier.reset();
+        for (int i = 0; i < evidence.size(); i++) {
+            factoredFrontier.addDynamicEvidence(evidence.get(i));
+            factoredFrontier.runInference();
+            if (evidence.get(i).getTimeID() == 2)
+                continue;
+            assertEquals(firstRun.get(i), ((Multinomial) factoredFrontier.getFilteredPosterior(h)).getProbabilities(), 1e-6);
+        }
+    }
+
+    private static void assertEquals(double[] expected, double[] actual, double threshold) {
+        assertEquals(expected.length, actual.length);
+        for (int k = 0; k < expected.length; k++) {
+            assertEquals(expected[k], actual[k], threshold);
+        }
+    }
+}
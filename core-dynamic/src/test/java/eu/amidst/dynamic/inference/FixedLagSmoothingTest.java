@@ -0,0 +1,134 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+
+package eu.amidst.dynamic.inference;
+
+import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.inference.messagepassing.LoopyBP;
+import eu.amidst.core.utils.Utils;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.dynamic.models.DynamicBayesianNetwork;
+import eu.amidst.dynamic.models.DynamicDAG;
+import eu.amidst.dynamic.variables.DynamicVariables;
+import eu.amidst.dynamic.variables.HashMapDynamicAssignment;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class FixedLagSmoothingTest extends TestCase {
+
+    private static final int T = 10;
+
+    private static final int LAG = 3;
+
+    // A hidden chain H with two multinomial children X1 and X2. The window is a chain, so the factored frontier
+    // with loopy belief propagation computes exact fixed-lag posteriors.
+    public static void testAgainstForwardBackward() {
+
+        DynamicVariables variables = new DynamicVariables();
+        Variable h = variables.newMultinomialDynamicVariable("H", 3);
+        Variable x1 = variables.newMultinomialDynamicVariable("X1", 3);
+        Variable x2 = variables.newMultinomialDynamicVariable("X2", 2);
+
+        DynamicDAG dag = new DynamicDAG(variables);
+        dag.getParentSetTimeT(h).addParent(h.getInterfaceVariable());
+        dag.getParentSetTimeT(x1).addParent(h);
+        dag.getParentSetTimeT(x2).addParent(h);
+
+        DynamicBayesianNetwork dbn = new DynamicBayesianNetwork(dag);
+        dbn.randomInitialization(new Random(0));
+
+        FactoredFrontierForDBN factoredFrontier = new FactoredFrontierForDBN(new LoopyBP());
+        factoredFrontier.setModel(dbn);
+        factoredFrontier.setFixedLag(LAG);
+        factoredFrontier.reset();
+
+        DynamicVMP vmp = new DynamicVMP();
+        vmp.setModel(dbn);
+        vmp.setFixedLag(LAG);
+        vmp.reset();
+
+        Random random = new Random(1);
+        List<HashMapDynamicAssignment> evidence = new ArrayList<>();
+        for (int t = 0; t < T; t++) {
+            //The time step 6 is skipped
+            if (t == 6)
+                continue;
+            HashMapDynamicAssignment assignment = new HashMapDynamicAssignment(3);
+            assignment.setTimeID(t);
+            assignment.setValue(h, (t == 2) ? 1 : Utils.missingValue());
+            assignment.setValue(x1, random.nextInt(3));
+            assignment.setValue(x2, (t == 4) ? Utils.missingValue() : random.nextInt(2));
+            evidence.add(assignment);
+
+            factoredFrontier.addDynamicEvidence(assignment);
+            factoredFrontier.runInference();
+            vmp.addDynamicEvidence(assignment);
+            vmp.runInference();
+
+            ForwardBackwardForDBN exact = new ForwardBackwardForDBN();
+            exact.setModel(dbn);
+            for (HashMapDynamicAssignment previous : evidence) {
+                exact.addDynamicEvidence(previous);
+                exact.runInference();
+            }
+            List<Multinomial> smoothed = exact.getSmoothedPosteriors(h);
+
+            assertEquals(Math.max(0, t - LAG), factoredFrontier.getTimeIDOfSmoothedPosterior());
+            for (long time = factoredFrontier.getTimeIDOfSmoothedPosterior(); time <= t; time++) {
+                //H is observed at time 2
+                if (time == 2)
+                    continue;
+                assertEquals(smoothed.get((int) time).getProbabilities(),
+                        ((Multinomial) factoredFrontier.getSmoothedPosterior(h, time)).getProbabilities(), 1e-6);
+            }
+
+            long smoothedTime = factoredFrontier.getTimeIDOfSmoothedPosterior();
+            if (smoothedTime != 2) {
+                assertEquals(smoothed.get((int) smoothedTime).getProbabilities(),
+                        ((Multinomial) factoredFrontier.getSmoothedPosterior(h)).getProbabilities(), 1e-6);
+
+                //VMP gives a mean-field approximation of the same posteriors
+                assertEquals(smoothedTime, vmp.getTimeIDOfSmoothedPosterior());
+                assertEquals(smoothed.get((int) smoothedTime).getProbabilities(),
+                        ((Multinomial) vmp.getSmoothedPosterior(h)).getProbabilities(), 0.05);
+            }
+        }
+
+        try {
+            factoredFrontier.getSmoothedPosterior(h, T - LAG - 2);
+            fail("The time step is not in the window.");
+        } catch (IllegalArgumentException ex) {
+            //Expected
+        }
+
+        factoredFrontier.reset();
+        factoredFrontier.addDynamicEvidence(evidence.get(0));
+        factoredFrontier.runInference();
+        assertEquals(0, factoredFrontier.getTimeIDOfSmoothedPosterior());
+    }
+
+    private static void assertEquals(double[] expected, double[] actual, double threshold) {
+        assertEquals(expected.length, actual.length);
+        for (int k = 0; k < expected.length; k++) {
+            assertEquals(expected[k], actual[k], threshold);
+        }
+    }
+}
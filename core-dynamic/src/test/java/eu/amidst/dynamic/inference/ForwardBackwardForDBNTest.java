@@ -0,0 +1,196 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+
+package eu.amidst.dynamic.inference;
+
+import eu.amidst.core.distribution.ConditionalDistribution;
+import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.utils.Utils;
+import eu.amidst.core.variables.Assignment;
+import eu.amidst.core.variables.HashMapAssignment;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.dynamic.models.DynamicBayesianNetwork;
+import eu.amidst.dynamic.models.DynamicDAG;
+import eu.amidst.dynamic.variables.DynamicVariables;
+import eu.amidst.dynamic.variables.HashMapDynamicAssignment;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class ForwardBackwardForDBNTest extends TestCase {
+
+    private static final int T = 5;
+
+    // Two hidden chains H1 (2 states) and H2 (3 states), with H1 -> H2, a multinomial X with parents H1 and H2,
+    // and an auto-regressive Gaussian Y with parents H2 and Y at the previous time step.
+    public static void testAgainstEnumeration() {
+
+        DynamicVariables variables = new DynamicVariables();
+        Variable h1 = variables.newMultinomialDynamicVariable("H1", 2);
+        Variable h2 = variables.newMultinomialDynamicVariable("H2", 3);
+        Variable x = variables.newMultinomialDynamicVariable("X", 3);
+        Variable y = variables.newGaussianDynamicVariable("Y");
+
+        DynamicDAG dag = new DynamicDAG(variables);
+        dag.getParentSetTimeT(h1).addParent(h1.getInterfaceVariable());
+        dag.getParentSetTimeT(h2).addParent(h2.getInterfaceVariable());
+        dag.getParentSetTimeT(h2).addParent(h1);
+        dag.getParentSetTimeT(x).addParent(h1);
+        dag.getParentSetTimeT(x).addParent(h2);
+        dag.getParentSetTimeT(y).addParent(h2);
+        dag.getParentSetTimeT(y).addParent(y.getInterfaceVariable());
+
+        DynamicBayesianNetwork dbn = new DynamicBayesianNetwork(dag);
+        dbn.randomInitialization(new Random(0));
+
+        Random random = new Random(1);
+        List<HashMapDynamicAssignment> evidence = new ArrayList<>();
+        for (int t = 0; t < T; t++) {
+            HashMapDynamicAssignment assignment = new HashMapDynamicAssignment(4);
+            assignment.setTimeID(t);
+            assignment.setValue(h1, Utils.missingValue());
+            assignment.setValue(h2, (t == 2) ? 1 : Utils.missingValue());
+            assignment.setValue(x, (t == 3) ? Utils.missingValue() : random.nextInt(3));
+            assignment.setValue(y, random.nextGaussian());
+            evidence.add(assignment);
+        }
+
+        ForwardBackwardForDBN engine = new ForwardBackwardForDBN();
+        engine.setModel(dbn);
+        assertEquals(Arrays.asList(h1, h2), engine.getHiddenVariables());
+
+        for (int t = 0; t < T; t++) {
+            engine.addDynamicEvidence(evidence.get(t));
+            engine.runInference();
+
+            Enumeration exact = new Enumeration(dbn, Arrays.asList(h1, h2), evidence.subList(0, t + 1));
+            assertEquals(exact.logProbabilityOfEvidence, engine.getLogProbabilityOfEvidence(), 1e-8);
+            assertEquals(exact.marginal(t, 0), ((Multinomial) engine.getFilteredPosterior(h1)).getProbabilities(), 1e-8);
+            assertEquals(exact.marginal(t, 1), ((Multinomial) engine.getFilteredPosterior(h2)).getProbabilities(), 1e-8);
+        }
+
+        Enumeration exact = new Enumeration(dbn, Arrays.asList(h1, h2), evidence);
+        List<Multinomial> smoothedH1 = engine.getSmoothedPosteriors(h1);
+        List<Multinomial> smoothedH2 = engine.getSmoothedPosteriors(h2);
+        List<Assignment> mostProbable = engine.getMostProbableSequence();
+        for (int t = 0; t < T; t++) {
+            assertEquals(exact.marginal(t, 0), smoothedH1.get(t).getProbabilities(), 1e-8);
+            assertEquals(exact.marginal(t, 1), smoothedH2.get(t).getProbabilities(), 1e-8);
+            assertEquals(exact.bestSequence[t] % 2, (int) mostProbable.get(t).getValue(h1));
+            assertEquals(exact.bestSequence[t] / 2, (int) mostProbable.get(t).getValue(h2));
+        }
+        assertEquals(1, (int) mostProbable.get(2).getValue(h2));
+
+        //The arrays are reused for the next sequence
+        engine.reset();
+        engine.addDynamicEvidence(evidence.get(0));
+        engine.runInference();
+        exact = new Enumeration(dbn, Arrays.asList(h1, h2), evidence.subList(0, 1));
+        assertEquals(exact.logProbabilityOfEvidence, engine.getLogProbabilityOfEvidence(), 1e-8);
+        assertEquals(1, engine.getSmoothedPosteriors(h1).size());
+    }
+
+    private static void assertEquals(double[] expected, double[] actual, double threshold) {
+        assertEquals(expected.length, actual.length);
+        for (int k = 0; k < expected.length; k++) {
+            assertEquals(expected[k], actual[k], threshold);
+        }
+    }
+
+    /**
+     * Computes the exact posteriors by enumerating all the sequences of joint hidden states, where the joint state
+     * j corresponds to H1 = j % 2 and H2 = j / 2.
+     */
+    private static final class Enumeration {
+
+        double logProbabilityOfEvidence;
+        double[][] jointMarginals;
+        int[] bestSequence;
+
+        Enumeration(DynamicBayesianNetwork dbn, List<Variable> hidden, List<HashMapDynamicAssignment> evidence) {
+            int length = evidence.size();
+            jointMarginals = new double[length][6];
+            bestSequence = new int[length];
+            double bestLogProb = Double.NEGATIVE_INFINITY;
+            double sum = 0;
+
+            int[] sequence = new int[length];
+            int nSequences = (int) Math.pow(6, length);
+            for (int s = 0; s < nSequences; s++) {
+                int rest = s;
+                for (int t = 0; t < length; t++) {
+                    sequence[t] = rest % 6;
+                    rest /= 6;
+                }
+
+                double logProb = 0;
+                for (int t = 0; t < length && logProb != Double.NEGATIVE_INFINITY; t++) {
+                    HashMapAssignment assignment = new HashMapAssignment();
+                    for (Variable var : dbn.getDynamicVariables()) {
+                        assignment.setValue(var, evidence.get(t).getValue(var));
+                        if (t > 0)
+                            assignment.setValue(var.getInterfaceVariable(), evidence.get(t - 1).getValue(var));
+                    }
+                    for (int h = 0; h < hidden.size(); h++) {
+                        int state = (h == 0) ? sequence[t] % 2 : sequence[t] / 2;
+                        double observed = assignment.getValue(hidden.get(h));
+                        if (!Utils.isMissingValue(observed) && observed != state)
+                            logProb = Double.NEGATIVE_INFINITY;
+                        assignment.setValue(hidden.get(h), state);
+                        if (t > 0)
+                            assignment.setValue(hidden.get(h).getInterfaceVariable(), (h == 0) ? sequence[t - 1] % 2 : sequence[t - 1] / 2);
+                    }
+                    for (Variable var : dbn.getDynamicVariables()) {
+                        if (Utils.isMissingValue(assignment.getValue(var)) || logProb == Double.NEGATIVE_INFINITY)
+                            continue;
+                        ConditionalDistribution dist = (t == 0) ? dbn.getConditionalDistributionTime0(var) : dbn.getConditionalDistributionTimeT(var);
+                        logProb += dist.getLogConditionalProbability(assignment);
+                    }
+                }
+
+                double prob = Math.exp(logProb);
+                sum += prob;
+                for (int t = 0; t < length; t++) {
+                    jointMarginals[t][sequence[t]] += prob;
+                }
+                if (logProb > bestLogProb) {
+                    bestLogProb = logProb;
+                    bestSequence = sequence.clone();
+                }
+            }
+
+            logProbabilityOfEvidence = Math.log(sum);
+            for (int t = 0; t < length; t++) {
+                for (int j = 0; j < 6; j++) {
+                    jointMarginals[t][j] /= sum;
+                }
+            }
+        }
+
+        double[] marginal(int t, int h) {
+            double[] marginal = new double[(h == 0) ? 2 : 3];
+            for (int j = 0; j < 6; j++) {
+                marginal[(h == 0) ? j % 2 : j / 2] += jointMarginals[t][j];
+            }
+            return marginal;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+
+package eu.amidst.dynamic.inference;
+
+import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.distribution.Normal;
+import eu.amidst.core.utils.Utils;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.dynamic.models.DynamicBayesianNetwork;
+import eu.amidst.dynamic.models.DynamicDAG;
+import eu.amidst.dynamic.variables.DynamicVariables;
+import eu.amidst.dynamic.variables.HashMapDynamicAssignment;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class InferenceSessionManagerForDBNTest extends TestCase {
+
+    private static final int N_SEQUENCES = 20;
+
+    private static final int T = 8;
+
+    // A hidden chain H with two multinomial children X1 and X2, filtered with one DynamicVMP object per sequence
+    // and with a single session manager.
+    public static void testAgainstOneEnginePerSequence() {
+
+        DynamicVariables variables = new DynamicVariables();
+        Variable h = variables.newMultinomialDynamicVariable("H", 2);
+        Variable x1 = variables.newMultinomialDynamicVariable("X1", 3);
+        Variable x2 = variables.newMultinomialDynamicVariable("X2", 2);
+
+        DynamicDAG dag = new DynamicDAG(variables);
+        dag.getParentSetTimeT(h).addParent(h.getInterfaceVariable());
+        dag.getParentSetTimeT(x1).addParent(h);
+        dag.getParentSetTimeT(x2).addParent(h);
+
+        DynamicBayesianNetwork dbn = new DynamicBayesianNetwork(dag);
+        dbn.randomInitialization(new Random(0));
+
+        List<DynamicVMP> engines = new ArrayList<>();
+        for (int seq = 0; seq < N_SEQUENCES; seq++) {
+            DynamicVMP engine = new DynamicVMP();
+            engine.setModel(dbn);
+            engine.reset();
+            engines.add(engine);
+        }
+
+        InferenceSessionManagerForDBN manager = new InferenceSessionManagerForDBN(dbn, DynamicVMP::new);
+
+        Random random = new Random(1);
+        for (int t = 0; t < T; t++) {
+            List<HashMapDynamicAssignment> batch = new ArrayList<>();
+            for (int seq = 0; seq < N_SEQUENCES; seq++) {
+                //The sequence 3 skips a time step
+                if (seq == 3 && t == 4)
+                    continue;
+                HashMapDynamicAssignment assignment = new HashMapDynamicAssignment(3);
+                assignment.setSequenceID(seq);
+                assignment.setTimeID(t);
+                assignment.setValue(h, Utils.missingValue());
+                assignment.setValue(x1, random.nextInt(3));
+                assignment.setValue(x2, (random.nextDouble() < 0.3) ? Utils.missingValue() : random.nextInt(2));
+                batch.add(assignment);
+
+                engines.get(seq).addDynamicEvidence(assignment);
+                engines.get(seq).runInference();
+            }
+            Collections.shuffle(batch, random);
+            manager.addDynamicEvidence(batch);
+
+            assertEquals(N_SEQUENCES, manager.getNumberOfSessions());
+            for (int seq = 0; seq < N_SEQUENCES; seq++) {
+                double[] expected = ((Multinomial) engines.get(seq).getFilteredPosterior(h)).getProbabilities();
+                double[] actual = ((Multinomial) manager.getFilteredPosterior(seq, h)).getProbabilities();
+                assertEquals(expected, actual, 1e-8);
+                assertEquals(engines.get(seq).getTimeIDOfPosterior(), manager.getTimeIDOfPosterior(seq));
+            }
+        }
+
+        for (int seq = 0; seq < N_SEQUENCES; seq++) {
+            double[] expected = ((Multinomial) engines.get(seq).getPredictivePosterior(h, 2)).getProbabilities();
+            double[] actual = ((Multinomial) manager.getPredictivePosterior(seq, h, 2)).getProbabilities();
+            assertEquals(expected, actual, 1e-8);
+        }
+    }
+
+    // A hidden Gaussian random walk H observed through a noisy Gaussian Y, filtered with Kalman filters.
+    public static void testKalmanFilterAndEviction() {
+
+        DynamicVariables variables = new DynamicVariables();
+        Variable h = variables.newGaussianDynamicVariable("H");
+        Variable y = variables.newGaussianDynamicVariable("Y");
+
+        DynamicDAG dag = new DynamicDAG(variables);
+        dag.getParentSetTimeT(h).addParent(h.getInterfaceVariable());
+        dag.getParentSetTimeT(y).addParent(h);
+
+        DynamicBayesianNetwork dbn = new DynamicBayesianNetwork(dag);
+        dbn.randomInitialization(new Random(2));
+
+        InferenceSessionManagerForDBN manager = new InferenceSessionManagerForDBN(dbn, () -> {
+            KalmanFilterForDBN kalman = new KalmanFilterForDBN();
+            kalman.setHiddenVariables(Arrays.asList(h));
+            return kalman;
+        });
+        manager.setParallelMode(false);
+
+        List<KalmanFilterForDBN> engines = new ArrayList<>();
+        for (int seq = 0; seq < 3; seq++) {
+            KalmanFilterForDBN engine = new KalmanFilterForDBN();
+            engine.setModel(dbn);
+            engine.setHiddenVariables(Arrays.asList(h));
+            engines.add(engine);
+        }
+
+        Random random = new Random(3);
+        for (int t = 0; t < T; t++) {
+            for (int seq = 0; seq < 3; seq++) {
+                HashMapDynamicAssignment assignment = new HashMapDynamicAssignment(2);
+                assignment.setSequenceID(seq);
+                assignment.setTimeID(t);
+                assignment.setValue(h, Utils.missingValue());
+                assignment.setValue(y, random.nextGaussian());
+                engines.get(seq).addDynamicEvidence(assignment);
+                engines.get(seq).runInference();
+                manager.addDynamicEvidence(assignment);
+            }
+        }
+
+        for (int seq = 0; seq < 3; seq++) {
+            Normal expected = engines.get(seq).getFilteredPosterior(h);
+            Normal actual = manager.getFilteredPosterior(seq, h);
+            assertEquals(expected.getMean(), actual.getMean(), 1e-10);
+            assertEquals(expected.getVariance(), actual.getVariance(), 1e-10);
+        }
+
+        assertEquals(0, manager.evictIdleSessions(Long.MAX_VALUE));
+        assertEquals(3, manager.evictIdleSessions(0));
+        assertFalse(manager.containsSession(0));
+
+        //A new session starts the sequence again
+        HashMapDynamicAssignment assignment = new HashMapDynamicAssignment(2);
+        assignment.setSequenceID(0);
+        assignment.setTimeID(0);
+        assignment.setValue(h, Utils.missingValue());
+        assignment.setValue(y, 0.5);
+        manager.addDynamicEvidence(assignment);
+        assertEquals(0, manager.getTimeIDOfPosterior(0));
+
+        try {
+            new InferenceSessionManagerForDBN(dbn, ParticleFilterForDBN::new);
+            fail("The particle filter does not support belief states.");
+        } catch (UnsupportedOperationException ex) {
+            //Expected
+        }
+    }
+
+    private static void assertEquals(double[] expected, double[] actual, double threshold) {
+        assertEquals(expected.length, actual.length);
+        for (int k = 0; k < expected.length; k++) {
+            assertEquals(expected[k], actual[k], threshold);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+
+package eu.amidst.dynamic.inference;
+
+import eu.amidst.core.distribution.ConditionalDistribution;
+import eu.amidst.core.distribution.ConditionalLinearGaussian;
+import eu.amidst.core.distribution.Normal;
+import eu.amidst.core.distribution.Normal_MultinomialNormalParents;
+import eu.amidst.core.utils.Utils;
+import eu.amidst.core.variables.HashMapAssignment;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.dynamic.models.DynamicBayesianNetwork;
+import eu.amidst.dynamic.models.DynamicDAG;
+import eu.amidst.dynamic.variables.DynamicVariables;
+import eu.amidst.dynamic.variables.HashMapDynamicAssignment;
+import junit.framework.TestCase;
+import org.apache.commons.math3.linear.LUDecomposition;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class KalmanFilterForDBNTest extends TestCase {
+
+    private static final int T = 5;
+
+    // Two hidden chains X1 and X2, with X1 -> X2, an observed Gaussian Y1 with parents X1, X2 and a multinomial regime
+    // R, and an observed Gaussian Y2 with parents X2 and Y1.
+    public static void testAgainstJointGaussian() {
+
+        DynamicVariables variables = new DynamicVariables();
+        Variable x1 = variables.newGaussianDynamicVariable("X1");
+        Variable x2 = variables.newGaussianDynamicVariable("X2");
+        Variable y1 = variables.newGaussianDynamicVariable("Y1");
+        Variable y2 = variables.newGaussianDynamicVariable("Y2");
+        Variable r = variables.newMultinomialDynamicVariable("R", 2);
+
+        DynamicDAG dag = new DynamicDAG(variables);
+        dag.getParentSetTimeT(x1).addParent(x1.getInterfaceVariable());
+        dag.getParentSetTimeT(x2).addParent(x2.getInterfaceVariable());
+        dag.getParentSetTimeT(x2).addParent(x1);
+        dag.getParentSetTimeT(y1).addParent(x1);
+        dag.getParentSetTimeT(y1).addParent(x2);
+        dag.getParentSetTimeT(y1).addParent(r);
+        dag.getParentSetTimeT(y2).addParent(x2);
+        dag.getParentSetTimeT(y2).addParent(y1);
+        dag.getParentSetTimeT(r).addParent(r.getInterfaceVariable());
+
+        DynamicBayesianNetwork dbn = new DynamicBayesianNetwork(dag);
+        dbn.randomInitialization(new Random(0));
+
+        Random random = new Random(1);
+        List<HashMapDynamicAssignment> evidence = new ArrayList<>();
+        for (int t = 0; t < T; t++) {
+            HashMapDynamicAssignment assignment = new HashMapDynamicAssignment(5);
+            assignment.setTimeID(t);
+            assignment.setValue(r, random.nextInt(2));
+            assignment.setValue(y1, random.nextGaussian());
+            assignment.setValue(y2, (t == 2) ? Utils.missingValue() : random.nextGaussian());
+            evidence.add(assignment);
+        }
+
+        List<Variable> hidden = Arrays.asList(x1, x2);
+        KalmanFilterForDBN engine = new KalmanFilterForDBN();
+        engine.setModel(dbn);
+        engine.setHiddenVariables(hidden);
+
+        for (int t = 0; t < T; t++) {
+            engine.addDynamicEvidence(evidence.get(t));
+            engine.runInference();
+
+            JointGaussian exact = new JointGaussian(dbn, Arrays.asList(x1, x2, y1, y2), r, evidence.subList(0, t + 1));
+            assertEquals(exact.logProbabilityOfEvidence, engine.getLogProbabilityOfEvidence(), 1e-8);
+            for (int h = 0; h < 2; h++) {
+                Normal filtered = engine.getFilteredPosterior(hidden.get(h));
+                assertEquals(exact.mean(t, h), filtered.getMean(), 1e-8);
+                assertEquals(exact.variance(t, h), filtered.getVariance(), 1e-8);
+                assertEquals(exact.mean(t, h), engine.getFilteredMean(hidden.get(h)), 1e-8);
+            }
+        }
+
+        JointGaussian exact = new JointGaussian(dbn, Arrays.asList(x1, x2, y1, y2), r, evidence);
+        for (int h = 0; h < 2; h++) {
+            List<Normal> smoothed = engine.getSmoothedPosteriors(hidden.get(h));
+            for (int t = 0; t < T; t++) {
+                assertEquals(exact.mean(t, h), smoothed.get(t).getMean(), 1e-8);
+                assertEquals(exact.variance(t, h), smoothed.get(t).getVariance(), 1e-8);
+            }
+        }
+    }
+
+    /**
+     * Computes the exact posteriors by building the joint Gaussian distribution of all the time steps given the
+     * values of the multinomial variable, and conditioning it on the observed values.
+     */
+    private static final class JointGaussian {
+
+        double logProbabilityOfEvidence;
+        RealVector posteriorMean;
+        RealMatrix posteriorCovariance;
+        int nVars;
+
+        JointGaussian(DynamicBayesianNetwork dbn, List<Variable> gaussians, Variable regime, List<HashMapDynamicAssignment> evidence) {
+            nVars = gaussians.size();
+            int size = nVars * evidence.size();
+            RealMatrix b = MatrixUtils.createRealMatrix(size, size);
+            RealVector c = MatrixUtils.createRealVector(new double[size]);
+            RealMatrix d = MatrixUtils.createRealMatrix(size, size);
+
+            for (int t = 0; t < evidence.size(); t++) {
+                HashMapAssignment regimes = new HashMapAssignment();
+                regimes.setValue(regime, evidence.get(t).getValue(regime));
+                if (t > 0) {
+                    regimes.setValue(regime.getInterfaceVariable(), evidence.get(t - 1).getValue(regime));
+                    logProbabilityOfEvidence += dbn.getConditionalDistributionTimeT(regime).getLogConditionalProbability(regimes);
+                } else {
+                    logProbabilityOfEvidence += dbn.getConditionalDistributionTime0(regime).getLogConditionalProbability(regimes);
+                }
+
+                for (int k = 0; k < nVars; k++) {
+                    int row = t * nVars + k;
+                    ConditionalDistribution dist = (t == 0) ? dbn.getConditionalDistributionTime0(gaussians.get(k))
+                            : dbn.getConditionalDistributionTimeT(gaussians.get(k));
+                    if (dist instanceof Normal) {
+                        c.setEntry(row, ((Normal) dist).getMean());
+                        d.setEntry(row, row, ((Normal) dist).getVariance());
+                        continue;
+                    }
+                    ConditionalLinearGaussian clg = (dist instanceof Normal_MultinomialNormalParents) ?
+                            ((Normal_MultinomialNormalParents) dist).getNormal_NormalParentsDistribution(regimes)
+                            : (ConditionalLinearGaussian) dist;
+                    c.setEntry(row, clg.getIntercept());
+                    d.setEntry(row, row, clg.getVariance());
+                    List<Variable> parents = clg.getConditioningVariables();
+                    for (int p = 0; p < parents.size(); p++) {
+                        Variable parent = parents.get(p);
+                        int column = parent.isInterfaceVariable() ?
+                                (t - 1) * nVars + gaussians.indexOf(dbn.getDynamicVariables().getVariableFromInterface(parent))
+                                : t * nVars + gaussians.indexOf(parent);
+                        b.setEntry(row, column, clg.getCoeffParents()[p]);
+                    }
+                }
+            }
+
+            RealMatrix l = new LUDecomposition(MatrixUtils.createRealIdentityMatrix(size).subtract(b)).getSolver().getInverse();
+            RealVector mean = l.operate(c);
+            RealMatrix covariance = l.multiply(d).multiply(l.transpose());
+
+            List<Integer> observed = new ArrayList<>();
+            for (int t = 0; t < evidence.size(); t++) {
+                for (int k = 0; k < nVars; k++) {
+                    if (!Utils.isMissingValue(evidence.get(t).getValue(gaussians.get(k))))
+                        observed.add(t * nVars + k);
+                }
+            }
+            int[] obs = observed.stream().mapToInt(Integer::intValue).toArray();
+            int[] all = new int[size];
+            for (int i = 0; i < size; i++) {
+                all[i] = i;
+            }
+
+            RealVector residual = MatrixUtils.createRealVector(new double[obs.length]);
+            for (int i = 0; i < obs.length; i++) {
+                int t = obs[i] / nVars;
+                residual.setEntry(i, evidence.get(t).getValue(gaussians.get(obs[i] % nVars)) - mean.getEntry(obs[i]));
+            }
+            RealMatrix covarianceObserved = covariance.getSubMatrix(obs, obs);
+            RealMatrix covarianceCross = covariance.getSubMatrix(all, obs);
+            LUDecomposition lu = new LUDecomposition(covarianceObserved);
+            RealVector solved = lu.getSolver().solve(residual);
+
+            posteriorMean = mean.add(covarianceCross.operate(solved));
+            posteriorCovariance = covariance.subtract(covarianceCross.multiply(lu.getSolver().solve(covarianceCross.transpose())));
+            logProbabilityOfEvidence += -0.5 * (obs.length * Math.log(2 * Math.PI) + Math.log(lu.getDeterminant())
+                    + residual.dotProduct(solved));
+        }
+
+        double mean(int t, int k) {
+            return posteriorMean.getEntry(t * nVars + k);
+        }
+
+        double variance(int t, int k) {
+            return posteriorCovariance.getEntry(t * nVars + k, t * nVars + k);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+
+package eu.amidst.dynamic.inference;
+
+import eu.amidst.core.distribution.ConditionalLinearGaussian;
+import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.distribution.Normal;
+import eu.amidst.core.utils.Utils;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.dynamic.models.DynamicBayesianNetwork;
+import eu.amidst.dynamic.models.DynamicDAG;
+import eu.amidst.dynamic.variables.DynamicVariables;
+import eu.amidst.dynamic.variables.HashMapDynamicAssignment;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class ParticleFilterForDBNTest extends TestCase {
+
+    private static final int T = 6;
+
+    // Two hidden chains H1 (2 states) and H2 (3 states), with H1 -> H2, a multinomial X with parents H1 and H2,
+    // and an auto-regressive Gaussian Y with parents H2 and Y at the previous time step.
+    public static void testAgainstForwardBackward() {
+
+        DynamicVariables variables = new DynamicVariables();
+        Variable h1 = variables.newMultinomialDynamicVariable("H1", 2);
+        Variable h2 = variables.newMultinomialDynamicVariable("H2", 3);
+        Variable x = variables.newMultinomialDynamicVariable("X", 3);
+        Variable y = variables.newGaussianDynamicVariable("Y");
+
+        DynamicDAG dag = new DynamicDAG(variables);
+        dag.getParentSetTimeT(h1).addParent(h1.getInterfaceVariable());
+        dag.getParentSetTimeT(h2).addParent(h2.getInterfaceVariable());
+        dag.getParentSetTimeT(h2).addParent(h1);
+        dag.getParentSetTimeT(x).addParent(h1);
+        dag.getParentSetTimeT(x).addParent(h2);
+        dag.getParentSetTimeT(y).addParent(h2);
+        dag.getParentSetTimeT(y).addParent(y.getInterfaceVariable());
+
+        DynamicBayesianNetwork dbn = new DynamicBayesianNetwork(dag);
+        dbn.randomInitialization(new Random(0));
+
+        Random random = new Random(1);
+        List<HashMapDynamicAssignment> evidence = new ArrayList<>();
+        for (int t = 0; t < T; t++) {
+            HashMapDynamicAssignment assignment = new HashMapDynamicAssignment(4);
+            assignment.setTimeID(t);
+            assignment.setValue(h1, Utils.missingValue());
+            assignment.setValue(h2, Utils.missingValue());
+            assignment.setValue(x, (t == 3) ? Utils.missingValue() : random.nextInt(3));
+            assignment.setValue(y, random.nextGaussian());
+            evidence.add(assignment);
+        }
+
+        ForwardBackwardForDBN exact = new ForwardBackwardForDBN();
+        exact.setModel(dbn);
+
+        ParticleFilterForDBN parallel = new ParticleFilterForDBN();
+        parallel.setNumberOfParticles(20000);
+        parallel.setModel(dbn);
+
+        ParticleFilterForDBN sequential = new ParticleFilterForDBN();
+        sequential.setParallelMode(false);
+        sequential.setNumberOfParticles(20000);
+        sequential.setModel(dbn);
+
+        assertEquals(((Multinomial) exact.getFilteredPosterior(h2)).getProbabilities(),
+                ((Multinomial) parallel.getFilteredPosterior(h2)).getProbabilities(), 0.02);
+
+        for (int t = 0; t < T; t++) {
+            exact.addDynamicEvidence(evidence.get(t));
+            exact.runInference();
+            parallel.addDynamicEvidence(evidence.get(t));
+            parallel.runInference();
+            sequential.addDynamicEvidence(evidence.get(t));
+            sequential.runInference();
+
+            for (Variable var : new Variable[]{h1, h2}) {
+                double[] expected = ((Multinomial) exact.getFilteredPosterior(var)).getProbabilities();
+                double[] actual = ((Multinomial) parallel.getFilteredPosterior(var)).getProbabilities();
+                assertEquals(expected, actual, 0.03);
+                //The blocks of particles have their own random generators, so the results do not depend on the threads
+                assertEquals(actual, ((Multinomial) sequential.getFilteredPosterior(var)).getProbabilities(), 0);
+            }
+            assertEquals(exact.getLogProbabilityOfEvidence(), parallel.getLogProbabilityOfEvidence(), 0.05);
+        }
+
+        double[] expected = ((Multinomial) exact.getPredictivePosterior(h1, 2)).getProbabilities();
+        assertEquals(expected, ((Multinomial) parallel.getPredictivePosterior(h1, 2)).getProbabilities(), 0.03);
+        assertEquals(T - 1, parallel.getTimeIDOfPosterior());
+
+        //The predictions do not change the filtered posteriors
+        assertEquals(((Multinomial) sequential.getFilteredPosterior(h1)).getProbabilities(),
+                ((Multinomial) parallel.getFilteredPosterior(h1)).getProbabilities(), 0);
+    }
+
+    // A hidden Gaussian random walk H observed through a noisy Gaussian Y, with some missing observations.
+    public static void testAgainstKalmanFilter() {
+
+        DynamicVariables variables = new DynamicVariables();
+        Variable h = variables.newGaussianDynamicVariable("H");
+        Variable y = variables.newGaussianDynamicVariable("Y");
+
+        DynamicDAG dag = new DynamicDAG(variables);
+        dag.getParentSetTimeT(h).addParent(h.getInterfaceVariable());
+        dag.getParentSetTimeT(y).addParent(h);
+
+        DynamicBayesianNetwork dbn = new DynamicBayesianNetwork(dag);
+        Normal prior = dbn.getConditionalDistributionTime0(h);
+        prior.setMean(0.5);
+        prior.setVariance(2);
+        ConditionalLinearGaussian transition = dbn.getConditionalDistributionTimeT(h);
+        transition.setIntercept(0.1);
+        transition.setCoeffForParent(h.getInterfaceVariable(), 0.9);
+        transition.setVariance(0.5);
+        for (ConditionalLinearGaussian emission : new ConditionalLinearGaussian[]{
+                dbn.getConditionalDistributionTime0(y), dbn.getConditionalDistributionTimeT(y)}) {
+            emission.setIntercept(-0.2);
+            emission.setCoeffForParent(h, 1.5);
+            emission.setVariance(1);
+        }
+
+        Random random = new Random(3);
+        KalmanFilterForDBN kalman = new KalmanFilterForDBN();
+        kalman.setModel(dbn);
+        kalman.setHiddenVariables(Arrays.asList(h));
+
+        ParticleFilterForDBN particleFilter = new ParticleFilterForDBN();
+        particleFilter.setNumberOfParticles(20000);
+        particleFilter.setSeed(5);
+        particleFilter.setModel(dbn);
+
+        for (int t = 0; t < T; t++) {
+            HashMapDynamicAssignment assignment = new HashMapDynamicAssignment(2);
+            assignment.setTimeID(t);
+            assignment.setValue(h, Utils.missingValue());
+            assignment.setValue(y, (t == 2) ? Utils.missingValue() : random.nextGaussian());
+
+            kalman.addDynamicEvidence(assignment);
+            kalman.runInference();
+            particleFilter.addDynamicEvidence(assignment);
+            particleFilter.runInference();
+
+            Normal expected = kalman.getFilteredPosterior(h);
+            Normal actual = particleFilter.getFilteredPosterior(h);
+            double sd = expected.getSd();
+            assertEquals(expected.getMean(), actual.getMean(), 0.05 * sd);
+            assertEquals(expected.getVariance(), actual.getVariance(), 0.1 * expected.getVariance());
+        }
+    }
+
+    private static void assertEquals(double[] expected, double[] actual, double threshold) {
+        assertEquals(expected.length, actual.length);
+        for (int k = 0; k < expected.length; k++) {
+            assertEquals(expected[k], actual[k], threshold);
+        }
+    }
+}
@@ -16,8 +16,12 @@ import com.google.common.base.Stopwatch;
 import eu.amidst.core.datastream.DataStream;
 import eu.amidst.core.distribution.ConditionalLinearGaussian;
 import eu.amidst.core.distribution.Normal_MultinomialNormalParents;
+import eu.amidst.core.io.DataStreamWriter;
 import eu.amidst.core.variables.Variable;
+import eu.amidst.dynamic.datastream.DataSequence;
+import eu.amidst.dynamic.datastream.DataSequenceStream;
 import eu.amidst.dynamic.datastream.DynamicDataInstance;
+import eu.amidst.dynamic.io.DynamicDataStreamLoader;
 import eu.amidst.dynamic.models.DynamicBayesianNetwork;
 import eu.amidst.dynamic.models.DynamicDAG;
 import eu.amidst.dynamic.utils.DynamicBayesianNetworkGenerator;
@@ -26,7 +30,11 @@ import eu.amidst.dynamic.variables.DynamicVariables;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
 import java.util.Random;
 
 /**
@@ -444,4 +452,98 @@ public class ParallelMaximumLikelihoodTest {
         }
     }
 
+
+    @Test
+    public void testingSequenceParallelML() throws IOException {
+
+        DynamicBayesianNetworkGenerator.setNumberOfContinuousVars(0);
+        DynamicBayesianNetworkGenerator.setNumberOfDiscreteVars(3);
+        DynamicBayesianNetworkGenerator.setNumberOfStates(2);
+        DynamicBayesianNetwork dynamicNB = DynamicBayesianNetworkGenerator.generateDynamicNaiveBayes(new Random(1), 2, true);
+
+        DynamicBayesianNetworkSampler sampler = new DynamicBayesianNetworkSampler(dynamicNB);
+        sampler.setSeed(1);
+
+        Path singleFileFolder = Files.createTempDirectory("sequences");
+        Path filePerSequenceFolder = Files.createTempDirectory("sequences");
+        try {
+            //A single file with all the sequences, and a folder with one ARFF file per sequence
+            String singleFile = singleFileFolder.resolve("all.arff").toString();
+            DataStreamWriter.writeDataToFile(sampler.sampleToDataBase(500, 4), singleFile);
+
+            DataStream<DynamicDataInstance> data = DynamicDataStreamLoader.open(singleFile);
+            Iterator<DataSequence> sequences = DataSequenceStream.streamOfDataSequences(data).iterator();
+            while (sequences.hasNext()) {
+                DataSequence sequence = sequences.next();
+                DataStreamWriter.writeDataToFile(sequence, filePerSequenceFolder.resolve("seq" + sequence.getSequenceID() + ".arff").toString());
+            }
+
+            Assert.assertEquals(500, DynamicDataStreamLoader.openFolderOfSequences(singleFileFolder.toString()).count());
+            Assert.assertEquals(500, DynamicDataStreamLoader.openFolderOfSequences(filePerSequenceFolder.toString()).count());
+
+            //Each file is closed once its sequences have been read
+            File openFiles = new File("/proc/self/fd");
+            if (openFiles.isDirectory()) {
+                int nOpenFiles = openFiles.list().length;
+                Assert.assertEquals(500, DynamicDataStreamLoader.openFolderOfSequences(filePerSequenceFolder.toString()).count());
+                Assert.assertTrue(openFiles.list().length < nOpenFiles + 10);
+            }
+
+            //The dynamic naive Bayes structure over the attributes read from file
+            DynamicVariables variables = new DynamicVariables(data.getAttributes());
+            Variable classVar = variables.getVariableByName("ClassVar");
+            DynamicDAG dag = new DynamicDAG(variables);
+            dag.getParentSetTimeT(classVar).addParent(variables.getInterfaceVariable(classVar));
+            for (Variable var : variables) {
+                if (var == classVar)
+                    continue;
+                dag.getParentSetTimeT(var).addParent(classVar);
+                dag.getParentSetTimeT(var).addParent(variables.getInterfaceVariable(var));
+            }
+
+            //Sequential learning over batches of instances
+            data.restart();
+            ParallelMaximumLikelihood sequential = new ParallelMaximumLikelihood();
+            sequential.setDebug(false);
+            sequential.setParallelMode(false);
+            sequential.setDynamicDAG(dag);
+            sequential.initLearning();
+            sequential.updateModel(data);
+            DynamicBayesianNetwork bnSequential = sequential.getLearntDBN();
+
+            //Parallel learning over batches of instances
+            data.restart();
+            ParallelMaximumLikelihood parallelBatches = new ParallelMaximumLikelihood();
+            parallelBatches.setDebug(false);
+            parallelBatches.setDynamicDAG(dag);
+            parallelBatches.initLearning();
+            parallelBatches.updateModel(data);
+            Assert.assertTrue(bnSequential.equalDBNs(parallelBatches.getLearntDBN(), 1e-10));
+
+            //Parallel learning over whole sequences of the same file
+            data.restart();
+            ParallelMaximumLikelihood parallel = new ParallelMaximumLikelihood();
+            parallel.setDebug(false);
+            parallel.setSequencePartitionedMode(true);
+            parallel.setSequenceBatchSize(7);
+            parallel.setDynamicDAG(dag);
+            parallel.initLearning();
+            parallel.updateModel(data);
+            Assert.assertTrue(bnSequential.equalDBNs(parallel.getLearntDBN(), 1e-10));
+
+            //Parallel learning over the folder with one file per sequence
+            ParallelMaximumLikelihood fromFolder = new ParallelMaximumLikelihood();
+            fromFolder.setDebug(false);
+            fromFolder.setDynamicDAG(dag);
+            fromFolder.initLearning();
+            fromFolder.updateModelOnSequences(DynamicDataStreamLoader.openFolderOfSequences(filePerSequenceFolder.toString()));
+            Assert.assertTrue(bnSequential.equalDBNs(fromFolder.getLearntDBN(), 1e-10));
+        } finally {
+            for (Path folder : new Path[]{singleFileFolder, filePerSequenceFolder}) {
+                for (File file : folder.toFile().listFiles())
+                    file.delete();
+                folder.toFile().delete();
+            }
+        }
+    }
 }
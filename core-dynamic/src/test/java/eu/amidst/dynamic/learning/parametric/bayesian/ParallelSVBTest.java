@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ */
+
+package eu.amidst.dynamic.learning.parametric.bayesian;
+
+import eu.amidst.core.datastream.DataOnMemoryListContainer;
+import eu.amidst.core.datastream.DataStream;
+import eu.amidst.core.distribution.ConditionalDistribution;
+import eu.amidst.dynamic.datastream.DynamicDataInstance;
+import eu.amidst.dynamic.models.DynamicBayesianNetwork;
+import eu.amidst.dynamic.utils.DynamicBayesianNetworkGenerator;
+import eu.amidst.dynamic.utils.DynamicBayesianNetworkSampler;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+public class ParallelSVBTest extends TestCase {
+
+    private static DynamicBayesianNetwork createDBN() {
+        DynamicBayesianNetworkGenerator.setNumberOfContinuousVars(0);
+        DynamicBayesianNetworkGenerator.setNumberOfDiscreteVars(3);
+        DynamicBayesianNetworkGenerator.setNumberOfStates(2);
+        return DynamicBayesianNetworkGenerator.generateDynamicNaiveBayes(new Random(0), 2, true);
+    }
+
+    private static DynamicBayesianNetwork learnSequentially(DynamicBayesianNetwork dbn, DataStream<DynamicDataInstance> data, int windowsSize) {
+        SVB svb = new SVB();
+        svb.setWindowsSize(windowsSize);
+        svb.setSeed(5);
+        svb.setDynamicDAG(dbn.getDynamicDAG());
+        svb.setDataStream(data);
+        svb.runLearning();
+        return svb.getLearntDBN();
+    }
+
+    private static ParallelSVB learnInParallel(DynamicBayesianNetwork dbn, DataStream<DynamicDataInstance> data, int windowsSize, int nCores) {
+        ParallelSVB parallelSVB = new ParallelSVB();
+        parallelSVB.setWindowsSize(windowsSize);
+        parallelSVB.setSeed(5);
+        parallelSVB.setNCores(nCores);
+        parallelSVB.setDynamicDAG(dbn.getDynamicDAG());
+        parallelSVB.setDataStream(data);
+        parallelSVB.runLearning();
+        return parallelSVB;
+    }
+
+    private static void assertEqualDBNs(DynamicBayesianNetwork expected, DynamicBayesianNetwork actual, double threshold) {
+        for (ConditionalDistribution dist : expected.getConditionalDistributionsTime0()) {
+            assertTrue(dist.equalDist(actual.getConditionalDistributionTime0(dist.getVariable()), threshold));
+        }
+        for (ConditionalDistribution dist : expected.getConditionalDistributionsTimeT()) {
+            assertTrue(dist.equalDist(actual.getConditionalDistributionTimeT(dist.getVariable()), threshold));
+        }
+    }
+
+    // With a single core and the sequences in order, the windows are processed as in the dynamic SVB, and the
+    // distributions of the interface variables of the hidden class are carried between windows.
+    public static void testSingleCoreMatchesSVB() {
+        DynamicBayesianNetwork dbn = createDBN();
+
+        DynamicBayesianNetworkSampler sampler = new DynamicBayesianNetworkSampler(dbn);
+        sampler.setSeed(0);
+        sampler.setMARVar(dbn.getDynamicVariables().getVariableByName("ClassVar"), 0.5);
+        //The missing values are sampled when the stream is iterated, so the data is kept on memory
+        DataStream<DynamicDataInstance> stream = sampler.sampleToDataBase(20, 30);
+        DataStream<DynamicDataInstance> data = new DataOnMemoryListContainer<>(stream.getAttributes(),
+                stream.stream().collect(Collectors.toList()));
+
+        DynamicBayesianNetwork sequential = learnSequentially(dbn, data, 10);
+        ParallelSVB parallelSVB = learnInParallel(dbn, data, 10, 1);
+
+        assertEqualDBNs(sequential, parallelSVB.getLearntDBN(), 1e-8);
+    }
+
+    // With fully observed sequences, the posterior does not depend on the order of the windows, so packing windows
+    // of many interleaved sequences into parallel rounds must give the sequential result.
+    public static void testInterleavedSequences() {
+        DynamicBayesianNetwork dbn = createDBN();
+
+        DynamicBayesianNetworkSampler sampler = new DynamicBayesianNetworkSampler(dbn);
+        sampler.setSeed(0);
+        DataStream<DynamicDataInstance> data = sampler.sampleToDataBase(40, 12);
+        List<DynamicDataInstance> instances = data.stream().collect(Collectors.toList());
+
+        List<DynamicDataInstance> interleaved = new ArrayList<>();
+        for (int t = 0; t < 12; t++) {
+            for (int seq = 0; seq < 40; seq++) {
+                DynamicDataInstance instance = instances.get(seq * 12 + t);
+                assertEquals(seq, instance.getSequenceID());
+                assertEquals(t, instance.getTimeID());
+                interleaved.add(instance);
+            }
+        }
+
+        DynamicBayesianNetwork sequential = learnSequentially(dbn, new DataOnMemoryListContainer<>(data.getAttributes(), instances), 4);
+        ParallelSVB parallelSVB = learnInParallel(dbn, new DataOnMemoryListContainer<>(data.getAttributes(), interleaved), 4, 4);
+
+        assertEqualDBNs(sequential, parallelSVB.getLearntDBN(), 1e-6);
+        assertFalse(Double.isNaN(parallelSVB.getLogMarginalProbability()));
+    }
+
+    // When the bound of open windows is reached, the oldest open window is processed as a partial window, which must
+    // give the same result as windows of that size, as the interface variables are carried between windows.
+    public static void testBoundedOpenWindows() {
+        DynamicBayesianNetwork dbn = createDBN();
+
+        DynamicBayesianNetworkSampler sampler = new DynamicBayesianNetworkSampler(dbn);
+        sampler.setSeed(0);
+        sampler.setMARVar(dbn.getDynamicVariables().getVariableByName("ClassVar"), 0.5);
+        DataStream<DynamicDataInstance> data = sampler.sampleToDataBase(2, 30);
+        List<DynamicDataInstance> instances = data.stream().collect(Collectors.toList());
+
+        //The two sequences are interleaved in blocks of 5 instances
+        List<DynamicDataInstance> interleaved = new ArrayList<>();
+        for (int block = 0; block < 6; block++) {
+            for (int seq = 0; seq < 2; seq++) {
+                interleaved.addAll(instances.subList(seq * 30 + block * 5, seq * 30 + block * 5 + 5));
+            }
+        }
+        DataStream<DynamicDataInstance> interleavedData = new DataOnMemoryListContainer<>(data.getAttributes(), interleaved);
+
+        ParallelSVB expected = learnInParallel(dbn, interleavedData, 5, 1);
+
+        ParallelSVB parallelSVB = new ParallelSVB();
+        parallelSVB.setWindowsSize(10);
+        parallelSVB.setMaxOpenWindows(1);
+        parallelSVB.setSeed(5);
+        parallelSVB.setNCores(1);
+        parallelSVB.setDynamicDAG(dbn.getDynamicDAG());
+        parallelSVB.setDataStream(interleavedData);
+        parallelSVB.runLearning();
+
+        assertEqualDBNs(expected.getLearntDBN(), parallelSVB.getLearntDBN(), 1e-8);
+
+        //The state of a finished sequence can be removed
+        assertEquals(2, parallelSVB.getSequenceIDs().size());
+        parallelSVB.removeSequence(0);
+        assertEquals(1, parallelSVB.getSequenceIDs().size());
+    }
+
+    // The state of the least recently updated sequences is removed when the bound of kept sequences is exceeded.
+    public static void testBoundedSequences() {
+        DynamicBayesianNetwork dbn = createDBN();
+
+        DynamicBayesianNetworkSampler sampler = new DynamicBayesianNetworkSampler(dbn);
+        sampler.setSeed(0);
+        DataStream<DynamicDataInstance> data = sampler.sampleToDataBase(20, 4);
+
+        ParallelSVB parallelSVB = new ParallelSVB();
+        parallelSVB.setWindowsSize(4);
+        parallelSVB.setMaxSequences(5);
+        parallelSVB.setSeed(5);
+        parallelSVB.setNCores(1);
+        parallelSVB.setDynamicDAG(dbn.getDynamicDAG());
+        parallelSVB.setDataStream(data);
+        parallelSVB.runLearning();
+
+        //The sequences are in order, so the last five are kept
+        assertEquals(5, parallelSVB.getSequenceIDs().size());
+        for (long sequenceID = 15; sequenceID < 20; sequenceID++) {
+            assertTrue(parallelSVB.getSequenceIDs().contains(sequenceID));
+        }
+        assertFalse(Double.isNaN(parallelSVB.getLogMarginalProbability()));
+    }
+
+}
@@ -17,13 +17,22 @@
 
 package eu.amidst.dynamic.utils;
 
+import eu.amidst.core.datastream.Attribute;
 import eu.amidst.core.datastream.DataStream;
 import eu.amidst.core.variables.Variable;
 import eu.amidst.dynamic.datastream.DynamicDataInstance;
+import eu.amidst.dynamic.io.DynamicDataStreamLoader;
+import eu.amidst.dynamic.learning.parametric.ParallelMaximumLikelihood;
 import eu.amidst.dynamic.models.DynamicBayesianNetwork;
 import junit.framework.TestCase;
 
+import java.io.File;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 /**
  * Created by andresmasegosa on 25/11/15.
@@ -53,4 +62,81 @@ public class DynamicBayesianNetworkSamplerTest extends TestCase {
         assertEquals(6,dataPredict.streamOfBatches(50).count());
     }
 
-}
\ No newline at end of file
+    public static void testParallelMode() throws Exception {
+
+        DynamicBayesianNetworkGenerator.setNumberOfContinuousVars(2);
+        DynamicBayesianNetworkGenerator.setNumberOfDiscreteVars(2);
+        DynamicBayesianNetworkGenerator.setNumberOfStates(2);
+        DynamicBayesianNetwork dbn = DynamicBayesianNetworkGenerator.generateDynamicNaiveBayes(new Random(0), 2, true);
+        Variable discreteVar = dbn.getDynamicVariables().getVariableByName("DiscreteVar1");
+
+        DynamicBayesianNetworkSampler sampler = new DynamicBayesianNetworkSampler(dbn);
+        sampler.setSeed(3);
+        sampler.setMARVar(discreteVar, 0.2);
+        sampler.setParallelMode(true);
+
+        //The sampled data does not depend on the number of threads nor on the number of sequences
+        List<double[]> rows = new ForkJoinPool(4).submit(() -> toRows(sampler.sampleToDataBase(40, 30))).get();
+        List<double[]> rowsOneThread = new ForkJoinPool(1).submit(() -> toRows(sampler.sampleToDataBase(40, 30))).get();
+        List<double[]> rowsPrefix = toRows(sampler.sampleToDataBase(10, 30));
+
+        assertEquals(40 * 30, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertTrue(Arrays.equals(rows.get(i), rowsOneThread.get(i)));
+            if (i < rowsPrefix.size())
+                assertTrue(Arrays.equals(rows.get(i), rowsPrefix.get(i)));
+            assertEquals(i / 30, (int) rows.get(i)[0]);
+            assertEquals(i % 30, (int) rows.get(i)[1]);
+        }
+        assertTrue(rows.stream().anyMatch(row -> Double.isNaN(row[2 + discreteVar.getVarID()])));
+
+        //The past values of an instance are the present values of the previous one
+        Iterator<DynamicDataInstance> it = sampler.sampleToDataBase(2, 30).iterator();
+        DynamicDataInstance previous = null;
+        while (it.hasNext()) {
+            DynamicDataInstance instance = it.next();
+            for (Variable var : dbn.getDynamicVariables()) {
+                double past = instance.getValue(dbn.getDynamicVariables().getInterfaceVariable(var));
+                if (instance.getTimeID() == 0)
+                    assertTrue(Double.isNaN(past));
+                else
+                    assertEquals(previous.getValue(var), past, 0.0);
+            }
+            previous = instance;
+        }
+
+        //Streaming to file gives the same data
+        File file = File.createTempFile("dbn-samples", ".arff");
+        try {
+            sampler.sampleToFile(40, 30, file.getPath());
+            DataStream<DynamicDataInstance> fromFile = DynamicDataStreamLoader.open(file.getPath());
+            List<Attribute> atts = fromFile.getAttributes().getFullListOfAttributes();
+            int i = 0;
+            for (DynamicDataInstance instance : fromFile) {
+                for (Attribute att : atts)
+                    assertEquals(rows.get(i)[att.getIndex()], instance.getValue(att), 0.0);
+                i++;
+            }
+            assertEquals(rows.size(), i);
+        } finally {
+            file.delete();
+        }
+
+        //The parallel sampler samples from the network
+        ParallelMaximumLikelihood maximumLikelihood = new ParallelMaximumLikelihood();
+        maximumLikelihood.setDebug(false);
+        maximumLikelihood.setDynamicDAG(dbn.getDynamicDAG());
+        maximumLikelihood.initLearning();
+        DynamicBayesianNetworkSampler completeSampler = new DynamicBayesianNetworkSampler(dbn);
+        completeSampler.setParallelMode(true);
+        maximumLikelihood.updateModel(completeSampler.sampleToDataBase(5000, 10));
+        DynamicBayesianNetwork learnt = maximumLikelihood.getLearntDBN();
+        for (Variable var : dbn.getDynamicVariables()) {
+            assertTrue(learnt.getConditionalDistributionTimeT(var).equalDist(dbn.getConditionalDistributionTimeT(var), 0.1));
+        }
+    }
+
+    private static List<double[]> toRows(DataStream<DynamicDataInstance> data) {
+        return data.stream().map(DynamicDataInstance::toArray).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+
+package eu.amidst.core.conceptdrift;
+
+
+import eu.amidst.core.conceptdrift.utils.BatchWindow;
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.datastream.DataStream;
+import eu.amidst.core.exponentialfamily.SufficientStatistics;
+import eu.amidst.core.learning.parametric.ParallelMaximumLikelihood;
+
+import java.util.stream.Stream;
+
+/**
+ * This class extends the {@link ParallelMaximumLikelihood} class and implements the {@link SlidingWindowLearner}
+ * interface. It defines a Maximum Likelihood approach where the learnt model only depends on the data of the last
+ * batches. The sufficient statistics of each batch in the window are kept in a ring buffer, so when a batch falls out
+ * of the window its statistics are subtracted from the accumulated ones, instead of learning again from scratch.
+ */
+public class MaximumLikelihoodSlidingWindow extends ParallelMaximumLikelihood implements SlidingWindowLearner {
+
+    /** Represents the number of batches kept in the sliding window. */
+    protected int numberOfBatchesInWindow = 10;
+
+    /** Represents the sufficient statistics of the batches in the sliding window. */
+    protected BatchWindow<SufficientStatistics> window;
+
+    /** Represents the number of data instances of the batches in the sliding window. */
+    protected BatchWindow<Double> windowCounts;
+
+    /** Represents the initial sufficient statistics (i.e., the Laplace correction), which never leave the window. */
+    protected SufficientStatistics initSS;
+
+    /** Represents the initial data instance count. */
+    protected double initCount;
+
+    /** Represents the number of evicted batches since the accumulated statistics were last recomputed. */
+    protected int evictionsSinceRecompute;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setNumberOfBatchesInWindow(int numberOfBatches) {
+        if (numberOfBatches < 1)
+            throw new IllegalArgumentException("The number of batches in the window must be positive.");
+        this.numberOfBatchesInWindow = numberOfBatches;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNumberOfBatchesInWindow() {
+        return numberOfBatchesInWindow;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void initLearning() {
+        super.initLearning();
+        initSS = efBayesianNetwork.createZeroSufficientStatistics();
+        initSS.copy(sumSS);
+        initCount = dataInstanceCount.get();
+        window = new BatchWindow<>(numberOfBatchesInWindow);
+        windowCounts = new BatchWindow<>(numberOfBatchesInWindow);
+        evictionsSinceRecompute = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double updateModel(DataOnMemory<DataInstance> batch) {
+
+        Stream<DataInstance> stream = (parallelMode) ? batch.getList().parallelStream() : batch.stream();
+        SufficientStatistics batchSS = stream
+                .map(efBayesianNetwork::getSufficientStatistics)
+                .reduce(SufficientStatistics::sumVectorNonStateless).get();
+
+        sumSS.sum(batchSS);
+        dataInstanceCount.addAndGet(batch.getNumberOfDataInstances());
+
+        SufficientStatistics evictedSS = window.add(batchSS);
+        Double evictedCount = windowCounts.add((double) batch.getNumberOfDataInstances());
+
+        if (evictedSS != null) {
+            //Subtracting the statistics accumulates rounding errors, so they are recomputed once per window.
+            if (++evictionsSinceRecompute < numberOfBatchesInWindow) {
+                sumSS.substract(evictedSS);
+                dataInstanceCount.addAndGet(-evictedCount);
+            } else {
+                this.recomputeSufficientStatistics();
+            }
+        }
+
+        return Double.NaN;
+    }
+
+    /**
+     * Recomputes the accumulated sufficient statistics from the batches in the sliding window.
+     */
+    protected void recomputeSufficientStatistics() {
+        sumSS.copy(initSS);
+        window.forEach(sumSS::sum);
+        dataInstanceCount.set(initCount);
+        windowCounts.forEach(dataInstanceCount::addAndGet);
+        evictionsSinceRecompute = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double updateModel(DataStream<DataInstance> dataStream) {
+        for (DataOnMemory<DataInstance> batch : dataStream.iterableOverBatches(windowsSize)) {
+            this.updateModel(batch);
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void runLearning() {
+        this.initLearning();
+        this.updateModel(dataStream);
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+
+package eu.amidst.core.conceptdrift;
+
+
+import eu.amidst.core.conceptdrift.utils.BatchWindow;
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.datastream.DataStream;
+import eu.amidst.core.learning.parametric.bayesian.BayesianParameterLearningAlgorithm;
+import eu.amidst.core.learning.parametric.bayesian.SVB;
+import eu.amidst.core.learning.parametric.bayesian.utils.DataPosterior;
+import eu.amidst.core.learning.parametric.bayesian.utils.PlateuStructure;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.models.DAG;
+import eu.amidst.core.utils.CompoundVector;
+import eu.amidst.core.utils.Serialization;
+import eu.amidst.core.variables.Variable;
+
+import java.util.List;
+
+/**
+ * This class implements the {@link BayesianParameterLearningAlgorithm} and {@link SlidingWindowLearner} interfaces.
+ * It defines a streaming variational Bayes approach where the posterior only depends on the data of the last batches.
+ * The difference between the natural parameters of the posterior and the prior computed on each batch of the window
+ * is kept in a ring buffer, so when a batch falls out of the window its difference is subtracted from the current
+ * prior. If the batch outputs of the underlying {@link SVB} are sparse (see {@link SVB#setSparseBatchOutput(boolean)}),
+ * only the updated natural parameters are stored.
+ *
+ * <p> The posterior is exact for fully observed models, where the contribution of a batch does not depend on the
+ * prior. With latent variables, the contribution of a batch is the one computed with the prior at the time it was
+ * processed. </p>
+ */
+public class SVBSlidingWindow implements BayesianParameterLearningAlgorithm, SlidingWindowLearner {
+
+    /** Represents the underlying {@link SVB} learner. */
+    SVB svb;
+
+    /** Represents the {@link DataStream} used for learning the parameters. */
+    DataStream<DataInstance> dataStream;
+
+    /** Represents the number of batches kept in the sliding window. */
+    int numberOfBatchesInWindow = 10;
+
+    /** Represents the natural parameter differences and ELBOs of the batches in the sliding window. */
+    BatchWindow<SVB.BatchOutput> window;
+
+    /** Represents the natural parameters of the initial prior. */
+    CompoundVector initialPrior;
+
+    /** Represents the number of evicted batches since the prior was last recomputed. */
+    int evictionsSinceRecompute;
+
+    /**
+     * Creates a new sliding window learner.
+     */
+    public SVBSlidingWindow(){
+        svb = new SVB();
+    }
+
+    /**
+     * Returns the underlying {@link SVB} learner.
+     * @return a {@link SVB} object.
+     */
+    public SVB getSVB(){
+        return svb;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setNumberOfBatchesInWindow(int numberOfBatches) {
+        if (numberOfBatches < 1)
+            throw new IllegalArgumentException("The number of batches in the window must be positive.");
+        this.numberOfBatchesInWindow = numberOfBatches;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNumberOfBatchesInWindow() {
+        return numberOfBatchesInWindow;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getWindowsSize() {
+        return svb.getWindowsSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setWindowsSize(int windowsSize) {
+        this.svb.setWindowsSize(windowsSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<DataPosterior> computePosterior(DataOnMemory<DataInstance> batch) {
+        return svb.computePosterior(batch);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<DataPosterior> computePosterior(DataOnMemory<DataInstance> batch, List<Variable> latentVariables) {
+        return svb.computePosterior(batch, latentVariables);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void initLearning() {
+        svb.initLearning();
+        initialPrior = svb.getNaturalParameterPrior();
+        window = new BatchWindow<>(numberOfBatchesInWindow);
+        evictionsSinceRecompute = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double updateModel(DataOnMemory<DataInstance> batch) {
+        SVB.BatchOutput batchOutput = svb.updateModelOnBatchParallel(batch);
+        svb.updateNaturalParameterPriorDelta(batchOutput.getVector());
+
+        SVB.BatchOutput evicted = window.add(batchOutput);
+        if (evicted != null) {
+            //Subtracting the differences accumulates rounding errors, so the prior is recomputed once per window.
+            if (++evictionsSinceRecompute < numberOfBatchesInWindow) {
+                evicted.getVector().multiplyBy(-1);
+                svb.updateNaturalParameterPriorDelta(evicted.getVector());
+            } else {
+                this.recomputePrior();
+            }
+        }
+
+        return batchOutput.getElbo();
+    }
+
+    /**
+     * Recomputes the prior from the initial prior and the batches in the sliding window.
+     */
+    protected void recomputePrior() {
+        CompoundVector prior = Serialization.deepCopy(initialPrior);
+        window.forEach(batchOutput -> SVB.BatchOutput.sumDeltas(prior, batchOutput.getVector()));
+        svb.updateNaturalParameterPrior(prior);
+        evictionsSinceRecompute = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double updateModel(DataStream<DataInstance> dataStream) {
+        double elbo = 0;
+        for (DataOnMemory<DataInstance> batch : dataStream.iterableOverBatches(svb.getWindowsSize())) {
+            elbo += this.updateModel(batch);
+        }
+        return elbo;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDataStream(DataStream<DataInstance> data) {
+        this.dataStream = data;
+        svb.setDataStream(data);
+    }
+
+    /**
+     * Returns the sum of the ELBOs of the batches in the sliding window.
+     * @return a {@code double} value.
+     */
+    @Override
+    public double getLogMarginalProbability() {
+        double[] elbo = new double[1];
+        window.forEach(batchOutput -> elbo[0] += batchOutput.getElbo());
+        return elbo[0];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void runLearning() {
+        this.initLearning();
+        this.updateModel(dataStream);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDAG(DAG dag) {
+        svb.setDAG(dag);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setSeed(int seed) {
+        svb.setSeed(seed);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BayesianNetwork getLearntBayesianNetwork() {
+        return svb.getLearntBayesianNetwork();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setParallelMode(boolean parallelMode) {
+        svb.setParallelMode(parallelMode);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setOutput(boolean activateOutput) {
+        svb.setOutput(activateOutput);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double predictedLogLikelihood(DataOnMemory<DataInstance> batch) {
+        return svb.predictedLogLikelihood(batch);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setPlateuStructure(PlateuStructure plateuStructure) {
+        svb.setPlateuStructure(plateuStructure);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+
+package eu.amidst.core.conceptdrift.utils;
+
+import java.io.Serializable;
+import java.util.function.Consumer;
+
+/**
+ * This class implements a bounded ring buffer storing the contributions of the most recent data batches. It is used
+ * by the sliding window learners to remove the contribution of a batch when it falls out of the window.
+ * @param <T> the type of the stored contributions.
+ */
+public class BatchWindow<T> implements Serializable {
+
+    /** Represents the serial version ID for serializing the object. */
+    private static final long serialVersionUID = 3412208763851239027L;
+
+    /** Represents the stored contributions, indexed circularly. */
+    private final Object[] elements;
+
+    /** Represents the position of the oldest contribution. */
+    private int head = 0;
+
+    /** Represents the number of stored contributions. */
+    private int size = 0;
+
+    /**
+     * Creates a new window storing at most the given number of contributions.
+     * @param capacity the maximum number of stored contributions.
+     */
+    public BatchWindow(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("The capacity of the window must be positive.");
+        this.elements = new Object[capacity];
+    }
+
+    /**
+     * Adds a new contribution to the window.
+     * @param element the contribution of the newest batch.
+     * @return the oldest contribution, which has been evicted from the window, or {@code null} if the window was not full.
+     */
+    @SuppressWarnings("unchecked")
+    public T add(T element) {
+        T evicted = null;
+        int position = (head + size) % elements.length;
+        if (size == elements.length) {
+            evicted = (T) elements[head];
+            head = (head + 1) % elements.length;
+        } else {
+            size++;
+        }
+        elements[position] = element;
+        return evicted;
+    }
+
+    /**
+     * Performs an action on each stored contribution, from the oldest to the newest.
+     * @param action the action to perform.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super T> action) {
+        for (int i = 0; i < size; i++) {
+            action.accept((T) elements[(head + i) % elements.length]);
+        }
+    }
+
+    /**
+     * Returns the number of stored contributions.
+     * @return the number of stored contributions.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the maximum number of stored contributions.
+     * @return the capacity of the window.
+     */
+    public int getCapacity() {
+        return elements.length;
+    }
+
+    /**
+     * Returns whether the window is full, i.e., whether the next added contribution evicts the oldest one.
+     * @return {@code true} if the window is full, {@code false} otherwise.
+     */
+    public boolean isFull() {
+        return size == elements.length;
+    }
+
+    /**
+     * Removes all the stored contributions.
+     */
+    public void clear() {
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = null;
+        }
+        head = 0;
+        size = 0;
+    }
+}
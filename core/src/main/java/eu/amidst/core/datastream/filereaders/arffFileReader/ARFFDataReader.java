@@ -32,12 +32,17 @@ import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * This class implements the interface {@link DataFileReader} and defines an ARFF (Weka Attribute-Relation File Format) data reader.
@@ -62,6 +67,9 @@ public class ARFFDataReader implements DataFileReader {
     /** Represents a {@code Stream} of {@code DataRow}. */
     private Stream<DataRow> streamString;
 
+    /** Represents the streams of lines opened by {@link #stream()} which have not been closed yet. */
+    private List<Stream<String>> openLines = new ArrayList<>();
+
     /**
      * Creates an {@link Attribute} from a given index and line.
      * @param index an {@code int} that represents the index of column to which the Attribute refers.
@@ -111,8 +119,10 @@ public class ARFFDataReader implements DataFileReader {
     @Override
     public void loadFromFile(String pathString) {
         pathFile = Paths.get(pathString);
-        try {
-            Optional<String> atRelation = Files.lines(pathFile)
+        try (Stream<String> relationLines = Files.lines(pathFile);
+             Stream<String> headerLines = Files.lines(pathFile);
+             Stream<String> attributeLines = Files.lines(pathFile)) {
+            Optional<String> atRelation = relationLines
                     .map(String::trim)
                     .filter(w -> !w.isEmpty())
                     .filter(w -> !w.startsWith("%"))
@@ -126,7 +136,7 @@ public class ARFFDataReader implements DataFileReader {
             relationName = atRelation.get().split(" ")[1];
 
             final int[] count = {0};
-            Optional<String> atData = Files.lines(pathFile)
+            Optional<String> atData = headerLines
                     .map(String::trim)
                     .filter(w -> !w.isEmpty())
                     .filter(w -> !w.startsWith("%"))
@@ -139,7 +149,7 @@ public class ARFFDataReader implements DataFileReader {
 
             dataLineCount = count[0];
 
-            List<String> attLines = Files.lines(pathFile)
+            List<String> attLines = attributeLines
                     .map(String::trim)
                     .filter(w -> !w.isEmpty())
                     .filter(w -> !w.startsWith("%"))
@@ -191,7 +201,29 @@ public class ARFFDataReader implements DataFileReader {
     public Stream<DataRow> stream() {
         //if (streamString ==null) {
         try {
-            streamString = Files.lines(pathFile)
+            Stream<String> lines = Files.lines(pathFile);
+            openLines.add(lines);
+            lines.onClose(() -> openLines.remove(lines));
+
+            //The file is closed once all its lines have been read
+            Spliterator<String> source = lines.spliterator();
+            Spliterator<String> closingSource = new Spliterators.AbstractSpliterator<String>(source.estimateSize(), source.characteristics()) {
+                boolean exhausted = false;
+
+                @Override
+                public boolean tryAdvance(Consumer<? super String> action) {
+                    if (exhausted)
+                        return false;
+                    if (source.tryAdvance(action))
+                        return true;
+                    exhausted = true;
+                    lines.close();
+                    return false;
+                }
+            };
+
+            streamString = StreamSupport.stream(closingSource, false)
+                    .onClose(lines::close)
                     .filter(w -> !w.isEmpty())
                     .filter(w -> !w.startsWith("%"))
                     .skip(this.dataLineCount)
@@ -212,4 +244,14 @@ public class ARFFDataReader implements DataFileReader {
         streamString = null;
     }
 
+    /**
+     * {@inheritDoc}
+     * The files opened by the calls to {@link #stream()} which have not been read completely are closed.
+     */
+    @Override
+    public void close(){
+        new ArrayList<>(openLines).forEach(Stream::close);
+        streamString = null;
+    }
+
 }
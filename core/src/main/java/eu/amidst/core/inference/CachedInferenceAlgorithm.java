@@ -0,0 +1,215 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.inference;
+
+import eu.amidst.core.distribution.UnivariateDistribution;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.variables.Assignment;
+import eu.amidst.core.variables.Variable;
+
+/**
+ * This class implements the interface {@link InferenceAlgorithm} and wraps another {@link InferenceAlgorithm},
+ * storing the computed posteriors in a {@link PosteriorCache} keyed by the values of the observed variables.
+ * When the same evidence is set again, the posteriors of the variables already requested for it are returned
+ * without running the wrapped algorithm.
+ *
+ * <p> The cache is discarded each time a different model instance is set, e.g., after the model has been updated
+ * by a learning algorithm. If a model is modified in place, {@link #invalidate()} must be called. </p>
+ *
+ * <p> The returned posteriors are shared by all the queries with the same evidence, so they must not be modified. </p>
+ */
+public class CachedInferenceAlgorithm implements InferenceAlgorithm {
+
+    /** Represents the wrapped {@link InferenceAlgorithm}. */
+    private final InferenceAlgorithm inferenceAlgorithm;
+
+    /** Represents the {@link PosteriorCache} object. */
+    private final PosteriorCache cache;
+
+    /** Represents the current model. */
+    private BayesianNetwork model;
+
+    /** Represents the current evidence. */
+    private Assignment evidence;
+
+    /** Represents the signature of the current evidence. */
+    private PosteriorCache.EvidenceKey evidenceKey;
+
+    /** Represents the cache entry of the current evidence. */
+    private PosteriorCache.Entry entry;
+
+    /** Indicates whether the wrapped algorithm has been run with the current evidence. */
+    private boolean inferenceDone = false;
+
+    /**
+     * Creates a new CachedInferenceAlgorithm with its own cache.
+     * @param inferenceAlgorithm the {@link InferenceAlgorithm} to be wrapped.
+     * @param maxSize the maximum number of evidence signatures stored in the cache.
+     * @param timeToLiveMillis the time to live of an entry in milliseconds, or a non positive value for no expiration.
+     */
+    public CachedInferenceAlgorithm(InferenceAlgorithm inferenceAlgorithm, int maxSize, long timeToLiveMillis) {
+        this(inferenceAlgorithm, new PosteriorCache(maxSize, timeToLiveMillis));
+    }
+
+    /**
+     * Creates a new CachedInferenceAlgorithm using a given cache.
+     * @param inferenceAlgorithm the {@link InferenceAlgorithm} to be wrapped.
+     * @param cache a {@link PosteriorCache} object.
+     */
+    public CachedInferenceAlgorithm(InferenceAlgorithm inferenceAlgorithm, PosteriorCache cache) {
+        this.inferenceAlgorithm = inferenceAlgorithm;
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the wrapped {@link InferenceAlgorithm}.
+     * @return an {@link InferenceAlgorithm} object.
+     */
+    public InferenceAlgorithm getInferenceAlgorithm() {
+        return inferenceAlgorithm;
+    }
+
+    /**
+     * Returns the {@link PosteriorCache} of this CachedInferenceAlgorithm.
+     * @return a {@link PosteriorCache} object.
+     */
+    public PosteriorCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Discards all the cached posteriors.
+     */
+    public void invalidate() {
+        this.cache.invalidate();
+        this.entry = null;
+        this.inferenceDone = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The wrapped algorithm is only updated when a different model instance is given.
+     */
+    @Override
+    public void setModel(BayesianNetwork model_) {
+        if (this.model != model_) {
+            this.model = model_;
+            this.inferenceAlgorithm.setModel(model_);
+        }
+        this.cache.setModel(model_);
+        this.evidence = null;
+        this.evidenceKey = null;
+        this.entry = null;
+        this.inferenceDone = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BayesianNetwork getOriginalModel() {
+        return this.inferenceAlgorithm.getOriginalModel();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setEvidence(Assignment assignment) {
+        this.evidence = assignment;
+        this.evidenceKey = null;
+        this.entry = null;
+        this.inferenceDone = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The wrapped algorithm is not run if the current evidence is found in the cache.
+     */
+    @Override
+    public void runInference() {
+        this.evidenceKey = new PosteriorCache.EvidenceKey(this.model.getVariables().getListOfVariables(), this.evidence);
+        this.entry = this.cache.get(this.evidenceKey);
+        this.inferenceDone = false;
+
+        if (this.entry == null) {
+            this.runWrappedInference();
+            this.entry = new PosteriorCache.Entry();
+            this.cache.put(this.evidenceKey, this.entry);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <E extends UnivariateDistribution> E getPosterior(Variable var) {
+        this.checkInference();
+        UnivariateDistribution posterior = this.entry.posteriors.get(var.getVarID());
+        if (posterior == null) {
+            this.runWrappedInference();
+            posterior = this.inferenceAlgorithm.getPosterior(var);
+            this.entry.posteriors.put(var.getVarID(), posterior);
+        }
+        return (E) posterior;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getLogProbabilityOfEvidence() {
+        this.checkInference();
+        if (Double.isNaN(this.entry.logProbabilityOfEvidence)) {
+            this.runWrappedInference();
+            this.entry.logProbabilityOfEvidence = this.inferenceAlgorithm.getLogProbabilityOfEvidence();
+        }
+        return this.entry.logProbabilityOfEvidence;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setParallelMode(boolean parallelMode_) {
+        this.inferenceAlgorithm.setParallelMode(parallelMode_);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Changing the seed discards the cached posteriors, as they may depend on it.
+     */
+    @Override
+    public void setSeed(int seed) {
+        this.inferenceAlgorithm.setSeed(seed);
+        this.invalidate();
+    }
+
+    private void runWrappedInference() {
+        if (this.inferenceDone)
+            return;
+        this.inferenceAlgorithm.setEvidence(this.evidence);
+        this.inferenceAlgorithm.runInference();
+        this.inferenceDone = true;
+    }
+
+    private void checkInference() {
+        if (this.entry == null)
+            throw new IllegalStateException("The method runInference must be called before querying posteriors.");
+    }
+}
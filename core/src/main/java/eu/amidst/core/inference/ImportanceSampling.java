@@ -20,6 +20,7 @@ package eu.amidst.core.inference;
 import eu.amidst.core.distribution.ConditionalDistribution;
 import eu.amidst.core.distribution.Distribution;
 import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.distribution.Multinomial_MultinomialParents;
 import eu.amidst.core.distribution.UnivariateDistribution;
 import eu.amidst.core.exponentialfamily.EF_UnivariateDistribution;
 import eu.amidst.core.exponentialfamily.SufficientStatistics;
@@ -27,6 +28,7 @@ import eu.amidst.core.inference.messagepassing.VMP;
 import eu.amidst.core.io.BayesianNetworkLoader;
 import eu.amidst.core.models.BayesianNetwork;
 import eu.amidst.core.utils.LocalRandomGenerator;
+import eu.amidst.core.utils.MultinomialIndex;
 import eu.amidst.core.utils.Serialization;
 import eu.amidst.core.utils.Utils;
 import eu.amidst.core.variables.Assignment;
@@ -70,6 +72,19 @@ public class ImportanceSampling implements InferenceAlgorithm, Serializable {
     private Assignment evidence;
     private boolean parallelMode = true;
 
+    private boolean adaptiveMode = false;
+    private int roundSize = 1000;
+    private double targetEffectiveSampleSize = 0;
+    private double targetStandardError = Double.POSITIVE_INFINITY;
+    private long timeBudget = 0;
+    private List<Variable> queryVariables = null;
+    private boolean adaptSamplingModel = false;
+    private double samplingModelLearningRate = 0.4;
+
+    private int nRounds = 0;
+    private double effectiveSampleSize = Double.NaN;
+    private double standardError = Double.NaN;
+
 
     private class WeightedAssignment {
         private HashMapAssignment assignment;
@@ -165,6 +180,120 @@ public class ImportanceSampling implements InferenceAlgorithm, Serializable {
         this.keepDataOnMemory = keepDataOnMemory;
     }
 
+    /**
+     * Sets the adaptive mode for this ImportanceSampling. In adaptive mode, samples are drawn in rounds and
+     * the sampling stops as soon as all the targets set with {@link #setTargetEffectiveSampleSize(double)} and
+     * {@link #setTargetStandardError(double)} are reached, the time budget set with {@link #setTimeBudget(long)}
+     * is exhausted, or the sample size set with {@link #setSampleSize(int)} is reached. Samples are always kept
+     * on memory in this mode.
+     * @param adaptiveMode {@code true} to activate the adaptive mode, {@code false} otherwise.
+     */
+    public void setAdaptiveMode(boolean adaptiveMode) {
+        this.adaptiveMode = adaptiveMode;
+        if (adaptiveMode)
+            this.keepDataOnMemory = true;
+    }
+
+    /**
+     * Sets the number of samples drawn at each round in adaptive mode. Default value is 1000.
+     * @param roundSize an {@code int} value.
+     */
+    public void setRoundSize(int roundSize) {
+        if (roundSize<1)
+            throw new IllegalArgumentException("The round size must be positive: " + roundSize);
+        this.roundSize = roundSize;
+    }
+
+    /**
+     * Sets the minimum effective sample size, (sum of weights)^2/(sum of squared weights), to be reached in
+     * adaptive mode. Default value is 0 (i.e., no target).
+     * @param targetEffectiveSampleSize a {@code double} value.
+     */
+    public void setTargetEffectiveSampleSize(double targetEffectiveSampleSize) {
+        this.targetEffectiveSampleSize = targetEffectiveSampleSize;
+    }
+
+    /**
+     * Sets the maximum standard error of the posterior estimates of the query variables to be reached in adaptive
+     * mode, i.e., of the probability of each state of multinomial variables, and of the posterior mean of the rest.
+     * The standard errors are estimated from the effective sample size. Default value is infinity (i.e., no target).
+     * @param targetStandardError a {@code double} value.
+     */
+    public void setTargetStandardError(double targetStandardError) {
+        this.targetStandardError = targetStandardError;
+    }
+
+    /**
+     * Sets the maximum time spent by {@link #runInference()} in adaptive mode. The round in progress is always
+     * completed. Default value is 0 (i.e., no time limit).
+     * @param timeBudget the time budget in milliseconds.
+     */
+    public void setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    /**
+     * Sets the variables whose posterior standard error is monitored in adaptive mode. By default, all the
+     * non observed variables are monitored.
+     * @param queryVariables a {@code List} of {@link Variable} objects.
+     */
+    public void setQueryVariables(List<Variable> queryVariables) {
+        this.queryVariables = queryVariables;
+    }
+
+    /**
+     * Sets whether the sampling model is adapted towards the posterior between rounds in adaptive mode, in the
+     * spirit of the AIS-BN algorithm (Cheng, J., Druzdzel, M.J.: AIS-BN: An adaptive importance sampling algorithm
+     * for evidential reasoning in large Bayesian networks. JAIR 13 (2000) 155–188). After each round, the
+     * multinomial conditional distributions of the sampling model with multinomial parents are moved towards the
+     * weighted frequencies of the samples of the round. Only used when there is evidence.
+     * @param adaptSamplingModel {@code true} to adapt the sampling model, {@code false} otherwise.
+     */
+    public void setAdaptSamplingModel(boolean adaptSamplingModel) {
+        this.adaptSamplingModel = adaptSamplingModel;
+    }
+
+    /**
+     * Sets the learning rate used to adapt the sampling model between rounds. Default value is 0.4.
+     * @param samplingModelLearningRate a {@code double} value in (0,1].
+     */
+    public void setSamplingModelLearningRate(double samplingModelLearningRate) {
+        this.samplingModelLearningRate = samplingModelLearningRate;
+    }
+
+    /**
+     * Returns the number of rounds of the last run in adaptive mode.
+     * @return an {@code int} value.
+     */
+    public int getNumberOfRounds() {
+        return nRounds;
+    }
+
+    /**
+     * Returns the number of samples drawn in the last run, when samples are kept on memory.
+     * @return an {@code int} value.
+     */
+    public int getNumberOfSamples() {
+        return (weightedSampleList==null)? 0 : weightedSampleList.size();
+    }
+
+    /**
+     * Returns the effective sample size of the last run in adaptive mode.
+     * @return a {@code double} value.
+     */
+    public double getEffectiveSampleSize() {
+        return effectiveSampleSize;
+    }
+
+    /**
+     * Returns the maximum estimated standard error of the posteriors of the query variables in the last run in
+     * adaptive mode.
+     * @return a {@code double} value.
+     */
+    public double getStandardError() {
+        return standardError;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -372,6 +501,233 @@ public class ImportanceSampling implements InferenceAlgorithm, Serializable {
         return (E)posteriorDistribution;
     }
 
+    /**
+     * Returns the seed of the random generator of a round, mixing the seed and the round index (SplitMix64),
+     * so that runs with consecutive seeds do not share their rounds.
+     * @param seed an {@code int} that represents the seed value.
+     * @param round an {@code int} that represents the round index.
+     * @return an {@code int} seed.
+     */
+    private static int roundSeed(int seed, int round) {
+        long z = seed * 0x9E3779B97F4A7C15L + (round + 1) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (int) (z ^ (z >>> 32));
+    }
+
+    /**
+     * Runs importance sampling in rounds until the targets, the time budget or the sample size are reached.
+     */
+    private void runAdaptiveInference() {
+
+        long start = System.currentTimeMillis();
+        weightedSampleList = new ArrayList<>();
+        nRounds = 0;
+
+        //The adapted sampling model only lives during this run
+        BayesianNetwork initialSamplingModel = this.samplingModel;
+        boolean initialSameSamplingModel = this.sameSamplingModel;
+        List<Variable> initialCausalOrder = this.causalOrder;
+
+        List<Variable> monitoredVariables = (queryVariables!=null)? queryVariables :
+                model.getVariables().getListOfVariables().stream()
+                        .filter(var -> evidence==null || Utils.isMissingValue(evidence.getValue(var)))
+                        .collect(Collectors.toList());
+        ConvergenceStatistics statistics = new ConvergenceStatistics(monitoredVariables);
+
+        while (weightedSampleList.size() < sampleSize) {
+            int nSamples = Math.min(roundSize, sampleSize - weightedSampleList.size());
+
+            LocalRandomGenerator randomGenerator = new LocalRandomGenerator(roundSeed(seed, nRounds));
+            IntStream indexes = IntStream.range(0, nSamples);
+            if (parallelMode)
+                indexes = indexes.parallel();
+            List<WeightedAssignment> roundSamples = indexes.mapToObj(i -> getWeightedAssignment(randomGenerator.current()))
+                    .collect(Collectors.toList());
+
+            weightedSampleList.addAll(roundSamples);
+            nRounds++;
+
+            statistics.add(roundSamples);
+            this.computeConvergenceStatistics(statistics);
+
+            if (effectiveSampleSize >= targetEffectiveSampleSize && standardError <= targetStandardError)
+                break;
+
+            if (timeBudget > 0 && System.currentTimeMillis() - start >= timeBudget)
+                break;
+
+            if (adaptSamplingModel && evidence!=null)
+                this.adaptSamplingModel(roundSamples, initialSamplingModel);
+        }
+
+        this.samplingModel = initialSamplingModel;
+        this.sameSamplingModel = initialSameSamplingModel;
+        this.causalOrder = initialCausalOrder;
+    }
+
+    /**
+     * Computes the effective sample size and the maximum standard error of the posteriors of the monitored
+     * variables from the running sums of the samples drawn so far.
+     * @param statistics a {@link ConvergenceStatistics} object.
+     */
+    private void computeConvergenceStatistics(ConvergenceStatistics statistics) {
+
+        double sumWeights = statistics.sumWeights;
+
+        if (sumWeights == 0) {
+            effectiveSampleSize = 0;
+            standardError = Double.POSITIVE_INFINITY;
+            return;
+        }
+
+        effectiveSampleSize = sumWeights * sumWeights / statistics.sumSquaredWeights;
+
+        double maxStandardError = 0;
+        for (int i = 0; i < statistics.variables.size(); i++) {
+            double[] sums = statistics.sums[i];
+            if (statistics.variables.get(i).isMultinomial()) {
+                for (double sum : sums) {
+                    double prob = sum / sumWeights;
+                    maxStandardError = Math.max(maxStandardError, Math.sqrt(prob * (1 - prob) / effectiveSampleSize));
+                }
+            } else {
+                double mean = sums[0] / sumWeights;
+                double meanSquares = sums[1] / sumWeights;
+                double variance = Math.max(0, meanSquares - mean * mean);
+                maxStandardError = Math.max(maxStandardError, Math.sqrt(variance / effectiveSampleSize));
+            }
+        }
+        standardError = maxStandardError;
+    }
+
+    /**
+     * Defines the running sums of the weights, the squared weights and the weighted statistics of the monitored
+     * variables of an adaptive run, so that each round only processes its own samples. The weights are stored
+     * relative to the maximum log weight seen so far, and the sums are rescaled when it increases.
+     */
+    private static final class ConvergenceStatistics {
+
+        /** Represents the monitored variables. */
+        final List<Variable> variables;
+
+        /** Represents the weighted sums of each monitored variable: per state, or of the values and squared values. */
+        final double[][] sums;
+
+        /** Represents the maximum log weight seen so far. */
+        double maxLogWeight = Double.NEGATIVE_INFINITY;
+
+        /** Represents the sum of the weights. */
+        double sumWeights = 0;
+
+        /** Represents the sum of the squared weights. */
+        double sumSquaredWeights = 0;
+
+        ConvergenceStatistics(List<Variable> variables) {
+            this.variables = variables;
+            this.sums = new double[variables.size()][];
+            for (int i = 0; i < variables.size(); i++) {
+                this.sums[i] = new double[variables.get(i).isMultinomial() ? variables.get(i).getNumberOfStates() : 2];
+            }
+        }
+
+        /**
+         * Adds the samples of a round to the running sums.
+         * @param samples a {@code List} of weighted samples.
+         */
+        void add(List<WeightedAssignment> samples) {
+            double roundMaxLogWeight = Double.NEGATIVE_INFINITY;
+            for (WeightedAssignment sample : samples) {
+                if (Double.isFinite(sample.weight))
+                    roundMaxLogWeight = Math.max(roundMaxLogWeight, sample.weight);
+            }
+
+            if (roundMaxLogWeight > maxLogWeight) {
+                double scale = Double.isFinite(maxLogWeight) ? Math.exp(maxLogWeight - roundMaxLogWeight) : 0;
+                sumWeights *= scale;
+                sumSquaredWeights *= scale * scale;
+                for (double[] sum : sums) {
+                    for (int j = 0; j < sum.length; j++) {
+                        sum[j] *= scale;
+                    }
+                }
+                maxLogWeight = roundMaxLogWeight;
+            }
+
+            for (WeightedAssignment sample : samples) {
+                if (!Double.isFinite(sample.weight))
+                    continue;
+                double weight = Math.exp(sample.weight - maxLogWeight);
+                sumWeights += weight;
+                sumSquaredWeights += weight * weight;
+                for (int i = 0; i < variables.size(); i++) {
+                    double value = sample.assignment.getValue(variables.get(i));
+                    if (variables.get(i).isMultinomial()) {
+                        sums[i][(int) value] += weight;
+                    } else {
+                        sums[i][0] += weight * value;
+                        sums[i][1] += weight * value * value;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the multinomial conditional distributions of the sampling model towards the weighted frequencies
+     * of the given samples. Probabilities are kept away from zero, so that the weights remain bounded.
+     * @param samples a {@code List} of weighted samples.
+     * @param initialSamplingModel the sampling model at the beginning of the run, which is not modified.
+     */
+    private void adaptSamplingModel(List<WeightedAssignment> samples, BayesianNetwork initialSamplingModel) {
+
+        if (this.samplingModel == initialSamplingModel) {
+            this.samplingModel = new BayesianNetwork(initialSamplingModel.getDAG(),
+                    Serialization.deepCopy(initialSamplingModel.getConditionalDistributions()));
+            this.causalOrder = Utils.getTopologicalOrder(samplingModel.getDAG());
+            this.sameSamplingModel = false;
+        }
+
+        double maxLogWeight = samples.stream().mapToDouble(ws -> ws.weight).filter(Double::isFinite).max().orElse(0);
+
+        for (Variable var : this.samplingModel.getVariables()) {
+            if (!Utils.isMissingValue(evidence.getValue(var)))
+                continue;
+
+            ConditionalDistribution dist = this.samplingModel.getConditionalDistribution(var);
+            List<Variable> parents = dist.getConditioningVariables();
+
+            List<Multinomial> multinomials;
+            if (dist instanceof Multinomial)
+                multinomials = Arrays.asList((Multinomial) dist);
+            else if (dist instanceof Multinomial_MultinomialParents)
+                multinomials = ((Multinomial_MultinomialParents) dist).getMultinomialDistributions();
+            else
+                continue;
+
+            double[][] counts = new double[multinomials.size()][var.getNumberOfStates()];
+            for (WeightedAssignment ws : samples) {
+                if (!Double.isFinite(ws.weight))
+                    continue;
+                int index = (parents.isEmpty())? 0 : MultinomialIndex.getIndexFromVariableAssignment(parents, ws.assignment);
+                counts[index][(int) ws.assignment.getValue(var)] += Math.exp(ws.weight - maxLogWeight);
+            }
+
+            for (int i = 0; i < multinomials.size(); i++) {
+                double total = Arrays.stream(counts[i]).sum();
+                if (total == 0)
+                    continue;
+                double[] probs = multinomials.get(i).getProbabilities().clone();
+                for (int k = 0; k < probs.length; k++) {
+                    probs[k] = (1 - samplingModelLearningRate) * probs[k] + samplingModelLearningRate * counts[i][k] / total;
+                    probs[k] = 0.99 * probs[k] + 0.01 / probs.length;
+                }
+                multinomials.get(i).setProbabilities(Utils.normalize(probs));
+            }
+        }
+    }
+
     private void computeWeightedSampleStream(boolean saveDataOnMemory_) {
 
         LocalRandomGenerator randomGenerator = new LocalRandomGenerator(seed);
@@ -393,6 +749,10 @@ public class ImportanceSampling implements InferenceAlgorithm, Serializable {
      */
     @Override
     public void runInference() {
+        if (adaptiveMode) {
+            runAdaptiveInference();
+            return;
+        }
         if(keepDataOnMemory) computeWeightedSampleStream(true);
         //computeWeightedSampleStream(keepDataOnMemory);
     }
@@ -22,6 +22,7 @@ import eu.amidst.core.models.BayesianNetwork;
 import eu.amidst.core.variables.Assignment;
 import eu.amidst.core.variables.Variable;
 
+import java.util.List;
 import java.util.Random;
 import java.util.function.Function;
 import java.util.stream.IntStream;
@@ -50,6 +51,17 @@ public interface InferenceAlgorithm {
      */
     BayesianNetwork getOriginalModel();
 
+    /**
+     * Refreshes this InferenceAlgorithm after the distributions of some variables of its model have been
+     * modified in place, keeping the structures compiled by {@link #setModel(BayesianNetwork)} when possible.
+     * By default, the model is set again.
+     * @param model the {@link BayesianNetwork} model whose distributions have been modified.
+     * @param variables the {@code List} of {@link Variable}s whose distributions have been modified.
+     */
+    default void updateModelParameters(BayesianNetwork model, List<Variable> variables){
+        this.setModel(model);
+    }
+
     /**
      * Sets the evidence for this InferenceAlgorithm.
      * @param assignment an {@link Assignment} object to which the evidence will be set.
@@ -27,10 +27,15 @@ import eu.amidst.core.variables.HashMapAssignment;
 import eu.amidst.core.variables.Variable;
 
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * This class defines the Inference Engine for Bayesian Network models.
  *
+ * <p> The static methods of this class share a single {@link InferenceAlgorithm}, so they must not be called from
+ * several threads at the same time. Use {@link #newSessionPool(BayesianNetwork, Supplier, int)} to answer
+ * concurrent queries over the same model. </p>
+ *
  * <p> For an example of use follow this link
  * <a href="http://amidst.github.io/toolbox/CodeExamples.html#inferenceengingeexample"> http://amidst.github.io/toolbox/CodeExamples.html#inferenceengingeexample </a>  </p>
  */
@@ -88,6 +93,29 @@ public final class InferenceEngine {
         return inferenceAlgorithm.getPosterior(var);
     }
 
+    /**
+     * Compiles a {@link BayesianNetwork} into a new {@link InferenceSessionPool} whose sessions run {@link VMP}.
+     * The maximum number of sessions is set to the number of available processors.
+     * @param bayesianNetwork a {@link BayesianNetwork} object.
+     * @return an {@link InferenceSessionPool} object.
+     */
+    public static InferenceSessionPool newSessionPool(BayesianNetwork bayesianNetwork) {
+        return newSessionPool(bayesianNetwork, VMP::new, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Compiles a {@link BayesianNetwork} into a new {@link InferenceSessionPool}.
+     * @param bayesianNetwork a {@link BayesianNetwork} object.
+     * @param inferenceAlgorithmFactory a {@code Supplier} creating the {@link InferenceAlgorithm} of each session.
+     * @param maxSessions the maximum number of sessions that can be used concurrently.
+     * @return an {@link InferenceSessionPool} object.
+     */
+    public static InferenceSessionPool newSessionPool(BayesianNetwork bayesianNetwork,
+                                                      Supplier<? extends InferenceAlgorithm> inferenceAlgorithmFactory,
+                                                      int maxSessions) {
+        return new InferenceSessionPool(bayesianNetwork, inferenceAlgorithmFactory, maxSessions);
+    }
+
 
     public static void main(String[] arguments){
 
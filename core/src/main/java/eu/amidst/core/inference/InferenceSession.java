@@ -0,0 +1,154 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.inference;
+
+import eu.amidst.core.distribution.UnivariateDistribution;
+import eu.amidst.core.variables.Assignment;
+import eu.amidst.core.variables.HashMapAssignment;
+import eu.amidst.core.variables.Variable;
+
+import java.util.function.Function;
+
+/**
+ * This class defines a lightweight inference session drawn from an {@link InferenceSessionPool}.
+ * A session only holds the per-query state (i.e., the evidence and the posterior buffers of its
+ * {@link InferenceAlgorithm}), while the compiled model is shared with the rest of sessions of the pool.
+ *
+ * <p> A session must only be used by one thread at a time, and it must be closed after use so that it is
+ * returned to its pool. </p>
+ */
+public final class InferenceSession implements AutoCloseable {
+
+    /** Represents the pool this session belongs to. */
+    private final InferenceSessionPool pool;
+
+    /** Represents the {@link InferenceAlgorithm} of this session. */
+    private final InferenceAlgorithm inferenceAlgorithm;
+
+    /** Indicates whether this session is currently borrowed from its pool. */
+    private boolean open = false;
+
+    /**
+     * Creates a new InferenceSession.
+     * @param pool the {@link InferenceSessionPool} this session belongs to.
+     * @param inferenceAlgorithm an {@link InferenceAlgorithm} already set to the compiled model of the pool.
+     */
+    InferenceSession(InferenceSessionPool pool, InferenceAlgorithm inferenceAlgorithm) {
+        this.pool = pool;
+        this.inferenceAlgorithm = inferenceAlgorithm;
+    }
+
+    /**
+     * Marks this session as borrowed from its pool.
+     */
+    void open() {
+        this.open = true;
+    }
+
+    /**
+     * Sets the evidence for this session.
+     * @param assignment an {@link Assignment} object.
+     */
+    public void setEvidence(Assignment assignment) {
+        this.checkOpen();
+        this.inferenceAlgorithm.setEvidence(assignment);
+    }
+
+    /**
+     * Runs inference with the current evidence.
+     */
+    public void runInference() {
+        this.checkOpen();
+        this.inferenceAlgorithm.runInference();
+    }
+
+    /**
+     * Returns the posterior of a given {@link Variable}.
+     * @param <E> a class extending {@link UnivariateDistribution}.
+     * @param var a {@link Variable} object.
+     * @return an {@link UnivariateDistribution} object.
+     */
+    public <E extends UnivariateDistribution> E getPosterior(Variable var) {
+        this.checkOpen();
+        return this.inferenceAlgorithm.getPosterior(var);
+    }
+
+    /**
+     * Returns the posterior of a given {@link Variable}.
+     * @param <E> a class extending {@link UnivariateDistribution}.
+     * @param varID an {@code int} that represents the ID of a variable.
+     * @return an {@link UnivariateDistribution} object.
+     */
+    public <E extends UnivariateDistribution> E getPosterior(int varID) {
+        this.checkOpen();
+        return this.inferenceAlgorithm.getPosterior(varID);
+    }
+
+    /**
+     * Returns the expected value of a given {@link Variable}.
+     * @param var a {@link Variable} object.
+     * @param function a {@code Function} object.
+     * @return a {@code double} that represents the expected value.
+     */
+    public double getExpectedValue(Variable var, Function<Double,Double> function) {
+        this.checkOpen();
+        return this.inferenceAlgorithm.getExpectedValue(var, function);
+    }
+
+    /**
+     * Returns the log probability of the evidence.
+     * @return the log probability of the evidence.
+     */
+    public double getLogProbabilityOfEvidence() {
+        this.checkOpen();
+        return this.inferenceAlgorithm.getLogProbabilityOfEvidence();
+    }
+
+    /**
+     * Returns the {@link InferenceAlgorithm} of this session.
+     * @return an {@link InferenceAlgorithm} object.
+     */
+    public InferenceAlgorithm getInferenceAlgorithm() {
+        return inferenceAlgorithm;
+    }
+
+    /**
+     * Tests whether this session is currently borrowed from its pool.
+     * @return {@code true} if the session is open, {@code false} otherwise.
+     */
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Clears the evidence of this session and returns it to its pool.
+     */
+    @Override
+    public void close() {
+        if (!this.open)
+            return;
+        this.inferenceAlgorithm.setEvidence(new HashMapAssignment(0));
+        this.open = false;
+        this.pool.release(this);
+    }
+
+    private void checkOpen() {
+        if (!this.open)
+            throw new IllegalStateException("The inference session is closed.");
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.inference;
+
+import eu.amidst.core.distribution.UnivariateDistribution;
+import eu.amidst.core.exponentialfamily.EF_BayesianNetwork;
+import eu.amidst.core.inference.messagepassing.MessagePassingAlgorithm;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.utils.Serialization;
+import eu.amidst.core.variables.Assignment;
+import eu.amidst.core.variables.Variable;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * This class defines a thread-safe, bounded pool of {@link InferenceSession}s over a {@link BayesianNetwork}
+ * compiled once. The compiled model (a private copy of the network and, for message passing algorithms, its
+ * {@link EF_BayesianNetwork}) is never modified after construction, so it is shared by all the sessions. Each
+ * session only keeps its own evidence and posterior buffers.
+ *
+ * <p> Sessions are created lazily up to the maximum size of the pool. When all of them are in use,
+ * {@link #openSession()} blocks until one of them is closed. </p>
+ *
+ * <p> Example of use: </p>
+ * <pre>
+ *     InferenceSessionPool pool = InferenceEngine.newSessionPool(bn, VMP::new, 8);
+ *     try (InferenceSession session = pool.openSession()) {
+ *         session.setEvidence(assignment);
+ *         session.runInference();
+ *         Multinomial posterior = session.getPosterior(var);
+ *     }
+ * </pre>
+ */
+public final class InferenceSessionPool {
+
+    /** Represents the compiled {@link BayesianNetwork} model. */
+    private final BayesianNetwork model;
+
+    /** Represents the {@link EF_BayesianNetwork} shared by message passing sessions, built on demand. */
+    private volatile EF_BayesianNetwork ef_model;
+
+    /** Represents the factory used to create the {@link InferenceAlgorithm} of each session. */
+    private final Supplier<? extends InferenceAlgorithm> inferenceAlgorithmFactory;
+
+    /** Represents the idle sessions. */
+    private final BlockingQueue<InferenceSession> idleSessions;
+
+    /** Represents the maximum number of sessions of this pool. */
+    private final int maxSessions;
+
+    /** Represents the number of sessions created so far. */
+    private final AtomicInteger nCreatedSessions = new AtomicInteger(0);
+
+    /**
+     * Creates a new InferenceSessionPool.
+     * @param model a {@link BayesianNetwork} model. A private copy of it is compiled, so later changes to
+     *              {@code model} are not seen by the pool.
+     * @param inferenceAlgorithmFactory a {@code Supplier} creating a new {@link InferenceAlgorithm} each time it is called.
+     * @param maxSessions the maximum number of sessions that can be used concurrently.
+     */
+    public InferenceSessionPool(BayesianNetwork model, Supplier<? extends InferenceAlgorithm> inferenceAlgorithmFactory, int maxSessions) {
+        if (maxSessions<1)
+            throw new IllegalArgumentException("The maximum number of sessions must be positive: " + maxSessions);
+
+        this.model = Serialization.deepCopy(model);
+        this.inferenceAlgorithmFactory = inferenceAlgorithmFactory;
+        this.maxSessions = maxSessions;
+        this.idleSessions = new ArrayBlockingQueue<>(maxSessions);
+    }
+
+    /**
+     * Returns the compiled model of this pool.
+     * @return a {@link BayesianNetwork} object.
+     */
+    public BayesianNetwork getModel() {
+        return model;
+    }
+
+    /**
+     * Returns the maximum number of sessions of this pool.
+     * @return an {@code int} value.
+     */
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    /**
+     * Returns the number of sessions created so far.
+     * @return an {@code int} value.
+     */
+    public int getNumberOfCreatedSessions() {
+        return nCreatedSessions.get();
+    }
+
+    /**
+     * Returns an idle session of this pool, creating a new one if the pool is not full yet. If all the sessions
+     * are in use, this method blocks until one of them is closed.
+     * @return an open {@link InferenceSession}.
+     */
+    public InferenceSession openSession() {
+        InferenceSession session = this.idleSessions.poll();
+
+        if (session == null)
+            session = this.tryCreateSession();
+
+        try {
+            if (session == null)
+                session = this.idleSessions.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an inference session.", ex);
+        }
+
+        session.open();
+        return session;
+    }
+
+    /**
+     * Returns an idle session of this pool, waiting at most the given time if all the sessions are in use.
+     * @param timeout the maximum time to wait.
+     * @param unit the {@code TimeUnit} of {@code timeout}.
+     * @return an open {@link InferenceSession}, or {@code null} if no session became available in time.
+     */
+    public InferenceSession openSession(long timeout, TimeUnit unit) {
+        InferenceSession session = this.idleSessions.poll();
+
+        if (session == null)
+            session = this.tryCreateSession();
+
+        try {
+            if (session == null)
+                session = this.idleSessions.poll(timeout, unit);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an inference session.", ex);
+        }
+
+        if (session != null)
+            session.open();
+
+        return session;
+    }
+
+    /**
+     * Returns the posterior distribution of a given {@link Variable} given some evidence, using a session of this pool.
+     * This method can be safely called from several threads at the same time.
+     * @param <E> a class extending {@link UnivariateDistribution}.
+     * @param var an input {@link Variable}.
+     * @param assignment an {@link Assignment} object with the evidence.
+     * @return a {@link UnivariateDistribution} object.
+     */
+    public <E extends UnivariateDistribution> E getPosterior(Variable var, Assignment assignment) {
+        try (InferenceSession session = this.openSession()) {
+            session.setEvidence(assignment);
+            session.runInference();
+            return session.getPosterior(var);
+        }
+    }
+
+    /**
+     * Returns a closed session to the pool.
+     * @param session an {@link InferenceSession} of this pool.
+     */
+    void release(InferenceSession session) {
+        this.idleSessions.offer(session);
+    }
+
+    private InferenceSession tryCreateSession() {
+        int n;
+        do {
+            n = this.nCreatedSessions.get();
+            if (n >= this.maxSessions)
+                return null;
+        } while (!this.nCreatedSessions.compareAndSet(n, n + 1));
+
+        InferenceAlgorithm inferenceAlgorithm = this.inferenceAlgorithmFactory.get();
+        if (inferenceAlgorithm instanceof MessagePassingAlgorithm) {
+            ((MessagePassingAlgorithm) inferenceAlgorithm).setModel(this.model, this.getEFModel());
+        } else {
+            inferenceAlgorithm.setModel(this.model);
+        }
+
+        return new InferenceSession(this, inferenceAlgorithm);
+    }
+
+    private EF_BayesianNetwork getEFModel() {
+        if (this.ef_model == null) {
+            synchronized (this) {
+                if (this.ef_model == null)
+                    this.ef_model = new EF_BayesianNetwork(this.model);
+            }
+        }
+        return this.ef_model;
+    }
+}
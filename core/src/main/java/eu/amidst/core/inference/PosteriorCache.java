@@ -0,0 +1,253 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.inference;
+
+import eu.amidst.core.distribution.UnivariateDistribution;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.utils.Utils;
+import eu.amidst.core.variables.Assignment;
+import eu.amidst.core.variables.Variable;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class defines a thread-safe, size and time bounded LRU cache of posterior distributions, keyed by the
+ * values of the observed variables of the evidence. It is used by {@link CachedInferenceAlgorithm} and it can be
+ * shared by several of them, as far as they all work over the same {@link BayesianNetwork} model.
+ *
+ * <p> The cache is bound to a model. When it is used with a different model instance, all the stored entries are
+ * discarded. </p>
+ */
+public final class PosteriorCache {
+
+    /** Represents the maximum number of evidence signatures stored in the cache. */
+    private final int maxSize;
+
+    /** Represents the time to live of an entry in milliseconds, or a non positive value for no expiration. */
+    private final long timeToLiveMillis;
+
+    /** Represents the entries of the cache in access order. */
+    private final LinkedHashMap<EvidenceKey, Entry> entries;
+
+    /** Represents the model the stored posteriors were computed with. */
+    private BayesianNetwork model;
+
+    /** Represents the number of hits. */
+    private final AtomicLong hits = new AtomicLong(0);
+
+    /** Represents the number of misses. */
+    private final AtomicLong misses = new AtomicLong(0);
+
+    /** Represents the number of evicted entries. */
+    private final AtomicLong evictions = new AtomicLong(0);
+
+    /**
+     * Creates a new PosteriorCache whose entries never expire.
+     * @param maxSize the maximum number of evidence signatures stored in the cache.
+     */
+    public PosteriorCache(int maxSize) {
+        this(maxSize, 0);
+    }
+
+    /**
+     * Creates a new PosteriorCache.
+     * @param maxSize the maximum number of evidence signatures stored in the cache.
+     * @param timeToLiveMillis the time to live of an entry in milliseconds, or a non positive value for no expiration.
+     */
+    public PosteriorCache(int maxSize, long timeToLiveMillis) {
+        if (maxSize<1)
+            throw new IllegalArgumentException("The size of the cache must be positive: " + maxSize);
+
+        this.maxSize = maxSize;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.entries = new LinkedHashMap<EvidenceKey, Entry>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<EvidenceKey, Entry> eldest) {
+                if (size() > PosteriorCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Binds this cache to a given model. If the cache was bound to a different model instance, all the
+     * stored entries are discarded.
+     * @param model a {@link BayesianNetwork} object.
+     */
+    public synchronized void setModel(BayesianNetwork model) {
+        if (this.model != model) {
+            this.entries.clear();
+            this.model = model;
+        }
+    }
+
+    /**
+     * Discards all the stored entries.
+     */
+    public synchronized void invalidate() {
+        this.entries.clear();
+    }
+
+    /**
+     * Returns the entry associated to a given evidence, or {@code null} if there is no such entry or it has expired.
+     * This method updates the hit and miss counters.
+     * @param key an {@link EvidenceKey} object.
+     * @return an {@link Entry} object or {@code null}.
+     */
+    synchronized Entry get(EvidenceKey key) {
+        Entry entry = this.entries.get(key);
+        if (entry != null && this.timeToLiveMillis > 0
+                && System.currentTimeMillis() - entry.creationTime > this.timeToLiveMillis) {
+            this.entries.remove(key);
+            this.evictions.incrementAndGet();
+            entry = null;
+        }
+
+        if (entry == null)
+            this.misses.incrementAndGet();
+        else
+            this.hits.incrementAndGet();
+
+        return entry;
+    }
+
+    /**
+     * Stores a new entry for a given evidence.
+     * @param key an {@link EvidenceKey} object.
+     * @param entry an {@link Entry} object.
+     */
+    synchronized void put(EvidenceKey key, Entry entry) {
+        this.entries.put(key, entry);
+    }
+
+    /**
+     * Returns the number of stored entries.
+     * @return an {@code int} value.
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Returns the number of hits.
+     * @return a {@code long} value.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of misses.
+     * @return a {@code long} value.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of entries evicted because of the size or the time to live of the cache.
+     * @return a {@code long} value.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the fraction of lookups that were served from the cache.
+     * @return a {@code double} value in [0,1], or {@code Double.NaN} if no lookup has been made yet.
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return (total == 0) ? Double.NaN : ((double) h) / total;
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters.
+     */
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    /**
+     * This class defines the canonical signature of an evidence, i.e., the values of the observed variables of a
+     * model sorted by variable ID. Missing values are all mapped to the same canonical value.
+     */
+    static final class EvidenceKey {
+
+        /** Represents the value of each variable, indexed by variable ID. */
+        private final double[] values;
+
+        /** Represents the precomputed hash code. */
+        private final int hash;
+
+        /**
+         * Creates the signature of a given evidence.
+         * @param variables the list of variables of the model.
+         * @param assignment an {@link Assignment} object, possibly {@code null}.
+         */
+        EvidenceKey(List<Variable> variables, Assignment assignment) {
+            this.values = new double[variables.size()];
+            for (Variable var : variables) {
+                double value = (assignment == null) ? Utils.missingValue() : assignment.getValue(var);
+                this.values[var.getVarID()] = Utils.isMissingValue(value) ? Double.NaN : value;
+            }
+            this.hash = Arrays.hashCode(this.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof EvidenceKey))
+                return false;
+            EvidenceKey other = (EvidenceKey) obj;
+            return this.hash == other.hash && Arrays.equals(this.values, other.values);
+        }
+    }
+
+    /**
+     * This class defines the posteriors stored for a given evidence.
+     */
+    static final class Entry {
+
+        /** Represents the creation time of this entry. */
+        final long creationTime = System.currentTimeMillis();
+
+        /** Represents the posterior distributions computed so far, indexed by variable ID. */
+        final Map<Integer, UnivariateDistribution> posteriors = new ConcurrentHashMap<>();
+
+        /** Represents the log probability of the evidence, or {@code Double.NaN} if it has not been computed. */
+        volatile double logProbabilityOfEvidence = Double.NaN;
+    }
+}
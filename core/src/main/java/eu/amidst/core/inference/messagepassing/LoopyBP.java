@@ -0,0 +1,777 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.inference.messagepassing;
+
+import eu.amidst.core.distribution.ConditionalDistribution;
+import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.distribution.UnivariateDistribution;
+import eu.amidst.core.inference.InferenceAlgorithm;
+import eu.amidst.core.io.BayesianNetworkLoader;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.utils.Utils;
+import eu.amidst.core.variables.Assignment;
+import eu.amidst.core.variables.HashMapAssignment;
+import eu.amidst.core.variables.Variable;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * This class implements the interface {@link InferenceAlgorithm} and defines the loopy belief propagation (LBP)
+ * algorithm for {@link BayesianNetwork} models with multinomial variables.
+ * Pearl, J.: Probabilistic Reasoning in Intelligent Systems. Morgan Kaufmann (1988).
+ *
+ * <p> Messages are passed over the factor graph with one factor per conditional distribution, whose scope is
+ * given by the same conditioning variables used to link the {@link Node}s in {@link MessagePassingAlgorithm}.
+ * All the messages are stored in preallocated flat arrays indexed by edge. Two schedules are provided:
+ * residual belief propagation (Elidan, G., McGraw, I., Koller, D.: Residual belief propagation. UAI 2006), which
+ * always updates the factor whose messages changed the most, and a synchronous schedule, which updates all the
+ * factors at once and can be run in parallel (see {@link #setParallelMode(boolean)}). Messages can be damped. </p>
+ *
+ * <p> The log probability of the evidence is approximated by the Bethe free energy, which is exact for polytrees. </p>
+ */
+public class LoopyBP implements InferenceAlgorithm, Serializable {
+
+    /** Represents the serial version ID for serializing the object. */
+    private static final long serialVersionUID = 2213428471306178342L;
+
+    /**
+     * Defines the message update schedules.
+     */
+    public enum Schedule {
+        /** All the factor messages are updated at each iteration from the messages of the previous iteration. */
+        SYNCHRONOUS,
+        /** The factor with the largest change in its messages is updated first. */
+        RESIDUAL
+    }
+
+    /** Represents the {@link BayesianNetwork} model. */
+    private BayesianNetwork model;
+
+    /** Represents the evidence. */
+    private Assignment assignment = new HashMapAssignment(0);
+
+    /** Represents the number of states of each variable. */
+    private int[] nStates;
+
+    /** Represents the offset of each variable in {@code lambda}. */
+    private int[] varOffset;
+
+    /** Represents the evidence indicator of each variable state. */
+    private double[] lambda;
+
+    /** Represents the scope of each factor, i.e., the IDs of the parents followed by the ID of the main variable. */
+    private int[][] family;
+
+    /** Represents the potential of each factor, indexed by the configurations of its scope (first variable fastest). */
+    private double[][] potentials;
+
+    /** Represents the edges of each factor, in the same order as its scope. */
+    private int[][] factorEdges;
+
+    /** Represents the edges of each variable. */
+    private int[][] varEdges;
+
+    /** Represents the factor of each edge. */
+    private int[] edgeFactor;
+
+    /** Represents the offset of each edge in the message arrays. */
+    private int[] edgeOffset;
+
+    /** Represents the messages from factors to variables. */
+    private double[] factorToVar;
+
+    /** Represents the candidate (or next) messages from factors to variables. */
+    private double[] factorToVarNew;
+
+    /** Represents the messages from variables to factors. */
+    private double[] varToFactor;
+
+    /** Represents the number of states of the variables in the scope of each factor. */
+    private int[][] familySizes;
+
+    /** Represents the scratch buffers of the sequential schedules. */
+    private transient Scratch scratch;
+
+    /** Represents the scratch buffers of each thread of the parallel synchronous schedule. */
+    private transient ThreadLocal<Scratch> threadScratch;
+
+    /** Represents the schedule. */
+    private Schedule schedule = Schedule.RESIDUAL;
+
+    /** Indicates whether the synchronous schedule is run in parallel. */
+    private boolean parallelMode = false;
+
+    /** Represents the damping factor in [0,1), i.e., the weight of the old message in each update. */
+    private double damping = 0;
+
+    /** Represents the maximum number of iterations. */
+    private int maxIter = 100;
+
+    /** Represents the threshold on the maximum change of a message. */
+    private double threshold = 1e-6;
+
+    /** Represents the number of iterations of the last run. */
+    private int nIter = 0;
+
+    /** Represents the log probability of the evidence. */
+    private double logProbOfEvidence = Double.NaN;
+
+    /**
+     * Sets the message update schedule. Default value is {@link Schedule#RESIDUAL}.
+     * @param schedule a {@link Schedule} value.
+     */
+    public void setSchedule(Schedule schedule) {
+        this.schedule = schedule;
+    }
+
+    /**
+     * Returns the message update schedule.
+     * @return a {@link Schedule} value.
+     */
+    public Schedule getSchedule() {
+        return schedule;
+    }
+
+    /**
+     * Sets the damping factor, i.e., the weight of the old message when a message is updated. Default value is 0.
+     * @param damping a {@code double} value in [0,1).
+     */
+    public void setDamping(double damping) {
+        if (damping<0 || damping>=1)
+            throw new IllegalArgumentException("The damping factor must be in [0,1): " + damping);
+        this.damping = damping;
+    }
+
+    /**
+     * Returns the damping factor.
+     * @return a {@code double} value.
+     */
+    public double getDamping() {
+        return damping;
+    }
+
+    /**
+     * Sets the maximum number of iterations. With the residual schedule, one iteration corresponds to as many
+     * factor updates as factors in the model.
+     * @param maxIter an {@code int} value.
+     */
+    public void setMaxIter(int maxIter) {
+        this.maxIter = maxIter;
+    }
+
+    /**
+     * Returns the maximum number of iterations.
+     * @return an {@code int} value.
+     */
+    public int getMaxIter() {
+        return maxIter;
+    }
+
+    /**
+     * Sets the threshold on the maximum change of a message used to detect convergence.
+     * @param threshold a {@code double} value.
+     */
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Returns the threshold used to detect convergence.
+     * @return a {@code double} value.
+     */
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Returns the number of iterations of the last run.
+     * @return an {@code int} value.
+     */
+    public int getNumberOfIterations() {
+        return nIter;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The parallel mode only applies to the {@link Schedule#SYNCHRONOUS} schedule.
+     */
+    @Override
+    public void setParallelMode(boolean parallelMode_) {
+        this.parallelMode = parallelMode_;
+    }
+
+    /**
+     * {@inheritDoc}
+     * This algorithm is deterministic, so the seed is not used.
+     */
+    @Override
+    public void setSeed(int seed) {
+
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setModel(BayesianNetwork model_) {
+
+        for (Variable var : model_.getVariables()) {
+            if (!var.isMultinomial())
+                throw new IllegalArgumentException("Loopy belief propagation only supports multinomial variables: " + var.getName());
+        }
+
+        this.model = model_;
+        int nVars = model.getNumberOfVars();
+
+        nStates = new int[nVars];
+        varOffset = new int[nVars];
+        int sizeLambda = 0;
+        for (Variable var : model.getVariables()) {
+            nStates[var.getVarID()] = var.getNumberOfStates();
+            varOffset[var.getVarID()] = sizeLambda;
+            sizeLambda += var.getNumberOfStates();
+        }
+        lambda = new double[sizeLambda];
+
+        family = new int[nVars][];
+        familySizes = new int[nVars][];
+        potentials = new double[nVars][];
+        factorEdges = new int[nVars][];
+
+        List<List<Integer>> varEdgesList = new ArrayList<>();
+        for (int i = 0; i < nVars; i++) {
+            varEdgesList.add(new ArrayList<>());
+        }
+
+        int nEdges = 0;
+        for (Variable var : model.getVariables()) {
+            int f = var.getVarID();
+            ConditionalDistribution dist = model.getConditionalDistribution(var);
+            List<Variable> parents = dist.getConditioningVariables();
+
+            List<Variable> scope = new ArrayList<>(parents);
+            scope.add(var);
+
+            family[f] = scope.stream().mapToInt(Variable::getVarID).toArray();
+            familySizes[f] = scope.stream().mapToInt(Variable::getNumberOfStates).toArray();
+            potentials[f] = this.buildPotential(dist, scope);
+            factorEdges[f] = new int[scope.size()];
+            for (int p = 0; p < scope.size(); p++) {
+                factorEdges[f][p] = nEdges;
+                varEdgesList.get(family[f][p]).add(nEdges);
+                nEdges++;
+            }
+        }
+
+        varEdges = new int[nVars][];
+        for (int i = 0; i < nVars; i++) {
+            varEdges[i] = varEdgesList.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        edgeFactor = new int[nEdges];
+        edgeOffset = new int[nEdges];
+        int sizeMessages = 0;
+        for (int f = 0; f < nVars; f++) {
+            for (int p = 0; p < family[f].length; p++) {
+                edgeFactor[factorEdges[f][p]] = f;
+                edgeOffset[factorEdges[f][p]] = sizeMessages;
+                sizeMessages += nStates[family[f][p]];
+            }
+        }
+
+        factorToVar = new double[sizeMessages];
+        factorToVarNew = new double[sizeMessages];
+        varToFactor = new double[sizeMessages];
+
+        this.scratch = null;
+        this.threadScratch = null;
+
+        this.assignment = new HashMapAssignment(0);
+        this.logProbOfEvidence = Double.NaN;
+    }
+
+    /**
+     * Allocates the scratch buffers, sized by the largest factor of the model, if they have not been allocated yet
+     * (e.g., after setting the model or deserializing this object).
+     */
+    private void allocateScratch() {
+        if (this.scratch != null)
+            return;
+
+        int maxScope = 0;
+        int maxPotential = 0;
+        int maxStates = 0;
+        for (int f = 0; f < family.length; f++) {
+            maxScope = Math.max(maxScope, family[f].length);
+            maxPotential = Math.max(maxPotential, potentials[f].length);
+        }
+        for (int k : nStates) {
+            maxStates = Math.max(maxStates, k);
+        }
+
+        final int scopeSize = maxScope;
+        final int potentialSize = maxPotential;
+        final int statesSize = maxStates;
+        this.threadScratch = ThreadLocal.withInitial(() -> new Scratch(scopeSize, potentialSize, statesSize));
+        this.scratch = new Scratch(scopeSize, potentialSize, statesSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Only the potentials of the factors of the given variables are recomputed, the rest of the compiled
+     * structures (i.e., scopes, edges and message buffers) are kept.
+     */
+    @Override
+    public void updateModelParameters(BayesianNetwork model_, List<Variable> variables) {
+        if (model_ != this.model || this.potentials == null) {
+            this.setModel(model_);
+            return;
+        }
+
+        for (Variable var : variables) {
+            int f = var.getVarID();
+            ConditionalDistribution dist = model.getConditionalDistribution(var);
+            if (dist instanceof Multinomial) {
+                double[] probabilities = ((Multinomial) dist).getProbabilities();
+                System.arraycopy(probabilities, 0, potentials[f], 0, probabilities.length);
+            } else {
+                List<Variable> scope = new ArrayList<>(family[f].length);
+                for (int id : family[f]) {
+                    scope.add(model.getVariables().getVariableById(id));
+                }
+                potentials[f] = this.buildPotential(dist, scope);
+            }
+        }
+    }
+
+    /**
+     * Builds the table of a conditional distribution over all the configurations of its scope.
+     * @param dist a {@link ConditionalDistribution} object.
+     * @param scope the conditioning variables followed by the main variable.
+     * @return an array of probabilities.
+     */
+    private double[] buildPotential(ConditionalDistribution dist, List<Variable> scope) {
+        int nConf = 1;
+        for (Variable var : scope) {
+            nConf *= var.getNumberOfStates();
+        }
+
+        double[] potential = new double[nConf];
+        int[] states = new int[scope.size()];
+        HashMapAssignment configuration = new HashMapAssignment(scope.size());
+        for (int c = 0; c < nConf; c++) {
+            for (int p = 0; p < scope.size(); p++) {
+                configuration.setValue(scope.get(p), states[p]);
+            }
+            potential[c] = dist.getConditionalProbability(configuration);
+            this.nextConfiguration(states, scope.stream().mapToInt(Variable::getNumberOfStates).toArray());
+        }
+
+        return potential;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BayesianNetwork getOriginalModel() {
+        return this.model;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setEvidence(Assignment assignment_) {
+        this.assignment = assignment_;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void runInference() {
+
+        this.allocateScratch();
+
+        for (Variable var : model.getVariables()) {
+            int v = var.getVarID();
+            double value = (assignment==null)? Utils.missingValue() : assignment.getValue(var);
+            if (Utils.isMissingValue(value)) {
+                Arrays.fill(lambda, varOffset[v], varOffset[v] + nStates[v], 1.0);
+            } else {
+                Arrays.fill(lambda, varOffset[v], varOffset[v] + nStates[v], 0.0);
+                lambda[varOffset[v] + (int) value] = 1.0;
+            }
+        }
+
+        for (int f = 0; f < family.length; f++) {
+            for (int p = 0; p < family[f].length; p++) {
+                int e = factorEdges[f][p];
+                Arrays.fill(factorToVar, edgeOffset[e], edgeOffset[e] + nStates[family[f][p]], 1.0/nStates[family[f][p]]);
+            }
+        }
+
+        for (int v = 0; v < nStates.length; v++) {
+            this.updateVariable(v);
+        }
+
+        if (schedule == Schedule.SYNCHRONOUS)
+            this.runSynchronous();
+        else
+            this.runResidual();
+
+        this.logProbOfEvidence = this.computeBetheLogProbabilityOfEvidence();
+    }
+
+    private void runSynchronous() {
+        nIter = 0;
+        double maxResidual = Double.POSITIVE_INFINITY;
+        while (maxResidual > threshold && nIter < maxIter) {
+            nIter++;
+
+            IntStream factors = IntStream.range(0, family.length);
+            if (parallelMode)
+                factors = factors.parallel();
+            maxResidual = (parallelMode) ?
+                    factors.mapToDouble(f -> this.updateFactor(f, factorToVarNew, threadScratch.get())).max().orElse(0) :
+                    factors.mapToDouble(f -> this.updateFactor(f, factorToVarNew, scratch)).max().orElse(0);
+
+            double[] tmp = factorToVar;
+            factorToVar = factorToVarNew;
+            factorToVarNew = tmp;
+
+            IntStream variables = IntStream.range(0, nStates.length);
+            if (parallelMode)
+                variables = variables.parallel();
+            variables.forEach(this::updateVariable);
+        }
+    }
+
+    private void runResidual() {
+        int nFactors = family.length;
+        double[] residuals = new double[nFactors];
+        PriorityQueue<FactorResidual> queue = new PriorityQueue<>(nFactors);
+
+        for (int f = 0; f < nFactors; f++) {
+            residuals[f] = this.updateFactor(f, factorToVarNew, scratch);
+            queue.add(new FactorResidual(f, residuals[f]));
+        }
+
+        long maxUpdates = ((long) maxIter) * nFactors;
+        long nUpdates = 0;
+        while (!queue.isEmpty() && nUpdates < maxUpdates) {
+            FactorResidual top = queue.poll();
+            if (top.residual != residuals[top.factor])
+                continue;
+            if (top.residual <= threshold)
+                break;
+
+            int f = top.factor;
+            for (int p = 0; p < family[f].length; p++) {
+                int e = factorEdges[f][p];
+                System.arraycopy(factorToVarNew, edgeOffset[e], factorToVar, edgeOffset[e], nStates[family[f][p]]);
+            }
+            residuals[f] = 0;
+            nUpdates++;
+
+            for (int v : family[f]) {
+                this.updateVariable(v);
+                for (int e : varEdges[v]) {
+                    int g = edgeFactor[e];
+                    if (g == f)
+                        continue;
+                    residuals[g] = this.updateFactor(g, factorToVarNew, scratch);
+                    queue.add(new FactorResidual(g, residuals[g]));
+                }
+            }
+        }
+
+        nIter = (int) ((nUpdates + nFactors - 1) / nFactors);
+    }
+
+    /**
+     * Computes the messages from a given factor to the variables in its scope, using the current messages from
+     * the variables, and stores them (damped) in the slots of the factor edges of {@code output}.
+     * @param f a factor.
+     * @param output the array where the messages are stored.
+     * @param scratch the {@link Scratch} buffers of the current thread.
+     * @return the maximum absolute change with respect to the current messages.
+     */
+    private double updateFactor(int f, double[] output, Scratch scratch) {
+        int[] scope = family[f];
+        int[] edges = factorEdges[f];
+        double[] potential = potentials[f];
+        int m = scope.length;
+
+        for (int p = 0; p < m; p++) {
+            Arrays.fill(output, edgeOffset[edges[p]], edgeOffset[edges[p]] + nStates[scope[p]], 0.0);
+        }
+
+        int[] states = scratch.states;
+        int[] sizes = familySizes[f];
+        Arrays.fill(states, 0, m, 0);
+        double[] prefix = scratch.prefix;
+        prefix[0] = 1;
+
+        for (int c = 0; c < potential.length; c++) {
+            if (potential[c] != 0) {
+                for (int p = 0; p < m; p++) {
+                    prefix[p + 1] = prefix[p] * varToFactor[edgeOffset[edges[p]] + states[p]];
+                }
+                double suffix = 1;
+                for (int p = m - 1; p >= 0; p--) {
+                    int index = edgeOffset[edges[p]] + states[p];
+                    output[index] += potential[c] * prefix[p] * suffix;
+                    suffix *= varToFactor[index];
+                }
+            }
+            this.nextConfiguration(states, sizes);
+        }
+
+        double residual = 0;
+        for (int p = 0; p < m; p++) {
+            int offset = edgeOffset[edges[p]];
+            int k = sizes[p];
+            double sum = 0;
+            for (int x = 0; x < k; x++) {
+                sum += output[offset + x];
+            }
+            for (int x = 0; x < k; x++) {
+                double value = (sum > 0) ? output[offset + x] / sum : 1.0 / k;
+                value = (1 - damping) * value + damping * factorToVar[offset + x];
+                output[offset + x] = value;
+                residual = Math.max(residual, Math.abs(value - factorToVar[offset + x]));
+            }
+        }
+
+        return residual;
+    }
+
+    /**
+     * Computes the messages from a given variable to all its factors from the current factor messages.
+     * @param v a variable ID.
+     */
+    private void updateVariable(int v) {
+        int k = nStates[v];
+        int[] edges = varEdges[v];
+        for (int e : edges) {
+            int offset = edgeOffset[e];
+            double sum = 0;
+            for (int x = 0; x < k; x++) {
+                double value = lambda[varOffset[v] + x];
+                for (int other : edges) {
+                    if (other != e)
+                        value *= factorToVar[edgeOffset[other] + x];
+                }
+                varToFactor[offset + x] = value;
+                sum += value;
+            }
+            for (int x = 0; x < k; x++) {
+                varToFactor[offset + x] = (sum > 0) ? varToFactor[offset + x] / sum : lambda[varOffset[v] + x];
+            }
+        }
+    }
+
+    /**
+     * Computes the belief of a given variable.
+     * @param v a variable ID.
+     * @return a normalized array of probabilities.
+     */
+    private double[] computeBelief(int v) {
+        return this.computeBelief(v, new double[nStates[v]]);
+    }
+
+    /**
+     * Computes the belief of a given variable into a given array.
+     * @param v a variable ID.
+     * @param belief an array with at least as many positions as states of the variable, where the belief is stored.
+     * @return the array {@code belief}, whose first positions hold the normalized probabilities.
+     */
+    private double[] computeBelief(int v, double[] belief) {
+        int k = nStates[v];
+        for (int x = 0; x < k; x++) {
+            belief[x] = lambda[varOffset[v] + x];
+            for (int e : varEdges[v]) {
+                belief[x] *= factorToVar[edgeOffset[e] + x];
+            }
+        }
+        double sum = 0;
+        for (int x = 0; x < k; x++) {
+            sum += belief[x];
+        }
+        for (int x = 0; x < k; x++) {
+            belief[x] = (sum > 0) ? belief[x] / sum : 1.0 / k;
+        }
+        return belief;
+    }
+
+    /**
+     * Computes the Bethe approximation of the log probability of the evidence.
+     * @return a {@code double} value.
+     */
+    private double computeBetheLogProbabilityOfEvidence() {
+        double logProb = 0;
+
+        for (int f = 0; f < family.length; f++) {
+            int[] scope = family[f];
+            int[] edges = factorEdges[f];
+            int m = scope.length;
+            int[] states = scratch.states;
+            int[] sizes = familySizes[f];
+            Arrays.fill(states, 0, m, 0);
+
+            double[] belief = scratch.belief;
+            int nConf = potentials[f].length;
+            double sum = 0;
+            for (int c = 0; c < nConf; c++) {
+                double value = potentials[f][c];
+                for (int p = 0; p < m && value != 0; p++) {
+                    value *= varToFactor[edgeOffset[edges[p]] + states[p]];
+                }
+                belief[c] = value;
+                sum += value;
+                this.nextConfiguration(states, sizes);
+            }
+
+            if (sum == 0)
+                return Double.NEGATIVE_INFINITY;
+
+            for (int c = 0; c < nConf; c++) {
+                double b = belief[c] / sum;
+                if (b > 0)
+                    logProb += b * (Math.log(potentials[f][c]) - Math.log(b));
+            }
+        }
+
+        for (int v = 0; v < nStates.length; v++) {
+            int degree = varEdges[v].length;
+            if (degree <= 1)
+                continue;
+            double[] belief = this.computeBelief(v, scratch.varBelief);
+            for (int x = 0; x < nStates[v]; x++) {
+                if (belief[x] > 0)
+                    logProb += (degree - 1) * belief[x] * Math.log(belief[x]);
+            }
+        }
+
+        return logProb;
+    }
+
+    /**
+     * Moves to the next configuration of a set of variables, with the first variable changing fastest.
+     * @param states the current configuration, which is updated. Only its first {@code sizes.length} positions
+     *               are used.
+     * @param sizes the number of states of each variable.
+     */
+    private void nextConfiguration(int[] states, int[] sizes) {
+        for (int p = 0; p < sizes.length; p++) {
+            if (++states[p] < sizes[p])
+                return;
+            states[p] = 0;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <E extends UnivariateDistribution> E getPosterior(Variable var) {
+        Variable modelVar = this.model.getVariables().getVariableById(var.getVarID());
+        Multinomial posterior = new Multinomial(modelVar);
+        posterior.setProbabilities(this.computeBelief(modelVar.getVarID()));
+        return (E) posterior;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getLogProbabilityOfEvidence() {
+        return logProbOfEvidence;
+    }
+
+    /**
+     * Defines the scratch buffers used to update the factors, sized by the largest factor of the model, so the
+     * message updates do not allocate memory.
+     */
+    private static final class Scratch {
+        /** Represents the configuration of the scope of a factor. */
+        final int[] states;
+
+        /** Represents the prefix products of the messages to a factor. */
+        final double[] prefix;
+
+        /** Represents the belief of a factor. */
+        final double[] belief;
+
+        /** Represents the belief of a variable. */
+        final double[] varBelief;
+
+        Scratch(int maxScope, int maxPotential, int maxStates) {
+            this.states = new int[maxScope];
+            this.prefix = new double[maxScope + 1];
+            this.belief = new double[maxPotential];
+            this.varBelief = new double[maxStates];
+        }
+    }
+
+    /**
+     * Defines an entry of the priority queue of the residual schedule.
+     */
+    private static final class FactorResidual implements Comparable<FactorResidual> {
+        final int factor;
+        final double residual;
+
+        FactorResidual(int factor, double residual) {
+            this.factor = factor;
+            this.residual = residual;
+        }
+
+        @Override
+        public int compareTo(FactorResidual o) {
+            return Double.compare(o.residual, this.residual);
+        }
+    }
+
+
+    public static void main(String[] arguments) throws IOException, ClassNotFoundException {
+
+        BayesianNetwork bn = BayesianNetworkLoader.loadFromFile("./networks/dataWeka/asia.bn");
+
+        LoopyBP lbp = new LoopyBP();
+        lbp.setModel(bn);
+        lbp.runInference();
+
+        VMP vmp = new VMP();
+        vmp.setModel(bn);
+        vmp.runInference();
+
+        for (Variable var : bn.getVariables()) {
+            System.out.println("Posterior (LBP) of " + var.getName() + ": " + lbp.getPosterior(var).toString());
+            System.out.println("Posterior (VMP) of " + var.getName() + ": " + vmp.getPosterior(var).toString());
+        }
+        System.out.println("N Iter: " + lbp.getNumberOfIterations() + ", log P(e): " + lbp.getLogProbabilityOfEvidence());
+    }
+}
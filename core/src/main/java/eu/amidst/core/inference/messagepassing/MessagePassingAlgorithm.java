@@ -19,6 +19,7 @@ package eu.amidst.core.inference.messagepassing;
 
 import eu.amidst.core.distribution.UnivariateDistribution;
 import eu.amidst.core.exponentialfamily.EF_BayesianNetwork;
+import eu.amidst.core.exponentialfamily.EF_ConditionalDistribution;
 import eu.amidst.core.exponentialfamily.EF_UnivariateDistribution;
 import eu.amidst.core.inference.InferenceAlgorithm;
 import eu.amidst.core.models.BayesianNetwork;
@@ -29,6 +30,9 @@ import eu.amidst.core.variables.Variable;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -88,6 +92,18 @@ public abstract class MessagePassingAlgorithm<E extends Vector> implements Infer
     /** Represents the number of local iterations. */
     protected int local_iter = 0;
 
+    /** Indicates whether the incremental mode is activated, initialized to {@code false}. */
+    protected boolean incrementalMode = false;
+
+    /** Represents the maximum graph distance to a changed variable of the nodes updated in incremental mode. */
+    protected int incrementalDistance = 2;
+
+    /** Represents the observed values of the last evidence, indexed by the position of the nodes. */
+    transient protected double[] lastEvidence;
+
+    /** Represents the nodes updated by runInference, or {@code null} if all the nodes are updated. */
+    transient protected List<Node> nodesToUpdate;
+
     /**
      * Sets the output for this MessagePassingAlgorithm.
      * @param output a {@code boolean} that represents the output value to be set.
@@ -136,11 +152,61 @@ public abstract class MessagePassingAlgorithm<E extends Vector> implements Infer
         return maxIter;
     }
 
+    /**
+     * Sets the incremental mode for this MessagePassingAlgorithm. In incremental mode, each new evidence is compared
+     * with the previous one, and {@link #runInference()} only updates the nodes within a given graph distance of the
+     * variables whose observed value has changed, starting from the Q distributions of the previous run. The rest of
+     * the nodes keep their Q distributions and still send messages to the updated ones.
+     * @param incrementalMode {@code true} to activate the incremental mode, {@code false} otherwise.
+     */
+    public void setIncrementalMode(boolean incrementalMode) {
+        this.incrementalMode = incrementalMode;
+        this.lastEvidence = null;
+        this.nodesToUpdate = null;
+    }
+
+    /**
+     * Tests whether the incremental mode is activated.
+     * @return {@code true} if the incremental mode is activated, {@code false} otherwise.
+     */
+    public boolean isIncrementalMode() {
+        return incrementalMode;
+    }
+
+    /**
+     * Sets the maximum graph distance (i.e., the number of parent or child links) between a variable whose observed
+     * value has changed and the nodes updated in incremental mode. Default value is 2.
+     * @param incrementalDistance a non negative {@code int} value.
+     */
+    public void setIncrementalDistance(int incrementalDistance) {
+        if (incrementalDistance<0)
+            throw new IllegalArgumentException("The incremental distance must be non negative: " + incrementalDistance);
+        this.incrementalDistance = incrementalDistance;
+    }
+
+    /**
+     * Returns the maximum graph distance of the nodes updated in incremental mode.
+     * @return an {@code int} value.
+     */
+    public int getIncrementalDistance() {
+        return incrementalDistance;
+    }
+
+    /**
+     * Returns the number of nodes updated by the next call to {@link #runInference()}.
+     * @return an {@code int} value.
+     */
+    public int getNumberOfNodesToUpdate() {
+        return (nodesToUpdate==null)? nodes.size() : nodesToUpdate.size();
+    }
+
     /**
      * Resets the exponential family distributions of all nodes.
      */
     public void resetQs(){
         this.nodes.stream().forEach(node -> {node.resetQDist(random);});
+        this.lastEvidence = null;
+        this.nodesToUpdate = null;
     }
 
     /**
@@ -166,7 +232,7 @@ public abstract class MessagePassingAlgorithm<E extends Vector> implements Infer
         while (!convergence && (local_iter++)<maxIter) {
 
             boolean done = true;
-            for (Node node : nodes) {
+            for (Node node : (nodesToUpdate==null)? nodes : nodesToUpdate) {
 
 
                 if (!node.isActive() || node.isObserved())
@@ -226,6 +292,43 @@ public abstract class MessagePassingAlgorithm<E extends Vector> implements Infer
         this.setEFModel(new EF_BayesianNetwork(this.model));
     }
 
+    /**
+     * Sets the model for this MessagePassingAlgorithm using an already built {@link EF_BayesianNetwork}.
+     * The {@link EF_BayesianNetwork} is only read during inference, so it can be shared by several instances
+     * running on different threads. Only the {@link Node}s (i.e., the evidence and the Q distributions) are
+     * created for this instance.
+     * @param model_ a {@link BayesianNetwork} model.
+     * @param ef_model_ the {@link EF_BayesianNetwork} built from {@code model_}.
+     */
+    public void setModel(BayesianNetwork model_, EF_BayesianNetwork ef_model_) {
+        model = model_;
+        this.setEFModel(ef_model_);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The natural parameters of the given variables are copied into the {@link EF_BayesianNetwork} of this
+     * instance, so the {@link Node}s and their Q distributions are kept. Note that, if the {@link EF_BayesianNetwork}
+     * is shared with other instances, they also see the new parameters.
+     */
+    @Override
+    public void updateModelParameters(BayesianNetwork model_, List<Variable> variables) {
+        if (model_ != this.model || this.ef_model == null) {
+            this.setModel(model_);
+            return;
+        }
+
+        for (Variable var : variables) {
+            EF_ConditionalDistribution dist = this.model.getConditionalDistribution(var).toEFConditionalDistribution();
+            EF_ConditionalDistribution pDist = this.getNodeOfVar(var).getPDist();
+            pDist.getNaturalParameters().copy(dist.getNaturalParameters());
+            pDist.updateMomentFromNaturalParameters();
+        }
+
+        this.lastEvidence = null;
+        this.nodesToUpdate = null;
+    }
+
     /**
      * Sets the {@link EF_BayesianNetwork} model for this MessagePassing Algorithm.
      * @param model the {@link EF_BayesianNetwork} model to be set.
@@ -243,6 +346,9 @@ public abstract class MessagePassingAlgorithm<E extends Vector> implements Infer
                 })
                 .collect(Collectors.toList());
 
+        this.lastEvidence = null;
+        this.nodesToUpdate = null;
+
         for (Node node : nodes){
             node.setParents(node.getPDist().getConditioningVariables().stream().map(this::getNodeOfVar).collect(Collectors.toList()));
             node.getPDist().getConditioningVariables().stream().forEach(var -> this.getNodeOfVar(var).getChildren().add(node));
@@ -282,6 +388,8 @@ public abstract class MessagePassingAlgorithm<E extends Vector> implements Infer
         this.nodes = nodes;
         variablesToNode = new ConcurrentHashMap();
         nodes.stream().forEach( node -> variablesToNode.put(node.getMainVariable(),node));
+        this.lastEvidence = null;
+        this.nodesToUpdate = null;
     }
 
     /**
@@ -317,6 +425,54 @@ public abstract class MessagePassingAlgorithm<E extends Vector> implements Infer
     public void setEvidence(Assignment assignment_) {
         this.assignment = assignment_;
         nodes.stream().forEach(node -> node.setAssignment(assignment));
+
+        if (incrementalMode)
+            this.updateNodesToUpdate();
+    }
+
+    /**
+     * Computes the nodes to be updated in incremental mode, i.e., those within {@code incrementalDistance}
+     * links of a node whose observed value differs from the one in the previous evidence.
+     */
+    protected void updateNodesToUpdate(){
+        double[] newEvidence = new double[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            newEvidence[i] = (node.isObserved())? this.assignment.getValue(node.getMainVariable()) : Double.NaN;
+        }
+
+        if (lastEvidence==null || lastEvidence.length!=newEvidence.length){
+            nodesToUpdate = null;
+            lastEvidence = newEvidence;
+            return;
+        }
+
+        Map<Node, Integer> distances = new IdentityHashMap<>();
+        Deque<Node> queue = new ArrayDeque<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            if (Double.compare(lastEvidence[i], newEvidence[i])!=0) {
+                distances.put(nodes.get(i), 0);
+                queue.add(nodes.get(i));
+            }
+        }
+
+        while (!queue.isEmpty()){
+            Node node = queue.poll();
+            int distance = distances.get(node);
+            if (distance==incrementalDistance)
+                continue;
+            for (Node neighbour : node.getParents()) {
+                if (distances.putIfAbsent(neighbour, distance + 1)==null)
+                    queue.add(neighbour);
+            }
+            for (Node neighbour : node.getChildren()) {
+                if (distances.putIfAbsent(neighbour, distance + 1)==null)
+                    queue.add(neighbour);
+            }
+        }
+
+        nodesToUpdate = nodes.stream().filter(distances::containsKey).collect(Collectors.toList());
+        lastEvidence = newEvidence;
     }
 
     /**
@@ -73,15 +73,21 @@ public class Node implements Serializable{
     /** Indicates if the parallel mode is activated, initialized to {@code true}. */
     boolean parallelActivated = true;
 
-    /** Represents a {@code Map} object that maps variables to parent nodes. */
-    Map<Variable, Node> variableToParentsNodeMap;
-
-    /** Represents a {@code Map} object that maps parent nodes to variables. */
-    Map<Node, Variable> nodeParentsToVariableMap;
+    /**
+     * Represents the variables associated with the parent nodes, aligned with the list of parents. An array is used
+     * instead of maps because nodes have few parents, and plateau models create millions of nodes.
+     */
+    Variable[] parentVariables;
 
     /** Represents the name of this Node. */
     String name;
 
+    /** Represents the last computed contribution of this Node to the ELBO, used by the incremental ELBO of {@link VMP}. */
+    double elbo = 0;
+
+    /** Indicates whether the Q distribution of this Node changed since its contribution to the ELBO was computed. */
+    boolean changed = true;
+
     /**
      * Creates a new Node given an input {@link EF_ConditionalDistribution}.
      * @param PDist an input {@link EF_ConditionalDistribution}.
@@ -192,12 +198,10 @@ public class Node implements Serializable{
      */
     public void setParents(List<Node> parents) {
         this.parents = parents;
-        variableToParentsNodeMap = new ConcurrentHashMap();
-        nodeParentsToVariableMap = new ConcurrentHashMap();
+        this.parentVariables = new Variable[parents.size()];
 
-        for( Node node: parents){
-            variableToParentsNodeMap.put(node.getMainVariable(), node);
-            nodeParentsToVariableMap.put(node, node.getMainVariable());
+        for (int i = 0; i < parents.size(); i++) {
+            this.parentVariables[i] = parents.get(i).getMainVariable();
         }
 
     }
@@ -301,7 +305,11 @@ public class Node implements Serializable{
      * @return the parent {@link Variable}.
      */
     public Variable nodeParentToVariable(Node parent){
-        return this.nodeParentsToVariableMap.get(parent);
+        for (int i = 0; i < this.parentVariables.length; i++) {
+            if (this.parents.get(i) == parent)
+                return this.parentVariables[i];
+        }
+        return null;
     }
 
     /**
@@ -310,7 +318,15 @@ public class Node implements Serializable{
      * @return the parent {@link Node}.
      */
     public Node variableToNodeParent(Variable var){
-        return this.variableToParentsNodeMap.get(var);
+        for (int i = 0; i < this.parentVariables.length; i++) {
+            if (this.parentVariables[i].equals(var))
+                return this.parents.get(i);
+        }
+        for (Node parent : this.parents) {
+            if (parent.getMainVariable().equals(var))
+                return parent;
+        }
+        return null;
     }
 
     /**
@@ -319,8 +335,13 @@ public class Node implements Serializable{
      * @param parent a given parent {@link Node}.
      */
     public void setVariableToNodeParent(Variable var, Node parent){
-        this.variableToParentsNodeMap.put(var, parent);
-        this.nodeParentsToVariableMap.put(parent, var);
+        for (int i = 0; i < this.parentVariables.length; i++) {
+            if (this.parents.get(i) == parent) {
+                this.parentVariables[i] = var;
+                return;
+            }
+        }
+        throw new IllegalArgumentException("The node " + parent.getName() + " is not a parent of " + this.getName());
     }
 
     /**
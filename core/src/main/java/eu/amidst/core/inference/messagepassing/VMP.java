@@ -31,10 +31,13 @@ import eu.amidst.core.models.DAG;
 import eu.amidst.core.variables.Variable;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.function.DoubleBinaryOperator;
 import java.util.stream.Collectors;
 
 /**
@@ -48,9 +51,44 @@ import java.util.stream.Collectors;
  */
 public class VMP extends MessagePassingAlgorithm<NaturalParameters> implements InferenceAlgorithm, Sampler {
 
+    /**
+     * Defines the criteria used to detect the convergence of VMP.
+     */
+    public enum ConvergenceCriterion {
+        /** The ELBO is computed at each iteration, and VMP stops when its relative change is below the threshold. */
+        ELBO,
+        /** As {@link #ELBO}, but the ELBO is only computed every {@code elboPeriod} iterations. */
+        PERIODIC_ELBO,
+        /**
+         * As {@link #ELBO}, but the contribution of a node is only recomputed when its Q distribution or the Q
+         * distribution of one of its parents changed in the last iteration.
+         */
+        INCREMENTAL_ELBO,
+        /**
+         * VMP stops when the maximum relative change of the natural parameters of the Q distributions is below the
+         * parameter tolerance. The ELBO is only computed when requested.
+         */
+        PARAMETERS
+    }
+
     /** Represents a test of the evidence lower bound (ELBO). */
     boolean testELBO=false;
 
+    /** Represents the convergence criterion, initialized to {@link ConvergenceCriterion#ELBO}. */
+    ConvergenceCriterion convergenceCriterion = ConvergenceCriterion.ELBO;
+
+    /** Represents the number of iterations between two ELBO computations with the periodic criterion, initialized to 5. */
+    int elboPeriod = 5;
+
+    /** Represents the tolerance of the change of the natural parameters with the parameters criterion, initialized to 0.001. */
+    double parameterTolerance = 0.001;
+
+    /** Represents the maximum relative change of the natural parameters in the current iteration. */
+    final DoubleAccumulator maxParameterChange = new DoubleAccumulator((DoubleBinaryOperator & Serializable) Math::max, 0);
+
+    /** Indicates whether the ELBO stored in {@code local_elbo} does not correspond to the current Q distributions. */
+    boolean elboOutdated = false;
+
 
     /**
      * Gets the random number generator.
@@ -69,6 +107,43 @@ public class VMP extends MessagePassingAlgorithm<NaturalParameters> implements I
         this.testELBO = testELBO;
     }
 
+    /**
+     * Sets the convergence criterion. Default value is {@link ConvergenceCriterion#ELBO}.
+     * The threshold of the ELBO based criteria is set with {@link #setThreshold(double)}.
+     * @param convergenceCriterion a {@link ConvergenceCriterion} value.
+     */
+    public void setConvergenceCriterion(ConvergenceCriterion convergenceCriterion) {
+        this.convergenceCriterion = convergenceCriterion;
+    }
+
+    /**
+     * Returns the convergence criterion.
+     * @return a {@link ConvergenceCriterion} value.
+     */
+    public ConvergenceCriterion getConvergenceCriterion() {
+        return convergenceCriterion;
+    }
+
+    /**
+     * Sets the number of iterations between two ELBO computations with the {@link ConvergenceCriterion#PERIODIC_ELBO}
+     * criterion.
+     * @param elboPeriod a positive {@code int} value.
+     */
+    public void setELBOPeriod(int elboPeriod) {
+        if (elboPeriod < 1)
+            throw new IllegalArgumentException("The ELBO period must be positive");
+        this.elboPeriod = elboPeriod;
+    }
+
+    /**
+     * Sets the tolerance of the {@link ConvergenceCriterion#PARAMETERS} criterion. The change of a natural parameter
+     * is relative to its absolute value when this is greater than one, and absolute otherwise.
+     * @param parameterTolerance a {@code double} value.
+     */
+    public void setParameterTolerance(double parameterTolerance) {
+        this.parameterTolerance = parameterTolerance;
+    }
+
 
     /**
      * {@inheritDoc}
@@ -102,6 +177,13 @@ public class VMP extends MessagePassingAlgorithm<NaturalParameters> implements I
      */
     @Override
     public void updateCombinedMessage(Node node, Message<NaturalParameters> message) {
+        if (convergenceCriterion == ConvergenceCriterion.PARAMETERS || convergenceCriterion == ConvergenceCriterion.INCREMENTAL_ELBO) {
+            double change = maxRelativeChange(node.getQDist().getNaturalParameters(), message.getVector());
+            if (change > 0) {
+                node.changed = true;
+                maxParameterChange.accumulate(change);
+            }
+        }
         node.getQDist().setNaturalParameters(message.getVector());
         node.setIsDone(message.isDone());
     }
@@ -112,11 +194,33 @@ public class VMP extends MessagePassingAlgorithm<NaturalParameters> implements I
     @Override
     public boolean testConvergence(){
 
-        boolean convergence = false;
+        switch (convergenceCriterion) {
+            case PARAMETERS:
+                double change = maxParameterChange.getThenReset();
+                elboOutdated = true;
+                return change < parameterTolerance || local_iter >= this.getMaxIter();
+            case PERIODIC_ELBO:
+                if (local_iter % elboPeriod != 0 && local_iter < this.getMaxIter()) {
+                    elboOutdated = true;
+                    return false;
+                }
+                return testELBOConvergence(this.computeLogProbabilityOfEvidence());
+            case INCREMENTAL_ELBO:
+                maxParameterChange.reset();
+                return testELBOConvergence(this.computeIncrementalLogProbabilityOfEvidence());
+            default:
+                return testELBOConvergence(this.computeLogProbabilityOfEvidence());
+        }
+    }
 
-        //Compute lower-bound
-        double newelbo = this.computeLogProbabilityOfEvidence();
+    /**
+     * Tests the convergence given the new value of the ELBO, and stores it as the current one.
+     * @param newelbo a {@code double} that represents the new ELBO value.
+     * @return {@code true} if the relative change of the ELBO is below the threshold, {@code false} otherwise.
+     */
+    private boolean testELBOConvergence(double newelbo){
 
+        boolean convergence = false;
 
         double percentage = 100*Math.abs(newelbo - local_elbo)/Math.abs(local_elbo);
         if ( percentage < threshold || local_iter>this.getMaxIter()) {
@@ -132,10 +236,74 @@ public class VMP extends MessagePassingAlgorithm<NaturalParameters> implements I
         //}
 
         local_elbo = newelbo;
+        elboOutdated = false;
         //System.out.println("ELBO: " + local_elbo);
         return convergence;
     }
 
+    /**
+     * {@inheritDoc}
+     * If the convergence criterion did not compute the ELBO of the last iteration, it is computed now.
+     */
+    @Override
+    public double getLogProbabilityOfEvidence() {
+        if (elboOutdated) {
+            local_elbo = this.computeLogProbabilityOfEvidence();
+            probOfEvidence = local_elbo;
+            elboOutdated = false;
+        }
+        return super.getLogProbabilityOfEvidence();
+    }
+
+    /**
+     * Computes the ELBO reusing the contribution of the nodes whose Q distribution and whose parents' Q
+     * distributions did not change since the last computation. All the contributions are recomputed in the first
+     * iteration.
+     * @return a {@code double} that represents the ELBO value.
+     */
+    private double computeIncrementalLogProbabilityOfEvidence(){
+        boolean recomputeAll = local_iter <= 1;
+        double elbo = 0;
+        for (Node node : this.nodes) {
+            if (!node.isActive())
+                continue;
+            if (recomputeAll || node.changed || anyParentChanged(node))
+                node.elbo = this.computeELBO(node);
+            elbo += node.elbo;
+        }
+        for (Node node : this.nodes) {
+            node.changed = false;
+        }
+        return elbo;
+    }
+
+    private static boolean anyParentChanged(Node node) {
+        for (Node parent : node.getParents()) {
+            if (parent.changed)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the maximum relative change between two vectors of natural parameters.
+     * @param oldParameters the previous natural parameters.
+     * @param newParameters the new natural parameters.
+     * @return a {@code double} value.
+     */
+    private static double maxRelativeChange(NaturalParameters oldParameters, NaturalParameters newParameters) {
+        if (oldParameters == null || oldParameters.size() != newParameters.size())
+            return Double.POSITIVE_INFINITY;
+        double max = 0;
+        for (int i = 0; i < newParameters.size(); i++) {
+            double oldValue = oldParameters.get(i);
+            double change = Math.abs(newParameters.get(i) - oldValue) / Math.max(1, Math.abs(oldValue));
+            if (change > max)
+                max = change;
+        }
+        return max;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,40 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.learning.parametric.bayesian;
+
+import eu.amidst.core.learning.parametric.bayesian.utils.LearnerState;
+
+/**
+ * This interface defines a streaming Bayesian learner whose state can be saved and restored, so that a learning
+ * process can be resumed with a {@link LearnerCheckpointer}.
+ */
+public interface CheckpointableLearner {
+
+    /**
+     * Returns a copy of the current state of this learner.
+     * @return a {@link LearnerState} object.
+     */
+    LearnerState getLearnerState();
+
+    /**
+     * Restores a state previously returned by {@link #getLearnerState()}. The learning must have been initialized
+     * with the same model and settings.
+     * @param state a {@link LearnerState} object.
+     */
+    void setLearnerState(LearnerState state);
+}
@@ -0,0 +1,403 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.learning.parametric.bayesian;
+
+import eu.amidst.core.learning.parametric.bayesian.utils.LearnerState;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class periodically saves the state of a {@link CheckpointableLearner} to a binary file, and restores it to
+ * resume an interrupted learning process, skipping the batches of the data stream already consumed.
+ *
+ * <p> The learning thread only copies the state of the learner. The file is written by a background thread, and if
+ * a new checkpoint is requested before the previous one has been written, only the latest one is written.
+ * Checkpoints are incremental: a full checkpoint is written to the given file every {@code fullCheckpointPeriod}
+ * checkpoints, and the checkpoints in between only store the values that changed with respect to the last full
+ * checkpoint in a companion file with suffix {@code .delta}. This is useful for models with many parameters where
+ * each batch only updates a few of them (e.g., the parent configurations observed in the batch). Files are replaced
+ * atomically, so a crash while writing never corrupts the last checkpoint. </p>
+ *
+ * <p> A typical use is: </p>
+ * <pre>
+ *     svb.setCheckpointer(new LearnerCheckpointer("svb.ckpt"));
+ *     svb.runLearning(); //Resumes from "svb.ckpt" if it exists.
+ * </pre>
+ */
+public class LearnerCheckpointer implements AutoCloseable {
+
+    /** Represents the magic number of the checkpoint files. */
+    private static final int MAGIC = 0x414D4350;
+
+    /** Represents the version of the format of the checkpoint files. */
+    private static final int VERSION = 1;
+
+    /** Represents the state used to stop the writer thread. */
+    private static final LearnerState END = new LearnerState();
+
+    /** Represents the file of the full checkpoints. */
+    private final File file;
+
+    /** Represents the file of the incremental checkpoints. */
+    private final File deltaFile;
+
+    /** Represents the number of batches between two checkpoints, initialized to 10. */
+    private int checkpointPeriod = 10;
+
+    /** Represents the number of checkpoints between two full checkpoints, initialized to 10. */
+    private int fullCheckpointPeriod = 10;
+
+    /** Represents the number of consumed batches. */
+    private long numberOfConsumedBatches = 0;
+
+    /** Represents the number of consumed batches at the last checkpoint. */
+    private long lastCheckpoint = 0;
+
+    /** Represents the checkpoint waiting to be written. */
+    private final BlockingQueue<LearnerState> pending = new ArrayBlockingQueue<>(1);
+
+    /** Represents the writer thread. */
+    private Thread writer;
+
+    /** Represents the first error raised by the writer thread. */
+    private final AtomicReference<IOException> error = new AtomicReference<>();
+
+    /** Represents the blocks of the last full checkpoint. Only accessed by the writer thread once it is started. */
+    private List<double[]> base;
+
+    /** Represents the identifier of the last full checkpoint. */
+    private long baseID = 0;
+
+    /** Represents the number of incremental checkpoints written since the last full checkpoint. */
+    private int nDeltas = 0;
+
+    /**
+     * Creates a new LearnerCheckpointer.
+     * @param path the path of the checkpoint file.
+     */
+    public LearnerCheckpointer(String path) {
+        this.file = new File(path);
+        this.deltaFile = new File(path + ".delta");
+    }
+
+    /**
+     * Sets the number of batches between two checkpoints.
+     * @param checkpointPeriod a positive {@code int} value.
+     */
+    public void setCheckpointPeriod(int checkpointPeriod) {
+        if (checkpointPeriod < 1)
+            throw new IllegalArgumentException("The checkpoint period must be positive");
+        this.checkpointPeriod = checkpointPeriod;
+    }
+
+    /**
+     * Sets the number of checkpoints between two full checkpoints. A value of 1 disables incremental checkpoints.
+     * @param fullCheckpointPeriod a positive {@code int} value.
+     */
+    public void setFullCheckpointPeriod(int fullCheckpointPeriod) {
+        if (fullCheckpointPeriod < 1)
+            throw new IllegalArgumentException("The full checkpoint period must be positive");
+        this.fullCheckpointPeriod = fullCheckpointPeriod;
+    }
+
+    /**
+     * Returns the number of batches consumed so far, including those consumed before resuming.
+     * @return a {@code long} value.
+     */
+    public long getNumberOfConsumedBatches() {
+        return numberOfConsumedBatches;
+    }
+
+    /**
+     * Restores the last checkpoint, if any, into a given learner, whose learning must be already initialized.
+     * @param learner a {@link CheckpointableLearner} object.
+     * @return the number of batches consumed before the checkpoint, which must be skipped from the data stream,
+     * or 0 if there is no checkpoint.
+     */
+    public long resume(CheckpointableLearner learner) {
+        if (!file.exists())
+            return 0;
+
+        try {
+            LearnerState state = this.read(file, null);
+            this.base = copyBlocks(state.getBlocks());
+
+            if (deltaFile.exists()) {
+                LearnerState delta = this.read(deltaFile, state);
+                if (delta != null)
+                    state = delta;
+            }
+
+            learner.setLearnerState(state);
+            this.numberOfConsumedBatches = state.getNumberOfConsumedBatches();
+            this.lastCheckpoint = this.numberOfConsumedBatches;
+            return this.numberOfConsumedBatches;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Notifies that the learner has consumed a batch, and saves its state if the checkpoint period is reached.
+     * @param learner a {@link CheckpointableLearner} object.
+     */
+    public void update(CheckpointableLearner learner) {
+        this.update(learner, 1);
+    }
+
+    /**
+     * Notifies that the learner has consumed a number of batches, and saves its state if the checkpoint period is
+     * reached.
+     * @param learner a {@link CheckpointableLearner} object.
+     * @param nBatches the number of consumed batches.
+     */
+    public void update(CheckpointableLearner learner, int nBatches) {
+        this.numberOfConsumedBatches += nBatches;
+        if (this.numberOfConsumedBatches - this.lastCheckpoint >= this.checkpointPeriod)
+            this.checkpoint(learner);
+    }
+
+    /**
+     * Saves the current state of a given learner. The state is copied in the calling thread and written in background.
+     * @param learner a {@link CheckpointableLearner} object.
+     */
+    public void checkpoint(CheckpointableLearner learner) {
+        this.checkError();
+
+        LearnerState state = learner.getLearnerState();
+        state.setNumberOfConsumedBatches(this.numberOfConsumedBatches);
+        this.lastCheckpoint = this.numberOfConsumedBatches;
+
+        if (this.writer == null) {
+            this.writer = new Thread(this::write, "LearnerCheckpointer-" + file.getName());
+            this.writer.setDaemon(true);
+            this.writer.start();
+        }
+
+        //Only the latest pending checkpoint is written
+        this.pending.clear();
+        this.pending.offer(state);
+    }
+
+    /**
+     * Waits until the pending checkpoint has been written and stops the writer thread.
+     */
+    @Override
+    public void close() {
+        if (this.writer != null) {
+            try {
+                this.pending.put(END);
+                this.writer.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            this.writer = null;
+        }
+        this.checkError();
+    }
+
+    /**
+     * Deletes the checkpoint files.
+     */
+    public void delete() {
+        this.file.delete();
+        this.deltaFile.delete();
+    }
+
+    private void checkError() {
+        IOException ex = this.error.getAndSet(null);
+        if (ex != null)
+            throw new UncheckedIOException("Error writing the checkpoint " + file, ex);
+    }
+
+    /**
+     * Writes the pending checkpoints until the end state is found.
+     */
+    private void write() {
+        while (true) {
+            LearnerState state;
+            try {
+                state = this.pending.take();
+            } catch (InterruptedException ex) {
+                return;
+            }
+
+            if (state == END)
+                return;
+
+            try {
+                if (!this.writeDelta(state))
+                    this.writeFull(state);
+            } catch (IOException ex) {
+                this.error.compareAndSet(null, ex);
+            }
+        }
+    }
+
+    private void writeFull(LearnerState state) throws IOException {
+        long id = this.baseID + 1;
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            this.writeHeader(out, true, id, state);
+            for (double[] block : state.getBlocks()) {
+                out.writeInt(block.length);
+                for (double value : block) {
+                    out.writeDouble(value);
+                }
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.deltaFile.delete();
+
+        this.base = state.getBlocks();
+        this.baseID = id;
+        this.nDeltas = 0;
+    }
+
+    /**
+     * Writes an incremental checkpoint, if it is due and it is smaller than a full one.
+     * @param state a {@link LearnerState} object.
+     * @return {@code true} if the checkpoint was written, {@code false} otherwise.
+     */
+    private boolean writeDelta(LearnerState state) throws IOException {
+        if (this.base == null || this.nDeltas + 1 >= this.fullCheckpointPeriod || this.base.size() != state.getBlocks().size())
+            return false;
+
+        List<int[]> changes = new ArrayList<>();
+        int nChanges = 0;
+        int size = 0;
+        for (int b = 0; b < this.base.size(); b++) {
+            double[] baseBlock = this.base.get(b);
+            double[] block = state.getBlocks().get(b);
+            if (baseBlock.length != block.length)
+                return false;
+
+            int[] changed = new int[block.length];
+            int n = 0;
+            for (int i = 0; i < block.length; i++) {
+                if (Double.doubleToLongBits(block[i]) != Double.doubleToLongBits(baseBlock[i]))
+                    changed[n++] = i;
+            }
+            int[] trimmed = new int[n];
+            System.arraycopy(changed, 0, trimmed, 0, n);
+            changes.add(trimmed);
+            nChanges += n;
+            size += block.length;
+        }
+
+        //An index and a value take 1.5 times the space of a value
+        if (1.5 * nChanges >= size)
+            return false;
+
+        File tmp = new File(deltaFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            this.writeHeader(out, false, this.baseID, state);
+            for (int b = 0; b < changes.size(); b++) {
+                double[] block = state.getBlocks().get(b);
+                out.writeInt(changes.get(b).length);
+                for (int i : changes.get(b)) {
+                    out.writeInt(i);
+                    out.writeDouble(block[i]);
+                }
+            }
+        }
+        Files.move(tmp.toPath(), deltaFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.nDeltas++;
+        return true;
+    }
+
+    private void writeHeader(DataOutputStream out, boolean full, long id, LearnerState state) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeBoolean(full);
+        out.writeLong(id);
+        out.writeLong(state.getNumberOfConsumedBatches());
+        out.writeInt(state.getBlocks().size());
+    }
+
+    /**
+     * Reads a checkpoint file.
+     * @param input the file to be read.
+     * @param fullState the state of the full checkpoint, when reading an incremental checkpoint, or {@code null}.
+     * @return the read state, or {@code null} if the incremental checkpoint does not refer to the given full one.
+     */
+    private LearnerState read(File input, LearnerState fullState) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(input)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new IOException("Invalid checkpoint file: " + input);
+
+            boolean full = in.readBoolean();
+            long id = in.readLong();
+            long nConsumedBatches = in.readLong();
+            int nBlocks = in.readInt();
+
+            if (full != (fullState == null))
+                throw new IOException("Unexpected type of checkpoint in file: " + input);
+
+            List<double[]> blocks;
+            if (full) {
+                this.baseID = id;
+                blocks = new ArrayList<>(nBlocks);
+                for (int b = 0; b < nBlocks; b++) {
+                    double[] block = new double[in.readInt()];
+                    for (int i = 0; i < block.length; i++) {
+                        block[i] = in.readDouble();
+                    }
+                    blocks.add(block);
+                }
+            } else {
+                if (id != this.baseID || nBlocks != fullState.getBlocks().size())
+                    return null;
+                blocks = copyBlocks(fullState.getBlocks());
+                for (int b = 0; b < nBlocks; b++) {
+                    int nChanges = in.readInt();
+                    for (int i = 0; i < nChanges; i++) {
+                        blocks.get(b)[in.readInt()] = in.readDouble();
+                    }
+                }
+            }
+
+            LearnerState state = new LearnerState(blocks);
+            state.setNumberOfConsumedBatches(nConsumedBatches);
+            return state;
+        }
+    }
+
+    private static List<double[]> copyBlocks(List<double[]> blocks) {
+        List<double[]> copy = new ArrayList<>(blocks.size());
+        for (double[] block : blocks) {
+            copy.add(block.clone());
+        }
+        return copy;
+    }
+}
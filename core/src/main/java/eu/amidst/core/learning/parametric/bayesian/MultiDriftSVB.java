@@ -18,6 +18,7 @@ import eu.amidst.core.exponentialfamily.MomentParameters;
 import eu.amidst.core.inference.messagepassing.Node;
 import eu.amidst.core.inference.messagepassing.VMP;
 import eu.amidst.core.io.BayesianNetworkLoader;
+import eu.amidst.core.learning.parametric.bayesian.utils.LearnerState;
 import eu.amidst.core.models.BayesianNetwork;
 import eu.amidst.core.utils.BayesianNetworkSampler;
 import eu.amidst.core.utils.CompoundVector;
@@ -97,6 +98,7 @@ public class MultiDriftSVB extends SVB{
             this.plateuStructure.runInference();
 
             posteriorT_1 = this.plateuStructure.getPlateauNaturalParameterPosterior();
+            this.naturalVectorPrior = null;
             return this.plateuStructure.getLogProbabilityOfEvidence();
         }
 
@@ -111,10 +113,7 @@ public class MultiDriftSVB extends SVB{
             //Messages for TExp to Theta
             double lambda = this.ef_TExpQ.getMomentParameters().get(0);
             CompoundVector newPrior = Serialization.deepCopy(prior);
-            newPrior.multiplyBy(1 - lambda);
-            CompoundVector newPosterior = Serialization.deepCopy(posteriorT_1);
-            newPosterior.multiplyBy(lambda);
-            newPrior.sum(newPosterior);
+            newPrior.scaleAndAdd(1 - lambda, lambda, posteriorT_1);
             this.plateuStructure.updateNaturalParameterPrior(newPrior);
 
             //Standard Messages
@@ -198,11 +197,44 @@ public class MultiDriftSVB extends SVB{
 
         posteriorT_1 = this.plateuStructure.getPlateauNaturalParameterPosterior();
 
-
+        this.naturalVectorPrior = null;
         return elbo;
     }
 
 
+    /**
+     * {@inheritDoc}
+     * The state of the superclass is extended with the drift variables, the initial prior and the previous posterior.
+     */
+    @Override
+    public LearnerState getLearnerState() {
+        LearnerState state = super.getLearnerState();
+        state.addBlock(this.firstBatch ? 1 : 0, this.ef_TExpQ.getNaturalParameters().get(0));
+        state.addBlock(this.prior);
+        state.addBlock(this.posteriorT_1);
+        return state;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setLearnerState(LearnerState state) {
+        super.setLearnerState(state);
+        int offset = SVB.NUMBER_OF_STATE_BLOCKS;
+
+        double[] drift = state.getBlock(offset);
+        this.firstBatch = drift[0] != 0;
+        this.ef_TExpQ.getNaturalParameters().set(0, drift[1]);
+        this.ef_TExpQ.updateMomentFromNaturalParameters();
+
+        state.copyBlockInto(offset + 1, this.prior);
+        if (state.getBlock(offset + 2).length > 0)
+            this.posteriorT_1 = state.copyBlockInto(offset + 2, this.plateuStructure.getPlateauNaturalParameterPrior());
+        else
+            this.posteriorT_1 = null;
+    }
+
     public double getLambdaValue(){
         return this.ef_TExpQ.getMomentParameters().get(0);
     }
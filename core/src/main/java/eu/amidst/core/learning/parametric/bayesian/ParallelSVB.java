@@ -22,6 +22,7 @@ import eu.amidst.core.datastream.DataInstance;
 import eu.amidst.core.datastream.DataOnMemory;
 import eu.amidst.core.datastream.DataStream;
 import eu.amidst.core.learning.parametric.bayesian.utils.DataPosterior;
+import eu.amidst.core.learning.parametric.bayesian.utils.LearnerState;
 import eu.amidst.core.learning.parametric.bayesian.utils.PlateuStructure;
 import eu.amidst.core.models.BayesianNetwork;
 import eu.amidst.core.models.DAG;
@@ -32,6 +33,10 @@ import eu.amidst.core.variables.Variable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.IntStream;
 
 /**
@@ -41,7 +46,7 @@ import java.util.stream.IntStream;
  * <p> For an example of use follow this link
  * <a href="http://amidst.github.io/toolbox/CodeExamples.html#psvbexample"> http://amidst.github.io/toolbox/CodeExamples.html#psvbexample </a>  </p>
  */
-public class ParallelSVB implements BayesianParameterLearningAlgorithm{
+public class ParallelSVB implements BayesianParameterLearningAlgorithm, CheckpointableLearner {
 
     /** Represents the data stream to be used for parameter learning. */
     DataStream<DataInstance> data;
@@ -67,6 +72,18 @@ public class ParallelSVB implements BayesianParameterLearningAlgorithm{
     /** Indicates if the Output is activated or not, initialized to {@code false}. */
     boolean activateOutput=false;
 
+    /** Indicates if the pipelined mode is activated or not, initialized to {@code false}. */
+    boolean pipelinedMode = false;
+
+    /** Represents the maximum number of batch updates an engine's prior can lag behind, initialized to -1 (i.e., nCores). */
+    int maxStaleness = -1;
+
+    /** Represents the maximum number of loaded batches waiting to be processed, initialized to -1 (i.e., 2*nCores). */
+    int queueCapacity = -1;
+
+    /** Represents the {@link LearnerCheckpointer} used to save and resume the learning, or {@code null}. */
+    LearnerCheckpointer checkpointer = null;
+
     /**
      * Sets the seed using a single {@code int} seed.
      * @param seed_ the initial seed.
@@ -83,6 +100,36 @@ public class ParallelSVB implements BayesianParameterLearningAlgorithm{
         this.nCores = nCores;
     }
 
+    /**
+     * Sets the pipelined mode. In this mode, {@link #runLearning()} does not synchronize the engines after each
+     * round of {@code nCores} batches. Instead, a loader thread keeps a bounded queue of batches, and each engine
+     * takes a new batch as soon as it finishes the previous one, adding its posterior delta to a shared posterior.
+     * An engine refreshes its prior with the shared posterior before processing a batch when more than
+     * {@link #setMaxStaleness(int)} batch updates have been added since its last refresh.
+     * @param pipelinedMode {@code true} to activate the pipelined mode, {@code false} otherwise.
+     */
+    public void setPipelinedMode(boolean pipelinedMode) {
+        this.pipelinedMode = pipelinedMode;
+    }
+
+    /**
+     * Sets the maximum number of batch updates the prior of an engine can lag behind the shared posterior in
+     * pipelined mode. A value of 0 always uses the latest posterior. By default, it is equal to the number of cores.
+     * @param maxStaleness an {@code int} value.
+     */
+    public void setMaxStaleness(int maxStaleness) {
+        this.maxStaleness = maxStaleness;
+    }
+
+    /**
+     * Sets the maximum number of loaded batches waiting to be processed in pipelined mode.
+     * By default, it is equal to twice the number of cores.
+     * @param queueCapacity an {@code int} value.
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
     /**
      * Returns the SVB engine.
      * @return the SVB engine.
@@ -167,12 +214,26 @@ public class ParallelSVB implements BayesianParameterLearningAlgorithm{
     public void runLearning() {
         this.initLearning();
 
+        if (this.pipelinedMode) {
+            if (this.checkpointer != null)
+                throw new UnsupportedOperationException("Checkpointing is not supported in pipelined mode");
+            this.runPipelinedLearning();
+            return;
+        }
 
         Iterator<DataOnMemory<DataInstance>> iterator = this.data.iterableOverBatches(this.SVBEngine.getWindowsSize()).iterator();
 
         logLikelihood = 0;
+        if (this.checkpointer != null) {
+            long consumedBatches = this.checkpointer.resume(this);
+            for (long i = 0; i < consumedBatches && iterator.hasNext(); i++) {
+                iterator.next();
+            }
+        }
+
+        boolean sparse = this.svbEngines[0].isSparseBatchOutput();
         while(iterator.hasNext()){
-            CompoundVector posterior =  this.svbEngines[0].getNaturalParameterPrior();
+            CompoundVector posterior = (sparse) ? null : this.svbEngines[0].getNaturalParameterPrior();
 
             //Load Data
             List<DataOnMemory<DataInstance>> dataBatches = new ArrayList();
@@ -187,19 +248,173 @@ public class ParallelSVB implements BayesianParameterLearningAlgorithm{
                     IntStream.range(0, dataBatches.size())
                         .parallel()
                         .mapToObj(i -> this.svbEngines[i].updateModelOnBatchParallel(dataBatches.get(i)))
-                        .reduce(SVB.BatchOutput::sumNonStateless)
+                        .reduce((sparse) ? SVB.BatchOutput::sumDeltas : SVB.BatchOutput::sumNonStateless)
                         .get();
 
             //Update logLikelihood
             this.logLikelihood+=out.getElbo();
 
             //Combine the output
-            posterior.sum(out.getVector());
-            for (int i = 0; i < nCores; i++) {
-                this.svbEngines[i].updateNaturalParameterPrior(posterior);
+            if (sparse) {
+                for (int i = 0; i < nCores; i++) {
+                    this.svbEngines[i].updateNaturalParameterPriorDelta(out.getVector());
+                }
+            } else {
+                posterior.sum(out.getVector());
+                for (int i = 0; i < nCores; i++) {
+                    this.svbEngines[i].updateNaturalParameterPrior(posterior);
+                }
+            }
+
+            if (this.checkpointer != null)
+                this.checkpointer.update(this, dataBatches.size());
+        }
+
+        if (this.checkpointer != null)
+            this.checkpointer.close();
+    }
+
+    /**
+     * Sets the {@link LearnerCheckpointer} used by {@link #runLearning()} to resume from the last checkpoint and to
+     * periodically save the state of the engines. Checkpoints are taken after each round of {@code nCores} batches,
+     * and they are not supported in pipelined mode.
+     * @param checkpointer a {@link LearnerCheckpointer} object, or {@code null} to disable checkpointing.
+     */
+    public void setCheckpointer(LearnerCheckpointer checkpointer) {
+        this.checkpointer = checkpointer;
+    }
+
+    /**
+     * {@inheritDoc}
+     * All the engines share the same prior after each round, so the state of the first engine is saved,
+     * followed by the log likelihood.
+     */
+    @Override
+    public LearnerState getLearnerState() {
+        LearnerState state = this.svbEngines[0].getLearnerState();
+        state.addBlock(this.logLikelihood);
+        return state;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setLearnerState(LearnerState state) {
+        for (SVB svbEngine : this.svbEngines) {
+            svbEngine.setLearnerState(state);
+        }
+        this.logLikelihood = state.getBlock(state.getBlocks().size() - 1)[0];
+    }
+
+    /**
+     * Runs the learning process in pipelined mode.
+     */
+    private void runPipelinedLearning() {
+
+        int staleness = (this.maxStaleness==-1)? nCores : this.maxStaleness;
+        int capacity = (this.queueCapacity==-1)? 2*nCores : this.queueCapacity;
+
+        BlockingQueue<Optional<DataOnMemory<DataInstance>>> queue = new ArrayBlockingQueue<>(capacity);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+
+        CompoundVector posterior = this.svbEngines[0].getNaturalParameterPrior();
+        boolean sparse = this.svbEngines[0].isSparseBatchOutput();
+        long[] nUpdates = new long[1];
+        logLikelihood = 0;
+
+        Thread loader = new Thread(() -> {
+            try {
+                for (DataOnMemory<DataInstance> batch : this.data.iterableOverBatches(this.SVBEngine.getWindowsSize())) {
+                    queue.put(Optional.of(batch));
+                }
+            } catch (InterruptedException ex) {
+                return;
+            } catch (Throwable ex) {
+                error.compareAndSet(null, ex);
             }
+            try {
+                queue.put(Optional.empty());
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }, "ParallelSVB-loader");
+
+        Thread[] workers = new Thread[nCores];
+        for (int i = 0; i < nCores; i++) {
+            SVB engine = this.svbEngines[i];
+            workers[i] = new Thread(() -> {
+                long engineUpdates = 0;
+                try {
+                    while (true) {
+                        Optional<DataOnMemory<DataInstance>> batch = queue.take();
+                        if (!batch.isPresent()) {
+                            queue.put(batch);
+                            return;
+                        }
+
+                        synchronized (posterior) {
+                            if (nUpdates[0] - engineUpdates > staleness) {
+                                engine.updateNaturalParameterPrior(posterior);
+                                engineUpdates = nUpdates[0];
+                            }
+                        }
+
+                        SVB.BatchOutput out = engine.updateModelOnBatchParallel(batch.get());
+
+                        synchronized (posterior) {
+                            if (sparse)
+                                SVB.BatchOutput.sumDeltas(posterior, out.getVector());
+                            else
+                                posterior.sum(out.getVector());
+                            logLikelihood += out.getElbo();
+                            nUpdates[0]++;
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    return;
+                } catch (Throwable ex) {
+                    //Stops the loader and the rest of engines
+                    error.compareAndSet(null, ex);
+                    loader.interrupt();
+                    for (Thread worker : workers) {
+                        worker.interrupt();
+                    }
+                }
+            }, "ParallelSVB-worker-" + i);
+        }
+
+        loader.start();
+        for (Thread worker : workers) {
+            worker.start();
         }
 
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            loader.interrupt();
+            loader.join();
+        } catch (InterruptedException ex) {
+            loader.interrupt();
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while learning", ex);
+        }
+
+        Throwable throwable = error.get();
+        if (throwable instanceof Error)
+            throw (Error) throwable;
+        if (throwable instanceof RuntimeException)
+            throw (RuntimeException) throwable;
+        if (throwable != null)
+            throw new IllegalStateException("The pipelined learning failed", throwable);
+
+        for (int i = 0; i < nCores; i++) {
+            this.svbEngines[i].updateNaturalParameterPrior(posterior);
+        }
     }
 
     /**
@@ -211,6 +426,7 @@ public class ParallelSVB implements BayesianParameterLearningAlgorithm{
 
         logLikelihood = Double.NEGATIVE_INFINITY;
         boolean convergence = false;
+        boolean sparse = this.svbEngines[0].isSparseBatchOutput();
         while (!convergence) {
             CompoundVector posterior = this.svbEngines[0].getNaturalParameterPrior();
 
@@ -231,11 +447,14 @@ public class ParallelSVB implements BayesianParameterLearningAlgorithm{
                         IntStream.range(0, dataBatches.size())
                                 .parallel()
                                 .mapToObj(i -> this.svbEngines[i].updateModelOnBatchParallel(dataBatches.get(i)))
-                                .reduce(SVB.BatchOutput::sumNonStateless)
+                                .reduce((sparse) ? SVB.BatchOutput::sumDeltas : SVB.BatchOutput::sumNonStateless)
                                 .get();
 
                 //Combine the output
-                posterior.sum(out.getVector());
+                if (sparse)
+                    SVB.BatchOutput.sumDeltas(posterior, out.getVector());
+                else
+                    posterior.sum(out.getVector());
                 local_loglikelihood += out.getElbo();
             }
 
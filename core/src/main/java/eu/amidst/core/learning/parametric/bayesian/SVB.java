@@ -29,6 +29,8 @@ import eu.amidst.core.models.BayesianNetwork;
 import eu.amidst.core.models.DAG;
 import eu.amidst.core.utils.CompoundVector;
 import eu.amidst.core.utils.Serialization;
+import eu.amidst.core.utils.SparseVectorDefaultValue;
+import eu.amidst.core.utils.Vector;
 import eu.amidst.core.variables.Assignment;
 import eu.amidst.core.variables.HashMapAssignment;
 import eu.amidst.core.variables.Variable;
@@ -49,11 +51,14 @@ import java.util.stream.Collectors;
  * <p> <a href="http://amidst.github.io/toolbox/CodeExamples.html#svbexample"> http://amidst.github.io/toolbox/CodeExamples.html#svbexample </a>  </p>
  *
  */
-public class SVB implements BayesianParameterLearningAlgorithm, Serializable {
+public class SVB implements BayesianParameterLearningAlgorithm, CheckpointableLearner, Serializable {
 
     /** Represents the serial version ID for serializing the object. */
     private static final long serialVersionUID = 4107783324901370839L;
 
+    /** Represents the number of blocks of the {@link LearnerState} of an SVB. */
+    static final int NUMBER_OF_STATE_BLOCKS = 3;
+
     /** Represents the transition method {@link TransitionMethod}. */
     TransitionMethod transitionMethod = null;
 
@@ -90,13 +95,19 @@ public class SVB implements BayesianParameterLearningAlgorithm, Serializable {
     /** Represents the total number of iterations, initialized to 0. */
     int nIterTotal = 0;
 
-    /** Represents the natural vector prior. */
+    /** Represents the natural vector prior cached between batches, or {@code null} if it must be recomputed. */
     CompoundVector naturalVectorPrior = null;
 
     /** Represents the natural vector posterior. */
     BatchOutput naturalVectorPosterior = null;
     private boolean activateOutput = false;
 
+    /** Indicates whether batch outputs are sparse differences of natural parameters, initialized to {@code false}. */
+    boolean sparseBatchOutput = false;
+
+    /** Represents the {@link LearnerCheckpointer} used to save and resume the learning, or {@code null}. */
+    transient LearnerCheckpointer checkpointer = null;
+
     /**
      * Returns the window size.
      * @return the window size.
@@ -184,12 +195,18 @@ public class SVB implements BayesianParameterLearningAlgorithm, Serializable {
      */
     public CompoundVector getNaturalParameterPrior(){
         return this.computeNaturalParameterVectorPrior();
-        /*
+    }
+
+    /**
+     * Returns the natural parameter priors cached between batches. The returned vector is shared and must not be
+     * modified; use {@link #getNaturalParameterPrior()} to get a copy that can be modified.
+     * @return a {@link CompoundVector} including the natural parameter priors.
+     */
+    protected CompoundVector getCachedNaturalParameterPrior(){
         if (naturalVectorPrior==null){
             naturalVectorPrior = this.computeNaturalParameterVectorPrior();
         }
         return naturalVectorPrior;
-        */
     }
 
     /**
@@ -217,6 +234,10 @@ public class SVB implements BayesianParameterLearningAlgorithm, Serializable {
     @Override
     public void runLearning() {
         this.initLearning();
+        if (this.checkpointer != null) {
+            this.runLearningWithCheckpoints();
+            return;
+        }
         if (!nonSequentialModel) {
             this.elbo = this.dataStream.streamOfBatches(this.windowsSize).mapToDouble(this::updateModel).sum();
         }else {
@@ -224,6 +245,64 @@ public class SVB implements BayesianParameterLearningAlgorithm, Serializable {
        }
     }
 
+    /**
+     * Runs the learning resuming from the last checkpoint, if any, and saving the state periodically.
+     */
+    private void runLearningWithCheckpoints() {
+        long consumedBatches = this.checkpointer.resume(this);
+        if (consumedBatches == 0)
+            this.elbo = 0;
+        this.dataStream.streamOfBatches(this.windowsSize)
+                .skip(consumedBatches)
+                .forEachOrdered(batch -> {
+                    this.elbo += (!nonSequentialModel) ? this.updateModel(batch) : this.updateModelParallel(batch);
+                    this.checkpointer.update(this);
+                });
+        this.checkpointer.close();
+    }
+
+    /**
+     * Sets the {@link LearnerCheckpointer} used by {@link #runLearning()} to resume from the last checkpoint and to
+     * periodically save the state of this SVB.
+     * @param checkpointer a {@link LearnerCheckpointer} object, or {@code null} to disable checkpointing.
+     */
+    public void setCheckpointer(LearnerCheckpointer checkpointer) {
+        this.checkpointer = checkpointer;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The state contains the counters, the ELBO, the current prior and, for non sequential models, the accumulated
+     * posterior.
+     */
+    @Override
+    public LearnerState getLearnerState() {
+        LearnerState state = new LearnerState();
+        state.addBlock(this.nBatches, this.nIterTotal, this.elbo,
+                (this.naturalVectorPosterior == null) ? 0 : this.naturalVectorPosterior.getElbo());
+        state.addBlock(this.getNaturalParameterPrior());
+        state.addBlock((this.naturalVectorPosterior == null) ? null : this.naturalVectorPosterior.getVector());
+        return state;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setLearnerState(LearnerState state) {
+        double[] counters = state.getBlock(0);
+        this.nBatches = (int) counters[0];
+        this.nIterTotal = (int) counters[1];
+        this.elbo = counters[2];
+
+        this.updateNaturalParameterPrior(state.copyBlockInto(1, this.getNaturalParameterPrior()));
+
+        if (state.getBlock(2).length > 0)
+            this.naturalVectorPosterior = new BatchOutput(state.copyBlockInto(2, this.computeNaturalParameterVectorPrior()), counters[3]);
+        else
+            this.naturalVectorPosterior = null;
+    }
+
     /**
      * Sets the model as a non sequential.
      * @param nonSequentialModel_ {@code true} if the model is to be set as a non sequential, {@code false} otherwise.
@@ -281,8 +360,10 @@ public class SVB implements BayesianParameterLearningAlgorithm, Serializable {
      * Apply the transition method defined by the method setTransitionMethod.
      */
     public void applyTransition(){
-        if (transitionMethod!=null)
-            this.ef_extendedBN=this.transitionMethod.transitionModel(this.ef_extendedBN, this.plateuStructure);
+        if (transitionMethod!=null) {
+            this.ef_extendedBN = this.transitionMethod.transitionModel(this.ef_extendedBN, this.plateuStructure);
+            this.naturalVectorPrior = null;
+        }
 
     }
 
@@ -316,14 +397,38 @@ public class SVB implements BayesianParameterLearningAlgorithm, Serializable {
         this.plateuStructure.runInference();
         nIterTotal+=this.plateuStructure.getVMP().getNumberOfIterations();
 
+        if (this.sparseBatchOutput)
+            return new BatchOutput(this.plateuStructure.getPlateauNaturalParameterPosteriorDelta(), this.plateuStructure.getLogProbabilityOfEvidence());
+
         CompoundVector compoundVectorEnd = this.plateuStructure.getPlateauNaturalParameterPosterior();
 
-        compoundVectorEnd.substract(this.getNaturalParameterPrior());
+        compoundVectorEnd.substract(this.getCachedNaturalParameterPrior());
 
         return new BatchOutput(compoundVectorEnd, this.plateuStructure.getLogProbabilityOfEvidence());
 
     }
 
+    /**
+     * Sets whether the outputs of {@link #updateModelOnBatchParallel(DataOnMemory)} are sparse. In this case, the
+     * vector of a {@link BatchOutput} is a {@link CompoundVector} of
+     * {@link eu.amidst.core.utils.SparseVectorDefaultValue} objects storing only the natural parameters updated
+     * by the batch, which can be summed and added to the prior with
+     * {@link #updateNaturalParameterPriorDelta(CompoundVector)} without densifying. This is useful for models with
+     * many parameters where a batch only updates a few of them (e.g., large vocabularies).
+     * @param sparseBatchOutput {@code true} to produce sparse outputs, {@code false} otherwise.
+     */
+    public void setSparseBatchOutput(boolean sparseBatchOutput) {
+        this.sparseBatchOutput = sparseBatchOutput;
+    }
+
+    /**
+     * Returns whether the outputs of {@link #updateModelOnBatchParallel(DataOnMemory)} are sparse.
+     * @return {@code true} if the batch outputs are sparse, {@code false} otherwise.
+     */
+    public boolean isSparseBatchOutput() {
+        return sparseBatchOutput;
+    }
+
 
     /**
      * {@inheritDoc}
@@ -410,7 +515,7 @@ public class SVB implements BayesianParameterLearningAlgorithm, Serializable {
 
         CompoundVector compoundVectorEnd = this.plateuStructure.getPlateauNaturalParameterPosterior();
 
-        compoundVectorEnd.substract(this.getNaturalParameterPrior());
+        compoundVectorEnd.substract(this.getCachedNaturalParameterPrior());
 
         BatchOutput out = new BatchOutput(compoundVectorEnd, this.plateuStructure.getLogProbabilityOfEvidence());
 
@@ -473,6 +578,7 @@ public class SVB implements BayesianParameterLearningAlgorithm, Serializable {
         plateuStructure.replicateModel();
         this.plateuStructure.resetQs();
         this.ef_extendedBN = this.plateuStructure.getEFLearningBN();
+        this.naturalVectorPrior = null;
 
         if (transitionMethod!=null)
            this.ef_extendedBN = this.transitionMethod.initModel(this.ef_extendedBN, plateuStructure);
@@ -493,10 +599,21 @@ public class SVB implements BayesianParameterLearningAlgorithm, Serializable {
     public void updateNaturalParameterPrior(CompoundVector parameterVector){
         this.plateuStructure.updateNaturalParameterPrior(parameterVector);
         this.ef_extendedBN = this.plateuStructure.getEFLearningBN();
-        this.naturalVectorPrior=this.computeNaturalParameterVectorPrior();
+        this.naturalVectorPrior = null;
     }
 
 
+    /**
+     * Adds a difference of natural parameters, such as the sparse output of a batch, to the Natural Parameter Prior
+     * in place.
+     * @param delta a {@link CompoundVector} object.
+     */
+    public void updateNaturalParameterPriorDelta(CompoundVector delta){
+        this.plateuStructure.updateNaturalParameterPriorDelta(delta);
+        this.ef_extendedBN = this.plateuStructure.getEFLearningBN();
+        this.naturalVectorPrior = null;
+    }
+
     /**
      * Updas the parameters of the posteriors Qs distributions.
      * @param parameterVector object of the class CompoundVector
@@ -527,10 +644,14 @@ public class SVB implements BayesianParameterLearningAlgorithm, Serializable {
 
     /**
      * {@inheritDoc}
+     * Only supported when the plateau is inferred with {@link VMPLocalUpdates}, whose local updates of the data
+     * instances of a batch can be computed concurrently. Otherwise, use class {@link ParallelSVB}.
      */
     @Override
     public void setParallelMode(boolean parallelMode) {
-        throw new UnsupportedOperationException("Non Parallel Mode Supported. Use class ParallelSVB");
+        if (!(this.plateuStructure.getVMP() instanceof VMPLocalUpdates))
+            throw new UnsupportedOperationException("Non Parallel Mode Supported. Use class ParallelSVB");
+        this.plateuStructure.getVMP().setParallelMode(parallelMode);
     }
 
     /**
@@ -576,6 +697,36 @@ public class SVB implements BayesianParameterLearningAlgorithm, Serializable {
             return batchOutput2;
         }
 
+        /**
+         * Sums two batch outputs storing sparse differences of natural parameters, as returned when the sparse
+         * batch output is activated. The sparse entries are added exactly, see
+         * {@link SparseVectorDefaultValue#sumExact(SparseVectorDefaultValue)}.
+         * @param batchOutput1 a {@link BatchOutput} object.
+         * @param batchOutput2 a {@link BatchOutput} object, which is updated with the sum.
+         * @return the updated {@code batchOutput2}.
+         */
+        public static BatchOutput sumDeltas(BatchOutput batchOutput1, BatchOutput batchOutput2){
+            sumDeltas(batchOutput2.getVector(), batchOutput1.getVector());
+            batchOutput2.setElbo(batchOutput2.getElbo()+batchOutput1.getElbo());
+            return batchOutput2;
+        }
+
+        /**
+         * Adds a vector of differences of natural parameters to another one, summing the sparse vectors exactly.
+         * @param vector a {@link CompoundVector} object, which is updated with the sum.
+         * @param delta a {@link CompoundVector} object with the same structure.
+         */
+        public static void sumDeltas(CompoundVector vector, CompoundVector delta){
+            for (int i = 0; i < vector.getNumberOfBaseVectors(); i++) {
+                Vector base = vector.getVectorByPosition(i);
+                Vector baseDelta = delta.getVectorByPosition(i);
+                if (base instanceof SparseVectorDefaultValue && baseDelta instanceof SparseVectorDefaultValue)
+                    ((SparseVectorDefaultValue) base).sumExact((SparseVectorDefaultValue) baseDelta);
+                else
+                    base.sum(baseDelta);
+            }
+        }
+
         public static BatchOutput sumStateless(BatchOutput batchOutput1, BatchOutput batchOutput2){
             BatchOutput sum = Serialization.deepCopy(batchOutput2);
             sum.getVector().sum(batchOutput1.getVector());
@@ -0,0 +1,449 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.learning.parametric.bayesian;
+
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.datastream.DataOnMemoryListContainer;
+import eu.amidst.core.datastream.DataStream;
+import eu.amidst.core.learning.parametric.bayesian.utils.LearnerState;
+import eu.amidst.core.utils.CompoundVector;
+import eu.amidst.core.utils.Serialization;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * This class automatically tunes the window (i.e., mini-batch) size and the maximum number of local VMP iterations
+ * of a {@link SVB} object. Each candidate configuration is evaluated with a short calibration pass, run on a copy
+ * of the learner, which measures the number of processed instances per second and the predictive log-likelihood per
+ * instance on held-out data. Then, depending on the {@link Target}, the fastest configuration whose log-likelihood
+ * is close to the best one, or the most accurate configuration with an acceptable throughput, is selected.
+ *
+ * <p> The method {@link #runLearning(SVB, DataStream)} tunes the learner on the first instances of a stream and,
+ * optionally, re-tunes it periodically starting from the current posterior, so that the configuration adapts online.
+ * A tuned {@link Configuration} can also be applied to a {@link StochasticVI} object over the same model. </p>
+ */
+public class SVBTuner implements Serializable {
+
+    /** Represents the serial version ID for serializing the object. */
+    private static final long serialVersionUID = 4107783324901370839L;
+
+    /**
+     * Defines the criterion used to select a configuration.
+     */
+    public enum Target {
+        /** Selects the fastest configuration whose log-likelihood is within the tolerance of the best one. */
+        THROUGHPUT,
+        /**
+         * Selects the configuration with the best log-likelihood among those reaching the minimum throughput. The
+         * configurations within the tolerance of the best log-likelihood are considered equally accurate, and the one
+         * with the lowest average number of local iterations per batch is selected.
+         */
+        ACCURACY
+    }
+
+    /** Represents the selection criterion, initialized to {@link Target#THROUGHPUT}. */
+    private Target target = Target.THROUGHPUT;
+
+    /** Represents the candidate window sizes. */
+    private int[] candidateWindowsSizes = {10, 50, 100, 500, 1000};
+
+    /** Represents the candidate maximum numbers of local iterations. */
+    private int[] candidateMaxIterations = {10, 100, 1000};
+
+    /** Represents the tolerated loss in log-likelihood per instance, initialized to 0.01. */
+    private double tolerance = 0.01;
+
+    /** Represents the minimum number of instances per second for the accuracy target, initialized to 0. */
+    private double minThroughput = 0;
+
+    /** Represents the number of instances of each calibration pass, initialized to 2000. */
+    private int calibrationSize = 2000;
+
+    /** Represents the number of held-out instances used to evaluate a configuration, initialized to 500. */
+    private int validationSize = 500;
+
+    /** Represents the number of instances between two tunings in {@link #runLearning(SVB, DataStream)}. */
+    private long recalibrationPeriod = 0;
+
+    /** Represents the last selected configuration. */
+    private Configuration configuration;
+
+    /** Represents the configurations evaluated in the last tuning. */
+    private List<Configuration> evaluatedConfigurations = new ArrayList<>();
+
+    /**
+     * Sets the selection criterion.
+     * @param target a {@link Target} value.
+     */
+    public void setTarget(Target target) {
+        this.target = target;
+    }
+
+    /**
+     * Sets the candidate window sizes.
+     * @param candidateWindowsSizes an array of positive {@code int} values.
+     */
+    public void setCandidateWindowsSizes(int... candidateWindowsSizes) {
+        if (candidateWindowsSizes.length == 0)
+            throw new IllegalArgumentException("At least one window size is required");
+        this.candidateWindowsSizes = candidateWindowsSizes;
+    }
+
+    /**
+     * Sets the candidate maximum numbers of local iterations.
+     * @param candidateMaxIterations an array of positive {@code int} values.
+     */
+    public void setCandidateMaxIterations(int... candidateMaxIterations) {
+        if (candidateMaxIterations.length == 0)
+            throw new IllegalArgumentException("At least one maximum number of iterations is required");
+        this.candidateMaxIterations = candidateMaxIterations;
+    }
+
+    /**
+     * Sets the loss in predictive log-likelihood per instance tolerated by the throughput target, and under which
+     * two configurations are equally accurate for the accuracy target.
+     * @param tolerance a non negative {@code double} value.
+     */
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Sets the minimum number of instances per second required by the accuracy target. If no configuration reaches
+     * it, the fastest one is selected.
+     * @param minThroughput a {@code double} value.
+     */
+    public void setMinThroughput(double minThroughput) {
+        this.minThroughput = minThroughput;
+    }
+
+    /**
+     * Sets the number of instances used to calibrate and evaluate each configuration.
+     * @param calibrationSize the number of instances of each calibration pass.
+     * @param validationSize the number of held-out instances used to evaluate a configuration.
+     */
+    public void setCalibrationSize(int calibrationSize, int validationSize) {
+        if (calibrationSize < 1 || validationSize < 1)
+            throw new IllegalArgumentException("The calibration and validation sizes must be positive");
+        this.calibrationSize = calibrationSize;
+        this.validationSize = validationSize;
+    }
+
+    /**
+     * Sets the number of instances between two tunings in {@link #runLearning(SVB, DataStream)}. A non positive
+     * value, the default, only tunes the learner on the first instances of the stream.
+     * @param recalibrationPeriod a number of instances.
+     */
+    public void setRecalibrationPeriod(long recalibrationPeriod) {
+        this.recalibrationPeriod = recalibrationPeriod;
+    }
+
+    /**
+     * Returns the last selected configuration.
+     * @return a {@link Configuration} object, or {@code null} if no tuning has been performed.
+     */
+    public Configuration getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * Returns the configurations evaluated in the last tuning.
+     * @return an unmodifiable {@code List} of {@link Configuration} objects.
+     */
+    public List<Configuration> getEvaluatedConfigurations() {
+        return Collections.unmodifiableList(evaluatedConfigurations);
+    }
+
+    /**
+     * Evaluates all the candidate configurations and applies the selected one to the given {@link SVB} object.
+     * Candidates are run on copies of the learner, starting from its current posterior if it is already initialized,
+     * so the learner itself only changes its configuration.
+     * @param svb a {@link SVB} object with its DAG already set.
+     * @param calibrationData the instances used to learn with each candidate configuration.
+     * @param validationData the held-out instances used to evaluate each candidate configuration.
+     * @return the selected {@link Configuration}.
+     */
+    public Configuration tune(SVB svb, DataOnMemory<DataInstance> calibrationData, DataOnMemory<DataInstance> validationData) {
+        if (svb.getDAG() == null)
+            throw new IllegalStateException("The DAG must be set before tuning the learner");
+
+        CompoundVector prior = isInitialized(svb) ? svb.getNaturalParameterPrior() : null;
+
+        //The first pass warms up the JIT compiler, so its timing is discarded
+        evaluate(svb, prior, candidateWindowsSizes[0], candidateMaxIterations[0], calibrationData, validationData);
+
+        evaluatedConfigurations = new ArrayList<>();
+        for (int windowsSize : candidateWindowsSizes) {
+            for (int maxIterations : candidateMaxIterations) {
+                evaluatedConfigurations.add(evaluate(svb, prior, windowsSize, maxIterations, calibrationData, validationData));
+            }
+        }
+
+        configuration = select(evaluatedConfigurations);
+        configuration.apply(svb);
+        return configuration;
+    }
+
+    /**
+     * Learns a {@link SVB} object from a data stream, tuning its configuration on the first
+     * {@code calibrationSize + validationSize} instances and, if a recalibration period is set, periodically
+     * re-tuning it from its current posterior. The tuning data is also used to update the model.
+     * @param svb a {@link SVB} object with its DAG already set.
+     * @param data a {@link DataStream} object.
+     * @return the sum of the log probabilities of the evidence of all the processed batches.
+     */
+    public double runLearning(SVB svb, DataStream<DataInstance> data) {
+        int chunkSize = calibrationSize + validationSize;
+        long nextTuning = 0;
+        long nInstances = 0;
+        double logProbability = 0;
+
+        for (DataOnMemory<DataInstance> chunk : data.iterableOverBatches(chunkSize)) {
+
+            if (nInstances >= nextTuning && chunk.getNumberOfDataInstances() == chunkSize) {
+                List<DataInstance> instances = chunk.getList();
+                this.tune(svb,
+                        new DataOnMemoryListContainer<>(chunk.getAttributes(), instances.subList(0, calibrationSize)),
+                        new DataOnMemoryListContainer<>(chunk.getAttributes(), instances.subList(calibrationSize, chunkSize)));
+                nextTuning = (recalibrationPeriod > 0) ? nInstances + recalibrationPeriod : Long.MAX_VALUE;
+            } else if (!isInitialized(svb)) {
+                svb.initLearning();
+            }
+
+            for (DataOnMemory<DataInstance> batch : chunk.iterableOverBatches(svb.getWindowsSize())) {
+                logProbability += svb.updateModel(batch);
+            }
+            nInstances += chunk.getNumberOfDataInstances();
+        }
+
+        return logProbability;
+    }
+
+    /**
+     * Selects a configuration according to the target.
+     * @param configurations a non empty {@code List} of {@link Configuration} objects.
+     * @return the selected {@link Configuration}.
+     */
+    private Configuration select(List<Configuration> configurations) {
+        double bestLogLikelihood = configurations.stream()
+                .mapToDouble(Configuration::getLogLikelihoodPerInstance).max().getAsDouble();
+
+        Configuration fastest = configurations.stream()
+                .max((a, b) -> Double.compare(a.instancesPerSecond, b.instancesPerSecond)).get();
+
+        if (target == Target.THROUGHPUT) {
+            return configurations.stream()
+                    .filter(conf -> conf.logLikelihoodPerInstance >= bestLogLikelihood - tolerance)
+                    .max((a, b) -> Double.compare(a.instancesPerSecond, b.instancesPerSecond))
+                    .orElse(fastest);
+        } else {
+            List<Configuration> feasible = configurations.stream()
+                    .filter(conf -> conf.instancesPerSecond >= minThroughput)
+                    .collect(Collectors.toList());
+            if (feasible.isEmpty())
+                return fastest;
+
+            double bestFeasibleLogLikelihood = feasible.stream()
+                    .mapToDouble(Configuration::getLogLikelihoodPerInstance).max().getAsDouble();
+
+            return feasible.stream()
+                    .filter(conf -> conf.logLikelihoodPerInstance >= bestFeasibleLogLikelihood - tolerance)
+                    .min((a, b) -> Double.compare(a.averageIterations, b.averageIterations))
+                    .get();
+        }
+    }
+
+    /**
+     * Evaluates a configuration on a copy of a given {@link SVB} object.
+     * @param svb a {@link SVB} object.
+     * @param prior the natural parameter prior to start from, or {@code null} to start from the model prior.
+     * @param windowsSize the window size.
+     * @param maxIterations the maximum number of local iterations.
+     * @param calibrationData the instances used to learn.
+     * @param validationData the held-out instances.
+     * @return a {@link Configuration} object with the measured performance.
+     */
+    private static Configuration evaluate(SVB svb, CompoundVector prior, int windowsSize, int maxIterations,
+                                          DataOnMemory<DataInstance> calibrationData,
+                                          DataOnMemory<DataInstance> validationData) {
+
+        SVB copy = Serialization.deepCopy(svb);
+        Configuration configuration = new Configuration(windowsSize, maxIterations);
+        configuration.initLearning(copy, prior);
+
+        long start = System.nanoTime();
+        for (DataOnMemory<DataInstance> batch : calibrationData.iterableOverBatches(windowsSize)) {
+            copy.updateModel(batch);
+        }
+        double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+
+        double logLikelihood = 0;
+        for (DataOnMemory<DataInstance> batch : validationData.iterableOverBatches(windowsSize)) {
+            logLikelihood += copy.predictedLogLikelihood(batch);
+        }
+
+        configuration.instancesPerSecond = calibrationData.getNumberOfDataInstances() / seconds;
+        configuration.logLikelihoodPerInstance = logLikelihood / validationData.getNumberOfDataInstances();
+        configuration.averageIterations = copy.getAverageNumOfIterations();
+        return configuration;
+    }
+
+    /**
+     * Tests whether a given {@link SVB} object has been initialized.
+     * @param svb a {@link SVB} object.
+     * @return {@code true} if the learner has been initialized, {@code false} otherwise.
+     */
+    private static boolean isInitialized(SVB svb) {
+        return svb.getPlateuStructure().getEFLearningBN() != null;
+    }
+
+    /**
+     * This class defines a configuration of a {@link SVB} object, together with its measured performance.
+     */
+    public static class Configuration implements Serializable {
+
+        /** Represents the serial version ID for serializing the object. */
+        private static final long serialVersionUID = 4107783324901370839L;
+
+        /** Represents the window size. */
+        private final int windowsSize;
+
+        /** Represents the maximum number of local iterations. */
+        private final int maxIterations;
+
+        /** Represents the number of processed instances per second. */
+        private double instancesPerSecond = Double.NaN;
+
+        /** Represents the predictive log-likelihood per held-out instance. */
+        private double logLikelihoodPerInstance = Double.NaN;
+
+        /** Represents the average number of local iterations per batch. */
+        private double averageIterations = Double.NaN;
+
+        /**
+         * Creates a new configuration.
+         * @param windowsSize the window size.
+         * @param maxIterations the maximum number of local iterations.
+         */
+        public Configuration(int windowsSize, int maxIterations) {
+            this.windowsSize = windowsSize;
+            this.maxIterations = maxIterations;
+        }
+
+        /**
+         * Returns the window size.
+         * @return an {@code int} value.
+         */
+        public int getWindowsSize() {
+            return windowsSize;
+        }
+
+        /**
+         * Returns the maximum number of local iterations.
+         * @return an {@code int} value.
+         */
+        public int getMaxIterations() {
+            return maxIterations;
+        }
+
+        /**
+         * Returns the number of processed instances per second measured in the calibration pass.
+         * @return a {@code double} value.
+         */
+        public double getInstancesPerSecond() {
+            return instancesPerSecond;
+        }
+
+        /**
+         * Returns the predictive log-likelihood per held-out instance measured after the calibration pass.
+         * @return a {@code double} value.
+         */
+        public double getLogLikelihoodPerInstance() {
+            return logLikelihoodPerInstance;
+        }
+
+        /**
+         * Returns the average number of local iterations per batch in the calibration pass.
+         * @return a {@code double} value.
+         */
+        public double getAverageIterations() {
+            return averageIterations;
+        }
+
+        /**
+         * Applies this configuration to a given {@link SVB} object. If the learner is not initialized yet, its
+         * learning is initialized. Otherwise, its learning is not reset: the maximum number of iterations is changed
+         * in place and, if the window size changes, the plateau is replicated again and the whole state of the
+         * learner (its counters, posterior and the state of subclasses such as {@link DriftSVB}) is restored through
+         * {@link SVB#getLearnerState()}.
+         * @param svb a {@link SVB} object with its DAG already set.
+         */
+        public void apply(SVB svb) {
+            if (!isInitialized(svb)) {
+                this.initLearning(svb, null);
+                return;
+            }
+
+            svb.getPlateuStructure().getVMP().setMaxIter(maxIterations);
+            if (svb.getWindowsSize() != windowsSize) {
+                LearnerState state = svb.getLearnerState();
+                svb.setWindowsSize(windowsSize);
+                svb.initLearning();
+                svb.setLearnerState(state);
+            }
+        }
+
+        /**
+         * Applies this configuration to a given {@link StochasticVI} object, before its learning is initialized.
+         * Only the VMP iterations of each local step are bounded, the number of mini-batches is not changed.
+         * @param stochasticVI a {@link StochasticVI} object.
+         */
+        public void apply(StochasticVI stochasticVI) {
+            stochasticVI.setBatchSize(windowsSize);
+            stochasticVI.setMaximumVMPIterations(maxIterations);
+        }
+
+        /**
+         * Initializes the learning of a given {@link SVB} object with this configuration.
+         * @param svb a {@link SVB} object.
+         * @param prior the natural parameter prior to start from, or {@code null} to keep the model prior.
+         */
+        private void initLearning(SVB svb, CompoundVector prior) {
+            svb.setWindowsSize(windowsSize);
+            svb.getPlateuStructure().getVMP().setMaxIter(maxIterations);
+            svb.initLearning();
+            if (prior != null)
+                svb.updateNaturalParameterPrior(prior);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return "windowsSize=" + windowsSize + ", maxIterations=" + maxIterations +
+                    ", instances/s=" + instancesPerSecond + ", logLikelihood/instance=" + logLikelihoodPerInstance +
+                    ", averageIterations=" + averageIterations;
+        }
+    }
+}
@@ -15,9 +15,9 @@ import eu.amidst.core.datastream.DataInstance;
 import eu.amidst.core.datastream.DataOnMemory;
 import eu.amidst.core.datastream.DataStream;
 import eu.amidst.core.distribution.UnivariateDistribution;
-import eu.amidst.core.exponentialfamily.NaturalParameters;
 import eu.amidst.core.inference.messagepassing.VMP;
 import eu.amidst.core.learning.parametric.bayesian.utils.DataPosterior;
+import eu.amidst.core.learning.parametric.bayesian.utils.LearnerState;
 import eu.amidst.core.learning.parametric.bayesian.utils.PlateuStructure;
 import eu.amidst.core.learning.parametric.bayesian.utils.TransitionMethod;
 import eu.amidst.core.learning.parametric.bayesian.utils.VMPLocalUpdates;
@@ -25,11 +25,18 @@ import eu.amidst.core.models.BayesianNetwork;
 import eu.amidst.core.models.DAG;
 import eu.amidst.core.utils.CompoundVector;
 import eu.amidst.core.utils.Serialization;
+import eu.amidst.core.utils.Vector;
 import eu.amidst.core.variables.Variable;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * This class implements the {@link BayesianParameterLearningAlgorithm} interface, and defines the parallel Maximum Likelihood algorithm.
@@ -38,7 +45,7 @@ import java.util.List;
  * <p> <a href="http://amidst.github.io/toolbox/CodeExamples.html#pmlexample"> http://amidst.github.io/toolbox/CodeExamples.html#pmlexample </a>  </p>
  *
  */
-public class StochasticVI implements BayesianParameterLearningAlgorithm, Serializable {
+public class StochasticVI implements BayesianParameterLearningAlgorithm, CheckpointableLearner, Serializable {
 
     /** Represents the serial version ID for serializing the object. */
     private static final long serialVersionUID = 4107783324901370839L;
@@ -77,6 +84,29 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
 
     private boolean firstBatch = true;
 
+    private boolean parallelMode = false;
+
+    /** Represents the {@link LearnerCheckpointer} used to save and resume the learning, or {@code null}. */
+    private transient LearnerCheckpointer checkpointer = null;
+
+    /** Represents the number of worker threads processing mini-batches concurrently, initialized to 1. */
+    private int nWorkers = 1;
+
+    /**
+     * Represents the maximum number of global updates a worker can miss before refreshing its copy of the global
+     * parameters, initialized to -1 (i.e., the number of workers).
+     */
+    private int maxDelay = -1;
+
+    /** Indicates whether the multi-threaded learning is reproducible, initialized to {@code false}. */
+    private boolean reproducibleMode = false;
+
+    /**
+     * Represents the maximum number of VMP iterations of the local step, initialized to -1 (i.e., the maximum number
+     * of local iterations).
+     */
+    private int maximumVMPIterations = -1;
+
     public int getBatchSize() {
         return batchSize;
     }
@@ -118,13 +148,78 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
         this.localThreshold = localThreshold;
     }
 
+    /**
+     * Sets the maximum number of local iterations. It bounds both the number of processed mini-batches and, unless
+     * {@link #setMaximumVMPIterations(int)} is used, the number of VMP iterations of each local step.
+     * @param maximumLocalIterations a positive {@code int} value.
+     */
     public void setMaximumLocalIterations(int maximumLocalIterations) {
         this.maximumLocalIterations = maximumLocalIterations;
     }
+
+    /**
+     * Returns the maximum number of local iterations.
+     * @return an {@code int} value.
+     */
+    public int getMaximumLocalIterations() {
+        return maximumLocalIterations;
+    }
+
+    /**
+     * Sets the maximum number of VMP iterations of each local step, without changing the number of processed
+     * mini-batches.
+     * @param maximumVMPIterations a positive {@code int} value, or -1 to use the maximum number of local iterations.
+     */
+    public void setMaximumVMPIterations(int maximumVMPIterations) {
+        this.maximumVMPIterations = maximumVMPIterations;
+    }
+
+    /**
+     * Returns the maximum number of VMP iterations of each local step.
+     * @return an {@code int} value.
+     */
+    public int getMaximumVMPIterations() {
+        return (this.maximumVMPIterations == -1) ? this.maximumLocalIterations : this.maximumVMPIterations;
+    }
+
     public void setBatchSize(int batchSize) {
         this.batchSize = batchSize;
     }
 
+    /**
+     * Sets the number of worker threads. With more than one worker, each worker computes the local step of a
+     * different mini-batch of the shared data stream with its own copy of the model, and applies the natural
+     * gradient step to the global parameters without locks (Hogwild-style), entry by entry with compare-and-set.
+     * @param nWorkers a positive {@code int} value.
+     */
+    public void setNumberOfWorkers(int nWorkers) {
+        if (nWorkers < 1)
+            throw new IllegalArgumentException("The number of workers must be positive");
+        this.nWorkers = nWorkers;
+    }
+
+    /**
+     * Sets the maximum number of global updates a worker can miss before refreshing its copy of the global
+     * parameters. A value of 0 refreshes it before each mini-batch. By default, it is equal to the number of workers.
+     * It only bounds the staleness of the parameters used by the local steps: each natural gradient step is still
+     * applied to the global parameters as soon as it is computed, and the delayed steps are not averaged.
+     * @param maxDelay an {@code int} value.
+     */
+    public void setMaxDelay(int maxDelay) {
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Sets the reproducible mode for multiple workers. In this mode, the workers process rounds of
+     * {@code nWorkers} consecutive mini-batches with the same global parameters, and the natural gradient steps
+     * are applied in the order of the mini-batches at the end of each round, so the result does not depend on
+     * the scheduling of the threads.
+     * @param reproducibleMode {@code true} to activate the reproducible mode, {@code false} otherwise.
+     */
+    public void setReproducibleMode(boolean reproducibleMode) {
+        this.reproducibleMode = reproducibleMode;
+    }
+
     public SVB getSVB() {
         return svb;
     }
@@ -133,8 +228,9 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
 
         //TODO: Remove the code inside this method once issue #50 is solved.
         VMPLocalUpdates vmpLocalUpdates = new VMPLocalUpdates(this.svb.getPlateuStructure());
+        vmpLocalUpdates.setParallelMode(this.parallelMode);
         this.svb.getPlateuStructure().setVmp(vmpLocalUpdates);
-        this.svb.getPlateuStructure().getVMP().setMaxIter(this.maximumLocalIterations);
+        this.svb.getPlateuStructure().getVMP().setMaxIter(this.getMaximumVMPIterations());
         this.svb.getPlateuStructure().getVMP().setThreshold(this.localThreshold);
         this.svb.setDAG(this.dag);
         this.svb.setWindowsSize(batchSize);
@@ -159,7 +255,7 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
 
         //We perform full VMP on the first batch
         this.svb.getPlateuStructure().setVmp(new VMP());
-        this.svb.getPlateuStructure().getVMP().setMaxIter(this.maximumLocalIterations);
+        this.svb.getPlateuStructure().getVMP().setMaxIter(this.getMaximumVMPIterations());
         this.svb.getPlateuStructure().getVMP().setThreshold(this.localThreshold);
         this.svb.setDAG(this.dag);
         this.svb.setWindowsSize(batchSize);
@@ -179,8 +275,9 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
         //We set new VMP
 
         VMPLocalUpdates vmpLocalUpdates = new VMPLocalUpdates(this.svb.getPlateuStructure());
+        vmpLocalUpdates.setParallelMode(this.parallelMode);
         this.svb.getPlateuStructure().setVmp(vmpLocalUpdates);
-        this.svb.getPlateuStructure().getVMP().setMaxIter(this.maximumLocalIterations);
+        this.svb.getPlateuStructure().getVMP().setMaxIter(this.getMaximumVMPIterations());
         this.svb.getPlateuStructure().getVMP().setThreshold(this.localThreshold);
         this.svb.setDAG(this.dag);
         this.svb.setWindowsSize(batchSize);
@@ -202,17 +299,13 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
         }
 
 
-        NaturalParameters newParam = svb.updateModelOnBatchParallel(batch).getVector();
-
-        newParam.multiplyBy(this.dataSetSize/(double)this.batchSize);
-        newParam.sum(prior);
+        CompoundVector newParam = svb.updateModelOnBatchParallel(batch).getVector();
 
         double stepSize = Math.pow(1+ iteration,-learningFactor);
 
-        newParam.multiplyBy(stepSize);
-
-        currentParam.multiplyBy((1-stepSize));
-        currentParam.sum(newParam);
+        //currentParam = (1-stepSize)*currentParam + stepSize*(prior + dataSetSize/batchSize*newParam)
+        currentParam.scaleAndAdd(1-stepSize, stepSize*this.dataSetSize/(double)this.batchSize, newParam);
+        currentParam.axpy(stepSize, prior);
 
         this.svb.updateNaturalParameterPosteriors(currentParam);
 
@@ -255,6 +348,14 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
     public void runLearning() {
         this.initLearning();
 
+        if (this.nWorkers > 1) {
+            if (this.reproducibleMode)
+                this.runReproducibleLearning();
+            else
+                this.runHogwildLearning();
+            return;
+        }
+
         boolean convergence=false;
 
 
@@ -262,8 +363,9 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
 
         double totalTime=0;
 
-        Iterator<DataOnMemory<DataInstance>> iterator = this.dataStream.iterableOverBatches(this.batchSize).iterator();
-
+        Iterator<DataOnMemory<DataInstance>> iterator = (this.checkpointer != null) ?
+                this.skipBatches(this.checkpointer.resume(this)) :
+                this.dataStream.iterableOverBatches(this.batchSize).iterator();
 
 
         while(!convergence){
@@ -275,17 +377,13 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
             if (!iterator.hasNext())
                 iterator = this.dataStream.iterableOverBatches(this.batchSize).iterator();
 
-            NaturalParameters newParam = svb.updateModelOnBatchParallel(batch).getVector();
-
-            newParam.multiplyBy(this.dataSetSize/(double)this.batchSize);
-            newParam.sum(prior);
+            CompoundVector newParam = svb.updateModelOnBatchParallel(batch).getVector();
 
             double stepSize = Math.pow(1+ iteration,-learningFactor);
 
-            newParam.multiplyBy(stepSize);
-
-            currentParam.multiplyBy((1-stepSize));
-            currentParam.sum(newParam);
+            //currentParam = (1-stepSize)*currentParam + stepSize*(prior + dataSetSize/batchSize*newParam)
+            currentParam.scaleAndAdd(1-stepSize, stepSize*this.dataSetSize/(double)this.batchSize, newParam);
+            currentParam.axpy(stepSize, prior);
 
             this.svb.updateNaturalParameterPosteriors(currentParam);
 
@@ -312,9 +410,255 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
 
             iteration++;
 
+            if (this.checkpointer != null)
+                this.checkpointer.update(this);
+        }
+
+        if (this.checkpointer != null)
+            this.checkpointer.close();
+    }
+
+    /**
+     * Runs the learning with several workers applying their natural gradient steps without locks.
+     */
+    private void runHogwildLearning() {
+        if (this.checkpointer != null)
+            throw new UnsupportedOperationException("Checkpointing requires the reproducible mode with several workers");
+
+        int delay = (this.maxDelay == -1) ? this.nWorkers : this.maxDelay;
+        long maxBatches = this.maximumLocalIterations + 2L;
+        long startTime = System.nanoTime();
+
+        this.initWorkerParameters();
+
+        double[] priorArray = toArray(this.prior);
+        AtomicLongArray global = new AtomicLongArray(priorArray.length);
+        double[] currentArray = toArray(this.currentParam);
+        for (int i = 0; i < currentArray.length; i++) {
+            global.set(i, Double.doubleToRawLongBits(currentArray[i]));
+        }
+
+        AtomicLong counter = new AtomicLong(this.iteration);
+        long[] takenBatches = new long[1];
+        AtomicReference<Iterator<DataOnMemory<DataInstance>>> iterator =
+                new AtomicReference<>(this.dataStream.iterableOverBatches(this.batchSize).iterator());
+        AtomicReference<RuntimeException> error = new AtomicReference<>();
+
+        Thread[] workers = new Thread[this.nWorkers];
+        for (int w = 0; w < this.nWorkers; w++) {
+            SVB engine = this.newWorkerEngine();
+            workers[w] = new Thread(() -> {
+                try {
+                    //The global parameters are read before the first batch
+                    long lastRefresh = counter.get() - delay - 1;
+                    CompoundVector local = Serialization.deepCopy(this.currentParam);
+                    while (error.get() == null && (System.nanoTime() - startTime) / 1e9 <= this.timiLimit) {
+                        DataOnMemory<DataInstance> batch;
+                        synchronized (iterator) {
+                            if (takenBatches[0]++ >= maxBatches)
+                                return;
+                            batch = iterator.get().next();
+                            if (!iterator.get().hasNext())
+                                iterator.set(this.dataStream.iterableOverBatches(this.batchSize).iterator());
+                        }
+
+                        if (counter.get() - lastRefresh > delay) {
+                            lastRefresh = counter.get();
+                            copyInto(global, local);
+                            engine.updateNaturalParameterPosteriors(local);
+                        }
+
+                        double[] stats = toArray(engine.updateModelOnBatchParallel(batch).getVector());
+                        double stepSize = Math.pow(1 + counter.getAndIncrement(), -learningFactor);
+                        double scale = this.dataSetSize / (double) this.batchSize;
+                        for (int i = 0; i < stats.length; i++) {
+                            double target = priorArray[i] + scale * stats[i];
+                            long oldBits;
+                            long newBits;
+                            do {
+                                oldBits = global.get(i);
+                                newBits = Double.doubleToRawLongBits((1 - stepSize) * Double.longBitsToDouble(oldBits) + stepSize * target);
+                            } while (!global.compareAndSet(i, oldBits, newBits));
+                        }
+                    }
+                } catch (RuntimeException ex) {
+                    error.compareAndSet(null, ex);
+                }
+            }, "StochasticVI-worker-" + w);
+            workers[w].start();
+        }
+
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the workers", ex);
+            }
+        }
+
+        if (error.get() != null)
+            throw error.get();
+
+        this.iteration = (int) counter.get();
+        copyInto(global, this.currentParam);
+        this.svb.updateNaturalParameterPosteriors(this.currentParam);
+    }
+
+    /**
+     * Runs the learning with several workers in rounds, applying the natural gradient steps in the order of the
+     * mini-batches.
+     */
+    private void runReproducibleLearning() {
+        long maxBatches = this.maximumLocalIterations + 2L;
+        long startTime = System.nanoTime();
+
+        long processedBatches = (this.checkpointer != null) ? this.checkpointer.resume(this) : 0;
+        Iterator<DataOnMemory<DataInstance>> iterator = this.skipBatches(processedBatches);
+
+        this.initWorkerParameters();
+
+        SVB[] engines = new SVB[this.nWorkers];
+        for (int w = 0; w < this.nWorkers; w++) {
+            engines[w] = this.newWorkerEngine();
+        }
+
+        while (processedBatches < maxBatches && (System.nanoTime() - startTime) / 1e9 <= this.timiLimit) {
+            List<DataOnMemory<DataInstance>> batches = new ArrayList<>();
+            while (batches.size() < this.nWorkers && processedBatches + batches.size() < maxBatches) {
+                batches.add(iterator.next());
+                if (!iterator.hasNext())
+                    iterator = this.dataStream.iterableOverBatches(this.batchSize).iterator();
+            }
+
+            List<CompoundVector> stats = IntStream.range(0, batches.size())
+                    .parallel()
+                    .mapToObj(w -> {
+                        engines[w].updateNaturalParameterPosteriors(this.currentParam);
+                        return engines[w].updateModelOnBatchParallel(batches.get(w)).getVector();
+                    })
+                    .collect(Collectors.toList());
+
+            for (CompoundVector newParam : stats) {
+                double stepSize = Math.pow(1 + iteration, -learningFactor);
+
+                currentParam.scaleAndAdd(1 - stepSize, stepSize * this.dataSetSize / (double) this.batchSize, newParam);
+                currentParam.axpy(stepSize, prior);
+
+                iteration++;
+            }
+
+            processedBatches += batches.size();
+            if (this.checkpointer != null)
+                this.checkpointer.update(this, batches.size());
+        }
+
+        this.svb.updateNaturalParameterPosteriors(this.currentParam);
+
+        if (this.checkpointer != null)
+            this.checkpointer.close();
+    }
+
+    /**
+     * Returns an iterator over the mini-batches of the data stream positioned after a number of consumed batches,
+     * which may span several passes over the data. At most one pass is iterated: once the number of batches per
+     * pass is known, only the batches consumed in the last pass are skipped.
+     * @param consumedBatches the number of consumed batches.
+     * @return an {@code Iterator} over the remaining mini-batches of the current pass.
+     */
+    private Iterator<DataOnMemory<DataInstance>> skipBatches(long consumedBatches) {
+        Iterator<DataOnMemory<DataInstance>> iterator = this.dataStream.iterableOverBatches(this.batchSize).iterator();
+        long skippedBatches = 0;
+        while (skippedBatches < consumedBatches) {
+            iterator.next();
+            skippedBatches++;
+            if (!iterator.hasNext()) {
+                iterator = this.dataStream.iterableOverBatches(this.batchSize).iterator();
+                //The first pass has been skipped, so skippedBatches is the number of batches per pass
+                skippedBatches = consumedBatches - (consumedBatches - skippedBatches) % skippedBatches;
+            }
+        }
+        return iterator;
+    }
+
+    /**
+     * Sets the parameters read by the workers before their first local step. As in the sequential mode, the first
+     * local step uses the initial posterior, which breaks the symmetry of the hidden variables. The value of the
+     * global parameters is discarded by this first step, whose step size is one.
+     */
+    private void initWorkerParameters() {
+        if (this.iteration == 0)
+            this.currentParam = Serialization.deepCopy(this.initialPosterior);
+    }
+
+    /**
+     * Creates a copy of the SVB engine for a worker, initialized with the current global parameters.
+     * @return a {@link SVB} object.
+     */
+    private SVB newWorkerEngine() {
+        SVB engine = Serialization.deepCopy(this.svb);
+        engine.initLearning();
+        engine.updateNaturalParameterPosteriors(this.currentParam);
+        return engine;
+    }
+
+    private static double[] toArray(CompoundVector vector) {
+        double[] array = new double[vector.size()];
+        int offset = 0;
+        for (Vector baseVector : vector.getVectors()) {
+            for (int i = 0; i < baseVector.size(); i++) {
+                array[offset++] = baseVector.get(i);
+            }
+        }
+        return array;
+    }
+
+    private static void copyInto(AtomicLongArray array, CompoundVector vector) {
+        int offset = 0;
+        for (Vector baseVector : vector.getVectors()) {
+            for (int i = 0; i < baseVector.size(); i++) {
+                baseVector.set(i, Double.longBitsToDouble(array.get(offset++)));
+            }
         }
     }
 
+    /**
+     * Sets the {@link LearnerCheckpointer} used by {@link #runLearning()} to resume from the last checkpoint and to
+     * periodically save the state of this StochasticVI.
+     * @param checkpointer a {@link LearnerCheckpointer} object, or {@code null} to disable checkpointing.
+     */
+    public void setCheckpointer(LearnerCheckpointer checkpointer) {
+        this.checkpointer = checkpointer;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The state contains the iteration counter, the prior, the current global parameters and the initial posterior.
+     */
+    @Override
+    public LearnerState getLearnerState() {
+        LearnerState state = new LearnerState();
+        state.addBlock(this.iteration, this.firstBatch ? 1 : 0);
+        state.addBlock(this.prior);
+        state.addBlock(this.currentParam);
+        state.addBlock(this.initialPosterior);
+        return state;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setLearnerState(LearnerState state) {
+        double[] counters = state.getBlock(0);
+        this.iteration = (int) counters[0];
+        this.firstBatch = counters[1] != 0;
+        state.copyBlockInto(1, this.prior);
+        state.copyBlockInto(2, this.currentParam);
+        state.copyBlockInto(3, this.initialPosterior);
+        this.svb.updateNaturalParameterPosteriors(this.currentParam);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -340,9 +684,15 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
         return this.svb.getLearntBayesianNetwork();
     }
 
+    /**
+     * {@inheritDoc}
+     * In parallel mode, the local updates of the data instances of a batch are computed concurrently
+     * (see {@link VMPLocalUpdates#setParallelMode(boolean)}).
+     */
     @Override
     public void setParallelMode(boolean parallelMode) {
-
+        this.parallelMode = parallelMode;
+        this.svb.getPlateuStructure().getVMP().setParallelMode(parallelMode);
     }
 
     /**
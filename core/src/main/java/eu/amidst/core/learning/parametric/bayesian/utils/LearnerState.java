@@ -0,0 +1,136 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.learning.parametric.bayesian.utils;
+
+import eu.amidst.core.utils.CompoundVector;
+import eu.amidst.core.utils.Vector;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class defines the state of a streaming Bayesian learner as a list of blocks of doubles (e.g., the natural
+ * parameters of the current posterior, counters and the ELBO), together with the number of batches of the data stream
+ * consumed to reach it. Subclasses of a learner append their own blocks after the blocks of their superclass.
+ */
+public class LearnerState implements Serializable {
+
+    /** Represents the serial version ID for serializing the object. */
+    private static final long serialVersionUID = 4107783324901370839L;
+
+    /** Represents the blocks of this state. */
+    private final List<double[]> blocks;
+
+    /** Represents the number of consumed batches. */
+    private long numberOfConsumedBatches = 0;
+
+    /**
+     * Creates a new empty LearnerState.
+     */
+    public LearnerState() {
+        this.blocks = new ArrayList<>();
+    }
+
+    /**
+     * Creates a new LearnerState with the given blocks.
+     * @param blocks a {@code List} of arrays of doubles.
+     */
+    public LearnerState(List<double[]> blocks) {
+        this.blocks = blocks;
+    }
+
+    /**
+     * Returns the blocks of this LearnerState.
+     * @return a {@code List} of arrays of doubles.
+     */
+    public List<double[]> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * Returns the block at a given position.
+     * @param position the position of the block.
+     * @return an array of doubles.
+     */
+    public double[] getBlock(int position) {
+        if (position >= blocks.size())
+            throw new IllegalArgumentException("The state does not contain the block " + position + ". It was saved by a different learner.");
+        return blocks.get(position);
+    }
+
+    /**
+     * Adds a block to this LearnerState.
+     * @param block an array of doubles.
+     */
+    public void addBlock(double... block) {
+        this.blocks.add(block);
+    }
+
+    /**
+     * Adds a block with the values of a given {@link CompoundVector}, or an empty block if it is {@code null}.
+     * @param vector a {@link CompoundVector} object.
+     */
+    public void addBlock(CompoundVector vector) {
+        double[] block = new double[(vector == null) ? 0 : vector.size()];
+        if (vector != null) {
+            int offset = 0;
+            for (Vector baseVector : vector.getVectors()) {
+                for (int i = 0; i < baseVector.size(); i++) {
+                    block[offset++] = baseVector.get(i);
+                }
+            }
+        }
+        this.blocks.add(block);
+    }
+
+    /**
+     * Copies the values of the block at a given position into a given {@link CompoundVector}.
+     * @param position the position of the block.
+     * @param vector a {@link CompoundVector} object with the same size as the block.
+     * @return the given {@link CompoundVector}.
+     */
+    public CompoundVector copyBlockInto(int position, CompoundVector vector) {
+        double[] block = this.getBlock(position);
+        if (block.length != vector.size())
+            throw new IllegalArgumentException("The size of the block (" + block.length + ") does not match the size of the vector (" + vector.size() + ")");
+        int offset = 0;
+        for (Vector baseVector : vector.getVectors()) {
+            for (int i = 0; i < baseVector.size(); i++) {
+                baseVector.set(i, block[offset++]);
+            }
+        }
+        return vector;
+    }
+
+    /**
+     * Returns the number of batches of the data stream consumed to reach this state.
+     * @return a {@code long} value.
+     */
+    public long getNumberOfConsumedBatches() {
+        return numberOfConsumedBatches;
+    }
+
+    /**
+     * Sets the number of batches of the data stream consumed to reach this state.
+     * @param numberOfConsumedBatches a {@code long} value.
+     */
+    public void setNumberOfConsumedBatches(long numberOfConsumedBatches) {
+        this.numberOfConsumedBatches = numberOfConsumedBatches;
+    }
+}
@@ -12,13 +12,15 @@
 package eu.amidst.core.learning.parametric.bayesian.utils;
 
 import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.exponentialfamily.EF_ConditionalDistribution;
 import eu.amidst.core.inference.messagepassing.Node;
 import eu.amidst.core.variables.Variable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -26,6 +28,9 @@ import java.util.stream.Collectors;
  */
 public class PlateuIIDReplication extends PlateuStructure{
 
+    /** Represents the position of each replicated {@link Variable} within the nodes of a slice. */
+    transient private Map<Variable, Integer> replicatedVarPositions;
+
 
     /**
      * Empty builder.
@@ -81,7 +86,9 @@ public class PlateuIIDReplication extends PlateuStructure{
 
 
     /**
-     * Replicates this model.
+     * Replicates this model. The topology of a slice (i.e., the position of each replicated variable and of its
+     * parents) is computed once and shared by all the slices, so each replicated {@link Node} only stores its
+     * own posterior, evidence and exactly sized lists of parents and children.
      */
     @Override
     public void replicateModel(){
@@ -95,30 +102,55 @@ public class PlateuIIDReplication extends PlateuStructure{
                 })
                 .collect(Collectors.toList());
 
-        for (int i = 0; i < nReplications; i++) {
+        List<EF_ConditionalDistribution> replicatedDists = ef_learningmodel.getDistributionList().stream()
+                .filter(dist -> isReplicatedVar(dist.getVariable()))
+                .collect(Collectors.toList());
+
+        replicatedVarPositions = new HashMap<>();
+        for (int j = 0; j < replicatedDists.size(); j++) {
+            replicatedVarPositions.put(replicatedDists.get(j).getVariable(), j);
+        }
 
-            Map<Variable, Node> map = new ConcurrentHashMap<>();
-            List<Node> tmpNodes = ef_learningmodel.getDistributionList().stream()
-                    .filter(dist -> isReplicatedVar(dist.getVariable()))
-                    .map(dist -> {
-                        Node node = new Node(dist);
-                        map.put(dist.getVariable(), node);
-                        return node;
-                    })
-                    .collect(Collectors.toList());
-            this.replicatedVarsToNode.add(map);
-            replicatedNodes.add(tmpNodes);
+        //Position in the slice of each parent, or -1 for non-replicated parents, and number of children in the slice.
+        int[][] parentPositions = new int[replicatedDists.size()][];
+        int[] nChildrenInSlice = new int[replicatedDists.size()];
+        for (int j = 0; j < replicatedDists.size(); j++) {
+            List<Variable> parentVars = replicatedDists.get(j).getConditioningVariables();
+            parentPositions[j] = new int[parentVars.size()];
+            for (int k = 0; k < parentVars.size(); k++) {
+                Variable parentVar = parentVars.get(k);
+                if (isNonReplicatedVar(parentVar)) {
+                    parentPositions[j][k] = -1;
+                } else {
+                    parentPositions[j][k] = replicatedVarPositions.get(parentVar);
+                    nChildrenInSlice[parentPositions[j][k]]++;
+                }
+            }
         }
 
         for (int i = 0; i < nReplications; i++) {
-            for (Node node : replicatedNodes.get(i)) {
-                final int slice = i;
-                node.setParents(node.getPDist().getConditioningVariables().stream().map(var -> this.getNodeOfVar(var, slice)).collect(Collectors.toList()));
-                node.getPDist().getConditioningVariables().stream().forEach(var -> this.getNodeOfVar(var, slice).getChildren().add(node));
+
+            Node[] sliceNodes = new Node[replicatedDists.size()];
+            for (int j = 0; j < sliceNodes.length; j++) {
+                sliceNodes[j] = new Node(replicatedDists.get(j));
+                sliceNodes[j].setChildren(new ArrayList<>(nChildrenInSlice[j]));
             }
+
+            for (int j = 0; j < sliceNodes.length; j++) {
+                List<Variable> parentVars = replicatedDists.get(j).getConditioningVariables();
+                Node[] parents = new Node[parentVars.size()];
+                for (int k = 0; k < parents.length; k++) {
+                    parents[k] = (parentPositions[j][k] == -1) ?
+                            nonReplicatedVarsToNode.get(parentVars.get(k)) : sliceNodes[parentPositions[j][k]];
+                    parents[k].getChildren().add(sliceNodes[j]);
+                }
+                sliceNodes[j].setParents(Arrays.asList(parents));
+            }
+
+            replicatedNodes.add(Arrays.asList(sliceNodes));
         }
 
-        List<Node> allNodes = new ArrayList();
+        List<Node> allNodes = new ArrayList(this.nonReplictedNodes.size() + nReplications * replicatedDists.size());
 
         allNodes.addAll(this.nonReplictedNodes);
 
@@ -129,4 +161,15 @@ public class PlateuIIDReplication extends PlateuStructure{
         this.vmp.setNodes(allNodes);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Node getNodeOfVar(Variable variable, int slice) {
+        if (isNonReplicatedVar(variable))
+            return this.nonReplicatedVarsToNode.get(variable);
+        else
+            return this.replicatedNodes.get(slice).get(this.replicatedVarPositions.get(variable));
+    }
+
 }
\ No newline at end of file
@@ -17,6 +17,7 @@ import eu.amidst.core.inference.messagepassing.Node;
 import eu.amidst.core.inference.messagepassing.VMP;
 import eu.amidst.core.models.DAG;
 import eu.amidst.core.utils.CompoundVector;
+import eu.amidst.core.utils.SparseVectorDefaultValue;
 import eu.amidst.core.utils.Vector;
 import eu.amidst.core.variables.Variable;
 
@@ -357,6 +358,58 @@ public abstract class PlateuStructure implements Serializable {
         return new CompoundVector(naturalPlateauParametersPriors);
     }
 
+    /**
+     * Returns the difference between the natural parameters of the posterior and the prior of the plateau as a
+     * {@link CompoundVector} of {@link SparseVectorDefaultValue} objects with default value 0, which only store the
+     * entries that changed. The dense posterior and prior vectors are not materialized.
+     * @return a {@link CompoundVector} object.
+     */
+    public CompoundVector getPlateauNaturalParameterPosteriorDelta() {
+
+        List<Vector> deltas = ef_learningmodel.getDistributionList().stream()
+                .map(dist -> dist.getVariable())
+                .filter(var -> isNonReplicatedVar(var))
+                .map(var -> sparseDifference(this.getNodeOfNonReplicatedVar(var).getQDist().getNaturalParameters(),
+                        this.ef_learningmodel.getDistribution(var).getNaturalParameters()))
+                .collect(Collectors.toList());
+
+        return new CompoundVector(deltas);
+    }
+
+    /**
+     * Returns the difference between two vectors as a {@link SparseVectorDefaultValue} storing the entries that differ.
+     * @param posterior a {@link Vector} object.
+     * @param prior a {@link Vector} object with the same size.
+     * @return a {@link SparseVectorDefaultValue} object.
+     */
+    private static SparseVectorDefaultValue sparseDifference(Vector posterior, Vector prior) {
+        SparseVectorDefaultValue delta = new SparseVectorDefaultValue(posterior.size(), 0);
+        if (posterior instanceof SparseVectorDefaultValue && prior instanceof SparseVectorDefaultValue) {
+            SparseVectorDefaultValue sparsePosterior = (SparseVectorDefaultValue) posterior;
+            SparseVectorDefaultValue sparsePrior = (SparseVectorDefaultValue) prior;
+            for (Integer i : sparsePosterior.getNonZeroEntries()) {
+                double diff = sparsePosterior.get(i) - sparsePrior.get(i);
+                if (diff != 0)
+                    delta.set(i, diff);
+            }
+            for (Integer i : sparsePrior.getNonZeroEntries()) {
+                if (!sparsePosterior.getValues().containsKey(i)) {
+                    double diff = sparsePosterior.getDefaultValue() - sparsePrior.get(i);
+                    if (diff != 0)
+                        delta.set(i, diff);
+                }
+            }
+            delta.setDefaultValue(sparsePosterior.getDefaultValue() - sparsePrior.getDefaultValue());
+        } else {
+            for (int i = 0; i < posterior.size(); i++) {
+                double diff = posterior.get(i) - prior.get(i);
+                if (diff != 0)
+                    delta.set(i, diff);
+            }
+        }
+        return delta;
+    }
+
     public CompoundVector getPlateauMomentParameterPosterior() {
 
         List<Vector> momentPlateauParametersPriors = ef_learningmodel.getDistributionList().stream()
@@ -414,6 +467,35 @@ public abstract class PlateuStructure implements Serializable {
     }
 
 
+    /**
+     * Adds a difference of natural parameters, as returned by {@link #getPlateauNaturalParameterPosteriorDelta()},
+     * to the prior of the plateau in place, without copying the prior distributions.
+     * @param delta a {@link CompoundVector} object.
+     */
+    public void updateNaturalParameterPriorDelta(CompoundVector delta) {
+
+        final int[] count = new int[1];
+        count[0] = 0;
+
+        ef_learningmodel.getDistributionList().stream()
+                .map(dist -> dist.getVariable())
+                .filter(var -> isNonReplicatedVar(var))
+                .forEach(var -> {
+                    EF_UnivariateDistribution uni = this.ef_learningmodel.getDistribution(var);
+                    Vector parameters = uni.getNaturalParameters();
+                    Vector parametersDelta = delta.getVectorByPosition(count[0]);
+                    if (parameters instanceof SparseVectorDefaultValue)
+                        ((SparseVectorDefaultValue) parameters).sumExact((SparseVectorDefaultValue) parametersDelta);
+                    else
+                        parameters.sum(parametersDelta);
+                    uni.fixNumericalInstability();
+                    uni.updateMomentFromNaturalParameters();
+                    if (this.getNodeOfNonReplicatedVar(var).getPDist() != uni)
+                        this.getNodeOfNonReplicatedVar(var).setPDist(uni);
+                    count[0]++;
+                });
+    }
+
     public void desactiveParametersNodes(){
         this.ef_learningmodel.getParametersVariables().getListOfParamaterVariables().stream()
                 .forEach(var -> this.getNodeOfNonReplicatedVar(var).setActive(false));
@@ -21,7 +21,13 @@ import eu.amidst.core.inference.messagepassing.VMP;
 import eu.amidst.core.utils.CompoundVector;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  *
@@ -38,10 +44,75 @@ public class VMPLocalUpdates extends VMP {
 
     PlateuStructure plateuStructure;
 
+    /** Indicates whether the slices of the plateau are locally updated in parallel, initialized to {@code false}. */
+    boolean parallelMode = false;
+
     public VMPLocalUpdates(PlateuStructure plateuStructure) {
         this.plateuStructure = plateuStructure;
     }
 
+    /**
+     * {@inheritDoc}
+     * In parallel mode, the replicated slices of the plateau, which are conditionally independent given the
+     * non-replicated nodes, are locally updated concurrently, and the messages from the slices to each
+     * non-replicated node are combined with a parallel reduction. The rest of local nodes keep their sequential
+     * position before or after the slices, so the posteriors are the same as in sequential mode up to the
+     * floating point summation order.
+     */
+    @Override
+    public void setParallelMode(boolean parallelMode_) {
+        this.parallelMode = parallelMode_;
+    }
+
+    /**
+     * Tests whether the parallel mode is activated or not.
+     * @return {@code true} if the parallel mode is activated, {@code false} otherwise.
+     */
+    public boolean isParallelMode() {
+        return parallelMode;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double computeLogProbabilityOfEvidence(){
+        if (!parallelMode)
+            return super.computeLogProbabilityOfEvidence();
+
+        return this.nodes.parallelStream().filter(node-> node.isActive()).mapToDouble(node -> this.computeELBO(node)).sum();
+    }
+
+    /**
+     * Tests whether a given node is locally updated, i.e., whether it is an active, non observed, replicated node.
+     * @param node a {@link Node} object.
+     * @return {@code true} if the node is locally updated, {@code false} otherwise.
+     */
+    private boolean isLocalNode(Node node) {
+        return node.isActive() && !node.isObserved() && !plateuStructure.isNonReplicatedVar(node.getMainVariable());
+    }
+
+    /**
+     * Locally updates a given node by combining its self message with the messages from its active children.
+     * @param node a {@link Node} object.
+     * @param parallelChildren whether the messages from the children are combined in parallel.
+     */
+    private void updateNode(Node node, boolean parallelChildren) {
+        Message<NaturalParameters> selfMessage = newSelfMessage(node);
+
+        Stream<Node> children = (parallelChildren)? node.getChildren().parallelStream() : node.getChildren().stream();
+
+        Optional<Message<NaturalParameters>> message = children
+                .filter(child -> child.isActive())
+                .map(child -> newMessageToParent(child, node))
+                .reduce(Message::combineNonStateless);
+
+        if (message.isPresent())
+            selfMessage.combine(message.get());
+
+        updateCombinedMessage(node, selfMessage);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -56,28 +127,53 @@ public class VMPLocalUpdates extends VMP {
         local_iter = 0;
         int global_iter = 0;
 
+        List<Node> leadingNodes = new ArrayList<>();
+        List<List<Node>> slices = new ArrayList<>();
+        List<Node> trailingNodes = new ArrayList<>();
+        if (parallelMode)
+            this.splitLocalNodes(leadingNodes, slices, trailingNodes);
+
         this.testConvergence();
 
         while (!convergence && (local_iter++) < maxIter) {
 
-                boolean done = true;
-                for (Node node : nodes) {
-                    if (!node.isActive() || node.isObserved() || plateuStructure.isNonReplicatedVar(node.getMainVariable()))
-                        continue;
-
-                    Message<NaturalParameters> selfMessage = newSelfMessage(node);
-
-                    Optional<Message<NaturalParameters>> message = node.getChildren()
-                            .stream()
-                            .filter(children -> children.isActive())
-                            .map(children -> newMessageToParent(children, node))
-                            .reduce(Message::combineNonStateless);
-
-                    if (message.isPresent())
-                        selfMessage.combine(message.get());
-
-                    updateCombinedMessage(node, selfMessage);
-                    done &= node.isDone();
+                boolean done;
+                if (parallelMode) {
+                    done = true;
+                    for (Node node : leadingNodes) {
+                        if (!isLocalNode(node))
+                            continue;
+                        updateNode(node, false);
+                        done &= node.isDone();
+                    }
+
+                    done &= slices.parallelStream()
+                            .map(slice -> {
+                                boolean sliceDone = true;
+                                for (Node node : slice) {
+                                    if (!isLocalNode(node))
+                                        continue;
+                                    updateNode(node, false);
+                                    sliceDone &= node.isDone();
+                                }
+                                return sliceDone;
+                            })
+                            .reduce(true, (a, b) -> a && b);
+
+                    for (Node node : trailingNodes) {
+                        if (!isLocalNode(node))
+                            continue;
+                        updateNode(node, false);
+                        done &= node.isDone();
+                    }
+                } else {
+                    done = true;
+                    for (Node node : nodes) {
+                        if (!isLocalNode(node))
+                            continue;
+                        updateNode(node, false);
+                        done &= node.isDone();
+                    }
                 }
 
                 convergence = this.testConvergence();
@@ -102,18 +198,7 @@ public class VMPLocalUpdates extends VMP {
                     continue;
                 }
 
-                Message<NaturalParameters> selfMessage = newSelfMessage(node);
-
-                Optional<Message<NaturalParameters>> message = node.getChildren()
-                        .stream()
-                        .filter(children -> children.isActive())
-                        .map(children -> newMessageToParent(children, node))
-                        .reduce(Message::combineNonStateless);
-
-                if (message.isPresent())
-                    selfMessage.combine(message.get());
-
-                updateCombinedMessage(node, selfMessage);
+                updateNode(node, parallelMode);
 
 
                 posteriorNew.setVectorByPosition(count,node.getQDist().getNaturalParameters());
@@ -139,4 +224,28 @@ public class VMPLocalUpdates extends VMP {
     }
 
 
-}
\ No newline at end of file
+    /**
+     * Splits the locally updated nodes in the replicated slices of the plateau, which can be updated concurrently,
+     * and the rest of nodes, which are updated sequentially before or after the slices following their position
+     * in the list of nodes (e.g., the local hidden nodes of {@link eu.amidst.core.conceptdrift.utils.PlateuHiddenVariableConceptDrift}
+     * precede the slices). The update order within a slice is kept.
+     * @param leadingNodes an empty {@code List} where the locally updated nodes preceding the slices are added.
+     * @param slices an empty {@code List} where the slices are added.
+     * @param trailingNodes an empty {@code List} where the rest of locally updated nodes are added.
+     */
+    private void splitLocalNodes(List<Node> leadingNodes, List<List<Node>> slices, List<Node> trailingNodes) {
+        Set<Node> slicedNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (List<Node> slice : plateuStructure.replicatedNodes) {
+            slices.add(slice);
+            slicedNodes.addAll(slice);
+        }
+
+        boolean beforeSlices = true;
+        for (Node node : nodes) {
+            if (slicedNodes.contains(node))
+                beforeSlices = false;
+            else if (isLocalNode(node))
+                (beforeSlices ? leadingNodes : trailingNodes).add(node);
+        }
+    }
+}
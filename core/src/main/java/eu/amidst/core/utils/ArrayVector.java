@@ -99,9 +99,9 @@ public class ArrayVector implements MomentParameters, NaturalParameters, Suffici
      */
     @Override
     public void sum(Vector vector) {
-        if (vector.getClass().isAssignableFrom(ArrayVector.class))
+        if (vector instanceof ArrayVector)
             sum((ArrayVector)vector);
-        else if (vector.getClass().isAssignableFrom(SparseVectorDefaultValue.class))
+        else if (vector instanceof SparseVectorDefaultValue)
             sum((SparseVectorDefaultValue)vector);
         else
             throw new UnsupportedOperationException("Non supported operation");    }
@@ -181,9 +181,9 @@ public class ArrayVector implements MomentParameters, NaturalParameters, Suffici
      */
     @Override
     public double dotProduct(Vector vector) {
-        if (vector.getClass().isAssignableFrom(ArrayVector.class))
+        if (vector instanceof ArrayVector)
             return dotProduct((ArrayVector)vector);
-        else if (vector.getClass().isAssignableFrom(SparseVectorDefaultValue.class))
+        else if (vector instanceof SparseVectorDefaultValue)
             return dotProduct((SparseVectorDefaultValue)vector);
         else
             throw new UnsupportedOperationException("Non supported operation");
@@ -216,4 +216,52 @@ public class ArrayVector implements MomentParameters, NaturalParameters, Suffici
         }
         return sum;
     }
-}
\ No newline at end of file
+
+    /**
+     * Adds a scaled vector to this ArrayVector, i.e., {@code this = this + alpha * x}, in a single pass.
+     * @param alpha the scale of the input vector.
+     * @param x an input ArrayVector with the same size.
+     */
+    public void axpy(double alpha, ArrayVector x) {
+        if (this.size()!=x.size())
+            throw new IllegalArgumentException("Vectors has different sizes");
+
+        double[] xArray = x.array;
+        for (int i = 0; i < this.array.length; i++) {
+            this.array[i] += alpha * xArray[i];
+        }
+    }
+
+    /**
+     * Scales this ArrayVector and adds a scaled vector, i.e., {@code this = beta * this + alpha * x}, in a single pass.
+     * @param beta the scale of this vector.
+     * @param alpha the scale of the input vector.
+     * @param x an input ArrayVector with the same size.
+     */
+    public void scaleAndAdd(double beta, double alpha, ArrayVector x) {
+        if (this.size()!=x.size())
+            throw new IllegalArgumentException("Vectors has different sizes");
+
+        double[] xArray = x.array;
+        for (int i = 0; i < this.array.length; i++) {
+            this.array[i] = beta * this.array[i] + alpha * xArray[i];
+        }
+    }
+
+    /**
+     * Stores the difference between this ArrayVector and an input vector in a destination vector, i.e.,
+     * {@code dst = this - x}, without modifying this ArrayVector.
+     * @param x an input ArrayVector with the same size.
+     * @param dst the destination ArrayVector with the same size.
+     */
+    public void subtractInto(ArrayVector x, ArrayVector dst) {
+        if (this.size()!=x.size() || this.size()!=dst.size())
+            throw new IllegalArgumentException("Vectors has different sizes");
+
+        double[] xArray = x.array;
+        double[] dstArray = dst.array;
+        for (int i = 0; i < this.array.length; i++) {
+            dstArray[i] = this.array[i] - xArray[i];
+        }
+    }
+}
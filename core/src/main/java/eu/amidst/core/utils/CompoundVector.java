@@ -40,6 +40,12 @@ public class CompoundVector implements MomentParameters, NaturalParameters, Suff
     /** Represents the list of base vectors. */
     List<IndexedVector> baseVectors;
 
+    /**
+     * Represents the offsets of the base vectors, computed lazily to locate an entry by binary search. The array is
+     * never modified once published, so it is safely shared through this volatile field.
+     */
+    transient volatile int[] offsets;
+
     /**
      * Creates a new CompoundVector for a given size and number of vectors.
      * @param nVectors an {@code int} that represents the number of vectors in this CompoundVector.
@@ -81,6 +87,7 @@ public class CompoundVector implements MomentParameters, NaturalParameters, Suff
      */
     public void setVectorByPosition(int position, Vector vec) {
         baseVectors.get(position).setVector(vec);
+        this.offsets = null;
     }
 
     /**
@@ -109,15 +116,11 @@ public class CompoundVector implements MomentParameters, NaturalParameters, Suff
      */
     @Override
     public double get(int i) {
-        int total = 0;
-        for (int j = 0; j < this.baseVectors.size(); j++) {
-            if (i < (total + this.baseVectors.get(j).getVector().size())) {
-                return this.baseVectors.get(j).getVector().get(i - total);
-            } else {
-                total += this.baseVectors.get(j).getVector().size();
-            }
-        }
-        return Double.NaN;
+        int[] offsets = this.getOffsets();
+        int position = positionOf(offsets, i);
+        if (position < 0)
+            return Double.NaN;
+        return this.baseVectors.get(position).getVector().get(i - offsets[position]);
     }
 
     /**
@@ -125,15 +128,48 @@ public class CompoundVector implements MomentParameters, NaturalParameters, Suff
      */
     @Override
     public void set(int i, double val) {
-        int total = 0;
-        for (int j = 0; j < this.baseVectors.size(); j++) {
-            if (i < (total + this.baseVectors.get(j).getVector().size())) {
-                this.baseVectors.get(j).getVector().set(i - total, val);
-                return;
-            } else {
-                total += this.baseVectors.get(j).getVector().size();
+        int[] offsets = this.getOffsets();
+        int position = positionOf(offsets, i);
+        if (position >= 0)
+            this.baseVectors.get(position).getVector().set(i - offsets[position], val);
+    }
+
+    /**
+     * Returns the offsets of the base vectors, computing them if they have been invalidated. The offsets are fully
+     * built before being published, and the same array is used for the whole access by the caller.
+     * @return an array with the offset of each base vector, followed by the total size.
+     */
+    private int[] getOffsets() {
+        int[] offsets = this.offsets;
+        if (offsets == null) {
+            offsets = new int[this.baseVectors.size() + 1];
+            for (int j = 0; j < this.baseVectors.size(); j++) {
+                offsets[j + 1] = offsets[j] + this.baseVectors.get(j).getVector().size();
             }
+            this.offsets = offsets;
         }
+        return offsets;
+    }
+
+    /**
+     * Returns the position of the base vector containing a given entry of a CompoundVector.
+     * @param offsets the offsets of the base vectors.
+     * @param i the index of the entry.
+     * @return the position of the base vector, or -1 if the index is out of range.
+     */
+    private static int positionOf(int[] offsets, int i) {
+        if (i < 0 || i >= offsets[offsets.length - 1])
+            return -1;
+        int low = 0;
+        int high = offsets.length - 2;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (offsets[mid] <= i)
+                low = mid;
+            else
+                high = mid - 1;
+        }
+        return low;
     }
 
     /**
@@ -173,7 +209,9 @@ public class CompoundVector implements MomentParameters, NaturalParameters, Suff
      */
     @Override
     public void divideBy(double val) {
-        this.baseVectors.stream().forEach(w -> w.getVector().divideBy(val));
+        for (IndexedVector w : this.baseVectors) {
+            w.getVector().divideBy(val);
+        }
     }
 
     /**
@@ -181,7 +219,9 @@ public class CompoundVector implements MomentParameters, NaturalParameters, Suff
      */
     @Override
     public void multiplyBy(double val){
-        this.baseVectors.stream().forEach(w -> w.getVector().multiplyBy(val));
+        for (IndexedVector w : this.baseVectors) {
+            w.getVector().multiplyBy(val);
+        }
     }
 
     /**
@@ -199,7 +239,11 @@ public class CompoundVector implements MomentParameters, NaturalParameters, Suff
      * @return a double that represents the dot product of the two CompoundVectors.
      */
     public double dotProduct(CompoundVector vec) {
-        return this.baseVectors.stream().mapToDouble(w -> w.getVector().dotProduct(vec.getVectorByPosition(w.getIndex()))).sum();
+        double sum = 0;
+        for (IndexedVector w : this.baseVectors) {
+            sum += w.getVector().dotProduct(vec.getVectorByPosition(w.getIndex()));
+        }
+        return sum;
     }
 
      /**
@@ -210,7 +254,9 @@ public class CompoundVector implements MomentParameters, NaturalParameters, Suff
         if (vector.size() != this.size())
             throw new IllegalArgumentException("Error in variable Vector. Method copy. The input parameter vector has a different size.");
 
-        this.baseVectors.stream().forEach(w -> w.getVector().copy(vector.getVectorByPosition(w.getIndex())));
+        for (IndexedVector w : this.baseVectors) {
+            w.getVector().copy(vector.getVectorByPosition(w.getIndex()));
+        }
     }
 
     /**
@@ -218,7 +264,9 @@ public class CompoundVector implements MomentParameters, NaturalParameters, Suff
      * @param vector an input CompoundVector.
      */
     public void sum(CompoundVector vector) {
-        this.baseVectors.stream().forEach(w -> w.getVector().sum(vector.getVectorByPosition(w.getIndex())));
+        for (IndexedVector w : this.baseVectors) {
+            w.getVector().sum(vector.getVectorByPosition(w.getIndex()));
+        }
     }
 
     /**
@@ -226,7 +274,73 @@ public class CompoundVector implements MomentParameters, NaturalParameters, Suff
      * @param vector an input CompoundVector.
      */
     public void substract(CompoundVector vector) {
-        this.baseVectors.stream().forEach(w -> w.getVector().substract(vector.getVectorByPosition(w.getIndex())));
+        for (IndexedVector w : this.baseVectors) {
+            w.getVector().substract(vector.getVectorByPosition(w.getIndex()));
+        }
+    }
+
+    /**
+     * Adds a scaled CompoundVector to this CompoundVector, i.e., {@code this = this + alpha * x}. Base vectors
+     * backed by arrays are updated in a single pass without temporaries.
+     * @param alpha the scale of the input vector.
+     * @param x an input CompoundVector with the same structure.
+     */
+    public void axpy(double alpha, CompoundVector x) {
+        for (IndexedVector w : this.baseVectors) {
+            Vector thisVector = w.getVector();
+            Vector xVector = x.getVectorByPosition(w.getIndex());
+            if (thisVector instanceof ArrayVector && xVector instanceof ArrayVector) {
+                ((ArrayVector) thisVector).axpy(alpha, (ArrayVector) xVector);
+            } else {
+                Vector scaled = Serialization.deepCopy(xVector);
+                scaled.multiplyBy(alpha);
+                thisVector.sum(scaled);
+            }
+        }
+    }
+
+    /**
+     * Scales this CompoundVector and adds a scaled CompoundVector, i.e., {@code this = beta * this + alpha * x}.
+     * Base vectors backed by arrays are updated in a single pass without temporaries.
+     * @param beta the scale of this vector.
+     * @param alpha the scale of the input vector.
+     * @param x an input CompoundVector with the same structure.
+     */
+    public void scaleAndAdd(double beta, double alpha, CompoundVector x) {
+        for (IndexedVector w : this.baseVectors) {
+            Vector thisVector = w.getVector();
+            Vector xVector = x.getVectorByPosition(w.getIndex());
+            if (thisVector instanceof ArrayVector && xVector instanceof ArrayVector) {
+                ((ArrayVector) thisVector).scaleAndAdd(beta, alpha, (ArrayVector) xVector);
+            } else {
+                Vector scaled = Serialization.deepCopy(xVector);
+                scaled.multiplyBy(alpha);
+                thisVector.multiplyBy(beta);
+                thisVector.sum(scaled);
+            }
+        }
+    }
+
+    /**
+     * Stores the difference between this CompoundVector and an input CompoundVector in a destination
+     * CompoundVector, i.e., {@code dst = this - x}, without modifying this CompoundVector.
+     * @param x an input CompoundVector with the same structure.
+     * @param dst the destination CompoundVector with the same structure.
+     * @return the destination CompoundVector.
+     */
+    public CompoundVector subtractInto(CompoundVector x, CompoundVector dst) {
+        for (IndexedVector w : this.baseVectors) {
+            Vector thisVector = w.getVector();
+            Vector xVector = x.getVectorByPosition(w.getIndex());
+            Vector dstVector = dst.getVectorByPosition(w.getIndex());
+            if (thisVector instanceof ArrayVector && xVector instanceof ArrayVector && dstVector instanceof ArrayVector) {
+                ((ArrayVector) thisVector).subtractInto((ArrayVector) xVector, (ArrayVector) dstVector);
+            } else {
+                dstVector.copy(thisVector);
+                dstVector.substract(xVector);
+            }
+        }
+        return dst;
     }
 
     /**
@@ -124,6 +124,29 @@ public class SparseVectorDefaultValue implements Vector, NaturalParameters, Mome
         }
     }
 
+    /**
+     * Adds a sparse vector to this vector keeping all its entries. Unlike {@link #sum(Vector)}, the small entries of
+     * a vector with a default value of zero are not discarded, so differences of parameters can be accumulated.
+     * @param vector a {@link SparseVectorDefaultValue} object with the same dimension.
+     */
+    public void sumExact(SparseVectorDefaultValue vector) {
+        if (this.size()!=vector.size())
+            throw new IllegalArgumentException("Vectors has different sizes");
+
+        if (vector.getDefaultValue()!=0) {
+            for (Integer integer : this.getNonZeroEntries()) {
+                if (!vector.values.containsKey(integer))
+                    this.set(integer, this.get(integer) + vector.getDefaultValue());
+            }
+        }
+
+        for (Integer integer : vector.getNonZeroEntries()) {
+            this.set(integer, this.get(integer) + vector.get(integer));
+        }
+
+        this.setDefaultValue(this.getDefaultValue() + vector.getDefaultValue());
+    }
+
     @Override
     public void substract(Vector vector) {
         SparseVectorDefaultValue sparseVector = (SparseVectorDefaultValue) vector;
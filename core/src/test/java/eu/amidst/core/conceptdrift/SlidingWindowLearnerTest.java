@@ -0,0 +1,144 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+
+package eu.amidst.core.conceptdrift;
+
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.datastream.DataStream;
+import eu.amidst.core.distribution.Multinomial_MultinomialParents;
+import eu.amidst.core.io.BayesianNetworkLoader;
+import eu.amidst.core.learning.parametric.bayesian.SVB;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.models.DAG;
+import eu.amidst.core.utils.BayesianNetworkSampler;
+import eu.amidst.core.utils.CompoundVector;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.core.variables.Variables;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SlidingWindowLearnerTest {
+
+    @Test
+    public void testMaximumLikelihoodSlidingWindow() throws IOException, ClassNotFoundException {
+
+        BayesianNetwork trueBN = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        List<DataOnMemory<DataInstance>> batches = sampleBatches(trueBN);
+
+        MaximumLikelihoodSlidingWindow slidingWindow = new MaximumLikelihoodSlidingWindow();
+        slidingWindow.setNumberOfBatchesInWindow(3);
+        slidingWindow.setDAG(trueBN.getDAG());
+        slidingWindow.initLearning();
+        batches.forEach(slidingWindow::updateModel);
+
+        //A window larger than the number of batches does not forget anything.
+        MaximumLikelihoodSlidingWindow lastBatches = new MaximumLikelihoodSlidingWindow();
+        lastBatches.setNumberOfBatchesInWindow(batches.size());
+        lastBatches.setDAG(trueBN.getDAG());
+        lastBatches.initLearning();
+        batches.subList(batches.size() - 3, batches.size()).forEach(lastBatches::updateModel);
+
+        Assert.assertTrue(slidingWindow.getLearntBayesianNetwork().equalBNs(lastBatches.getLearntBayesianNetwork(), 1e-8));
+    }
+
+    @Test
+    public void testSVBSlidingWindow() throws IOException, ClassNotFoundException {
+
+        BayesianNetwork trueBN = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        List<DataOnMemory<DataInstance>> batches = sampleBatches(trueBN);
+
+        for (boolean sparse : new boolean[]{false, true}) {
+            SVBSlidingWindow slidingWindow = new SVBSlidingWindow();
+            slidingWindow.getSVB().setSparseBatchOutput(sparse);
+            slidingWindow.setNumberOfBatchesInWindow(3);
+            slidingWindow.setWindowsSize(500);
+            slidingWindow.setDAG(trueBN.getDAG());
+            slidingWindow.initLearning();
+            batches.forEach(slidingWindow::updateModel);
+
+            SVB lastBatches = new SVB();
+            lastBatches.setWindowsSize(500);
+            lastBatches.setDAG(trueBN.getDAG());
+            lastBatches.initLearning();
+            batches.subList(batches.size() - 3, batches.size()).forEach(lastBatches::updateModel);
+
+            Assert.assertTrue(slidingWindow.getLearntBayesianNetwork().equalBNs(lastBatches.getLearntBayesianNetwork(), 1e-6));
+        }
+    }
+
+    @Test
+    public void testSVBSlidingWindowHiddenVariable() throws IOException, ClassNotFoundException {
+
+        //A mixture with a hidden class, so the batches produce small fractional updates
+        Variables variables = new Variables();
+        Variable hidden = variables.newMultinomialVariable("H", 2);
+        for (int i = 0; i < 5; i++) {
+            variables.newMultinomialVariable("X" + i, 2);
+        }
+        DAG dag = new DAG(variables);
+        for (int i = 0; i < 5; i++) {
+            dag.getParentSet(variables.getVariableByName("X" + i)).addParent(hidden);
+        }
+        BayesianNetwork trueBN = new BayesianNetwork(dag);
+        for (int i = 0; i < 5; i++) {
+            Multinomial_MultinomialParents dist = trueBN.getConditionalDistribution(variables.getVariableByName("X" + i));
+            dist.getMultinomial(0).setProbabilities(new double[]{0.95, 0.05});
+            dist.getMultinomial(1).setProbabilities(new double[]{0.05, 0.95});
+        }
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(trueBN);
+        sampler.setSeed(0);
+        sampler.setMARVar(hidden, 1.0);
+        DataStream<DataInstance> data = sampler.sampleToDataStream(1000).toDataOnMemory();
+
+        //The window is rebuilt several times from the sparse outputs
+        CompoundVector[] priors = new CompoundVector[2];
+        for (int i = 0; i < 2; i++) {
+            SVBSlidingWindow slidingWindow = new SVBSlidingWindow();
+            slidingWindow.getSVB().setSparseBatchOutput(i == 1);
+            slidingWindow.setSeed(5);
+            slidingWindow.setNumberOfBatchesInWindow(3);
+            slidingWindow.setWindowsSize(20);
+            slidingWindow.setDAG(dag);
+            slidingWindow.initLearning();
+            slidingWindow.updateModel(data);
+            priors[i] = slidingWindow.getSVB().getNaturalParameterPrior();
+        }
+
+        for (int i = 0; i < priors[0].size(); i++) {
+            Assert.assertEquals(priors[0].get(i), priors[1].get(i), 1e-8);
+        }
+    }
+
+    private static List<DataOnMemory<DataInstance>> sampleBatches(BayesianNetwork bn) {
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(bn);
+        sampler.setSeed(0);
+        DataStream<DataInstance> data = sampler.sampleToDataStream(5000).toDataOnMemory();
+
+        List<DataOnMemory<DataInstance>> batches = new ArrayList<>();
+        for (DataOnMemory<DataInstance> batch : data.iterableOverBatches(500)) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.inference;
+
+import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.inference.messagepassing.VMP;
+import eu.amidst.core.io.BayesianNetworkLoader;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.utils.Serialization;
+import eu.amidst.core.variables.HashMapAssignment;
+import eu.amidst.core.variables.Variable;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.List;
+
+public class CachedInferenceAlgorithmTest extends TestCase {
+
+    public static void testHitsAndMisses() throws IOException, ClassNotFoundException {
+
+        BayesianNetwork bn = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        List<Variable> variables = bn.getVariables().getListOfVariables();
+        Variable query = variables.get(variables.size()-1);
+
+        CachedInferenceAlgorithm cached = new CachedInferenceAlgorithm(new VMP(), 2, 0);
+        cached.setModel(bn);
+
+        VMP vmp = new VMP();
+        vmp.setModel(bn);
+
+        for (int i = 0; i < 12; i++) {
+            HashMapAssignment assignment = new HashMapAssignment(1);
+            assignment.setValue(variables.get(0), i % 2);
+
+            cached.setEvidence(assignment);
+            cached.runInference();
+            Multinomial posterior = cached.getPosterior(query);
+
+            vmp.setEvidence(assignment);
+            vmp.runInference();
+            Multinomial expected = vmp.getPosterior(query);
+
+            assertEquals(expected.getProbabilities()[0], posterior.getProbabilities()[0], 1e-6);
+        }
+
+        assertEquals(2, cached.getCache().getMisses());
+        assertEquals(10, cached.getCache().getHits());
+        assertEquals(2, cached.getCache().size());
+
+        //A third evidence evicts the least recently used one
+        HashMapAssignment assignment = new HashMapAssignment(1);
+        assignment.setValue(variables.get(1), 0);
+        cached.setEvidence(assignment);
+        cached.runInference();
+        assertEquals(2, cached.getCache().size());
+        assertEquals(1, cached.getCache().getEvictions());
+    }
+
+    public static void testInvalidationOnModelChange() throws IOException, ClassNotFoundException {
+
+        BayesianNetwork bn = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        Variable query = bn.getVariables().getVariableById(0);
+
+        CachedInferenceAlgorithm cached = new CachedInferenceAlgorithm(new VMP(), 10, 0);
+        cached.setModel(bn);
+        cached.runInference();
+        cached.getPosterior(query);
+        assertEquals(1, cached.getCache().size());
+
+        //The same model instance keeps the cache
+        cached.setModel(bn);
+        assertEquals(1, cached.getCache().size());
+
+        //A new model instance discards it
+        cached.setModel(Serialization.deepCopy(bn));
+        assertEquals(0, cached.getCache().size());
+        cached.runInference();
+        assertEquals(2, cached.getCache().getMisses());
+    }
+}
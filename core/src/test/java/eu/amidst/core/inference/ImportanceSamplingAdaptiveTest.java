@@ -0,0 +1,135 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.inference;
+
+import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.io.BayesianNetworkLoader;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.variables.HashMapAssignment;
+import eu.amidst.core.variables.Variable;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class ImportanceSamplingAdaptiveTest extends TestCase {
+
+    public static void testStoppingRule() throws IOException, ClassNotFoundException {
+
+        BayesianNetwork bn = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        List<Variable> variables = bn.getVariables().getListOfVariables();
+        Variable query = variables.get(0);
+
+        ImportanceSampling importanceSampling = new ImportanceSampling();
+        importanceSampling.setModel(bn);
+        importanceSampling.setSeed(0);
+        importanceSampling.setAdaptiveMode(true);
+        importanceSampling.setRoundSize(500);
+        importanceSampling.setSampleSize(100000);
+        importanceSampling.setQueryVariables(Arrays.asList(query));
+        importanceSampling.setTargetStandardError(0.01);
+        importanceSampling.runInference();
+
+        //Without evidence all the weights are equal, so ESS equals the number of samples
+        assertEquals(importanceSampling.getNumberOfSamples(), importanceSampling.getEffectiveSampleSize(), 1e-6);
+        assertTrue(importanceSampling.getStandardError() <= 0.01);
+        assertTrue(importanceSampling.getNumberOfSamples() < 100000);
+        assertEquals(importanceSampling.getNumberOfRounds() * 500, importanceSampling.getNumberOfSamples());
+
+        //The sample size is the maximum number of samples
+        importanceSampling.setTargetEffectiveSampleSize(Double.POSITIVE_INFINITY);
+        importanceSampling.setSampleSize(1200);
+        importanceSampling.runInference();
+        assertEquals(1200, importanceSampling.getNumberOfSamples());
+        assertEquals(3, importanceSampling.getNumberOfRounds());
+    }
+
+    public static void testAdaptiveSamplingModel() throws IOException, ClassNotFoundException {
+
+        BayesianNetwork bn = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        List<Variable> variables = bn.getVariables().getListOfVariables();
+
+        HashMapAssignment evidence = new HashMapAssignment(2);
+        evidence.setValue(variables.get(variables.size() - 1), 0);
+        evidence.setValue(variables.get(variables.size() - 2), 0);
+
+        ImportanceSampling exact = new ImportanceSampling();
+        exact.setModel(bn);
+        exact.setSeed(1);
+        exact.setSampleSize(200000);
+        exact.setEvidence(evidence);
+        exact.runInference();
+
+        ImportanceSampling adaptive = new ImportanceSampling();
+        adaptive.setModel(bn);
+        adaptive.setSeed(0);
+        adaptive.setAdaptiveMode(true);
+        adaptive.setAdaptSamplingModel(true);
+        adaptive.setRoundSize(2000);
+        adaptive.setSampleSize(20000);
+        adaptive.setTargetEffectiveSampleSize(5000);
+        adaptive.setEvidence(evidence);
+        BayesianNetwork samplingModel = adaptive.getSamplingModel();
+        adaptive.runInference();
+
+        assertTrue(adaptive.getEffectiveSampleSize() >= 5000 || adaptive.getNumberOfSamples() == 20000);
+
+        for (Variable var : variables) {
+            Multinomial expected = exact.getPosterior(var);
+            Multinomial posterior = adaptive.getPosterior(var);
+            for (int k = 0; k < var.getNumberOfStates(); k++) {
+                assertEquals(expected.getProbabilities()[k], posterior.getProbabilities()[k], 0.03);
+            }
+        }
+
+        //The adapted sampling model is not kept after the run
+        assertSame(samplingModel, adaptive.getSamplingModel());
+    }
+
+    public static void testRoundSeeds() throws IOException, ClassNotFoundException {
+
+        BayesianNetwork bn = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        List<Variable> variables = bn.getVariables().getListOfVariables();
+
+        List<List<double[]>> samples = new ArrayList<>();
+        for (int seed = 0; seed < 2; seed++) {
+            ImportanceSampling importanceSampling = new ImportanceSampling();
+            importanceSampling.setModel(bn);
+            importanceSampling.setSeed(seed);
+            importanceSampling.setParallelMode(false);
+            importanceSampling.setAdaptiveMode(true);
+            importanceSampling.setRoundSize(100);
+            importanceSampling.setSampleSize(200);
+            importanceSampling.setTargetEffectiveSampleSize(Double.POSITIVE_INFINITY);
+            importanceSampling.runInference();
+            samples.add(importanceSampling.getSamples()
+                    .map(sample -> variables.stream().mapToDouble(var -> sample.getValue(var)).toArray())
+                    .collect(Collectors.toList()));
+        }
+
+        //The second round of a run does not replay the first round of the run with the next seed
+        boolean sameRound = true;
+        for (int i = 0; i < 100; i++) {
+            sameRound &= Arrays.equals(samples.get(0).get(100 + i), samples.get(1).get(i));
+        }
+        assertFalse(sameRound);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.inference;
+
+import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.inference.messagepassing.VMP;
+import eu.amidst.core.io.BayesianNetworkLoader;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.variables.HashMapAssignment;
+import eu.amidst.core.variables.Variable;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.IntStream;
+
+public class InferenceSessionPoolTest extends TestCase {
+
+    public static void testConcurrentQueries() throws IOException, ClassNotFoundException {
+
+        BayesianNetwork bn = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        List<Variable> variables = bn.getVariables().getListOfVariables();
+        Variable query = variables.get(variables.size()-1);
+
+        //Sequential reference values, one per possible evidence
+        double[][] expected = new double[4][];
+        for (int i = 0; i < expected.length; i++) {
+            VMP vmp = new VMP();
+            vmp.setModel(bn);
+            vmp.setEvidence(evidence(variables, i));
+            vmp.runInference();
+            expected[i] = ((Multinomial) vmp.getPosterior(query)).getProbabilities();
+        }
+
+        InferenceSessionPool pool = InferenceEngine.newSessionPool(bn, VMP::new, 3);
+
+        IntStream.range(0, 200).parallel().forEach(i -> {
+            Multinomial posterior = pool.getPosterior(query, evidence(variables, i % expected.length));
+            for (int k = 0; k < expected[i % expected.length].length; k++) {
+                assertEquals(expected[i % expected.length][k], posterior.getProbabilities()[k], 1e-6);
+            }
+        });
+
+        assertTrue(pool.getNumberOfCreatedSessions() <= 3);
+    }
+
+    public static void testSessionLifeCycle() throws IOException, ClassNotFoundException {
+
+        BayesianNetwork bn = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        InferenceSessionPool pool = InferenceEngine.newSessionPool(bn, VMP::new, 1);
+
+        InferenceSession session = pool.openSession();
+        assertTrue(session.isOpen());
+        session.runInference();
+
+        //The pool is full, so no other session can be opened
+        assertNull(pool.openSession(10, java.util.concurrent.TimeUnit.MILLISECONDS));
+
+        session.close();
+        assertFalse(session.isOpen());
+
+        try {
+            session.runInference();
+            fail("A closed session must not be used.");
+        } catch (IllegalStateException ex) {
+            //expected
+        }
+
+        InferenceSession other = pool.openSession();
+        assertSame(session, other);
+        other.close();
+    }
+
+    private static HashMapAssignment evidence(List<Variable> variables, int i) {
+        HashMapAssignment assignment = new HashMapAssignment(2);
+        assignment.setValue(variables.get(0), i % 2);
+        assignment.setValue(variables.get(1), (i / 2) % 2);
+        return assignment;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.inference;
+
+import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.inference.messagepassing.LoopyBP;
+import eu.amidst.core.io.BayesianNetworkLoader;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.models.DAG;
+import eu.amidst.core.utils.Utils;
+import eu.amidst.core.variables.Assignment;
+import eu.amidst.core.variables.HashMapAssignment;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.core.variables.Variables;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+public class LoopyBPTest extends TestCase {
+
+    // A -> B, A -> C, B -> D, A -> E (a polytree, so LBP is exact)
+    public static void testPolytree() {
+
+        Variables variables = new Variables();
+        Variable varA = variables.newMultinomialVariable("A", 2);
+        Variable varB = variables.newMultinomialVariable("B", 3);
+        Variable varC = variables.newMultinomialVariable("C", 2);
+        Variable varD = variables.newMultinomialVariable("D", 2);
+        Variable varE = variables.newMultinomialVariable("E", 2);
+
+        DAG dag = new DAG(variables);
+        dag.getParentSet(varB).addParent(varA);
+        dag.getParentSet(varC).addParent(varA);
+        dag.getParentSet(varD).addParent(varB);
+        dag.getParentSet(varD).addParent(varE);
+
+        BayesianNetwork bn = new BayesianNetwork(dag);
+        bn.randomInitialization(new Random(0));
+
+        HashMapAssignment evidence = new HashMapAssignment(2);
+        evidence.setValue(varC, 1);
+        evidence.setValue(varD, 0);
+
+        for (LoopyBP.Schedule schedule : LoopyBP.Schedule.values()) {
+            LoopyBP lbp = new LoopyBP();
+            lbp.setSchedule(schedule);
+            lbp.setModel(bn);
+            lbp.setEvidence(evidence);
+            lbp.runInference();
+
+            for (Variable var : variables) {
+                double[] expected = exactPosterior(bn, evidence, var);
+                Multinomial posterior = lbp.getPosterior(var);
+                for (int k = 0; k < expected.length; k++) {
+                    assertEquals(expected[k], posterior.getProbabilities()[k], 1e-5);
+                }
+            }
+
+            assertEquals(Math.log(exactProbabilityOfEvidence(bn, evidence)), lbp.getLogProbabilityOfEvidence(), 1e-5);
+        }
+    }
+
+    public static void testLoopyNetwork() throws IOException, ClassNotFoundException {
+
+        BayesianNetwork bn = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        List<Variable> variables = bn.getVariables().getListOfVariables();
+
+        HashMapAssignment evidence = new HashMapAssignment(1);
+        evidence.setValue(variables.get(variables.size() - 1), 0);
+
+        LoopyBP residual = new LoopyBP();
+        residual.setModel(bn);
+        residual.setEvidence(evidence);
+        residual.runInference();
+
+        LoopyBP synchronous = new LoopyBP();
+        synchronous.setSchedule(LoopyBP.Schedule.SYNCHRONOUS);
+        synchronous.setParallelMode(true);
+        synchronous.setDamping(0.2);
+        synchronous.setModel(bn);
+        synchronous.setEvidence(evidence);
+        synchronous.runInference();
+
+        for (Variable var : variables) {
+            double[] expected = exactPosterior(bn, evidence, var);
+            Multinomial posteriorResidual = residual.getPosterior(var);
+            Multinomial posteriorSynchronous = synchronous.getPosterior(var);
+            for (int k = 0; k < expected.length; k++) {
+                assertEquals(expected[k], posteriorResidual.getProbabilities()[k], 0.05);
+                assertEquals(posteriorResidual.getProbabilities()[k], posteriorSynchronous.getProbabilities()[k], 1e-4);
+            }
+        }
+    }
+
+    private static double[] exactPosterior(BayesianNetwork bn, Assignment evidence, Variable query) {
+        double[] posterior = new double[query.getNumberOfStates()];
+        enumerate(bn, evidence, 0, new HashMapAssignment(bn.getNumberOfVars()), query, posterior);
+        return Utils.normalize(posterior);
+    }
+
+    private static double exactProbabilityOfEvidence(BayesianNetwork bn, Assignment evidence) {
+        double[] posterior = new double[1];
+        enumerate(bn, evidence, 0, new HashMapAssignment(bn.getNumberOfVars()), null, posterior);
+        return posterior[0];
+    }
+
+    private static void enumerate(BayesianNetwork bn, Assignment evidence, int varID, HashMapAssignment assignment,
+                                  Variable query, double[] accumulator) {
+        if (varID == bn.getNumberOfVars()) {
+            double prob = Math.exp(bn.getLogProbabiltyOf(assignment));
+            accumulator[(query == null) ? 0 : (int) assignment.getValue(query)] += prob;
+            return;
+        }
+
+        Variable var = bn.getVariables().getVariableById(varID);
+        for (int k = 0; k < var.getNumberOfStates(); k++) {
+            if (!Utils.isMissingValue(evidence.getValue(var)) && evidence.getValue(var) != k)
+                continue;
+            assignment.setValue(var, k);
+            enumerate(bn, evidence, varID + 1, assignment, query, accumulator);
+        }
+    }
+}
@@ -997,4 +997,147 @@ public class VMPTest extends TestCase {
 
     }
 
-}
\ No newline at end of file
+    // A0 -> A1 -> ... -> A9
+    public static void testIncrementalMode() {
+
+        Variables variables = new Variables();
+        int nVar = 10;
+        for (int i = 0; i < nVar; i++) {
+            variables.newMultinomialVariable("A" + i, 2);
+        }
+
+        DAG dag = new DAG(variables);
+        for (int i = 1; i < nVar; i++) {
+            dag.getParentSet(variables.getVariableById(i)).addParent(variables.getVariableById(i - 1));
+        }
+
+        BayesianNetwork bn = new BayesianNetwork(dag);
+        bn.randomInitialization(new Random(0));
+
+        Variable first = variables.getVariableById(0);
+        Variable last = variables.getVariableById(nVar - 1);
+
+        VMP incremental = new VMP();
+        incremental.setModel(bn);
+        incremental.setIncrementalMode(true);
+        incremental.setIncrementalDistance(nVar);
+
+        HashMapAssignment assignment = new HashMapAssignment(2);
+        assignment.setValue(first, 0);
+        assignment.setValue(last, 1);
+        incremental.setEvidence(assignment);
+        assertEquals(nVar, incremental.getNumberOfNodesToUpdate());
+        incremental.runInference();
+
+        //Only the value of the first variable changes
+        assignment = new HashMapAssignment(2);
+        assignment.setValue(first, 1);
+        assignment.setValue(last, 1);
+        incremental.setEvidence(assignment);
+        incremental.runInference();
+
+        VMP vmp = new VMP();
+        vmp.setModel(bn);
+        vmp.setEvidence(assignment);
+        vmp.runInference();
+
+        for (int i = 1; i < nVar - 1; i++) {
+            Multinomial expected = vmp.getPosterior(variables.getVariableById(i));
+            Multinomial posterior = incremental.getPosterior(variables.getVariableById(i));
+            assertEquals(expected.getProbabilities()[0], posterior.getProbabilities()[0], 0.01);
+        }
+
+        //With distance 1, only the changed variable and its child are updated
+        incremental.setIncrementalDistance(1);
+        assignment = new HashMapAssignment(2);
+        assignment.setValue(first, 0);
+        assignment.setValue(last, 1);
+        incremental.setEvidence(assignment);
+        assertEquals(2, incremental.getNumberOfNodesToUpdate());
+        double[][] before = posteriors(incremental, variables);
+        incremental.runInference();
+        double[][] after = posteriors(incremental, variables);
+
+        vmp = new VMP();
+        vmp.setModel(bn);
+        vmp.setEvidence(assignment);
+        vmp.runInference();
+        double[][] expected = posteriors(vmp, variables);
+
+        //The child of the changed variable is close to a non-incremental run, the rest of nodes are not updated
+        assertEquals(expected[1][0], after[1][0], 0.01);
+        for (int i = 2; i < nVar - 1; i++) {
+            assertTrue(Arrays.equals(before[i], after[i]));
+        }
+
+        //The same evidence does not update any node
+        incremental.setEvidence(assignment);
+        assertEquals(0, incremental.getNumberOfNodesToUpdate());
+        incremental.runInference();
+        double[][] unchanged = posteriors(incremental, variables);
+        for (int i = 1; i < nVar - 1; i++) {
+            assertTrue(Arrays.equals(after[i], unchanged[i]));
+        }
+    }
+
+    private static double[][] posteriors(InferenceAlgorithm inferenceAlgorithm, Variables variables) {
+        //The first and the last variables are observed
+        double[][] posteriors = new double[variables.getNumberOfVars()][];
+        for (int i = 1; i < variables.getNumberOfVars() - 1; i++) {
+            Multinomial posterior = inferenceAlgorithm.getPosterior(variables.getVariableById(i));
+            posteriors[i] = posterior.getProbabilities().clone();
+        }
+        return posteriors;
+    }
+
+    public static void testConvergenceCriteria() {
+
+        Variables variables = new Variables();
+        int nVar = 10;
+        for (int i = 0; i < nVar; i++) {
+            variables.newMultinomialVariable("A" + i, 3);
+        }
+
+        DAG dag = new DAG(variables);
+        for (int i = 1; i < nVar; i++) {
+            dag.getParentSet(variables.getVariableById(i)).addParent(variables.getVariableById(i - 1));
+            if (i > 1)
+                dag.getParentSet(variables.getVariableById(i)).addParent(variables.getVariableById(i - 2));
+        }
+
+        BayesianNetwork bn = new BayesianNetwork(dag);
+        bn.randomInitialization(new Random(0));
+
+        HashMapAssignment assignment = new HashMapAssignment(2);
+        assignment.setValue(variables.getVariableById(0), 2);
+        assignment.setValue(variables.getVariableById(nVar - 1), 1);
+
+        VMP vmp = new VMP();
+        vmp.setModel(bn);
+        vmp.setEvidence(assignment);
+        vmp.runInference();
+
+        for (VMP.ConvergenceCriterion criterion : VMP.ConvergenceCriterion.values()) {
+            VMP cheap = new VMP();
+            cheap.setConvergenceCriterion(criterion);
+            cheap.setELBOPeriod(3);
+            cheap.setParameterTolerance(1e-6);
+            cheap.setModel(bn);
+            cheap.setEvidence(assignment);
+            cheap.runInference();
+
+            for (int i = 1; i < nVar - 1; i++) {
+                Multinomial expected = vmp.getPosterior(variables.getVariableById(i));
+                Multinomial posterior = cheap.getPosterior(variables.getVariableById(i));
+                for (int k = 0; k < 3; k++) {
+                    assertEquals(expected.getProbabilities()[k], posterior.getProbabilities()[k], 1e-3);
+                }
+            }
+
+            //The returned ELBO corresponds to the final Q distributions
+            assertEquals(cheap.computeLogProbabilityOfEvidence(), cheap.getLogProbabilityOfEvidence(), 1e-9);
+            assertEquals(vmp.getLogProbabilityOfEvidence(), cheap.getLogProbabilityOfEvidence(), 1e-4);
+        }
+    }
+
+}
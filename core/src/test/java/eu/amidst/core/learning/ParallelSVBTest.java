@@ -19,14 +19,23 @@ package eu.amidst.core.learning;
 
 import eu.amidst.core.Main;
 import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.datastream.DataOnMemoryListContainer;
 import eu.amidst.core.datastream.DataStream;
+import eu.amidst.core.distribution.Multinomial_MultinomialParents;
 import eu.amidst.core.inference.messagepassing.VMP;
 import eu.amidst.core.io.BayesianNetworkLoader;
 import eu.amidst.core.learning.parametric.ParallelMaximumLikelihood;
 import eu.amidst.core.learning.parametric.bayesian.ParallelSVB;
 import eu.amidst.core.learning.parametric.bayesian.SVB;
 import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.models.DAG;
 import eu.amidst.core.utils.BayesianNetworkSampler;
+import eu.amidst.core.utils.CompoundVector;
+import eu.amidst.core.utils.SparseVectorDefaultValue;
+import eu.amidst.core.utils.Vector;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.core.variables.Variables;
 import junit.framework.TestCase;
 
 import java.io.IOException;
@@ -108,6 +117,206 @@ public class ParallelSVBTest extends TestCase {
     }
 
 
+    public static void testAsiaPipelined() throws IOException, ClassNotFoundException{
+
+        BayesianNetwork asianet = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        asianet.randomInitialization(new Random(0));
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(asianet);
+        sampler.setSeed(0);
+        DataStream<DataInstance> data = sampler.sampleToDataStream(10000);
+
+        SVB svb = new SVB();
+        svb.setWindowsSize(500);
+        svb.setSeed(5);
+        VMP vmp = svb.getPlateuStructure().getVMP();
+        vmp.setTestELBO(true);
+        vmp.setMaxIter(1000);
+        vmp.setThreshold(0.1);
+
+        ParallelSVB parallelSVB = new ParallelSVB();
+        parallelSVB.setNCores(4);
+        parallelSVB.setPipelinedMode(true);
+        parallelSVB.setMaxStaleness(2);
+        parallelSVB.setQueueCapacity(3);
+        parallelSVB.setSVBEngine(svb);
+
+        parallelSVB.setDAG(asianet.getDAG());
+        parallelSVB.setDataStream(data);
+        parallelSVB.runLearning();
+
+        BayesianNetwork learnAsianet = parallelSVB.getLearntBayesianNetwork();
+
+        if (Main.VERBOSE) System.out.println(learnAsianet.toString());
+        assertTrue(asianet.equalBNs(learnAsianet, 0.05));
+    }
+
+    /** An error thrown by {@link FailingSVB}. */
+    private static final class EngineError extends Error {
+    }
+
+    /** A SVB engine which fails when processing a batch. */
+    private static final class FailingSVB extends SVB {
+        @Override
+        public BatchOutput updateModelOnBatchParallel(DataOnMemory<DataInstance> batch) {
+            throw new EngineError();
+        }
+    }
+
+    public static void testPipelinedWorkerError() throws IOException, ClassNotFoundException{
+
+        BayesianNetwork asianet = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(asianet);
+        sampler.setSeed(0);
+        DataStream<DataInstance> data = sampler.sampleToDataStream(1000);
+
+        SVB svb = new FailingSVB();
+        svb.setWindowsSize(100);
+
+        ParallelSVB parallelSVB = new ParallelSVB();
+        parallelSVB.setNCores(2);
+        parallelSVB.setPipelinedMode(true);
+        parallelSVB.setSVBEngine(svb);
+        parallelSVB.setDAG(asianet.getDAG());
+        parallelSVB.setDataStream(data);
+
+        //The errors of the workers are not only reported by the threads, but rethrown by the learning
+        try {
+            parallelSVB.runLearning();
+            fail("The error of the workers must be rethrown");
+        } catch (EngineError ex) {
+            //Expected
+        }
+    }
+
+
+    public static void testAsiaSparseBatchOutput() throws IOException, ClassNotFoundException{
+
+        BayesianNetwork asianet = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        asianet.randomInitialization(new Random(0));
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(asianet);
+        sampler.setSeed(0);
+        DataStream<DataInstance> data = sampler.sampleToDataStream(10000).toDataOnMemory();
+
+        BayesianNetwork[] learntNets = new BayesianNetwork[2];
+        for (int i = 0; i < 2; i++) {
+            SVB svb = new SVB();
+            svb.setWindowsSize(100);
+            svb.setSeed(5);
+            svb.setSparseBatchOutput(i == 1);
+
+            ParallelSVB parallelSVB = new ParallelSVB();
+            parallelSVB.setNCores(4);
+            parallelSVB.setSVBEngine(svb);
+            parallelSVB.setDAG(asianet.getDAG());
+            parallelSVB.setDataStream(data);
+            parallelSVB.runLearning();
+
+            learntNets[i] = parallelSVB.getLearntBayesianNetwork();
+        }
+
+        assertTrue(asianet.equalBNs(learntNets[1], 0.05));
+        assertTrue(learntNets[0].equalBNs(learntNets[1], 1e-3));
+
+        //The output of a batch only contains the updated parameters
+        SVB svb = new SVB();
+        svb.setSparseBatchOutput(true);
+        svb.setDAG(asianet.getDAG());
+        svb.initLearning();
+        DataOnMemory<DataInstance> batch = new DataOnMemoryListContainer<>(data.getAttributes(),
+                ((DataOnMemory<DataInstance>) data).getList().subList(0, 1));
+        CompoundVector delta = svb.updateModelOnBatchParallel(batch).getVector();
+        int nEntries = 0;
+        for (Vector vector : delta.getVectors()) {
+            nEntries += ((SparseVectorDefaultValue) vector).getNonZeroEntries().size();
+        }
+        //A fully observed instance only updates one parameter of each variable
+        assertEquals(asianet.getNumberOfVars(), nEntries);
+    }
+
+    public static void testHiddenSparseBatchOutput() throws IOException, ClassNotFoundException{
+        BayesianNetwork network = peakedMixture();
+        DataStream<DataInstance> data = sampleMixture(network);
+
+        CompoundVector[] priors = new CompoundVector[2];
+        for (int i = 0; i < 2; i++) {
+            ParallelSVB parallelSVB = mixtureLearner(network.getDAG(), i == 1, 4);
+            parallelSVB.setDataStream(data);
+            parallelSVB.runLearning();
+
+            priors[i] = parallelSVB.getSVBEngine().getNaturalParameterPrior();
+        }
+
+        //The sparse deltas are summed without discarding small entries
+        for (int i = 0; i < priors[0].size(); i++) {
+            assertEquals(priors[0].get(i), priors[1].get(i), 1e-8);
+        }
+    }
+
+    public static void testHiddenSparseBatchOutputPipelined() throws IOException, ClassNotFoundException{
+        BayesianNetwork network = peakedMixture();
+        DataStream<DataInstance> data = sampleMixture(network);
+
+        //A single worker, so the pipelined updates are deterministic
+        CompoundVector[] priors = new CompoundVector[2];
+        for (int i = 0; i < 2; i++) {
+            ParallelSVB parallelSVB = mixtureLearner(network.getDAG(), i == 1, 1);
+            parallelSVB.setPipelinedMode(true);
+            parallelSVB.setDataStream(data);
+            parallelSVB.runLearning();
+
+            priors[i] = parallelSVB.getSVBEngine().getNaturalParameterPrior();
+        }
+
+        for (int i = 0; i < priors[0].size(); i++) {
+            assertEquals(priors[0].get(i), priors[1].get(i), 1e-8);
+        }
+    }
+
+    /**
+     * Returns a mixture with a hidden class and peaked posteriors, so the batches produce many small fractional updates.
+     */
+    private static BayesianNetwork peakedMixture() {
+        Variables variables = new Variables();
+        Variable hidden = variables.newMultinomialVariable("H", 2);
+        for (int i = 0; i < 10; i++) {
+            variables.newMultinomialVariable("X" + i, 2);
+        }
+        DAG dag = new DAG(variables);
+        for (int i = 0; i < 10; i++) {
+            dag.getParentSet(variables.getVariableByName("X" + i)).addParent(hidden);
+        }
+        BayesianNetwork network = new BayesianNetwork(dag);
+        for (int i = 0; i < 10; i++) {
+            Multinomial_MultinomialParents dist = network.getConditionalDistribution(variables.getVariableByName("X" + i));
+            dist.getMultinomial(0).setProbabilities(new double[]{0.95, 0.05});
+            dist.getMultinomial(1).setProbabilities(new double[]{0.05, 0.95});
+        }
+        return network;
+    }
+
+    private static DataStream<DataInstance> sampleMixture(BayesianNetwork network) {
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(network);
+        sampler.setSeed(0);
+        sampler.setMARVar(network.getVariables().getVariableByName("H"), 1.0);
+        return sampler.sampleToDataStream(2000).toDataOnMemory();
+    }
+
+    private static ParallelSVB mixtureLearner(DAG dag, boolean sparse, int nCores) {
+        SVB svb = new SVB();
+        svb.setWindowsSize(5);
+        svb.setSeed(5);
+        svb.setSparseBatchOutput(sparse);
+
+        ParallelSVB parallelSVB = new ParallelSVB();
+        parallelSVB.setNCores(nCores);
+        parallelSVB.setSVBEngine(svb);
+        parallelSVB.setDAG(dag);
+        return parallelSVB;
+    }
+
     public static void testAsiaNcore2() throws IOException, ClassNotFoundException{
 
         BayesianNetwork asianet = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
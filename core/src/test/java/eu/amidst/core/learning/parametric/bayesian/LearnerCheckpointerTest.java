@@ -0,0 +1,214 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.learning.parametric.bayesian;
+
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.datastream.DataOnMemoryListContainer;
+import eu.amidst.core.io.BayesianNetworkLoader;
+import eu.amidst.core.learning.parametric.bayesian.utils.LearnerState;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.utils.BayesianNetworkSampler;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+public class LearnerCheckpointerTest extends TestCase {
+
+    public static void testResumeSVB() throws IOException, ClassNotFoundException {
+
+        BayesianNetwork asianet = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        asianet.randomInitialization(new Random(0));
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(asianet);
+        sampler.setSeed(0);
+        DataOnMemory<DataInstance> data = sampler.sampleToDataStream(5000).toDataOnMemory();
+        DataOnMemory<DataInstance> firstPart = new DataOnMemoryListContainer<>(data.getAttributes(),
+                data.getList().subList(0, 2700));
+
+        //Uninterrupted learning
+        SVB svb = new SVB();
+        svb.setWindowsSize(100);
+        svb.setDAG(asianet.getDAG());
+        svb.setDataStream(data);
+        svb.runLearning();
+
+        File file = File.createTempFile("svb", ".ckpt");
+        file.delete();
+
+        //The learning is interrupted after 27 batches, with a checkpoint at batch 25
+        SVB interrupted = new SVB();
+        interrupted.setWindowsSize(100);
+        interrupted.setDAG(asianet.getDAG());
+        interrupted.setDataStream(firstPart);
+        LearnerCheckpointer checkpointer = new LearnerCheckpointer(file.getPath());
+        checkpointer.setCheckpointPeriod(5);
+        checkpointer.setFullCheckpointPeriod(3);
+        interrupted.setCheckpointer(checkpointer);
+        interrupted.runLearning();
+        assertTrue(file.exists());
+
+        //A new learner resumes from the checkpoint
+        SVB resumed = new SVB();
+        resumed.setWindowsSize(100);
+        resumed.setDAG(asianet.getDAG());
+        resumed.setDataStream(data);
+        LearnerCheckpointer resumedCheckpointer = new LearnerCheckpointer(file.getPath());
+        resumed.setCheckpointer(resumedCheckpointer);
+        resumed.runLearning();
+
+        assertEquals(50, resumedCheckpointer.getNumberOfConsumedBatches());
+        assertEquals(svb.getNumberOfBatches(), resumed.getNumberOfBatches());
+        assertEquals(svb.getLogMarginalProbability(), resumed.getLogMarginalProbability(), 1e-6);
+        assertTrue(svb.getLearntBayesianNetwork().equalBNs(resumed.getLearntBayesianNetwork(), 1e-6));
+
+        resumedCheckpointer.delete();
+    }
+
+    public static void testResumeStochasticVI() throws IOException, ClassNotFoundException {
+
+        BayesianNetwork asianet = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(asianet);
+        sampler.setSeed(1);
+        DataOnMemory<DataInstance> data = sampler.sampleToDataStream(1000).toDataOnMemory();
+
+        File file = File.createTempFile("svi", ".ckpt");
+        file.delete();
+
+        StochasticVI svi = new StochasticVI();
+        svi.setDAG(asianet.getDAG());
+        svi.setDataStream(data);
+        svi.setDataSetSize(data.getNumberOfDataInstances());
+        svi.setBatchSize(100);
+        svi.setMaximumLocalIterations(10);
+        svi.setTimiLimit(100);
+
+        LearnerCheckpointer checkpointer = new LearnerCheckpointer(file.getPath());
+        checkpointer.setCheckpointPeriod(1);
+        checkpointer.setFullCheckpointPeriod(1);
+        svi.setCheckpointer(checkpointer);
+        svi.runLearning();
+
+        StochasticVI resumed = new StochasticVI();
+        resumed.setDAG(asianet.getDAG());
+        resumed.setDataStream(data);
+        resumed.setDataSetSize(data.getNumberOfDataInstances());
+        resumed.setBatchSize(100);
+        resumed.setMaximumLocalIterations(10);
+        resumed.initLearning();
+        LearnerCheckpointer resumedCheckpointer = new LearnerCheckpointer(file.getPath());
+        assertEquals(checkpointer.getNumberOfConsumedBatches(), resumedCheckpointer.resume(resumed));
+        assertTrue(svi.getLearntBayesianNetwork().equalBNs(resumed.getLearntBayesianNetwork(), 1e-6));
+
+        resumedCheckpointer.delete();
+    }
+
+    private static StochasticVI newStochasticVI(BayesianNetwork bn, DataOnMemory<DataInstance> data, int maximumLocalIterations) {
+        StochasticVI svi = new StochasticVI();
+        svi.setDAG(bn.getDAG());
+        svi.setDataStream(data);
+        svi.setDataSetSize(data.getNumberOfDataInstances());
+        svi.setBatchSize(100);
+        svi.setMaximumLocalIterations(maximumLocalIterations);
+        svi.setTimiLimit(100);
+        return svi;
+    }
+
+    public static void testResumeStochasticVIAcrossPasses() throws IOException, ClassNotFoundException {
+
+        BayesianNetwork asianet = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(asianet);
+        sampler.setSeed(1);
+        DataOnMemory<DataInstance> data = sampler.sampleToDataStream(1000).toDataOnMemory();
+
+        StochasticVI svi = newStochasticVI(asianet, data, 14);
+        svi.runLearning();
+
+        File file = File.createTempFile("svi", ".ckpt");
+        file.delete();
+
+        //The interrupted learning consumes 13 batches, i.e., more than a pass of 10 batches
+        StochasticVI interrupted = newStochasticVI(asianet, data, 11);
+        LearnerCheckpointer checkpointer = new LearnerCheckpointer(file.getPath());
+        checkpointer.setCheckpointPeriod(1);
+        checkpointer.setFullCheckpointPeriod(1);
+        interrupted.setCheckpointer(checkpointer);
+        interrupted.runLearning();
+        assertEquals(13, checkpointer.getNumberOfConsumedBatches());
+
+        StochasticVI resumed = newStochasticVI(asianet, data, 14);
+        LearnerCheckpointer resumedCheckpointer = new LearnerCheckpointer(file.getPath());
+        resumed.setCheckpointer(resumedCheckpointer);
+        resumed.runLearning();
+
+        assertTrue(svi.getLearntBayesianNetwork().equalBNs(resumed.getLearntBayesianNetwork(), 1e-6));
+
+        resumedCheckpointer.delete();
+    }
+
+    public static void testIncrementalCheckpoints() throws IOException {
+
+        File file = File.createTempFile("sparse", ".ckpt");
+        file.delete();
+
+        //A learner with many parameters, where each batch only updates one of them
+        double[] parameters = new double[1000];
+        CheckpointableLearner learner = new CheckpointableLearner() {
+            @Override
+            public LearnerState getLearnerState() {
+                LearnerState state = new LearnerState();
+                state.addBlock(parameters.clone());
+                return state;
+            }
+
+            @Override
+            public void setLearnerState(LearnerState state) {
+                System.arraycopy(state.getBlock(0), 0, parameters, 0, parameters.length);
+            }
+        };
+
+        LearnerCheckpointer checkpointer = new LearnerCheckpointer(file.getPath());
+        checkpointer.setCheckpointPeriod(1);
+        checkpointer.setFullCheckpointPeriod(100);
+        for (int i = 0; i < 10; i++) {
+            parameters[i] = i + 1;
+            checkpointer.update(learner);
+            checkpointer.close();
+        }
+
+        File deltaFile = new File(file.getPath() + ".delta");
+        assertTrue(deltaFile.exists());
+        assertTrue(deltaFile.length() < file.length());
+
+        double[] expected = parameters.clone();
+        Arrays.fill(parameters, 0);
+        assertEquals(10, new LearnerCheckpointer(file.getPath()).resume(learner));
+        for (int i = 0; i < parameters.length; i++) {
+            assertEquals(expected[i], parameters[i]);
+        }
+
+        checkpointer.delete();
+        assertFalse(file.exists());
+        assertFalse(deltaFile.exists());
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.learning.parametric.bayesian;
+
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataStream;
+import eu.amidst.core.io.BayesianNetworkLoader;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.utils.BayesianNetworkSampler;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.Random;
+
+public class SVBTunerTest extends TestCase {
+
+    public static void testRunLearning() throws IOException, ClassNotFoundException {
+
+        BayesianNetwork asianet = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        asianet.randomInitialization(new Random(0));
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(asianet);
+        sampler.setSeed(0);
+        DataStream<DataInstance> data = sampler.sampleToDataStream(10000).toDataOnMemory();
+
+        SVB svb = new SVB();
+        svb.setSeed(5);
+        svb.setDAG(asianet.getDAG());
+
+        SVBTuner tuner = new SVBTuner();
+        tuner.setCandidateWindowsSizes(50, 500);
+        tuner.setCandidateMaxIterations(10, 100);
+        tuner.setCalibrationSize(1000, 500);
+        tuner.setRecalibrationPeriod(4500);
+        tuner.runLearning(svb, data);
+
+        assertEquals(4, tuner.getEvaluatedConfigurations().size());
+        SVBTuner.Configuration configuration = tuner.getConfiguration();
+        assertEquals(configuration.getWindowsSize(), svb.getWindowsSize());
+        assertEquals(configuration.getMaxIterations(), svb.getPlateuStructure().getVMP().getMaxIter());
+
+        //The selected configuration is the fastest one within the tolerance
+        double bestLogLikelihood = tuner.getEvaluatedConfigurations().stream()
+                .mapToDouble(SVBTuner.Configuration::getLogLikelihoodPerInstance).max().getAsDouble();
+        assertTrue(configuration.getLogLikelihoodPerInstance() >= bestLogLikelihood - 0.01);
+        for (SVBTuner.Configuration conf : tuner.getEvaluatedConfigurations()) {
+            if (conf.getLogLikelihoodPerInstance() >= bestLogLikelihood - 0.01)
+                assertTrue(configuration.getInstancesPerSecond() >= conf.getInstancesPerSecond());
+        }
+
+        //Re-tuning keeps the posterior learnt so far
+        assertTrue(asianet.equalBNs(svb.getLearntBayesianNetwork(), 0.05));
+    }
+
+    public static void testAccuracyTarget() throws IOException, ClassNotFoundException {
+
+        BayesianNetwork asianet = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(asianet);
+        sampler.setSeed(1);
+        DataStream<DataInstance> data = sampler.sampleToDataStream(1500).toDataOnMemory();
+
+        SVB svb = new SVB();
+        svb.setDAG(asianet.getDAG());
+
+        SVBTuner tuner = new SVBTuner();
+        tuner.setTarget(SVBTuner.Target.ACCURACY);
+        tuner.setCandidateWindowsSizes(10, 1000);
+        tuner.setCandidateMaxIterations(1, 100);
+        tuner.setCalibrationSize(1000, 500);
+        tuner.runLearning(svb, data);
+
+        //The configurations within the tolerance of the best log-likelihood are equally accurate, and the one with
+        //the fewest local iterations is selected
+        SVBTuner.Configuration configuration = tuner.getConfiguration();
+        double bestLogLikelihood = tuner.getEvaluatedConfigurations().stream()
+                .mapToDouble(SVBTuner.Configuration::getLogLikelihoodPerInstance).max().getAsDouble();
+        assertTrue(configuration.getLogLikelihoodPerInstance() >= bestLogLikelihood - 0.01);
+        for (SVBTuner.Configuration conf : tuner.getEvaluatedConfigurations()) {
+            if (conf.getLogLikelihoodPerInstance() >= bestLogLikelihood - 0.01)
+                assertTrue(configuration.getAverageIterations() <= conf.getAverageIterations());
+        }
+
+        //Only the VMP iterations of the local steps are bounded, not the number of mini-batches
+        StochasticVI stochasticVI = new StochasticVI();
+        stochasticVI.setMaximumLocalIterations(1000);
+        new SVBTuner.Configuration(configuration.getWindowsSize(), 10).apply(stochasticVI);
+        assertEquals(configuration.getWindowsSize(), stochasticVI.getBatchSize());
+        assertEquals(10, stochasticVI.getMaximumVMPIterations());
+        assertEquals(1000, stochasticVI.getMaximumLocalIterations());
+    }
+
+    public static void testApplyKeepsLearnerState() throws IOException, ClassNotFoundException {
+
+        BayesianNetwork asianet = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(asianet);
+        sampler.setSeed(2);
+        DataStream<DataInstance> data = sampler.sampleToDataStream(1000).toDataOnMemory();
+
+        SVB svb = new SVB();
+        svb.setWindowsSize(100);
+        svb.setDAG(asianet.getDAG());
+        svb.initLearning();
+        data.streamOfBatches(100).forEach(svb::updateModel);
+        BayesianNetwork learnt = svb.getLearntBayesianNetwork();
+
+        //Applying a configuration to an initialized learner does not reset its counters or its posterior
+        new SVBTuner.Configuration(50, 10).apply(svb);
+        assertEquals(50, svb.getWindowsSize());
+        assertEquals(10, svb.getPlateuStructure().getVMP().getMaxIter());
+        assertEquals(10, svb.getNumberOfBatches());
+        assertTrue(learnt.equalBNs(svb.getLearntBayesianNetwork(), 1e-10));
+    }
+}
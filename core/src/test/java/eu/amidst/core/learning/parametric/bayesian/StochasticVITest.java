@@ -12,9 +12,12 @@
 package eu.amidst.core.learning.parametric.bayesian;
 
 import eu.amidst.core.Main;
+import eu.amidst.core.conceptdrift.utils.PlateuHiddenVariableConceptDrift;
 import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
 import eu.amidst.core.datastream.DataStream;
 import eu.amidst.core.io.BayesianNetworkLoader;
+import eu.amidst.core.learning.parametric.bayesian.utils.VMPLocalUpdates;
 import eu.amidst.core.models.BayesianNetwork;
 import eu.amidst.core.models.DAG;
 import eu.amidst.core.utils.BayesianNetworkSampler;
@@ -24,6 +27,7 @@ import junit.framework.TestCase;
 import org.junit.Assert;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Random;
 
 /**
@@ -107,4 +111,152 @@ public class StochasticVITest extends TestCase {
         //}
     }
 
-}
\ No newline at end of file
+    public static void testParallelLocalUpdates() throws IOException, ClassNotFoundException {
+
+        BayesianNetwork network = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(network);
+        sampler.setSeed(2);
+        sampler.setMARVar(network.getVariables().getVariableById(0), 0.5);
+        sampler.setMARVar(network.getVariables().getVariableById(3), 0.5);
+        DataOnMemory<DataInstance> data = sampler.sampleToDataStream(2000).toDataOnMemory();
+
+        BayesianNetwork[] learnt = new BayesianNetwork[2];
+        for (int i = 0; i < 2; i++) {
+            StochasticVI stochasticVI = new StochasticVI();
+            stochasticVI.setDataSetSize(2000);
+            stochasticVI.setSeed(5);
+            stochasticVI.setBatchSize(500);
+            stochasticVI.setLocalThreshold(0.001);
+            stochasticVI.setMaximumLocalIterations(100);
+            stochasticVI.setTimiLimit(10);
+            stochasticVI.setParallelMode(i == 1);
+            stochasticVI.setDAG(network.getDAG());
+            stochasticVI.initLearning();
+            data.streamOfBatches(500).limit(3).forEach(batch -> stochasticVI.updateModel(batch));
+            learnt[i] = stochasticVI.getLearntBayesianNetwork();
+        }
+
+        //The slices are conditionally independent, so the parallel updates give the same posteriors
+        Assert.assertTrue(learnt[1].equalBNs(learnt[0], 1e-6));
+    }
+
+    public static void testMultipleWorkers() throws IOException, ClassNotFoundException {
+
+        BayesianNetwork network = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        network.randomInitialization(new Random(0));
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(network);
+        sampler.setSeed(3);
+        DataOnMemory<DataInstance> data = sampler.sampleToDataStream(10000).toDataOnMemory();
+
+        BayesianNetwork[] learnt = new BayesianNetwork[3];
+        for (int i = 0; i < 3; i++) {
+            StochasticVI stochasticVI = new StochasticVI();
+            stochasticVI.setDataSetSize(10000);
+            stochasticVI.setSeed(5);
+            stochasticVI.setBatchSize(100);
+            stochasticVI.setMaximumLocalIterations(100);
+            stochasticVI.setTimiLimit(100);
+            stochasticVI.setNumberOfWorkers(4);
+            stochasticVI.setReproducibleMode(i < 2);
+            stochasticVI.setDAG(network.getDAG());
+            stochasticVI.setDataStream(data);
+            stochasticVI.runLearning();
+            learnt[i] = stochasticVI.getLearntBayesianNetwork();
+        }
+
+        //The reproducible mode does not depend on the scheduling of the workers
+        Assert.assertTrue(learnt[0].equalBNs(learnt[1], 1e-9));
+        Assert.assertTrue(network.equalBNs(learnt[0], 0.1));
+        Assert.assertTrue(network.equalBNs(learnt[2], 0.1));
+    }
+
+    public static void testHogwildWithHiddenVariable() throws IOException, ClassNotFoundException {
+
+        //A mixture with a hidden class, so the local steps depend on the global parameters
+        Variables variables = new Variables();
+        Variable hidden = variables.newMultinomialVariable("H", 2);
+        for (int i = 0; i < 5; i++) {
+            variables.newMultinomialVariable("X" + i, 2);
+        }
+        DAG dag = new DAG(variables);
+        for (int i = 0; i < 5; i++) {
+            dag.getParentSet(variables.getVariableByName("X" + i)).addParent(hidden);
+        }
+        BayesianNetwork network = new BayesianNetwork(dag);
+        network.randomInitialization(new Random(0));
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(network);
+        sampler.setSeed(3);
+        sampler.setMARVar(hidden, 1.0);
+        DataOnMemory<DataInstance> data = sampler.sampleToDataStream(10000).toDataOnMemory();
+
+        BayesianNetwork[] learnt = new BayesianNetwork[2];
+        for (int i = 0; i < 2; i++) {
+            StochasticVI stochasticVI = new StochasticVI();
+            stochasticVI.setDataSetSize(10000);
+            stochasticVI.setSeed(5);
+            stochasticVI.setBatchSize(100);
+            stochasticVI.setMaximumLocalIterations(200);
+            stochasticVI.setTimiLimit(100);
+            stochasticVI.setNumberOfWorkers(i == 0 ? 1 : 2);
+            stochasticVI.setMaxDelay(0);
+            stochasticVI.setReproducibleMode(false);
+            stochasticVI.setDAG(dag);
+            stochasticVI.setDataStream(data);
+            stochasticVI.runLearning();
+            learnt[i] = stochasticVI.getLearntBayesianNetwork();
+        }
+
+        //The workers read the global parameters before their local steps, as the sequential algorithm does
+        Assert.assertTrue(learnt[0].equalBNs(learnt[1], 0.05));
+    }
+
+    public static void testParallelLocalUpdatesWithLocalHiddenNode() throws IOException, ClassNotFoundException {
+
+        //A hidden node shared by all the instances of a batch, which precedes the slices in the update order,
+        //and a hidden node in each slice
+        Variables variables = new Variables();
+        Variable hidden = variables.newGaussianVariable("H");
+        Variable local = variables.newGaussianVariable("Z");
+        for (int i = 0; i < 5; i++) {
+            variables.newGaussianVariable("X" + i);
+        }
+        DAG dag = new DAG(variables);
+        dag.getParentSet(local).addParent(hidden);
+        for (int i = 0; i < 5; i++) {
+            dag.getParentSet(variables.getVariableByName("X" + i)).addParent(local);
+        }
+        BayesianNetwork network = new BayesianNetwork(dag);
+        network.randomInitialization(new Random(0));
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(network);
+        sampler.setSeed(3);
+        sampler.setMARVar(hidden, 1.0);
+        sampler.setMARVar(local, 1.0);
+        DataOnMemory<DataInstance> data = sampler.sampleToDataStream(1000).toDataOnMemory();
+
+        BayesianNetwork[] learnt = new BayesianNetwork[2];
+        for (int i = 0; i < 2; i++) {
+            SVB svb = new SVB();
+            PlateuHiddenVariableConceptDrift plateau = new PlateuHiddenVariableConceptDrift(Arrays.asList(hidden), false);
+            plateau.setVmp(new VMPLocalUpdates(plateau));
+            svb.setPlateuStructure(plateau);
+            //Few local iterations, so the update order shows in the posteriors
+            svb.getPlateuStructure().getVMP().setMaxIter(2);
+            svb.getPlateuStructure().getVMP().setThreshold(0.0001);
+            svb.setSeed(5);
+            svb.setWindowsSize(100);
+            svb.setDAG(dag);
+            svb.initLearning();
+            svb.setParallelMode(i == 1);
+            data.streamOfBatches(100).forEach(batch -> svb.updateModel(batch));
+            learnt[i] = svb.getLearntBayesianNetwork();
+        }
+
+        //The local hidden node is updated before the slices in both modes
+        Assert.assertTrue(learnt[1].equalBNs(learnt[0], 1e-4));
+    }
+
+}
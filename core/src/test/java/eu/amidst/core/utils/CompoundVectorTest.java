@@ -0,0 +1,72 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.utils;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+public class CompoundVectorTest extends TestCase {
+
+    private static CompoundVector newVector(double... values) {
+        SparseVectorDefaultValue sparse = new SparseVectorDefaultValue(3, 0);
+        sparse.set(1, values[5]);
+        return new CompoundVector(Arrays.asList(
+                new ArrayVector(new double[]{values[0], values[1]}),
+                new ArrayVector(new double[]{values[2], values[3], values[4]}),
+                sparse));
+    }
+
+    public static void testGetAndSet() {
+        CompoundVector vector = newVector(1, 2, 3, 4, 5, 6);
+
+        assertEquals(8, vector.size());
+        assertEquals(1.0, vector.get(0));
+        assertEquals(3.0, vector.get(2));
+        assertEquals(5.0, vector.get(4));
+        assertEquals(6.0, vector.get(6));
+        assertEquals(0.0, vector.get(7));
+        assertTrue(Double.isNaN(vector.get(8)));
+
+        vector.set(3, 10);
+        assertEquals(10.0, vector.getVectorByPosition(1).get(1));
+
+        vector.setVectorByPosition(0, new ArrayVector(new double[]{7, 8}));
+        assertEquals(8.0, vector.get(1));
+    }
+
+    public static void testFusedOperations() {
+        CompoundVector x = newVector(1, 2, 3, 4, 5, 6);
+
+        CompoundVector axpy = newVector(1, 1, 1, 1, 1, 1);
+        axpy.axpy(2, x);
+        CompoundVector expected = newVector(3, 5, 7, 9, 11, 13);
+        assertTrue(expected.equalsVector(axpy, 1e-12));
+
+        CompoundVector scaleAndAdd = newVector(1, 1, 1, 1, 1, 1);
+        scaleAndAdd.scaleAndAdd(0.5, 2, x);
+        expected = newVector(2.5, 4.5, 6.5, 8.5, 10.5, 12.5);
+        assertTrue(expected.equalsVector(scaleAndAdd, 1e-12));
+
+        CompoundVector dst = newVector(0, 0, 0, 0, 0, 0);
+        x.subtractInto(newVector(1, 1, 1, 1, 1, 1), dst);
+        expected = newVector(0, 1, 2, 3, 4, 5);
+        assertTrue(expected.equalsVector(dst, 1e-12));
+        assertEquals(1.0, x.get(0));
+    }
+}
@@ -142,7 +142,7 @@ public class AODE extends Classifier<AODE> {
         if (!Utils.isMissingValue(instance.getValue(classVar)))
             System.out.println("Class Variable can not be set.");
 
-        inferenceAlgoPredict.setModel(this.getModel());
+        this.updatePredictionModel();
         this.inferenceAlgoPredict.setEvidence(instance);
 
         System.out.println(instance);
@@ -163,8 +163,9 @@ public class AODE extends Classifier<AODE> {
             }
         }
 
-        posteriors.get(0).setProbabilities(Utils.normalize(vectorPosteriors));
-        return posteriors.get(0);
+        Multinomial posterior = new Multinomial(posteriors.get(0).getVariable());
+        posterior.setProbabilities(Utils.normalize(vectorPosteriors));
+        return posterior;
     }
 
     @Override
@@ -20,11 +20,18 @@ package eu.amidst.latentvariablemodels.staticmodels.classifiers;
 
 import eu.amidst.core.datastream.Attributes;
 import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.datastream.DataStream;
 import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.inference.CachedInferenceAlgorithm;
 import eu.amidst.core.inference.ImportanceSampling;
 import eu.amidst.core.inference.InferenceAlgorithm;
+import eu.amidst.core.inference.PosteriorCache;
+import eu.amidst.core.learning.parametric.ParameterLearningAlgorithm;
+import eu.amidst.core.models.BayesianNetwork;
 import eu.amidst.core.utils.Utils;
 import eu.amidst.core.variables.Variable;
+import eu.amidst.flinklink.core.data.DataFlink;
 import eu.amidst.latentvariablemodels.staticmodels.Model;
 import eu.amidst.latentvariablemodels.staticmodels.exceptions.WrongConfigurationException;
 
@@ -39,6 +46,9 @@ public abstract class Classifier<T extends Classifier> extends Model<T> {
     /** class variable */
     protected Variable classVar = null;
 
+    /** Represents the model used for making the predictions. It is set to null each time the model is updated. */
+    protected BayesianNetwork predictionModel = null;
+
     /**
      * Constructor of a classifier which is initialized with the default arguments:
      * the last variable in attributes is the class variable and importance sampling
@@ -66,7 +76,7 @@ public abstract class Classifier<T extends Classifier> extends Model<T> {
         if (!Utils.isMissingValue(instance.getValue(classVar)))
             System.out.println("Class Variable can not be set.");
 
-        inferenceAlgoPredict.setModel(this.getModel());
+        this.updatePredictionModel();
         this.inferenceAlgoPredict.setEvidence(instance);
 
         //System.out.println(instance);
@@ -81,6 +91,55 @@ public abstract class Classifier<T extends Classifier> extends Model<T> {
     }
 
 
+    /**
+     * Sets the learnt model to the inference algorithm used for making the predictions, unless it has already been
+     * set since the last update of the model.
+     */
+    protected void updatePredictionModel() {
+        if (predictionModel==null) {
+            predictionModel = this.getModel();
+            inferenceAlgoPredict.setModel(predictionModel);
+        }
+    }
+
+    /**
+     * Discards the model used for making the predictions, so the next prediction uses the current learnt model.
+     * The updates through the methods of this classifier do it automatically, but the updates made directly
+     * through the learning algorithm (see {@link #getLearningAlgorithm()}) must call this method.
+     */
+    public void resetPredictionModel() {
+        predictionModel = null;
+    }
+
+    @Override
+    public double updateModel(DataFlink<DataInstance> dataFlink) {
+        predictionModel = null;
+        return super.updateModel(dataFlink);
+    }
+
+    @Override
+    public double updateModel(DataStream<DataInstance> dataStream) {
+        predictionModel = null;
+        return super.updateModel(dataStream);
+    }
+
+    @Override
+    public double updateModel(DataOnMemory<DataInstance> datBatch) {
+        predictionModel = null;
+        return super.updateModel(datBatch);
+    }
+
+    @Override
+    public void resetModel() {
+        predictionModel = null;
+        super.resetModel();
+    }
+
+    @Override
+    public void setLearningAlgorithm(ParameterLearningAlgorithm learningAlgorithm) {
+        predictionModel = null;
+        super.setLearningAlgorithm(learningAlgorithm);
+    }
 
     /////// getters and setters ///////
 
@@ -139,6 +198,30 @@ public abstract class Classifier<T extends Classifier> extends Model<T> {
      */
     public T setInferenceAlgoPredict(InferenceAlgorithm inferenceAlgoPredict) {
         this.inferenceAlgoPredict = inferenceAlgoPredict;
+        this.predictionModel = null;
         return ((T) this);
     }
+
+    /**
+     * Method to cache the class posteriors computed by the inference algorithm used for making the predictions.
+     * Instances with the same observed values are then classified without running inference again. The cache
+     * is discarded each time the model is updated.
+     * @param maxSize the maximum number of different instances stored in the cache.
+     * @param timeToLiveMillis the time to live of a cached prediction in milliseconds, or a non positive value for
+     *                         no expiration.
+     */
+    public T setPredictionCache(int maxSize, long timeToLiveMillis) {
+        InferenceAlgorithm algorithm = (inferenceAlgoPredict instanceof CachedInferenceAlgorithm) ?
+                ((CachedInferenceAlgorithm) inferenceAlgoPredict).getInferenceAlgorithm() : inferenceAlgoPredict;
+        return this.setInferenceAlgoPredict(new CachedInferenceAlgorithm(algorithm, maxSize, timeToLiveMillis));
+    }
+
+    /**
+     * Method to obtain the cache of class posteriors, which provides the hit and miss counts.
+     * @return a {@link PosteriorCache} object, or null if no prediction cache has been set.
+     */
+    public PosteriorCache getPredictionCache() {
+        return (inferenceAlgoPredict instanceof CachedInferenceAlgorithm) ?
+                ((CachedInferenceAlgorithm) inferenceAlgoPredict).getCache() : null;
+    }
 }
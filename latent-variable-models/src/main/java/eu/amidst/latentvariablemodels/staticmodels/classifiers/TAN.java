@@ -81,6 +81,7 @@ public class TAN extends Classifier<TAN> {
                     .filter(variable -> !variable.equals(classVar)).findAny().get().getName();
         }
 
+        predictionModel = null;
         parallelTAN = new ParallelTAN();
         this.dag = new DAG(this.vars);
 
@@ -12,8 +12,10 @@
 package eu.amidst.latentvariablemodels.classifiers;
 
 import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemoryListContainer;
 import eu.amidst.core.datastream.DataStream;
 import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.models.BayesianNetwork;
 import eu.amidst.core.utils.DataSetGenerator;
 import eu.amidst.core.utils.Utils;
 import eu.amidst.core.variables.Variable;
@@ -146,4 +148,22 @@ public class TANTest extends TestCase {
     }
 
 
+
+    public void testPredictionAfterRetraining() {
+
+        List<DataInstance> dataList = data.stream().collect(Collectors.toList());
+
+        DataInstance d = dataList.get(0);
+        d.setValue(model.getClassVar(), Utils.missingValue());
+        model.predict(d);
+
+        //The model is retrained with a part of the data, so its parameters change
+        model.updateModel(new DataOnMemoryListContainer<>(data.getAttributes(), dataList.subList(1, 501)));
+        model.predict(d);
+
+        BayesianNetwork predictionModel = model.getInferenceAlgoPredict().getOriginalModel();
+        assertTrue(predictionModel.getDAG().equals(model.getModel().getDAG()));
+        assertTrue(predictionModel.equalBNs(model.getModel(), 0));
+    }
+
 }